@@ -1,5 +1,10 @@
 package com.stoecklin.bookstore.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -13,12 +18,120 @@ public class ApplicationProperties {
 
     private final Liquibase liquibase = new Liquibase();
 
+    private final OrderArchive orderArchive = new OrderArchive();
+
+    private final ReadReplica readReplica = new ReadReplica();
+
+    private final Recommendation recommendation = new Recommendation();
+
+    private final AdmissionControl admissionControl = new AdmissionControl();
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final Checkout checkout = new Checkout();
+
+    private final DomainEvents domainEvents = new DomainEvents();
+
+    private final BookStream bookStream = new BookStream();
+
+    private final CategoryCounts categoryCounts = new CategoryCounts();
+
+    private final CacheSnapshot cacheSnapshot = new CacheSnapshot();
+
+    private final StartupTasks startupTasks = new StartupTasks();
+
+    private final BookSearch bookSearch = new BookSearch();
+
+    private final Lucene lucene = new Lucene();
+
+    private final Http http = new Http();
+
+    private final Cart cart = new Cart();
+
+    private final GuestCart guestCart = new GuestCart();
+
+    private final Audit audit = new Audit();
+
+    private final RefreshToken refreshToken = new RefreshToken();
+
     // jhipster-needle-application-properties-property
 
     public Liquibase getLiquibase() {
         return liquibase;
     }
 
+    public OrderArchive getOrderArchive() {
+        return orderArchive;
+    }
+
+    public ReadReplica getReadReplica() {
+        return readReplica;
+    }
+
+    public Recommendation getRecommendation() {
+        return recommendation;
+    }
+
+    public AdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    public Checkout getCheckout() {
+        return checkout;
+    }
+
+    public DomainEvents getDomainEvents() {
+        return domainEvents;
+    }
+
+    public BookStream getBookStream() {
+        return bookStream;
+    }
+
+    public CategoryCounts getCategoryCounts() {
+        return categoryCounts;
+    }
+
+    public CacheSnapshot getCacheSnapshot() {
+        return cacheSnapshot;
+    }
+
+    public StartupTasks getStartupTasks() {
+        return startupTasks;
+    }
+
+    public BookSearch getBookSearch() {
+        return bookSearch;
+    }
+
+    public Lucene getLucene() {
+        return lucene;
+    }
+
+    public Http getHttp() {
+        return http;
+    }
+
+    public Cart getCart() {
+        return cart;
+    }
+
+    public GuestCart getGuestCart() {
+        return guestCart;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public RefreshToken getRefreshToken() {
+        return refreshToken;
+    }
+
     // jhipster-needle-application-properties-property-getter
 
     public static class Liquibase {
@@ -33,5 +146,1133 @@ public class ApplicationProperties {
             this.asyncStart = asyncStart;
         }
     }
+
+    /**
+     * Moves completed and cancelled orders out of the hot order tables.
+     */
+    public static class OrderArchive {
+
+        private boolean enabled = false;
+
+        private String cron = "0 30 3 * * *";
+
+        private int retentionMonths = 12;
+
+        private int batchSize = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public int getRetentionMonths() {
+            return retentionMonths;
+        }
+
+        public void setRetentionMonths(int retentionMonths) {
+            this.retentionMonths = retentionMonths;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Routes read-only transactions to a streaming replica.
+     */
+    public static class ReadReplica {
+
+        private boolean enabled = false;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+
+        private Duration maxLag = Duration.ofSeconds(5);
+
+        private Duration lagCheckInterval = Duration.ofSeconds(2);
+
+        private String lagQuery =
+            "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+
+        public Duration getMaxLag() {
+            return maxLag;
+        }
+
+        public void setMaxLag(Duration maxLag) {
+            this.maxLag = maxLag;
+        }
+
+        public Duration getLagCheckInterval() {
+            return lagCheckInterval;
+        }
+
+        public void setLagCheckInterval(Duration lagCheckInterval) {
+            this.lagCheckInterval = lagCheckInterval;
+        }
+
+        public String getLagQuery() {
+            return lagQuery;
+        }
+
+        public void setLagQuery(String lagQuery) {
+            this.lagQuery = lagQuery;
+        }
+    }
+
+    /**
+     * Keeps the in-memory "customers also bought" model.
+     */
+    public static class Recommendation {
+
+        private int topK = 20;
+
+        private int maxCountersPerBook = 500;
+
+        private int maxBasketSize = 50;
+
+        private String snapshotFile = "data/co-purchase.bin";
+
+        private Duration snapshotInterval = Duration.ofMinutes(10);
+
+        private boolean rebuildOnStartup = true;
+
+        private Duration maxSnapshotAge = Duration.ofDays(1);
+
+        public int getTopK() {
+            return topK;
+        }
+
+        public void setTopK(int topK) {
+            this.topK = topK;
+        }
+
+        public int getMaxCountersPerBook() {
+            return maxCountersPerBook;
+        }
+
+        public void setMaxCountersPerBook(int maxCountersPerBook) {
+            this.maxCountersPerBook = maxCountersPerBook;
+        }
+
+        public int getMaxBasketSize() {
+            return maxBasketSize;
+        }
+
+        public void setMaxBasketSize(int maxBasketSize) {
+            this.maxBasketSize = maxBasketSize;
+        }
+
+        public String getSnapshotFile() {
+            return snapshotFile;
+        }
+
+        public void setSnapshotFile(String snapshotFile) {
+            this.snapshotFile = snapshotFile;
+        }
+
+        public Duration getSnapshotInterval() {
+            return snapshotInterval;
+        }
+
+        public void setSnapshotInterval(Duration snapshotInterval) {
+            this.snapshotInterval = snapshotInterval;
+        }
+
+        public boolean isRebuildOnStartup() {
+            return rebuildOnStartup;
+        }
+
+        public void setRebuildOnStartup(boolean rebuildOnStartup) {
+            this.rebuildOnStartup = rebuildOnStartup;
+        }
+
+        public Duration getMaxSnapshotAge() {
+            return maxSnapshotAge;
+        }
+
+        public void setMaxSnapshotAge(Duration maxSnapshotAge) {
+            this.maxSnapshotAge = maxSnapshotAge;
+        }
+    }
+
+    /**
+     * Rate limits and concurrency limits in front of the expensive endpoints.
+     */
+    public static class AdmissionControl {
+
+        private boolean enabled = true;
+
+        private int stripes = 64;
+
+        private Duration bucketTtl = Duration.ofMinutes(10);
+
+        private int trustedProxies = 0;
+
+        private Map<String, EndpointClass> endpointClasses = new LinkedHashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        public Duration getBucketTtl() {
+            return bucketTtl;
+        }
+
+        public void setBucketTtl(Duration bucketTtl) {
+            this.bucketTtl = bucketTtl;
+        }
+
+        public int getTrustedProxies() {
+            return trustedProxies;
+        }
+
+        public void setTrustedProxies(int trustedProxies) {
+            this.trustedProxies = trustedProxies;
+        }
+
+        public Map<String, EndpointClass> getEndpointClasses() {
+            return endpointClasses;
+        }
+
+        public void setEndpointClasses(Map<String, EndpointClass> endpointClasses) {
+            this.endpointClasses = endpointClasses;
+        }
+
+        /**
+         * A group of endpoints sharing the same limits.
+         */
+        public static class EndpointClass {
+
+            private List<String> patterns = new ArrayList<>();
+
+            private int maxConcurrent = 0;
+
+            private Duration maxWait = Duration.ZERO;
+
+            private RateLimit perUser = new RateLimit();
+
+            private RateLimit perIp = new RateLimit();
+
+            public List<String> getPatterns() {
+                return patterns;
+            }
+
+            public void setPatterns(List<String> patterns) {
+                this.patterns = patterns;
+            }
+
+            public int getMaxConcurrent() {
+                return maxConcurrent;
+            }
+
+            public void setMaxConcurrent(int maxConcurrent) {
+                this.maxConcurrent = maxConcurrent;
+            }
+
+            public Duration getMaxWait() {
+                return maxWait;
+            }
+
+            public void setMaxWait(Duration maxWait) {
+                this.maxWait = maxWait;
+            }
+
+            public RateLimit getPerUser() {
+                return perUser;
+            }
+
+            public void setPerUser(RateLimit perUser) {
+                this.perUser = perUser;
+            }
+
+            public RateLimit getPerIp() {
+                return perIp;
+            }
+
+            public void setPerIp(RateLimit perIp) {
+                this.perIp = perIp;
+            }
+        }
+
+        /**
+         * A token bucket: up to {@code capacity} requests in a burst, refilled at {@code refillPerSecond}. A capacity of 0
+         * disables the limit.
+         */
+        public static class RateLimit {
+
+            private int capacity = 0;
+
+            private double refillPerSecond = 1;
+
+            public int getCapacity() {
+                return capacity;
+            }
+
+            public void setCapacity(int capacity) {
+                this.capacity = capacity;
+            }
+
+            public double getRefillPerSecond() {
+                return refillPerSecond;
+            }
+
+            public void setRefillPerSecond(double refillPerSecond) {
+                this.refillPerSecond = refillPerSecond;
+            }
+        }
+    }
+
+    /**
+     * Collapses concurrent lookups of the same book or review list into one query.
+     */
+    public static class SingleFlight {
+
+        private Duration window = Duration.ofSeconds(1);
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+    }
+
+    /**
+     * Checkout: synchronous, or queued and processed by background workers.
+     */
+    public static class Checkout {
+
+        /**
+         * How {@code POST /api/orders/place-order} is served.
+         */
+        public enum Mode {
+            SYNC,
+            QUEUED,
+        }
+
+        private Mode mode = Mode.SYNC;
+
+        private int workers = 4;
+
+        private int laneCapacity = 1000;
+
+        private Duration sweepInterval = Duration.ofSeconds(5);
+
+        private Duration maxPollWait = Duration.ofSeconds(30);
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getLaneCapacity() {
+            return laneCapacity;
+        }
+
+        public void setLaneCapacity(int laneCapacity) {
+            this.laneCapacity = laneCapacity;
+        }
+
+        public Duration getSweepInterval() {
+            return sweepInterval;
+        }
+
+        public void setSweepInterval(Duration sweepInterval) {
+            this.sweepInterval = sweepInterval;
+        }
+
+        public Duration getMaxPollWait() {
+            return maxPollWait;
+        }
+
+        public void setMaxPollWait(Duration maxPollWait) {
+            this.maxPollWait = maxPollWait;
+        }
+    }
+
+    /**
+     * Executor and retries of the handlers of domain events.
+     */
+    public static class DomainEvents {
+
+        private int corePoolSize = 2;
+
+        private int maxPoolSize = 8;
+
+        private int queueCapacity = 10000;
+
+        private int maxAttempts = 3;
+
+        private Duration initialBackoff = Duration.ofMillis(200);
+
+        public int getCorePoolSize() {
+            return corePoolSize;
+        }
+
+        public void setCorePoolSize(int corePoolSize) {
+            this.corePoolSize = corePoolSize;
+        }
+
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+    }
+
+    /**
+     * Live stock and price updates pushed to the book pages.
+     */
+    public static class BookStream {
+
+        private int maxSubscribers = 5000;
+
+        private int maxBookIds = 100;
+
+        private int senderThreads = 4;
+
+        private Duration timeout = Duration.ofMinutes(30);
+
+        private Duration heartbeatInterval = Duration.ofSeconds(20);
+
+        private String notifyChannel = "book_changes";
+
+        public int getMaxSubscribers() {
+            return maxSubscribers;
+        }
+
+        public void setMaxSubscribers(int maxSubscribers) {
+            this.maxSubscribers = maxSubscribers;
+        }
+
+        public int getMaxBookIds() {
+            return maxBookIds;
+        }
+
+        public void setMaxBookIds(int maxBookIds) {
+            this.maxBookIds = maxBookIds;
+        }
+
+        public int getSenderThreads() {
+            return senderThreads;
+        }
+
+        public void setSenderThreads(int senderThreads) {
+            this.senderThreads = senderThreads;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public Duration getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        public void setHeartbeatInterval(Duration heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+
+        public String getNotifyChannel() {
+            return notifyChannel;
+        }
+
+        public void setNotifyChannel(String notifyChannel) {
+            this.notifyChannel = notifyChannel;
+        }
+    }
+
+    /**
+     * Book counts per category, kept in memory for the navigation.
+     */
+    public static class CategoryCounts {
+
+        private Duration refreshInterval = Duration.ofMinutes(10);
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+    }
+
+    /**
+     * Snapshot of the hot cache regions taken on shutdown and reloaded on startup.
+     */
+    public static class CacheSnapshot {
+
+        private boolean enabled = false;
+
+        private String file = "cache-snapshot.bin";
+
+        private List<String> regions = new ArrayList<>(
+            List.of("com.stoecklin.bookstore.domain.Book", "com.stoecklin.bookstore.domain.Category", "usersByLogin")
+        );
+
+        private double warmLevel = 0.9;
+
+        private Duration maxWait = Duration.ofSeconds(60);
+
+        private Duration maxAge = Duration.ofDays(1);
+
+        private int batchSize = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public void setFile(String file) {
+            this.file = file;
+        }
+
+        public List<String> getRegions() {
+            return regions;
+        }
+
+        public void setRegions(List<String> regions) {
+            this.regions = regions;
+        }
+
+        public double getWarmLevel() {
+            return warmLevel;
+        }
+
+        public void setWarmLevel(double warmLevel) {
+            this.warmLevel = warmLevel;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public Duration getMaxAge() {
+            return maxAge;
+        }
+
+        public void setMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class StartupTasks {
+
+        private int threads = 4;
+
+        private int maxAttempts = 10;
+
+        private Duration initialBackoff = Duration.ofSeconds(5);
+
+        private Duration maxBackoff = Duration.ofMinutes(5);
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+    }
+
+    public static class BookSearch {
+
+        /**
+         * Where book searches go.
+         */
+        public enum Backend {
+            ELASTICSEARCH,
+            POSTGRES,
+            /**
+             * Elasticsearch, falling back to PostgreSQL while it is failing or slow.
+             */
+            FAILOVER,
+            /**
+             * Embedded Lucene indexes, for books and reviews.
+             */
+            LUCENE,
+        }
+
+        private Backend backend = Backend.FAILOVER;
+
+        private int maxResults = 100;
+
+        private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        public Backend getBackend() {
+            return backend;
+        }
+
+        public void setBackend(Backend backend) {
+            this.backend = backend;
+        }
+
+        public int getMaxResults() {
+            return maxResults;
+        }
+
+        public void setMaxResults(int maxResults) {
+            this.maxResults = maxResults;
+        }
+
+        public CircuitBreaker getCircuitBreaker() {
+            return circuitBreaker;
+        }
+
+        public static class CircuitBreaker {
+
+            private int windowSize = 50;
+
+            private int minimumCalls = 20;
+
+            private double failureRateThreshold = 0.5;
+
+            private Duration slowCallDuration = Duration.ofSeconds(2);
+
+            private double slowCallRateThreshold = 0.5;
+
+            private Duration openDuration = Duration.ofSeconds(30);
+
+            public int getWindowSize() {
+                return windowSize;
+            }
+
+            public void setWindowSize(int windowSize) {
+                this.windowSize = windowSize;
+            }
+
+            public int getMinimumCalls() {
+                return minimumCalls;
+            }
+
+            public void setMinimumCalls(int minimumCalls) {
+                this.minimumCalls = minimumCalls;
+            }
+
+            public double getFailureRateThreshold() {
+                return failureRateThreshold;
+            }
+
+            public void setFailureRateThreshold(double failureRateThreshold) {
+                this.failureRateThreshold = failureRateThreshold;
+            }
+
+            public Duration getSlowCallDuration() {
+                return slowCallDuration;
+            }
+
+            public void setSlowCallDuration(Duration slowCallDuration) {
+                this.slowCallDuration = slowCallDuration;
+            }
+
+            public double getSlowCallRateThreshold() {
+                return slowCallRateThreshold;
+            }
+
+            public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+                this.slowCallRateThreshold = slowCallRateThreshold;
+            }
+
+            public Duration getOpenDuration() {
+                return openDuration;
+            }
+
+            public void setOpenDuration(Duration openDuration) {
+                this.openDuration = openDuration;
+            }
+        }
+    }
+
+    public static class Lucene {
+
+        private String directory = "lucene-index";
+
+        private Duration refreshInterval = Duration.ofSeconds(1);
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+    }
+
+    public static class Http {
+
+        private final Http2 http2 = new Http2();
+
+        private final Compression compression = new Compression();
+
+        public Http2 getHttp2() {
+            return http2;
+        }
+
+        public Compression getCompression() {
+            return compression;
+        }
+
+        public static class Http2 {
+
+            private int maxConcurrentStreams = 200;
+
+            private int initialWindowSize = 1024 * 1024;
+
+            public int getMaxConcurrentStreams() {
+                return maxConcurrentStreams;
+            }
+
+            public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+                this.maxConcurrentStreams = maxConcurrentStreams;
+            }
+
+            public int getInitialWindowSize() {
+                return initialWindowSize;
+            }
+
+            public void setInitialWindowSize(int initialWindowSize) {
+                this.initialWindowSize = initialWindowSize;
+            }
+        }
+
+        public static class Compression {
+
+            private boolean enabled = true;
+
+            private int minResponseSize = 1024;
+
+            private int level = 6;
+
+            private List<String> mimeTypes = new ArrayList<>(
+                List.of(
+                    "application/json",
+                    "application/problem+json",
+                    "application/cbor",
+                    "application/x-jackson-smile",
+                    "application/x-protobuf",
+                    "text/csv",
+                    "text/plain"
+                )
+            );
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMinResponseSize() {
+                return minResponseSize;
+            }
+
+            public void setMinResponseSize(int minResponseSize) {
+                this.minResponseSize = minResponseSize;
+            }
+
+            public int getLevel() {
+                return level;
+            }
+
+            public void setLevel(int level) {
+                this.level = level;
+            }
+
+            public List<String> getMimeTypes() {
+                return mimeTypes;
+            }
+
+            public void setMimeTypes(List<String> mimeTypes) {
+                this.mimeTypes = mimeTypes;
+            }
+        }
+    }
+
+    public static class Cart {
+
+        /**
+         * Where open shopping carts are kept.
+         */
+        public enum Store {
+            /**
+             * The shopping_cart and cart_item tables.
+             */
+            JPA,
+            /**
+             * An off-heap hash map in a memory-mapped file, made durable by a write-ahead log.
+             */
+            MAPPED,
+        }
+
+        private Store store = Store.JPA;
+
+        private String directory = "cart-store";
+
+        private int maxItems = 64;
+
+        private int initialCapacity = 4096;
+
+        private Duration syncInterval = Duration.ofSeconds(1);
+
+        private Duration compactionInterval = Duration.ofMinutes(5);
+
+        public Store getStore() {
+            return store;
+        }
+
+        public void setStore(Store store) {
+            this.store = store;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getMaxItems() {
+            return maxItems;
+        }
+
+        public void setMaxItems(int maxItems) {
+            this.maxItems = maxItems;
+        }
+
+        public int getInitialCapacity() {
+            return initialCapacity;
+        }
+
+        public void setInitialCapacity(int initialCapacity) {
+            this.initialCapacity = initialCapacity;
+        }
+
+        public Duration getSyncInterval() {
+            return syncInterval;
+        }
+
+        public void setSyncInterval(Duration syncInterval) {
+            this.syncInterval = syncInterval;
+        }
+
+        public Duration getCompactionInterval() {
+            return compactionInterval;
+        }
+
+        public void setCompactionInterval(Duration compactionInterval) {
+            this.compactionInterval = compactionInterval;
+        }
+    }
+
+    /**
+     * The carts of anonymous visitors, kept in a signed cookie rather than in the database.
+     */
+    public static class GuestCart {
+
+        private String cookieName = "guest-cart";
+
+        private Duration maxAge = Duration.ofDays(30);
+
+        private int maxItems = 32;
+
+        public String getCookieName() {
+            return cookieName;
+        }
+
+        public void setCookieName(String cookieName) {
+            this.cookieName = cookieName;
+        }
+
+        public Duration getMaxAge() {
+            return maxAge;
+        }
+
+        public void setMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+        }
+
+        public int getMaxItems() {
+            return maxItems;
+        }
+
+        public void setMaxItems(int maxItems) {
+            this.maxItems = maxItems;
+        }
+    }
+
+
+    /**
+     * The audit trail of entity changes, buffered in memory and written to the {@code entity_audit} table in batches.
+     */
+    public static class Audit {
+
+        private boolean enabled = true;
+
+        private int bufferCapacity = 65536;
+
+        private int batchSize = 500;
+
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getBufferCapacity() {
+            return bufferCapacity;
+        }
+
+        public void setBufferCapacity(int bufferCapacity) {
+            this.bufferCapacity = bufferCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+    }
+
+
+    /**
+     * Refresh tokens, exchanged at {@code /api/authenticate/refresh} for a new access token without checking the
+     * password again.
+     */
+    public static class RefreshToken {
+
+        private boolean enabled = true;
+
+        private Duration accessTokenValidity = Duration.ofMinutes(15);
+
+        private Duration validity = Duration.ofDays(7);
+
+        private Duration validityForRememberMe = Duration.ofDays(30);
+
+        private Duration purgeInterval = Duration.ofHours(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getAccessTokenValidity() {
+            return accessTokenValidity;
+        }
+
+        public void setAccessTokenValidity(Duration accessTokenValidity) {
+            this.accessTokenValidity = accessTokenValidity;
+        }
+
+        public Duration getValidity() {
+            return validity;
+        }
+
+        public void setValidity(Duration validity) {
+            this.validity = validity;
+        }
+
+        public Duration getValidityForRememberMe() {
+            return validityForRememberMe;
+        }
+
+        public void setValidityForRememberMe(Duration validityForRememberMe) {
+            this.validityForRememberMe = validityForRememberMe;
+        }
+
+        public Duration getPurgeInterval() {
+            return purgeInterval;
+        }
+
+        public void setPurgeInterval(Duration purgeInterval) {
+            this.purgeInterval = purgeInterval;
+        }
+    }
     // jhipster-needle-application-properties-property-class
 }
@@ -1,48 +1,37 @@
 package com.stoecklin.bookstore.config;
 
-import com.stoecklin.bookstore.domain.Book;
-import com.stoecklin.bookstore.domain.Review;
-import com.stoecklin.bookstore.repository.BookRepository;
-import com.stoecklin.bookstore.repository.ReviewRepository;
-import java.util.DoubleSummaryStatistics;
-import java.util.List;
+import com.stoecklin.bookstore.service.BookInventoryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
+/**
+ * Recomputes the average rating of every book from its reviews, in a single set-based update. Readiness is held until
+ * it is done.
+ */
 @Component
-public class AverageRatingBackfillRunner implements CommandLineRunner {
+public class AverageRatingBackfillRunner implements StartupTask {
+
+    static final String NAME = "ratingBackfill";
 
     private final Logger log = LoggerFactory.getLogger(AverageRatingBackfillRunner.class);
 
-    private final BookRepository bookRepository;
-    private final ReviewRepository reviewRepository;
+    private final BookInventoryService bookInventoryService;
 
-    public AverageRatingBackfillRunner(BookRepository bookRepository, ReviewRepository reviewRepository) {
-        this.bookRepository = bookRepository;
-        this.reviewRepository = reviewRepository;
+    public AverageRatingBackfillRunner(BookInventoryService bookInventoryService) {
+        this.bookInventoryService = bookInventoryService;
     }
 
     @Override
-    public void run(String... args) {
-        log.info("Starting backfill of average ratings for all books...");
+    public String getName() {
+        return NAME;
+    }
 
-        List<Book> books = bookRepository.findAll();
-
-        for (Book book : books) {
-            List<Review> reviews = reviewRepository.findByBook_Id(book.getId());
-            if (!reviews.isEmpty()) {
-                DoubleSummaryStatistics stats = reviews.stream().mapToDouble(Review::getRating).summaryStatistics();
-                double average = stats.getAverage();
-                book.setAverageRating(average);
-                bookRepository.save(book);
-                log.info("Book '{}' (id={}) updated with averageRating={}", book.getTitle(), book.getId(), average);
-            } else {
-                log.info("Book '{}' (id={}) has no reviews, skipping", book.getTitle(), book.getId());
-            }
-        }
-
-        log.info("Average rating backfill complete!");
+    @Override
+    public void run(StartupTaskProgress progress) {
+        log.info("Starting backfill of average ratings for all books...");
+        int updated = bookInventoryService.backfillAverageRatings();
+        progress.advance(updated);
+        log.info("Average rating backfill complete, {} books updated", updated);
     }
 }
@@ -0,0 +1,116 @@
+package com.stoecklin.bookstore.config;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The binary format of cache snapshots: a header, then for each region its name and the keys it held, either all
+ * {@code long} ids or all strings. Everything is big-endian and length-prefixed so that the file is read in place from
+ * a memory mapping, without buffering it.
+ */
+final class CacheSnapshotFile {
+
+    /**
+     * The keys a cache region held.
+     */
+    record Region(String name, List<?> keys) {}
+
+    /**
+     * A snapshot as read back.
+     */
+    record Snapshot(Instant createdAt, List<Region> regions) {}
+
+    private static final int MAGIC = 0x424b4353; // "BKCS"
+    private static final int VERSION = 1;
+    private static final byte LONG_KEYS = 1;
+    private static final byte STRING_KEYS = 2;
+
+    private CacheSnapshotFile() {}
+
+    /**
+     * Write a snapshot, replacing the file atomically so that a reader never sees a partial one.
+     */
+    static void write(Path file, Instant createdAt, List<Region> regions) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(createdAt.toEpochMilli());
+                out.writeInt(regions.size());
+                for (Region region : regions) {
+                    writeString(out, region.name());
+                    boolean longKeys = region.keys().stream().allMatch(Long.class::isInstance);
+                    out.writeByte(longKeys ? LONG_KEYS : STRING_KEYS);
+                    out.writeInt(region.keys().size());
+                    for (Object key : region.keys()) {
+                        if (longKeys) {
+                            out.writeLong((Long) key);
+                        } else {
+                            writeString(out, key.toString());
+                        }
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read a snapshot.
+     *
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    static Snapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a cache snapshot of this version: " + file);
+            }
+            Instant createdAt = Instant.ofEpochMilli(buffer.getLong());
+            int regionCount = buffer.getInt();
+            List<Region> regions = new ArrayList<>(regionCount);
+            for (int i = 0; i < regionCount; i++) {
+                String name = readString(buffer);
+                byte kind = buffer.get();
+                int count = buffer.getInt();
+                List<Object> keys = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    keys.add(kind == LONG_KEYS ? (Object) buffer.getLong() : readString(buffer));
+                }
+                regions.add(new Region(name, keys));
+            }
+            return new Snapshot(createdAt, regions);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Truncated or corrupt cache snapshot: " + file, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,213 @@
+package com.stoecklin.bookstore.config;
+
+import com.stoecklin.bookstore.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.EntityType;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Warm restarts of the second-level and login caches.
+ * <p>
+ * On graceful shutdown the keys held by the configured cache regions are written to a snapshot file; values are not,
+ * so nothing stale can be restored. On startup the snapshot is read back in the background and the same keys are
+ * loaded from the database in batches, which puts the current state of every entity that still exists back into the
+ * cache. Readiness is held (see {@link CacheWarmupHealthIndicator}) until {@code warm-level} of the keys are loaded, or
+ * for at most {@code max-wait}.
+ */
+@Component
+public class CacheSnapshotManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheSnapshotManager.class);
+
+    private final ApplicationProperties.CacheSnapshot properties;
+    private final CacheManager cacheManager;
+    private final EntityManagerFactory entityManagerFactory;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final AtomicLong loaded = new AtomicLong();
+    private volatile long total;
+    private volatile Instant startedAt;
+    private volatile boolean finished;
+
+    public CacheSnapshotManager(
+        ApplicationProperties applicationProperties,
+        CacheManager cacheManager,
+        EntityManagerFactory entityManagerFactory,
+        UserRepository userRepository,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.properties = applicationProperties.getCacheSnapshot();
+        this.cacheManager = cacheManager;
+        this.entityManagerFactory = entityManagerFactory;
+        this.userRepository = userRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.finished = !properties.isEnabled();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (finished) {
+            return;
+        }
+        startedAt = Instant.now();
+        Thread thread = new Thread(this::load, "cache-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return whether the caches are warm enough to take traffic.
+     */
+    public boolean isWarm() {
+        if (finished) {
+            return true;
+        }
+        long expected = total;
+        if (expected > 0 && loaded.get() >= properties.getWarmLevel() * expected) {
+            return true;
+        }
+        Instant started = startedAt;
+        return started != null && Duration.between(started, Instant.now()).compareTo(properties.getMaxWait()) > 0;
+    }
+
+    public long getLoaded() {
+        return loaded.get();
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @PreDestroy
+    public void takeSnapshot() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!finished) {
+            LOG.info("Not taking a cache snapshot: the caches were still warming up");
+            return;
+        }
+        Path file = Path.of(properties.getFile());
+        try {
+            SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+            List<CacheSnapshotFile.Region> regions = new ArrayList<>();
+            for (String name : properties.getRegions()) {
+                Cache<Object, Object> cache = cacheManager.getCache(name);
+                if (cache == null) {
+                    continue;
+                }
+                Function<Object, Object> toKey = keyResolver(sessionFactory, name);
+                List<Object> keys = new ArrayList<>();
+                for (Cache.Entry<Object, Object> entry : cache) {
+                    keys.add(toKey.apply(entry.getKey()));
+                }
+                regions.add(new CacheSnapshotFile.Region(name, keys));
+            }
+            CacheSnapshotFile.write(file, Instant.now(), regions);
+            LOG.info("Wrote cache snapshot of {} keys to {}", regions.stream().mapToInt(region -> region.keys().size()).sum(), file);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to write cache snapshot to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static Function<Object, Object> keyResolver(SessionFactoryImplementor sessionFactory, String region) {
+        EntityPersister persister = sessionFactory.getMappingMetamodel().findEntityDescriptor(region);
+        EntityDataAccess access = persister == null ? null : persister.getCacheAccessStrategy();
+        return access == null ? Function.identity() : access::getCacheKeyId;
+    }
+
+    private void load() {
+        Path file = Path.of(properties.getFile());
+        try {
+            if (!Files.isReadable(file)) {
+                LOG.info("No cache snapshot at {}, starting cold", file);
+                return;
+            }
+            CacheSnapshotFile.Snapshot snapshot = CacheSnapshotFile.read(file);
+            if (snapshot.createdAt().isBefore(Instant.now().minus(properties.getMaxAge()))) {
+                LOG.info("Ignoring cache snapshot taken at {}", snapshot.createdAt());
+                return;
+            }
+            List<CacheSnapshotFile.Region> regions = snapshot
+                .regions()
+                .stream()
+                .filter(region -> properties.getRegions().contains(region.name()))
+                .toList();
+            total = regions.stream().mapToLong(region -> region.keys().size()).sum();
+            for (CacheSnapshotFile.Region region : regions) {
+                if (UserRepository.USERS_BY_LOGIN_CACHE.equals(region.name())) {
+                    loadInBatches(region.keys(), batch -> batch.forEach(login -> userRepository.findOneWithAuthoritiesByLogin((String) login)));
+                } else {
+                    Class<?> entityClass = entityClass(region.name());
+                    if (entityClass == null) {
+                        LOG.debug("Skipping cache region {}: not an entity", region.name());
+                        loaded.addAndGet(region.keys().size());
+                        continue;
+                    }
+                    loadInBatches(region.keys(), batch ->
+                        EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory)
+                            .unwrap(Session.class)
+                            .byMultipleIds(entityClass)
+                            .multiLoad(batch)
+                    );
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to warm the caches from {}: {}", file, e.getMessage());
+        } finally {
+            finished = true;
+            LOG.info("Cache warm-up finished: {} of {} keys loaded in {}", loaded.get(), total, Duration.between(startedAt, Instant.now()));
+        }
+    }
+
+    private void loadInBatches(List<?> keys, Consumer<List<?>> loader) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<?> batch = keys.subList(from, Math.min(keys.size(), from + batchSize));
+            readOnlyTransactionTemplate.executeWithoutResult(status -> loader.accept(batch));
+            loaded.addAndGet(batch.size());
+        }
+    }
+
+    private Class<?> entityClass(String region) {
+        return entityManagerFactory
+            .getMetamodel()
+            .getEntities()
+            .stream()
+            .map(EntityType::getJavaType)
+            .filter(javaType -> javaType.getName().equals(region))
+            .findFirst()
+            .orElse(null);
+    }
+}
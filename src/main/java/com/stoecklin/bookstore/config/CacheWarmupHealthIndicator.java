@@ -0,0 +1,29 @@
+package com.stoecklin.bookstore.config;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Part of the readiness group: out of service while the caches are warming up from a snapshot, see
+ * {@link CacheSnapshotManager}.
+ */
+@Component
+public class CacheWarmupHealthIndicator implements HealthIndicator {
+
+    private final CacheSnapshotManager cacheSnapshotManager;
+
+    public CacheWarmupHealthIndicator(CacheSnapshotManager cacheSnapshotManager) {
+        this.cacheSnapshotManager = cacheSnapshotManager;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = cacheSnapshotManager.isWarm() ? Health.up() : Health.outOfService();
+        return builder
+            .withDetail("loaded", cacheSnapshotManager.getLoaded())
+            .withDetail("total", cacheSnapshotManager.getTotal())
+            .withDetail("finished", cacheSnapshotManager.isFinished())
+            .build();
+    }
+}
@@ -0,0 +1,76 @@
+package com.stoecklin.bookstore.config;
+
+import com.stoecklin.bookstore.service.CatalogueImportService;
+import com.stoecklin.bookstore.service.dto.ImportReportDTO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BiFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Command line entry point of the bulk catalogue import, e.g.
+ * {@code java -jar bookstore.jar --import-categories=categories.csv --import-books=books.ndjson --import-exit}.
+ * <p>
+ * Files are imported in dependency order (categories, books, then reviews); the format is taken from the file extension.
+ * With {@code --import-exit} the application stops once the import is done, with a non-zero exit code if any record was
+ * rejected.
+ */
+@Component
+public class CatalogueImportRunner implements ApplicationRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CatalogueImportRunner.class);
+
+    private final CatalogueImportService catalogueImportService;
+    private final ApplicationContext applicationContext;
+
+    public CatalogueImportRunner(CatalogueImportService catalogueImportService, ApplicationContext applicationContext) {
+        this.catalogueImportService = catalogueImportService;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long rejected = 0;
+        rejected += importFiles(args, "import-categories", catalogueImportService::importCategories);
+        rejected += importFiles(args, "import-books", catalogueImportService::importBooks);
+        rejected += importFiles(args, "import-reviews", catalogueImportService::importReviews);
+        if (args.containsOption("import-exit")) {
+            int exitCode = rejected > 0 ? 1 : 0;
+            System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+        }
+    }
+
+    private long importFiles(
+        ApplicationArguments args,
+        String option,
+        BiFunction<InputStream, CatalogueImportService.Format, ImportReportDTO> importer
+    ) {
+        List<String> files = args.getOptionValues(option);
+        if (files == null) {
+            return 0;
+        }
+        long rejected = 0;
+        for (String file : files) {
+            Path path = Path.of(file);
+            LOG.info("Importing {}", path);
+            try (InputStream in = Files.newInputStream(path)) {
+                ImportReportDTO report = importer.apply(in, CatalogueImportService.Format.detect(path.getFileName().toString()));
+                report.errors().forEach(error -> LOG.warn("{}:{}: {}", path, error.line(), error.message()));
+                rejected += report.rejected();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + path, e);
+            }
+        }
+        return rejected;
+    }
+}
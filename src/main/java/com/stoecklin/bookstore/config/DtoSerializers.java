@@ -0,0 +1,88 @@
+package com.stoecklin.bookstore.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.stoecklin.bookstore.service.dto.BookDeltaDTO;
+import com.stoecklin.bookstore.service.dto.CategoryWithCountDTO;
+import java.io.IOException;
+
+/**
+ * Serializers for the DTOs that are sent in bulk, such as stock deltas and category counts. Field names are encoded
+ * once, and values are written straight to the generator without introspecting the records.
+ */
+final class DtoSerializers {
+
+    private DtoSerializers() {}
+
+    static SimpleModule module() {
+        SimpleModule module = new SimpleModule("DtoSerializers");
+        module.addSerializer(BookDeltaDTO.class, new BookDeltaSerializer());
+        module.addSerializer(CategoryWithCountDTO.class, new CategoryWithCountSerializer());
+        return module;
+    }
+
+    static final class BookDeltaSerializer extends StdSerializer<BookDeltaDTO> {
+
+        private static final SerializedString ID = new SerializedString("id");
+        private static final SerializedString STOCK = new SerializedString("stock");
+        private static final SerializedString PRICE = new SerializedString("price");
+
+        BookDeltaSerializer() {
+            super(BookDeltaDTO.class);
+        }
+
+        @Override
+        public void serialize(BookDeltaDTO value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(value);
+            gen.writeFieldName(ID);
+            writeNullable(gen, value.id());
+            gen.writeFieldName(STOCK);
+            if (value.stock() == null) {
+                gen.writeNull();
+            } else {
+                gen.writeNumber(value.stock());
+            }
+            gen.writeFieldName(PRICE);
+            if (value.price() == null) {
+                gen.writeNull();
+            } else {
+                gen.writeNumber(value.price());
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    static final class CategoryWithCountSerializer extends StdSerializer<CategoryWithCountDTO> {
+
+        private static final SerializedString ID = new SerializedString("id");
+        private static final SerializedString NAME = new SerializedString("name");
+        private static final SerializedString BOOK_COUNT = new SerializedString("bookCount");
+
+        CategoryWithCountSerializer() {
+            super(CategoryWithCountDTO.class);
+        }
+
+        @Override
+        public void serialize(CategoryWithCountDTO value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(value);
+            gen.writeFieldName(ID);
+            writeNullable(gen, value.id());
+            gen.writeFieldName(NAME);
+            gen.writeString(value.name());
+            gen.writeFieldName(BOOK_COUNT);
+            gen.writeNumber(value.bookCount());
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeNullable(JsonGenerator gen, Long value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+}
@@ -1,24 +1,47 @@
 package com.stoecklin.bookstore.config;
 
 import com.stoecklin.bookstore.service.BookService;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
+/**
+ * Rebuilds the search index of books; it runs after the rating backfill, as the index holds the average ratings.
+ * Readiness is only held until it is done when searches are served by Elasticsearch alone, so that no partial search
+ * results are served: the other backends answer searches without the index.
+ */
 @Component
-public class ElasticsearchInitializer implements CommandLineRunner {
+public class ElasticsearchInitializer implements StartupTask {
 
     private final BookService bookService;
 
     private static final Logger LOG = LoggerFactory.getLogger(ElasticsearchInitializer.class);
 
-    public ElasticsearchInitializer(BookService bookService) {
+    private final boolean blocksReadiness;
+
+    public ElasticsearchInitializer(BookService bookService, ApplicationProperties applicationProperties) {
         this.bookService = bookService;
+        this.blocksReadiness = applicationProperties.getBookSearch().getBackend() == ApplicationProperties.BookSearch.Backend.ELASTICSEARCH;
+    }
+
+    @Override
+    public String getName() {
+        return "searchIndex";
+    }
+
+    @Override
+    public boolean blocksReadiness() {
+        return blocksReadiness;
+    }
+
+    @Override
+    public Set<String> getDependencies() {
+        return Set.of(AverageRatingBackfillRunner.NAME);
     }
 
     @Override
-    public void run(String... args) {
+    public void run(StartupTaskProgress progress) {
         LOG.debug("Reindexing all books into Elasticsearch...");
         bookService.reindexAllBooks();
         LOG.debug("Reindexing complete!");
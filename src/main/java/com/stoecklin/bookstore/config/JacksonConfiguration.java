@@ -3,10 +3,12 @@ package com.stoecklin.bookstore.config;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.hibernate6.Hibernate6Module;
 import com.fasterxml.jackson.datatype.hibernate6.Hibernate6Module.Feature;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import java.io.IOException;
 import java.time.LocalTime;
 import org.springframework.context.annotation.Bean;
@@ -40,10 +42,31 @@ public class JacksonConfiguration {
     }
 
     /*
-     * Support for Hibernate types in Jackson.
+     * Support for Hibernate types in Jackson. JPA @Transient properties are still (de)serialized: the stock and rating
+     * of books are transient, being stored apart.
      */
     @Bean
     public Hibernate6Module hibernate6Module() {
-        return new Hibernate6Module().configure(Feature.SERIALIZE_IDENTIFIER_FOR_LAZY_NOT_LOADED_OBJECTS, true);
+        return new Hibernate6Module()
+            .configure(Feature.SERIALIZE_IDENTIFIER_FOR_LAZY_NOT_LOADED_OBJECTS, true)
+            .configure(Feature.USE_TRANSIENT_ANNOTATION, false);
+    }
+
+    /**
+     * Access bean properties through generated lambdas rather than reflection.
+     * @return the corresponding Jackson module.
+     */
+    @Bean
+    public BlackbirdModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    /**
+     * Hand-written serializers for the DTOs that are sent in bulk.
+     * @return the corresponding Jackson module.
+     */
+    @Bean
+    public SimpleModule dtoSerializersModule() {
+        return DtoSerializers.module();
     }
 }
@@ -0,0 +1,186 @@
+package com.stoecklin.bookstore.config;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufMessage;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.ShoppingCart;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Writes books, orders and shopping carts, and lists of books and orders, as Protobuf messages described by
+ * {@code proto/bookstore.proto}.
+ * <p>
+ * Values go through the same Jackson configuration as JSON, but only the properties declared in the message of the
+ * same name as their class are written, so that the schema decides what is exposed. A list is written as the single
+ * repeated field of a wrapper message, e.g. {@code BookList}. Request bodies are not read as Protobuf.
+ */
+public class JacksonProtobufHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+    private static final String SCHEMA = "proto/bookstore.proto";
+
+    /**
+     * The message of a type, and the message and field of a list of it.
+     */
+    private record Messages(String message, String listMessage, String listField) {}
+
+    private static final Map<Class<?>, Messages> MESSAGES = Map.of(
+        Book.class,
+        new Messages("Book", "BookList", "books"),
+        Order.class,
+        new Messages("Order", "OrderList", "orders"),
+        ShoppingCart.class,
+        new Messages("ShoppingCart", null, null)
+    );
+
+    private final NativeProtobufSchema schema;
+
+    public JacksonProtobufHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        this(builder, loadSchema());
+    }
+
+    private JacksonProtobufHttpMessageConverter(Jackson2ObjectMapperBuilder builder, NativeProtobufSchema schema) {
+        super(
+            builder
+                .factory(new ProtobufFactory())
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .postConfigurer(objectMapper -> objectMapper.registerModule(schemaModule(schema)))
+                .build(),
+            APPLICATION_PROTOBUF
+        );
+        this.schema = schema;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return canWrite(clazz, clazz, mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return canWrite(mediaType) && schemaFor(type != null ? type : clazz) != null;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Type target = type != null ? type : object.getClass();
+        ProtobufSchema messageSchema = schemaFor(target);
+        if (messageSchema == null) {
+            throw new HttpMessageNotWritableException("No Protobuf message for " + target);
+        }
+        Object value = object instanceof Collection<?> ? Map.of(messageSchema.getRootType().firstField().name, object) : object;
+        getObjectMapper().writer(messageSchema).writeValue(StreamUtils.nonClosing(outputMessage.getBody()), value);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw notReadable(inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw notReadable(inputMessage);
+    }
+
+    private static HttpMessageNotReadableException notReadable(HttpInputMessage inputMessage) {
+        return new HttpMessageNotReadableException("Protobuf request bodies are not supported", inputMessage);
+    }
+
+    /**
+     * @return the schema of the root message to write a value of this type with, {@code null} if there is none.
+     */
+    ProtobufSchema schemaFor(Type type) {
+        ResolvableType resolved = ResolvableType.forType(type);
+        boolean list = Collection.class.isAssignableFrom(resolved.toClass());
+        Messages messages = messagesOf(list ? resolved.asCollection().getGeneric(0).toClass() : resolved.toClass());
+        if (messages == null) {
+            return null;
+        }
+        String message = list ? messages.listMessage() : messages.message();
+        return message == null ? null : schema.forType(message);
+    }
+
+    private static Messages messagesOf(Class<?> clazz) {
+        for (Class<?> candidate = clazz; candidate != null; candidate = candidate.getSuperclass()) {
+            Messages messages = MESSAGES.get(candidate);
+            if (messages != null) {
+                return messages;
+            }
+        }
+        return null;
+    }
+
+    private static NativeProtobufSchema loadSchema() {
+        try (InputStream in = new ClassPathResource(SCHEMA).getInputStream()) {
+            return ProtobufSchemaLoader.std.loadNative(in, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load the Protobuf schema " + SCHEMA, e);
+        }
+    }
+
+    private static SimpleModule schemaModule(NativeProtobufSchema schema) {
+        SimpleModule module = new SimpleModule("ProtobufSchema");
+        // decimals are strings in the schema, written with their scale as in JSON
+        module.addSerializer(BigDecimal.class, ToStringSerializer.instance);
+        module.setSerializerModifier(
+            new BeanSerializerModifier() {
+                @Override
+                public List<BeanPropertyWriter> changeProperties(
+                    SerializationConfig config,
+                    BeanDescription beanDesc,
+                    List<BeanPropertyWriter> beanProperties
+                ) {
+                    String name = beanDesc.getBeanClass().getSimpleName();
+                    if (!schema.hasMessageType(name)) {
+                        return beanProperties;
+                    }
+                    ProtobufMessage message = schema.forType(name).getRootType();
+                    List<BeanPropertyWriter> declared = new ArrayList<>(beanProperties);
+                    declared.removeIf(property -> message.field(property.getName()) == null);
+                    return declared;
+                }
+            }
+        );
+        return module;
+    }
+}
@@ -0,0 +1,99 @@
+package com.stoecklin.bookstore.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Splits database traffic between the primary and a read replica.
+ * <p>
+ * The application {@link DataSource} is a {@link LazyConnectionDataSourceProxy}: the physical connection is only fetched
+ * on the first statement, after the transaction manager has flagged it read-only or not. Read-write transactions always
+ * use the primary pool; {@code @Transactional(readOnly = true)} work goes to the replica pool unless the replica lags or
+ * the current request already committed a write.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.read-replica", name = "enabled", havingValue = "true")
+public class ReadReplicaConfiguration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReadReplicaConfiguration.class);
+
+    @Bean(defaultCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties, MeterRegistry meterRegistry) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return primary;
+    }
+
+    @Bean(defaultCandidate = false)
+    public HikariDataSource replicaDataSource(
+        ApplicationProperties applicationProperties,
+        DataSourceProperties dataSourceProperties,
+        MeterRegistry meterRegistry
+    ) {
+        ApplicationProperties.ReadReplica properties = applicationProperties.getReadReplica();
+        LOG.info("Routing read-only transactions to replica {}", properties.getUrl());
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName("Hikari-replica");
+        replica.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        replica.setJdbcUrl(properties.getUrl());
+        replica.setUsername(properties.getUsername());
+        replica.setPassword(properties.getPassword());
+        replica.setMaximumPoolSize(properties.getMaximumPoolSize());
+        replica.setAutoCommit(false);
+        replica.setReadOnly(true);
+        replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return replica;
+    }
+
+    @Bean
+    public ReplicationLagMonitor replicationLagMonitor(
+        @Qualifier("replicaDataSource") HikariDataSource replicaDataSource,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        return new ReplicationLagMonitor(replicaDataSource, applicationProperties.getReadReplica(), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+        @Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+        @Qualifier("replicaDataSource") HikariDataSource replicaDataSource,
+        ReplicationLagMonitor replicationLagMonitor
+    ) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(
+            new ReplicaAwareDataSource(replicaDataSource, primaryDataSource, replicationLagMonitor::isReplicaUsable)
+        );
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWritesContext.WriteTrackingListener readYourWritesTransactionListener() {
+        return new ReadYourWritesContext.WriteTrackingListener();
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesContext.RequestScopeFilter> readYourWritesFilter() {
+        FilterRegistrationBean<ReadYourWritesContext.RequestScopeFilter> registration = new FilterRegistrationBean<>(
+            new ReadYourWritesContext.RequestScopeFilter()
+        );
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
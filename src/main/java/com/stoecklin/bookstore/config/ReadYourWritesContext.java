@@ -0,0 +1,64 @@
+package com.stoecklin.bookstore.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Tracks whether the current request has already committed a write, so that its later reads are served by the primary
+ * and never observe a replica that has not caught up yet.
+ */
+public final class ReadYourWritesContext {
+
+    private static final ThreadLocal<Boolean> WROTE = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private ReadYourWritesContext() {}
+
+    public static boolean isPinnedToPrimary() {
+        return WROTE.get();
+    }
+
+    public static void markWritten() {
+        WROTE.set(Boolean.TRUE);
+    }
+
+    public static void clear() {
+        WROTE.remove();
+    }
+
+    /**
+     * Pins the rest of the request to the primary once a read-write transaction has committed. Commits made outside of a
+     * request are ignored: nothing would clear the flag on those pooled threads, which would stay on the primary.
+     */
+    static class WriteTrackingListener implements TransactionExecutionListener {
+
+        @Override
+        public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+            if (commitFailure == null && !transaction.isReadOnly() && RequestContextHolder.getRequestAttributes() != null) {
+                markWritten();
+            }
+        }
+    }
+
+    /**
+     * Resets the read-your-writes state at the end of every request, as servlet threads are pooled.
+     */
+    static class RequestScopeFilter extends OncePerRequestFilter {
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.stoecklin.bookstore.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.BooleanSupplier;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Read-only side of the {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: hands out replica
+ * connections, unless the replica is lagging or the current request has to read its own writes, in which case the primary
+ * serves the read-only work instead.
+ */
+public class ReplicaAwareDataSource extends DelegatingDataSource {
+
+    private final DataSource primary;
+
+    private final BooleanSupplier replicaUsable;
+
+    public ReplicaAwareDataSource(DataSource replica, DataSource primary, BooleanSupplier replicaUsable) {
+        super(replica);
+        this.primary = primary;
+        this.replicaUsable = replicaUsable;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return currentTarget().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return currentTarget().getConnection(username, password);
+    }
+
+    private DataSource currentTarget() {
+        if (ReadYourWritesContext.isPinnedToPrimary() || !replicaUsable.getAsBoolean()) {
+            return primary;
+        }
+        return obtainTargetDataSource();
+    }
+}
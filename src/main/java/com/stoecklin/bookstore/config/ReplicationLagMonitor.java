@@ -0,0 +1,78 @@
+package com.stoecklin.bookstore.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
+
+/**
+ * Periodically measures how far the replica is behind the primary. Read-only work falls back to the primary while the lag
+ * exceeds {@code application.read-replica.max-lag} or while the replica cannot be reached.
+ */
+public class ReplicationLagMonitor implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicationLagMonitor.class);
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile double lagSeconds = 0;
+    private volatile boolean replicaUsable = true;
+
+    public ReplicationLagMonitor(DataSource replica, ApplicationProperties.ReadReplica properties, MeterRegistry meterRegistry) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        this.lagQuery = properties.getLagQuery();
+        this.maxLagSeconds = properties.getMaxLag().toMillis() / 1000d;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+            .baseUnit("seconds")
+            .description("Replication lag of the read replica, as last measured")
+            .register(meterRegistry);
+        Gauge.builder("datasource.replica.usable", this, monitor -> monitor.replicaUsable ? 1 : 0)
+            .description("Whether read-only transactions are currently routed to the replica")
+            .register(meterRegistry);
+        if (StringUtils.hasText(lagQuery)) {
+            Duration interval = properties.getLagCheckInterval();
+            scheduler.scheduleWithFixedDelay(this::check, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    void check() {
+        boolean usable;
+        try {
+            Double lag = replicaJdbcTemplate.queryForObject(lagQuery, Double.class);
+            lagSeconds = lag == null ? 0 : lag;
+            usable = lagSeconds <= maxLagSeconds;
+        } catch (RuntimeException e) {
+            LOG.debug("Replica lag check failed: {}", e.getMessage());
+            usable = false;
+        }
+        if (usable != replicaUsable) {
+            LOG.warn("Read replica is now {} (lag {}s)", usable ? "in use" : "bypassed", lagSeconds);
+        }
+        replicaUsable = usable;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+}
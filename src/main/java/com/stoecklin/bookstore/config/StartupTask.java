@@ -0,0 +1,38 @@
+package com.stoecklin.bookstore.config;
+
+import java.util.Set;
+
+/**
+ * A job run in the background once the application is started, such as rebuilding the search index.
+ * <p>
+ * Tasks are run by the {@link StartupTaskRunner}, in parallel unless one depends on another. Each one is exposed as a
+ * health contributor under its name; a task that blocks readiness keeps it out of service until it is done.
+ */
+public interface StartupTask {
+    /**
+     * @return the name of the task, which is also the name of its health contributor.
+     */
+    String getName();
+
+    /**
+     * @return whether the application should not take traffic before the task is done.
+     */
+    default boolean blocksReadiness() {
+        return true;
+    }
+
+    /**
+     * @return the names of the tasks that must be done before this one starts.
+     */
+    default Set<String> getDependencies() {
+        return Set.of();
+    }
+
+    /**
+     * Run the task. A task that fails is retried, so it must be safe to run again.
+     *
+     * @param progress where to report progress.
+     * @throws Exception if the task failed.
+     */
+    void run(StartupTaskProgress progress) throws Exception;
+}
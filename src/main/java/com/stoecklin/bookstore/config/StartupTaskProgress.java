@@ -0,0 +1,108 @@
+package com.stoecklin.bookstore.config;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * The state of a {@link StartupTask}, reported as its health.
+ */
+public final class StartupTaskProgress {
+
+    /**
+     * Where a task is at.
+     */
+    public enum Status {
+        PENDING,
+        RUNNING,
+        DONE,
+        FAILED,
+    }
+
+    private final boolean blocksReadiness;
+    private final AtomicLong processed = new AtomicLong();
+    private volatile long total = -1;
+    private volatile Status status = Status.PENDING;
+    private volatile int attempts;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    StartupTaskProgress(boolean blocksReadiness) {
+        this.blocksReadiness = blocksReadiness;
+    }
+
+    /**
+     * Set the number of items the task will process, if it is known.
+     */
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Count processed items.
+     */
+    public void advance(long count) {
+        processed.addAndGet(count);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    void started() {
+        if (startedAt == null) {
+            startedAt = Instant.now();
+        }
+        attempts++;
+        finishedAt = null;
+        processed.set(0);
+        status = Status.RUNNING;
+    }
+
+    void done() {
+        finishedAt = Instant.now();
+        error = null;
+        status = Status.DONE;
+    }
+
+    void failed(String error, boolean givingUp) {
+        this.error = error;
+        if (givingUp) {
+            finishedAt = Instant.now();
+            status = Status.FAILED;
+        }
+    }
+
+    Health health() {
+        Health.Builder builder;
+        if (!blocksReadiness) {
+            builder = Health.up();
+        } else if (status == Status.DONE) {
+            builder = Health.up();
+        } else if (status == Status.FAILED) {
+            builder = Health.down();
+        } else {
+            builder = Health.outOfService();
+        }
+        builder.withDetail("status", status).withDetail("attempts", attempts);
+        if (status == Status.RUNNING) {
+            builder.withDetail("processed", processed.get());
+            if (total >= 0) {
+                builder.withDetail("total", total);
+            }
+        }
+        if (startedAt != null) {
+            builder.withDetail("duration", Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toString());
+        }
+        if (error != null) {
+            builder.withDetail("error", error);
+        }
+        return builder.build();
+    }
+}
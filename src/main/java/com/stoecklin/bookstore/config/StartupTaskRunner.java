@@ -0,0 +1,177 @@
+package com.stoecklin.bookstore.config;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.HealthContributorRegistry;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the {@link StartupTask}s once the application is started, on its own threads: a task starts as soon as the
+ * tasks it depends on are done, so independent tasks run in parallel. Failed tasks are retried with exponential
+ * backoff; a task that still fails after {@code max-attempts}, and the tasks depending on it, are reported as failed,
+ * and it is then retried every {@code max-backoff} until it is done, after which the tasks depending on it run.
+ * <p>
+ * Each task is registered as a health contributor under its name, so that the readiness group can include it.
+ */
+@Component
+public class StartupTaskRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupTaskRunner.class);
+
+    private final Map<String, StartupTask> tasks = new LinkedHashMap<>();
+    private final Map<String, StartupTaskProgress> progress = new HashMap<>();
+    private final ApplicationProperties.StartupTasks properties;
+    private final ExecutorService executor;
+
+    public StartupTaskRunner(
+        List<StartupTask> tasks,
+        HealthContributorRegistry healthContributorRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        for (StartupTask task : tasks) {
+            if (this.tasks.putIfAbsent(task.getName(), task) != null) {
+                throw new IllegalStateException("Duplicate startup task " + task.getName());
+            }
+        }
+        for (StartupTask task : tasks) {
+            for (String dependency : task.getDependencies()) {
+                if (!this.tasks.containsKey(dependency)) {
+                    throw new IllegalStateException("Startup task " + task.getName() + " depends on unknown task " + dependency);
+                }
+            }
+            checkNoCycle(task.getName(), task.getName());
+            StartupTaskProgress taskProgress = new StartupTaskProgress(task.blocksReadiness());
+            progress.put(task.getName(), taskProgress);
+            healthContributorRegistry.registerContributor(task.getName(), (HealthIndicator) taskProgress::health);
+        }
+        this.properties = applicationProperties.getStartupTasks();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "startup-task-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void checkNoCycle(String start, String current) {
+        for (String dependency : tasks.get(current).getDependencies()) {
+            if (dependency.equals(start)) {
+                throw new IllegalStateException("Startup task " + start + " depends on itself");
+            }
+            checkNoCycle(start, dependency);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Map<String, CompletableFuture<Void>> started = new HashMap<>();
+        tasks.keySet().forEach(name -> schedule(name, started));
+    }
+
+    private CompletableFuture<Void> schedule(String name, Map<String, CompletableFuture<Void>> started) {
+        CompletableFuture<Void> future = started.get(name);
+        if (future == null) {
+            StartupTask task = tasks.get(name);
+            CompletableFuture<?>[] dependencies = task
+                .getDependencies()
+                .stream()
+                .map(dependency -> schedule(dependency, started))
+                .toArray(CompletableFuture[]::new);
+            future = CompletableFuture.allOf(dependencies).handleAsync(
+                (ignored, failure) -> {
+                    if (failure != null) {
+                        progress.get(name).failed("A task it depends on failed", true);
+                        throw new CompletionException(failure);
+                    }
+                    runWithRetries(task);
+                    return null;
+                },
+                executor
+            );
+            started.put(name, future);
+        }
+        return future;
+    }
+
+    private void runWithRetries(StartupTask task) {
+        StartupTaskProgress taskProgress = progress.get(task.getName());
+        Duration backoff = properties.getInitialBackoff();
+        boolean failed = false;
+        while (true) {
+            taskProgress.started();
+            LOG.info("Running startup task {}", task.getName());
+            try {
+                task.run(taskProgress);
+                taskProgress.done();
+                LOG.info("Startup task {} done", task.getName());
+                return;
+            } catch (Exception e) {
+                boolean givingUp = taskProgress.getAttempts() >= properties.getMaxAttempts();
+                taskProgress.failed(e.toString(), givingUp);
+                if (givingUp && !failed) {
+                    failed = true;
+                    backoff = properties.getMaxBackoff();
+                    LOG.error(
+                        "Startup task {} failed {} times, retrying every {}",
+                        task.getName(),
+                        taskProgress.getAttempts(),
+                        backoff,
+                        e
+                    );
+                    failDependents(task.getName());
+                } else {
+                    LOG.warn("Startup task {} failed, retrying in {}: {}", task.getName(), backoff, e.toString());
+                }
+            }
+            try {
+                Thread.sleep(backoff.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                taskProgress.failed("Interrupted", true);
+                throw new CompletionException(e);
+            }
+            Duration doubled = backoff.multipliedBy(2);
+            backoff = doubled.compareTo(properties.getMaxBackoff()) > 0 ? properties.getMaxBackoff() : doubled;
+        }
+    }
+
+    private void failDependents(String name) {
+        tasks
+            .values()
+            .stream()
+            .filter(task -> task.getDependencies().contains(name))
+            .forEach(task -> {
+                progress.get(task.getName()).failed("A task it depends on failed", true);
+                failDependents(task.getName());
+            });
+    }
+
+    /**
+     * @param name the name of a task.
+     * @return its progress.
+     */
+    public StartupTaskProgress getProgress(String name) {
+        return progress.get(name);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -7,15 +7,26 @@ import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
 import tech.jhipster.config.JHipsterConstants;
 import tech.jhipster.config.JHipsterProperties;
 
+/**
+ * Serves the client bundle in production.
+ * <p>
+ * The build writes gzip and brotli variants next to the compressible assets; the {@link EncodedResourceResolver} picks
+ * the one the client accepts, so they are never compressed per request. Bundles and media with a content hash in their
+ * name are immutable and cached for a year, the other resources (index, service worker, i18n) for the JHipster TTL.
+ */
 @Configuration
 @Profile({ JHipsterConstants.SPRING_PROFILE_PRODUCTION })
 public class StaticResourcesWebConfiguration implements WebMvcConfigurer {
 
     protected static final String[] RESOURCE_LOCATIONS = { "classpath:/static/", "classpath:/static/content/", "classpath:/static/i18n/" };
     protected static final String[] RESOURCE_PATHS = { "/*.js", "/*.css", "/*.svg", "/*.png", "*.ico", "/content/**", "/i18n/*" };
+    protected static final String[] HASHED_RESOURCE_LOCATIONS = { "classpath:/static/" };
+    protected static final String[] HASHED_RESOURCE_PATHS = { "/{file:[\\w-]+\\.[0-9a-f]{16}\\.(?:js|css)}", "/media/**" };
+    protected static final int HASHED_RESOURCE_MAX_AGE_DAYS = 365;
 
     private final JHipsterProperties jhipsterProperties;
 
@@ -27,6 +38,7 @@ public class StaticResourcesWebConfiguration implements WebMvcConfigurer {
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         ResourceHandlerRegistration resourceHandlerRegistration = appendResourceHandler(registry);
         initializeResourceHandler(resourceHandlerRegistration);
+        initializeHashedResourceHandler(registry.addResourceHandler(HASHED_RESOURCE_PATHS));
     }
 
     protected ResourceHandlerRegistration appendResourceHandler(ResourceHandlerRegistry registry) {
@@ -34,13 +46,29 @@ public class StaticResourcesWebConfiguration implements WebMvcConfigurer {
     }
 
     protected void initializeResourceHandler(ResourceHandlerRegistration resourceHandlerRegistration) {
-        resourceHandlerRegistration.addResourceLocations(RESOURCE_LOCATIONS).setCacheControl(getCacheControl());
+        resourceHandlerRegistration
+            .addResourceLocations(RESOURCE_LOCATIONS)
+            .setCacheControl(getCacheControl())
+            .resourceChain(true)
+            .addResolver(new EncodedResourceResolver());
+    }
+
+    protected void initializeHashedResourceHandler(ResourceHandlerRegistration resourceHandlerRegistration) {
+        resourceHandlerRegistration
+            .addResourceLocations(HASHED_RESOURCE_LOCATIONS)
+            .setCacheControl(getHashedCacheControl())
+            .resourceChain(true)
+            .addResolver(new EncodedResourceResolver());
     }
 
     protected CacheControl getCacheControl() {
         return CacheControl.maxAge(getJHipsterHttpCacheProperty(), TimeUnit.DAYS).cachePublic();
     }
 
+    protected CacheControl getHashedCacheControl() {
+        return CacheControl.maxAge(HASHED_RESOURCE_MAX_AGE_DAYS, TimeUnit.DAYS).cachePublic().immutable();
+    }
+
     private int getJHipsterHttpCacheProperty() {
         return jhipsterProperties.getHttp().getCache().getTimeToLiveInDays();
     }
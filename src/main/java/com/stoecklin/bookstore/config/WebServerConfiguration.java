@@ -0,0 +1,51 @@
+package com.stoecklin.bookstore.config;
+
+import com.stoecklin.bookstore.management.ResponseCompressionMetersService;
+import com.stoecklin.bookstore.web.filter.ResponseCompressionFilter;
+import io.undertow.UndertowOptions;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * HTTP/2 settings of Undertow and compression of the API responses.
+ * <p>
+ * HTTP/2 itself is switched on with {@code server.http2.enabled}; the settings here let a browser fetch the whole bundle
+ * over one connection without stalling on the default 64 KiB flow-control window. Static assets are compressed at build
+ * time and served by {@link StaticResourcesWebConfiguration}, {@code text/html} by the container.
+ */
+@Configuration
+public class WebServerConfiguration {
+
+    private final ApplicationProperties applicationProperties;
+
+    public WebServerConfiguration(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<UndertowServletWebServerFactory> undertowHttp2Customizer() {
+        ApplicationProperties.Http.Http2 http2 = applicationProperties.getHttp().getHttp2();
+        return factory ->
+            factory.addBuilderCustomizers(builder ->
+                builder
+                    .setServerOption(UndertowOptions.HTTP2_SETTINGS_MAX_CONCURRENT_STREAMS, http2.getMaxConcurrentStreams())
+                    .setServerOption(UndertowOptions.HTTP2_SETTINGS_INITIAL_WINDOW_SIZE, http2.getInitialWindowSize())
+                    // the hashed assets are cached for a year, pushing them would mostly resend what browsers have
+                    .setServerOption(UndertowOptions.HTTP2_SETTINGS_ENABLE_PUSH, false)
+            );
+    }
+
+    @Bean
+    public FilterRegistrationBean<ResponseCompressionFilter> responseCompressionFilter(ResponseCompressionMetersService metersService) {
+        FilterRegistrationBean<ResponseCompressionFilter> registration = new FilterRegistrationBean<>(
+            new ResponseCompressionFilter(applicationProperties.getHttp().getCompression(), metersService)
+        );
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+}
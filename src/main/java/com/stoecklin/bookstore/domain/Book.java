@@ -13,6 +13,7 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import java.io.Serializable;
@@ -59,9 +60,12 @@ public class Book implements Serializable {
     @Column(name = "price", precision = 21, scale = 2, nullable = false)
     private BigDecimal price;
 
+    /**
+     * Stored in {@link BookInventory}, filled in by {@code BookInventoryService}.
+     */
     @NotNull
     @Min(value = 0)
-    @Column(name = "stock", nullable = false)
+    @Transient
     @org.springframework.data.elasticsearch.annotations.Field(type = org.springframework.data.elasticsearch.annotations.FieldType.Integer)
     private Integer stock;
 
@@ -75,7 +79,10 @@ public class Book implements Serializable {
     @NotNull
     private Category category;
 
-    @Column(name = "average_rating")
+    /**
+     * Stored in {@link BookInventory}, filled in by {@code BookInventoryService}.
+     */
+    @Transient
     private Double averageRating;
 
     // jhipster-needle-entity-add-field - JHipster will add fields here
@@ -0,0 +1,100 @@
+package com.stoecklin.bookstore.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import java.io.Serializable;
+
+/**
+ * The stock and rating of a {@link Book}.
+ * <p>
+ * Kept apart from the book because they change on every order and review: the book itself stays in the second-level
+ * cache, while this entity is deliberately not cached and always read from the database.
+ */
+@Entity
+@Table(name = "book_inventory")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class BookInventory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @NotNull
+    @Min(value = 0)
+    @Column(name = "stock", nullable = false)
+    private Integer stock;
+
+    @Column(name = "average_rating")
+    private Double averageRating;
+
+    public Long getBookId() {
+        return this.bookId;
+    }
+
+    public BookInventory bookId(Long bookId) {
+        this.setBookId(bookId);
+        return this;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public Integer getStock() {
+        return this.stock;
+    }
+
+    public BookInventory stock(Integer stock) {
+        this.setStock(stock);
+        return this;
+    }
+
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+
+    public Double getAverageRating() {
+        return this.averageRating;
+    }
+
+    public BookInventory averageRating(Double averageRating) {
+        this.setAverageRating(averageRating);
+        return this;
+    }
+
+    public void setAverageRating(Double averageRating) {
+        this.averageRating = averageRating;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BookInventory)) {
+            return false;
+        }
+        return getBookId() != null && getBookId().equals(((BookInventory) o).getBookId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "BookInventory{" +
+               "bookId=" + getBookId() +
+               ", stock=" + getStock() +
+               ", averageRating=" + getAverageRating() +
+               "}";
+    }
+}
@@ -1,5 +1,6 @@
 package com.stoecklin.bookstore.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -53,6 +54,13 @@ public class OrderItem implements Serializable {
     @JoinColumn(name = "order_id")
     private Order order;
 
+    /**
+     * The category of the book when the order was placed, for the sales aggregates; never changed afterwards.
+     */
+    @JsonIgnore
+    @Column(name = "category_id", updatable = false)
+    private Long categoryId;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
     public Long getId() {
@@ -120,6 +128,19 @@ public class OrderItem implements Serializable {
         return this;
     }
 
+    public Long getCategoryId() {
+        return this.categoryId;
+    }
+
+    public void setCategoryId(Long categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    public OrderItem categoryId(Long categoryId) {
+        this.setCategoryId(categoryId);
+        return this;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
@@ -0,0 +1,10 @@
+package com.stoecklin.bookstore.domain.enumeration;
+
+/**
+ * The CheckoutStatus enumeration, the state of a queued checkout.
+ */
+public enum CheckoutStatus {
+    QUEUED,
+    COMPLETED,
+    FAILED,
+}
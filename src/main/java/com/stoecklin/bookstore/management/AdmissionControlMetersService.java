@@ -0,0 +1,45 @@
+package com.stoecklin.bookstore.management;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.Semaphore;
+import org.springframework.stereotype.Service;
+
+@Service
+public class AdmissionControlMetersService {
+
+    public static final String REJECTED_METER_NAME = "http.server.admission.rejected";
+    public static final String REJECTED_METER_DESCRIPTION = "Requests turned away with 429 by the admission control.";
+    public static final String REJECTED_METER_BASE_UNIT = "requests";
+    public static final String IN_FLIGHT_METER_NAME = "http.server.admission.in-flight";
+    public static final String ENDPOINT_CLASS_DIMENSION = "endpoint-class";
+    public static final String REASON_DIMENSION = "reason";
+
+    public static final String REASON_USER_RATE = "user-rate-limit";
+    public static final String REASON_IP_RATE = "ip-rate-limit";
+    public static final String REASON_CONCURRENCY = "concurrency-limit";
+
+    private final MeterRegistry registry;
+
+    public AdmissionControlMetersService(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void trackRejection(String endpointClass, String reason) {
+        Counter.builder(REJECTED_METER_NAME)
+            .baseUnit(REJECTED_METER_BASE_UNIT)
+            .description(REJECTED_METER_DESCRIPTION)
+            .tag(ENDPOINT_CLASS_DIMENSION, endpointClass)
+            .tag(REASON_DIMENSION, reason)
+            .register(registry)
+            .increment();
+    }
+
+    public void registerInFlight(String endpointClass, Semaphore permits, int maxConcurrent) {
+        Gauge.builder(IN_FLIGHT_METER_NAME, permits, semaphore -> maxConcurrent - semaphore.availablePermits())
+            .description("Requests currently being served per endpoint class.")
+            .tag(ENDPOINT_CLASS_DIMENSION, endpointClass)
+            .register(registry);
+    }
+}
@@ -0,0 +1,81 @@
+package com.stoecklin.bookstore.management;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Service;
+
+@Service
+public class EntityAuditMetersService {
+
+    public static final String CHANGES_METER_NAME = "audit.changes";
+    public static final String CHANGES_METER_DESCRIPTION = "Changes of audited fields, by what became of them.";
+    public static final String CHANGES_METER_BASE_UNIT = "changes";
+    public static final String BUFFER_METER_NAME = "audit.buffer.size";
+    public static final String BUFFER_METER_DESCRIPTION = "Changes waiting in memory to be written to the audit trail.";
+    public static final String BUFFER_CAPACITY_METER_NAME = "audit.buffer.capacity";
+    public static final String WRITES_METER_NAME = "audit.writes";
+    public static final String WRITES_METER_DESCRIPTION = "Batches written to the audit trail.";
+    public static final String OUTCOME_DIMENSION = "outcome";
+
+    public static final String OUTCOME_BUFFERED = "buffered";
+    public static final String OUTCOME_DROPPED = "dropped";
+    public static final String OUTCOME_WRITTEN = "written";
+    public static final String OUTCOME_FAILED = "failed";
+
+    private final MeterRegistry registry;
+    private final Counter buffered;
+    private final Counter dropped;
+    private final Counter written;
+    private final Timer writes;
+    private final Timer failedWrites;
+
+    public EntityAuditMetersService(MeterRegistry registry) {
+        this.registry = registry;
+        this.buffered = changesCounter(registry, OUTCOME_BUFFERED);
+        this.dropped = changesCounter(registry, OUTCOME_DROPPED);
+        this.written = changesCounter(registry, OUTCOME_WRITTEN);
+        this.writes = writesTimer(registry, OUTCOME_WRITTEN);
+        this.failedWrites = writesTimer(registry, OUTCOME_FAILED);
+    }
+
+    private static Counter changesCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder(CHANGES_METER_NAME)
+            .baseUnit(CHANGES_METER_BASE_UNIT)
+            .description(CHANGES_METER_DESCRIPTION)
+            .tag(OUTCOME_DIMENSION, outcome)
+            .register(registry);
+    }
+
+    private static Timer writesTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder(WRITES_METER_NAME).description(WRITES_METER_DESCRIPTION).tag(OUTCOME_DIMENSION, outcome).register(registry);
+    }
+
+    public void registerBuffer(Supplier<Number> size, int capacity) {
+        Gauge.builder(BUFFER_METER_NAME, size).description(BUFFER_METER_DESCRIPTION).baseUnit(CHANGES_METER_BASE_UNIT).register(registry);
+        Gauge.builder(BUFFER_CAPACITY_METER_NAME, () -> capacity).baseUnit(CHANGES_METER_BASE_UNIT).register(registry);
+    }
+
+    public void trackBuffered() {
+        buffered.increment();
+    }
+
+    /**
+     * A change that was lost because the buffer was full.
+     */
+    public void trackDropped() {
+        dropped.increment();
+    }
+
+    public void trackWritten(int changes, long nanos) {
+        written.increment(changes);
+        writes.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void trackWriteFailed(long nanos) {
+        failedWrites.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
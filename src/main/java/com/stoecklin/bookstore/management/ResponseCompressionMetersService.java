@@ -0,0 +1,52 @@
+package com.stoecklin.bookstore.management;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+@Service
+public class ResponseCompressionMetersService {
+
+    public static final String BYTES_METER_NAME = "http.server.response.compression.bytes";
+    public static final String BYTES_METER_DESCRIPTION = "Size of the compressed response bodies, before and after compression.";
+    public static final String BYTES_METER_BASE_UNIT = "bytes";
+    public static final String RATIO_METER_NAME = "http.server.response.compression.ratio";
+    public static final String RATIO_METER_DESCRIPTION = "Compressed size of response bodies as a fraction of their original size.";
+    public static final String STAGE_DIMENSION = "stage";
+    public static final String ENCODING_DIMENSION = "encoding";
+
+    public static final String STAGE_ORIGINAL = "original";
+    public static final String STAGE_COMPRESSED = "compressed";
+
+    private final Counter originalBytes;
+    private final Counter compressedBytes;
+    private final DistributionSummary ratio;
+
+    public ResponseCompressionMetersService(MeterRegistry registry) {
+        this.originalBytes = bytesCounter(registry, STAGE_ORIGINAL);
+        this.compressedBytes = bytesCounter(registry, STAGE_COMPRESSED);
+        this.ratio = DistributionSummary.builder(RATIO_METER_NAME)
+            .description(RATIO_METER_DESCRIPTION)
+            .tag(ENCODING_DIMENSION, "gzip")
+            .publishPercentiles(0.5, 0.95)
+            .register(registry);
+    }
+
+    private static Counter bytesCounter(MeterRegistry registry, String stage) {
+        return Counter.builder(BYTES_METER_NAME)
+            .baseUnit(BYTES_METER_BASE_UNIT)
+            .description(BYTES_METER_DESCRIPTION)
+            .tag(ENCODING_DIMENSION, "gzip")
+            .tag(STAGE_DIMENSION, stage)
+            .register(registry);
+    }
+
+    public void trackCompressed(long original, long compressed) {
+        originalBytes.increment(original);
+        compressedBytes.increment(compressed);
+        if (original > 0) {
+            ratio.record((double) compressed / original);
+        }
+    }
+}
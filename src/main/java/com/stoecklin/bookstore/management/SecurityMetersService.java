@@ -13,16 +13,50 @@ public class SecurityMetersService {
     public static final String INVALID_TOKENS_METER_BASE_UNIT = "errors";
     public static final String INVALID_TOKENS_METER_CAUSE_DIMENSION = "cause";
 
+    public static final String AUTHENTICATIONS_METER_NAME = "security.authentication.requests";
+    public static final String AUTHENTICATIONS_METER_DESCRIPTION =
+        "Counts the authentications, by password login or by refresh token, and whether they succeeded.";
+    public static final String AUTHENTICATIONS_METER_BASE_UNIT = "requests";
+    public static final String AUTHENTICATIONS_METER_GRANT_DIMENSION = "grant";
+    public static final String AUTHENTICATIONS_METER_OUTCOME_DIMENSION = "outcome";
+
+    public static final String REFRESH_TOKEN_REUSE_METER_NAME = "security.authentication.refresh-token-reuse";
+    public static final String REFRESH_TOKEN_REUSE_METER_DESCRIPTION =
+        "Counts the refresh tokens presented again after their rotation, which revokes their whole family.";
+
     private final Counter tokenInvalidSignatureCounter;
     private final Counter tokenExpiredCounter;
     private final Counter tokenUnsupportedCounter;
     private final Counter tokenMalformedCounter;
 
+    private final Counter passwordLoginSuccessCounter;
+    private final Counter passwordLoginFailureCounter;
+    private final Counter refreshSuccessCounter;
+    private final Counter refreshFailureCounter;
+    private final Counter refreshTokenReuseCounter;
+
     public SecurityMetersService(MeterRegistry registry) {
         this.tokenInvalidSignatureCounter = invalidTokensCounterForCauseBuilder("invalid-signature").register(registry);
         this.tokenExpiredCounter = invalidTokensCounterForCauseBuilder("expired").register(registry);
         this.tokenUnsupportedCounter = invalidTokensCounterForCauseBuilder("unsupported").register(registry);
         this.tokenMalformedCounter = invalidTokensCounterForCauseBuilder("malformed").register(registry);
+
+        this.passwordLoginSuccessCounter = authenticationsCounterBuilder("password", "success").register(registry);
+        this.passwordLoginFailureCounter = authenticationsCounterBuilder("password", "failure").register(registry);
+        this.refreshSuccessCounter = authenticationsCounterBuilder("refresh-token", "success").register(registry);
+        this.refreshFailureCounter = authenticationsCounterBuilder("refresh-token", "failure").register(registry);
+        this.refreshTokenReuseCounter = Counter.builder(REFRESH_TOKEN_REUSE_METER_NAME)
+            .baseUnit("tokens")
+            .description(REFRESH_TOKEN_REUSE_METER_DESCRIPTION)
+            .register(registry);
+    }
+
+    private Counter.Builder authenticationsCounterBuilder(String grant, String outcome) {
+        return Counter.builder(AUTHENTICATIONS_METER_NAME)
+            .baseUnit(AUTHENTICATIONS_METER_BASE_UNIT)
+            .description(AUTHENTICATIONS_METER_DESCRIPTION)
+            .tag(AUTHENTICATIONS_METER_GRANT_DIMENSION, grant)
+            .tag(AUTHENTICATIONS_METER_OUTCOME_DIMENSION, outcome);
     }
 
     private Counter.Builder invalidTokensCounterForCauseBuilder(String cause) {
@@ -47,4 +81,16 @@ public class SecurityMetersService {
     public void trackTokenMalformed() {
         this.tokenMalformedCounter.increment();
     }
+
+    public void trackPasswordLogin(boolean success) {
+        (success ? this.passwordLoginSuccessCounter : this.passwordLoginFailureCounter).increment();
+    }
+
+    public void trackRefresh(boolean success) {
+        (success ? this.refreshSuccessCounter : this.refreshFailureCounter).increment();
+    }
+
+    public void trackRefreshTokenReuse() {
+        this.refreshTokenReuseCounter.increment();
+    }
 }
@@ -0,0 +1,45 @@
+package com.stoecklin.bookstore.repository;
+
+import com.stoecklin.bookstore.domain.BookInventory;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data JPA repository for the BookInventory entity.
+ */
+@Repository
+public interface BookInventoryRepository extends JpaRepository<BookInventory, Long> {
+    /**
+     * Take units out of stock, unless fewer are left.
+     *
+     * @return 1 if the stock was decremented, 0 otherwise.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update BookInventory i set i.stock = i.stock - :quantity where i.bookId = :bookId and i.stock >= :quantity")
+    int decrementStock(@Param("bookId") Long bookId, @Param("quantity") int quantity);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update BookInventory i set i.averageRating = :averageRating where i.bookId = :bookId")
+    int updateAverageRating(@Param("bookId") Long bookId, @Param("averageRating") Double averageRating);
+
+    /**
+     * Recompute the average rating of every reviewed book from its reviews, in one statement.
+     *
+     * @return the number of books whose average rating changed.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(
+        value = "UPDATE book_inventory i SET average_rating = a.average FROM (SELECT book_id, AVG(rating) AS average FROM review " +
+        "GROUP BY book_id) a WHERE i.book_id = a.book_id AND i.average_rating IS DISTINCT FROM a.average",
+        nativeQuery = true
+    )
+    // only book_inventory is written, which is not cached: leave the second-level cache alone
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "book_inventory"))
+    int backfillAverageRatings();
+}
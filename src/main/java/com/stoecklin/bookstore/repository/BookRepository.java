@@ -40,4 +40,48 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     // ✅ Book details — fetch category AND reviews
     @Query("select book from Book book left join fetch book.category left join fetch book.reviews where book.id =:id")
     Optional<Book> findOneWithToOneRelationships(@Param("id") Long id);
+
+    // Keyset pages of a category, served by idx_book__category_title_id
+
+    @Query("select book from Book book where book.category.id = :categoryId order by book.title asc, book.id asc")
+    List<Book> findFirstByCategoryOrderByTitle(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    @Query(
+        "select book from Book book where book.category.id = :categoryId " +
+        "and book.title >= :title and (book.title > :title or book.id > :id) order by book.title asc, book.id asc"
+    )
+    List<Book> findByCategoryAfterOrderByTitle(
+        @Param("categoryId") Long categoryId,
+        @Param("title") String title,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
+    @Query("select book from Book book where book.category.id = :categoryId order by book.title desc, book.id desc")
+    List<Book> findFirstByCategoryOrderByTitleDesc(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    @Query(
+        "select book from Book book where book.category.id = :categoryId " +
+        "and book.title <= :title and (book.title < :title or book.id < :id) order by book.title desc, book.id desc"
+    )
+    List<Book> findByCategoryBeforeOrderByTitleDesc(
+        @Param("categoryId") Long categoryId,
+        @Param("title") String title,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
+    long countByCategory_Id(Long categoryId);
+
+    @Query(
+        "select book.category.id as categoryId, count(book) as bookCount from Book book " +
+        "where book.category is not null group by book.category.id"
+    )
+    List<CategoryBookCount> countByCategory();
+
+    interface CategoryBookCount {
+        Long getCategoryId();
+
+        long getBookCount();
+    }
 }
@@ -8,6 +8,7 @@ import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -42,4 +43,8 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     Optional<CartItem> findOneWithToOneRelationships(@Param("id") Long id);
 
     Optional<CartItem> findByCartAndBook(ShoppingCart cart, Book book);
+
+    @Modifying
+    @Query("delete from CartItem cartItem where cartItem.cart.id = :cartId")
+    int deleteByCartId(@Param("cartId") Long cartId);
 }
@@ -1,6 +1,7 @@
 package com.stoecklin.bookstore.repository;
 
 import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.enumeration.OrderStatus;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -46,4 +47,7 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     @Query("select distinct o from Order o left join fetch o.items i left join fetch i.book left join fetch o.user")
     List<Order> findAllWithItemsAndBooks();
+
+    @Query("select o.status from Order o where o.id = :id")
+    Optional<OrderStatus> findStatusById(@Param("id") Long id);
 }
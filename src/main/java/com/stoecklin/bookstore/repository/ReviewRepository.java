@@ -1,6 +1,7 @@
 package com.stoecklin.bookstore.repository;
 
 import com.stoecklin.bookstore.domain.Review;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -43,4 +44,7 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
 
     @Query("select review from Review review left join fetch review.user where review.id =:id")
     Optional<Review> findOneWithToOneRelationships(@Param("id") Long id);
+
+    @Query("select review from Review review left join fetch review.user where review.id in :ids")
+    List<Review> findAllWithToOneRelationshipsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,190 @@
+package com.stoecklin.bookstore.repository.cart;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The durable state of the carts: a snapshot, and a write-ahead log of the changes made since.
+ * <p>
+ * Every change is appended to the log as the new quantity of a book in a cart, so replaying a record is idempotent and
+ * the log can be replayed over a snapshot taken at any point after its start. Records carry a checksum: a record torn
+ * by a crash ends the replay, and is cut off. {@link #compact(CartTable)} writes a new snapshot, replacing the old one
+ * atomically, then empties the log.
+ */
+final class CartLog implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CartLog.class);
+
+    /**
+     * Receives the content of the log.
+     */
+    interface Replay {
+        void snapshot(CartTable.StoredCart cart);
+
+        void set(long userId, long bookId, int quantity, long time);
+    }
+
+    private static final int MAGIC = 0x424b4354; // "BKCT"
+    private static final int VERSION = 1;
+    private static final byte SET = 1;
+    private static final int RECORD_SIZE = 1 + 8 + 8 + 4 + 8 + 4;
+
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final FileChannel log;
+    private final ByteBuffer record = ByteBuffer.allocateDirect(RECORD_SIZE);
+    private final CRC32C crc = new CRC32C();
+
+    CartLog(Path directory) throws IOException {
+        this.snapshotFile = directory.resolve("carts.snapshot");
+        this.logFile = directory.resolve("carts.wal");
+        this.log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Read back the snapshot, then the log, cutting off a torn record at its end.
+     */
+    void replay(Replay replay) throws IOException {
+        if (Files.exists(snapshotFile)) {
+            readSnapshot(replay);
+        }
+        long size = log.size();
+        long valid = 0;
+        if (size > 0) {
+            MappedByteBuffer buffer = log.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32C check = new CRC32C();
+            while (buffer.remaining() >= RECORD_SIZE) {
+                int start = buffer.position();
+                check.reset();
+                check.update(buffer.slice(start, RECORD_SIZE - 4));
+                byte op = buffer.get();
+                long userId = buffer.getLong();
+                long bookId = buffer.getLong();
+                int quantity = buffer.getInt();
+                long time = buffer.getLong();
+                if (buffer.getInt() != (int) check.getValue() || op != SET) {
+                    break;
+                }
+                replay.set(userId, bookId, quantity, time);
+                valid = buffer.position();
+            }
+        }
+        if (valid < size) {
+            LOG.warn("Cutting off {} bytes of a torn record at the end of the cart log", size - valid);
+            log.truncate(valid);
+        }
+        log.position(valid);
+    }
+
+    /**
+     * Append the new quantity of a book in a cart. The record reaches the disk with the next {@link #sync()}.
+     */
+    void append(long userId, long bookId, int quantity, long time) throws IOException {
+        record.clear();
+        record.put(SET).putLong(userId).putLong(bookId).putInt(quantity).putLong(time);
+        crc.reset();
+        crc.update(record.duplicate().flip());
+        record.putInt((int) crc.getValue()).flip();
+        while (record.hasRemaining()) {
+            log.write(record);
+        }
+    }
+
+    long size() throws IOException {
+        return log.size();
+    }
+
+    void sync() throws IOException {
+        log.force(false);
+    }
+
+    /**
+     * Replace the snapshot with the carts of a table, which must include every change logged so far, and empty the log.
+     */
+    void compact(CartTable table) throws IOException {
+        Path temp = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+        try {
+            try (
+                FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))
+            ) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                try {
+                    table.forEach(cart -> writeCart(out, cart));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                out.writeLong(0); // no user has id 0: end of the snapshot
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        // the rename must be durable before the log it replaces is emptied
+        try (FileChannel directory = FileChannel.open(snapshotFile.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        }
+        log.truncate(0);
+        log.position(0);
+        log.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    private static void writeCart(DataOutputStream out, CartTable.StoredCart cart) {
+        try {
+            out.writeLong(cart.userId());
+            out.writeLong(cart.createdAt());
+            out.writeInt(cart.items().size());
+            for (Map.Entry<Long, Integer> item : cart.items().entrySet()) {
+                out.writeLong(item.getKey());
+                out.writeInt(item.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readSnapshot(Replay replay) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a cart snapshot of this version: " + snapshotFile);
+            }
+            for (long userId = buffer.getLong(); userId != 0; userId = buffer.getLong()) {
+                long createdAt = buffer.getLong();
+                int count = buffer.getInt();
+                Map<Long, Integer> items = new LinkedHashMap<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    items.put(buffer.getLong(), buffer.getInt());
+                }
+                replay.snapshot(new CartTable.StoredCart(userId, createdAt, items));
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt cart snapshot: " + snapshotFile, e);
+        }
+    }
+}
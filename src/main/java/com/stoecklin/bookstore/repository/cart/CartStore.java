@@ -0,0 +1,73 @@
+package com.stoecklin.bookstore.repository.cart;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.CartItem;
+import com.stoecklin.bookstore.domain.ShoppingCart;
+import com.stoecklin.bookstore.domain.User;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Where the open shopping carts of users are kept, see {@code application.cart.store}. A user has at most one open
+ * cart, holding each book at most once.
+ * <p>
+ * Carts are returned as {@link ShoppingCart} entities with their items and books loaded. A store that does not keep
+ * carts in the database returns transient ones, without ids.
+ */
+public interface CartStore {
+    /**
+     * Thrown when a book is added to a cart that cannot hold more distinct books.
+     */
+    class CartFullException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public CartFullException(int maxItems) {
+            super("A shopping cart holds at most " + maxItems + " different books");
+        }
+    }
+
+    /**
+     * @param user the owner of the cart.
+     * @return the open cart of the user, if there is one.
+     */
+    Optional<ShoppingCart> findOpenCart(User user);
+
+    /**
+     * @param user the owner of the cart.
+     * @return the open cart of the user, a new empty one if there is none.
+     */
+    ShoppingCart getOrCreateOpenCart(User user);
+
+    /**
+     * Add some copies of a book to the open cart of a user, creating the cart if needed.
+     *
+     * @return the item of the book, with its new quantity.
+     * @throws CartFullException if the book is not in the cart yet and the cart is full.
+     * @throws ArithmeticException if the new quantity does not fit in an {@code int}.
+     */
+    CartItem addItem(User user, Book book, int quantity);
+
+    /**
+     * Add several books at once to the open cart of a user, creating the cart if needed, e.g. to merge a guest cart.
+     * Quantities add up with those already in the cart; unknown books, and books that do not fit in a full cart, are
+     * left out.
+     *
+     * @param quantities the quantity to add for each book id.
+     */
+    void addItems(User user, Map<Long, Integer> quantities);
+
+    /**
+     * Take a book out of the open cart of a user.
+     */
+    void removeItem(User user, Long bookId);
+
+    /**
+     * Close a cart that is being checked out, as part of the transaction placing its order: the books of the cart
+     * must not be ordered twice, and they stay in the cart if the transaction rolls back.
+     *
+     * @param cart the cart, as returned by {@link #findOpenCart(User)}.
+     * @throws org.springframework.dao.ConcurrencyFailureException if the cart is already being checked out.
+     */
+    void checkOut(ShoppingCart cart);
+}
@@ -0,0 +1,297 @@
+package com.stoecklin.bookstore.repository.cart;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An open-addressing hash map from user id to cart, held off-heap in a memory-mapped file so that the carts neither
+ * weigh on the heap nor on the garbage collector, and cold ones can be paged out.
+ * <p>
+ * Every cart has a fixed-size slot: the user id ({@code 0} marks a free slot), the creation time, the number of items,
+ * then up to {@code maxItems} pairs of book id and quantity, in the order the books were added. Collisions are resolved
+ * by linear probing, and removals shift the following entries back so that no tombstones build up. The table doubles
+ * when it is three quarters full.
+ * <p>
+ * The file is only working memory: its content is rebuilt from the {@link CartLog} when the store starts. Not
+ * thread-safe.
+ */
+final class CartTable {
+
+    /**
+     * A cart as stored, its items in the order the books were added.
+     */
+    record StoredCart(long userId, long createdAt, Map<Long, Integer> items) {}
+
+    private static final int USER_ID = 0;
+    private static final int CREATED_AT = 8;
+    private static final int COUNT = 16;
+    private static final int ITEMS = 24;
+    private static final int ITEM_SIZE = 12;
+
+    private final Path directory;
+    private final int maxItems;
+    private final int slotSize;
+    private MappedByteBuffer buffer;
+    private Path file;
+    private int slots;
+    private int mask;
+    private int size;
+
+    CartTable(Path directory, int maxItems, int initialCapacity) throws IOException {
+        this.directory = directory;
+        this.maxItems = maxItems;
+        this.slotSize = ITEMS + ITEM_SIZE * maxItems;
+        int slots = Integer.highestOneBit(Math.max(16, initialCapacity * 4 / 3 - 1)) << 1;
+        try (var stale = Files.newDirectoryStream(directory, "carts-*.table")) {
+            for (Path path : stale) {
+                Files.delete(path);
+            }
+        }
+        allocate(slots);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the cart of a user, or {@code null} if the user has none.
+     */
+    StoredCart get(long userId) {
+        int slot = find(userId);
+        return slot < 0 ? null : read(slot);
+    }
+
+    /**
+     * @return the quantity of a book in the cart of a user, {@code 0} if it is not in it.
+     */
+    int quantity(long userId, long bookId) {
+        int slot = find(userId);
+        if (slot < 0) {
+            return 0;
+        }
+        int item = findItem(slot, bookId);
+        return item < 0 ? 0 : buffer.getInt(itemOffset(slot, item) + 8);
+    }
+
+    /**
+     * Set the quantity of a book in the cart of a user. The cart is created on its first book, and removed with its
+     * last one.
+     *
+     * @param quantity the new quantity, {@code 0} to take the book out of the cart.
+     * @param now the creation time of the cart, if it is created.
+     * @return {@code false} if the book could not be added because the cart is full.
+     */
+    boolean set(long userId, long bookId, int quantity, long now) {
+        if (userId == 0) {
+            throw new IllegalArgumentException("User id 0 marks free slots");
+        }
+        int slot = find(userId);
+        if (quantity <= 0) {
+            if (slot >= 0) {
+                removeItem(slot, bookId);
+            }
+            return true;
+        }
+        if (slot < 0) {
+            slot = insert(userId, now);
+        }
+        int item = findItem(slot, bookId);
+        if (item < 0) {
+            int count = buffer.getInt(offset(slot) + COUNT);
+            if (count == maxItems) {
+                return false;
+            }
+            item = count;
+            buffer.putInt(offset(slot) + COUNT, count + 1);
+            buffer.putLong(itemOffset(slot, item), bookId);
+        }
+        buffer.putInt(itemOffset(slot, item) + 8, quantity);
+        return true;
+    }
+
+    /**
+     * Put a whole cart, replacing the one the user may have.
+     */
+    void put(StoredCart cart) {
+        int slot = find(cart.userId());
+        if (slot >= 0) {
+            delete(slot);
+        }
+        if (cart.items().isEmpty()) {
+            return;
+        }
+        slot = insert(cart.userId(), cart.createdAt());
+        int item = 0;
+        for (Map.Entry<Long, Integer> entry : cart.items().entrySet()) {
+            if (item == maxItems) {
+                break;
+            }
+            buffer.putLong(itemOffset(slot, item), entry.getKey());
+            buffer.putInt(itemOffset(slot, item) + 8, entry.getValue());
+            item++;
+        }
+        buffer.putInt(offset(slot) + COUNT, item);
+    }
+
+    void forEach(Consumer<StoredCart> action) {
+        for (int slot = 0; slot < slots; slot++) {
+            if (buffer.getLong(offset(slot) + USER_ID) != 0) {
+                action.accept(read(slot));
+            }
+        }
+    }
+
+    private StoredCart read(int slot) {
+        int count = buffer.getInt(offset(slot) + COUNT);
+        Map<Long, Integer> items = new LinkedHashMap<>(count * 2);
+        for (int item = 0; item < count; item++) {
+            items.put(buffer.getLong(itemOffset(slot, item)), buffer.getInt(itemOffset(slot, item) + 8));
+        }
+        return new StoredCart(buffer.getLong(offset(slot) + USER_ID), buffer.getLong(offset(slot) + CREATED_AT), items);
+    }
+
+    private int find(long userId) {
+        for (int slot = home(userId); ; slot = (slot + 1) & mask) {
+            long key = buffer.getLong(offset(slot) + USER_ID);
+            if (key == userId) {
+                return slot;
+            }
+            if (key == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private int findItem(int slot, long bookId) {
+        int count = buffer.getInt(offset(slot) + COUNT);
+        for (int item = 0; item < count; item++) {
+            if (buffer.getLong(itemOffset(slot, item)) == bookId) {
+                return item;
+            }
+        }
+        return -1;
+    }
+
+    private int insert(long userId, long createdAt) {
+        if ((size + 1) * 4L > slots * 3L) {
+            grow();
+        }
+        int slot = home(userId);
+        while (buffer.getLong(offset(slot) + USER_ID) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        buffer.putLong(offset(slot) + USER_ID, userId);
+        buffer.putLong(offset(slot) + CREATED_AT, createdAt);
+        buffer.putInt(offset(slot) + COUNT, 0);
+        size++;
+        return slot;
+    }
+
+    private void removeItem(int slot, long bookId) {
+        int item = findItem(slot, bookId);
+        if (item < 0) {
+            return;
+        }
+        int count = buffer.getInt(offset(slot) + COUNT);
+        if (count == 1) {
+            delete(slot);
+            return;
+        }
+        for (int next = item + 1; next < count; next++) {
+            buffer.putLong(itemOffset(slot, next - 1), buffer.getLong(itemOffset(slot, next)));
+            buffer.putInt(itemOffset(slot, next - 1) + 8, buffer.getInt(itemOffset(slot, next) + 8));
+        }
+        buffer.putInt(offset(slot) + COUNT, count - 1);
+    }
+
+    private void delete(int slot) {
+        ByteBuffer source = buffer.duplicate();
+        int free = slot;
+        for (int next = (free + 1) & mask; ; next = (next + 1) & mask) {
+            long key = buffer.getLong(offset(next) + USER_ID);
+            if (key == 0) {
+                break;
+            }
+            int home = home(key);
+            // the entry can move back to the free slot unless its home lies cyclically in (free, next]
+            boolean stays = free <= next ? (home > free && home <= next) : (home > free || home <= next);
+            if (!stays) {
+                buffer.put(offset(free), source, offset(next), slotSize);
+                free = next;
+            }
+        }
+        buffer.putLong(offset(free) + USER_ID, 0);
+        buffer.putInt(offset(free) + COUNT, 0);
+        size--;
+    }
+
+    private void grow() {
+        MappedByteBuffer old = buffer;
+        Path oldFile = file;
+        int oldSlots = slots;
+        allocate(slots << 1);
+        for (int slot = 0; slot < oldSlots; slot++) {
+            long key = old.getLong(slot * slotSize + USER_ID);
+            if (key != 0) {
+                int target = home(key);
+                while (buffer.getLong(offset(target) + USER_ID) != 0) {
+                    target = (target + 1) & mask;
+                }
+                buffer.put(offset(target), old, slot * slotSize, slotSize);
+                size++;
+            }
+        }
+        try {
+            Files.deleteIfExists(oldFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void allocate(int slots) {
+        long bytes = (long) slots * slotSize;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The cart table cannot grow beyond " + this.slots + " slots");
+        }
+        Path next = directory.resolve("carts-" + slots + ".table");
+        try (
+            FileChannel channel = FileChannel.open(
+                next,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            )
+        ) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map the cart table " + next, e);
+        }
+        this.file = next;
+        this.slots = slots;
+        this.mask = slots - 1;
+        this.size = 0;
+    }
+
+    private int home(long userId) {
+        return (int) ((userId * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private int offset(int slot) {
+        return slot * slotSize;
+    }
+
+    private int itemOffset(int slot, int item) {
+        return slot * slotSize + ITEMS + item * ITEM_SIZE;
+    }
+}
@@ -0,0 +1,139 @@
+package com.stoecklin.bookstore.repository.cart;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.CartItem;
+import com.stoecklin.bookstore.domain.ShoppingCart;
+import com.stoecklin.bookstore.domain.User;
+import com.stoecklin.bookstore.repository.CartItemRepository;
+import com.stoecklin.bookstore.repository.ShoppingCartRepository;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.hibernate.SessionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps carts in the {@code shopping_cart} and {@code cart_item} tables. A checked out cart is flagged completed; its
+ * items are deleted once the order is committed. Several books are added in one batch of upserts on the unique
+ * {@code (cart_id, book_id)} key.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.cart", name = "store", havingValue = "jpa", matchIfMissing = true)
+class JpaCartStore implements CartStore {
+
+    private static final String UPSERT_ITEM =
+        "INSERT INTO cart_item (id, quantity, book_id, cart_id) " +
+        "SELECT nextval('sequence_generator'), ?, b.id, ? FROM book b WHERE b.id = ? " +
+        "ON CONFLICT (cart_id, book_id) DO UPDATE SET quantity = cart_item.quantity + EXCLUDED.quantity";
+
+    private static final String ITEMS_ROLE = ShoppingCart.class.getName() + ".items";
+
+    private final ShoppingCartRepository shoppingCartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    JpaCartStore(
+        ShoppingCartRepository shoppingCartRepository,
+        CartItemRepository cartItemRepository,
+        JdbcTemplate jdbcTemplate,
+        EntityManagerFactory entityManagerFactory
+    ) {
+        this.shoppingCartRepository = shoppingCartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public Optional<ShoppingCart> findOpenCart(User user) {
+        return shoppingCartRepository.findByUserAndCompletedWithItems(user.getId(), false);
+    }
+
+    @Override
+    public ShoppingCart getOrCreateOpenCart(User user) {
+        return shoppingCartRepository
+            .findOneWithEagerRelationshipsByUserAndCompletedFalse(user)
+            .orElseGet(() -> {
+                ShoppingCart cart = new ShoppingCart();
+                cart.setCreatedAt(Instant.now());
+                cart.setCompleted(false);
+                cart.setUser(user);
+                cart.setItems(new HashSet<>());
+                return shoppingCartRepository.save(cart);
+            });
+    }
+
+    @Override
+    public CartItem addItem(User user, Book book, int quantity) {
+        ShoppingCart cart = getOrCreateOpenCart(user);
+        CartItem item = cartItemRepository
+            .findByCartAndBook(cart, book)
+            .map(existing -> {
+                existing.setQuantity(Math.addExact(existing.getQuantity(), quantity));
+                return existing;
+            })
+            .orElseGet(() -> {
+                CartItem newItem = new CartItem();
+                newItem.setCart(cart);
+                newItem.setBook(book);
+                newItem.setQuantity(quantity);
+                return newItem;
+            });
+        return cartItemRepository.save(item);
+    }
+
+    @Override
+    public void addItems(User user, Map<Long, Integer> quantities) {
+        ShoppingCart cart = getOrCreateOpenCart(user);
+        shoppingCartRepository.flush();
+        List<Object[]> rows = quantities
+            .entrySet()
+            .stream()
+            .filter(entry -> entry.getValue() > 0)
+            .map(entry -> new Object[] { entry.getValue(), cart.getId(), entry.getKey() })
+            .toList();
+        // only the lines already in the cart can be cached: the new ones were never loaded
+        List<Long> updatedItemIds = cart
+            .getItems()
+            .stream()
+            .filter(item -> quantities.containsKey(item.getBook().getId()))
+            .map(CartItem::getId)
+            .toList();
+        jdbcTemplate.batchUpdate(UPSERT_ITEM, rows);
+        // the items were written behind Hibernate's back
+        Cache cache = entityManagerFactory.getCache();
+        updatedItemIds.forEach(id -> cache.evict(CartItem.class, id));
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictCollectionData(ITEMS_ROLE, cart.getId());
+    }
+
+    @Override
+    public void removeItem(User user, Long bookId) {
+        shoppingCartRepository
+            .findByUserAndCompletedWithItems(user.getId(), false)
+            .ifPresent(cart ->
+                cart
+                    .getItems()
+                    .stream()
+                    .filter(item -> Objects.equals(item.getBook().getId(), bookId))
+                    .findFirst()
+                    .ifPresent(item -> {
+                        cart.removeItems(item);
+                        cartItemRepository.delete(item);
+                    })
+            );
+    }
+
+    @Override
+    public void checkOut(ShoppingCart cart) {
+        cart.setCompleted(true);
+        shoppingCartRepository.save(cart);
+    }
+}
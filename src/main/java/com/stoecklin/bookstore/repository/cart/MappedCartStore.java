@@ -0,0 +1,277 @@
+package com.stoecklin.bookstore.repository.cart;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.CartItem;
+import com.stoecklin.bookstore.domain.ShoppingCart;
+import com.stoecklin.bookstore.domain.User;
+import com.stoecklin.bookstore.repository.BookRepository;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps carts in an off-heap {@link CartTable}, made durable by a {@link CartLog}: adding to a cart never touches the
+ * database, and checkout only writes the order.
+ * <p>
+ * Each change is applied to the table and appended to the log under one lock, so the log has the changes in the order
+ * the table saw them. The log is forced to disk every {@code application.cart.sync-interval}, which bounds what a power
+ * loss can lose, and folded into a new snapshot every {@code application.cart.compaction-interval}. Carts live on one
+ * instance: this store is for a single node, or for sticky sessions with a directory per node.
+ * <p>
+ * Carts are returned as transient entities, their books loaded through the second-level cache. Checking out takes the
+ * ordered quantities out of the cart right away, so that a concurrent checkout of the same cart fails, and puts them
+ * back if the order is rolled back.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.cart", name = "store", havingValue = "mapped")
+class MappedCartStore implements CartStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedCartStore.class);
+
+    private final BookRepository bookRepository;
+    private final int maxItems;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final CartTable table;
+    private final CartLog log;
+
+    MappedCartStore(BookRepository bookRepository, ApplicationProperties applicationProperties) throws IOException {
+        this.bookRepository = bookRepository;
+        ApplicationProperties.Cart properties = applicationProperties.getCart();
+        this.maxItems = Math.max(1, properties.getMaxItems());
+        Path directory = Path.of(properties.getDirectory());
+        Files.createDirectories(directory);
+        this.table = new CartTable(directory, maxItems, properties.getInitialCapacity());
+        this.log = new CartLog(directory);
+        log.replay(
+            new CartLog.Replay() {
+                @Override
+                public void snapshot(CartTable.StoredCart cart) {
+                    table.put(cart);
+                }
+
+                @Override
+                public void set(long userId, long bookId, int quantity, long time) {
+                    table.set(userId, bookId, quantity, time);
+                }
+            }
+        );
+        LOG.info("Loaded {} shopping carts from {}", table.size(), directory.toAbsolutePath());
+    }
+
+    @Override
+    public Optional<ShoppingCart> findOpenCart(User user) {
+        CartTable.StoredCart stored;
+        lock.lock();
+        try {
+            stored = table.get(user.getId());
+        } finally {
+            lock.unlock();
+        }
+        return Optional.ofNullable(stored).map(cart -> toShoppingCart(user, cart));
+    }
+
+    @Override
+    public ShoppingCart getOrCreateOpenCart(User user) {
+        // an empty cart is not stored: it only takes a slot once a book is added
+        return findOpenCart(user).orElseGet(() -> toShoppingCart(user, new CartTable.StoredCart(user.getId(), now(), Map.of())));
+    }
+
+    @Override
+    public CartItem addItem(User user, Book book, int quantity) {
+        int total;
+        long createdAt;
+        lock.lock();
+        try {
+            total = Math.addExact(table.quantity(user.getId(), book.getId()), quantity);
+            set(user.getId(), book.getId(), total);
+            CartTable.StoredCart stored = table.get(user.getId());
+            createdAt = stored != null ? stored.createdAt() : now();
+        } finally {
+            lock.unlock();
+        }
+        CartItem item = new CartItem();
+        item.setBook(book);
+        item.setQuantity(total);
+        item.setCart(newCart(user, createdAt));
+        return item;
+    }
+
+    @Override
+    public void addItems(User user, Map<Long, Integer> quantities) {
+        Set<Long> known = bookRepository
+            .findAllById(quantities.keySet())
+            .stream()
+            .map(Book::getId)
+            .collect(Collectors.toSet());
+        lock.lock();
+        try {
+            quantities.forEach((bookId, quantity) -> {
+                if (known.contains(bookId) && quantity > 0) {
+                    try {
+                        set(user.getId(), bookId, Math.addExact(table.quantity(user.getId(), bookId), quantity));
+                    } catch (CartFullException e) {
+                        LOG.debug("Cart of user {} is full, leaving out book {}", user.getId(), bookId);
+                    } catch (ArithmeticException e) {
+                        LOG.debug("Cart of user {} cannot hold more copies of book {}, leaving them out", user.getId(), bookId);
+                    }
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeItem(User user, Long bookId) {
+        lock.lock();
+        try {
+            set(user.getId(), bookId, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void checkOut(ShoppingCart cart) {
+        long userId = cart.getUser().getId();
+        Map<Long, Integer> ordered = cart
+            .getItems()
+            .stream()
+            .collect(Collectors.toMap(item -> item.getBook().getId(), CartItem::getQuantity, Integer::sum, LinkedHashMap::new));
+        lock.lock();
+        try {
+            for (Map.Entry<Long, Integer> item : ordered.entrySet()) {
+                if (table.quantity(userId, item.getKey()) < item.getValue()) {
+                    throw new ConcurrencyFailureException("The shopping cart changed while it was being checked out");
+                }
+            }
+            ordered.forEach((bookId, quantity) -> set(userId, bookId, table.quantity(userId, bookId) - quantity));
+        } finally {
+            lock.unlock();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status != STATUS_COMMITTED) {
+                            putBack(userId, ordered);
+                        }
+                    }
+                }
+            );
+        }
+    }
+
+    private void putBack(long userId, Map<Long, Integer> ordered) {
+        lock.lock();
+        try {
+            ordered.forEach((bookId, quantity) -> set(userId, bookId, table.quantity(userId, bookId) + quantity));
+        } catch (RuntimeException e) {
+            LOG.warn("Could not put the books of a failed checkout back in the cart of user {}: {}", userId, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the quantity of a book in a cart, and log it. Called with the lock held.
+     */
+    private void set(long userId, long bookId, int quantity) {
+        int previous = table.quantity(userId, bookId);
+        long time = now();
+        if (!table.set(userId, bookId, quantity, time)) {
+            throw new CartFullException(maxItems);
+        }
+        try {
+            log.append(userId, bookId, quantity, time);
+        } catch (IOException e) {
+            table.set(userId, bookId, previous, time);
+            throw new UncheckedIOException("Failed to log a change to the shopping cart of user " + userId, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.cart.sync-interval:1s}")
+    public void sync() throws IOException {
+        log.sync();
+    }
+
+    @Scheduled(
+        fixedDelayString = "${application.cart.compaction-interval:5m}",
+        initialDelayString = "${application.cart.compaction-interval:5m}"
+    )
+    public void compact() throws IOException {
+        lock.lock();
+        try {
+            if (log.size() == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            log.compact(table);
+            LOG.debug("Compacted the cart log into a snapshot of {} carts in {} ms", table.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        compact();
+        log.close();
+    }
+
+    private ShoppingCart toShoppingCart(User user, CartTable.StoredCart stored) {
+        ShoppingCart cart = newCart(user, stored.createdAt());
+        Map<Long, Book> books = bookRepository
+            .findAllById(stored.items().keySet())
+            .stream()
+            .collect(Collectors.toMap(Book::getId, Function.identity()));
+        LinkedHashSet<CartItem> items = new LinkedHashSet<>();
+        stored
+            .items()
+            .forEach((bookId, quantity) -> {
+                Book book = books.get(bookId);
+                if (book != null) {
+                    CartItem item = new CartItem();
+                    item.setBook(book);
+                    item.setQuantity(quantity);
+                    item.setCart(cart);
+                    items.add(item);
+                }
+            });
+        cart.setItems(items);
+        return cart;
+    }
+
+    private static ShoppingCart newCart(User user, long createdAt) {
+        ShoppingCart cart = new ShoppingCart();
+        cart.setUser(user);
+        cart.setCreatedAt(Instant.ofEpochMilli(createdAt));
+        cart.setCompleted(false);
+        return cart;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,40 @@
+package com.stoecklin.bookstore.repository.search;
+
+import com.stoecklin.bookstore.domain.Book;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A search engine for books: {@link BookSearchRepository} sends searches and index updates to one of them, see
+ * {@code application.book-search.backend}.
+ */
+public interface BookSearchBackend {
+    /**
+     * @param query the query, as typed by a user.
+     * @param maxResults the maximum number of books to return.
+     * @return the matching books, best first.
+     */
+    List<Book> search(String query, int maxResults);
+
+    /**
+     * Bring the indexed state of a book up to date.
+     *
+     * @param book the book as it is to be indexed, with its category and inventory.
+     */
+    void index(Book book);
+
+    /**
+     * Bring some fields of the indexed state of books up to date.
+     *
+     * @param books the books, with the current values of these fields.
+     * @param fields the names of the fields that changed.
+     */
+    void update(List<Book> books, Set<String> fields);
+
+    void deleteFromIndexById(Long id);
+
+    /**
+     * Index all the books, e.g. to rebuild the index from the database.
+     */
+    void indexAll(List<Book> books);
+}
@@ -1,11 +1,14 @@
 package com.stoecklin.bookstore.repository.search;
 
-import co.elastic.clients.elasticsearch._types.query_dsl.QueryStringQuery;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import com.stoecklin.bookstore.config.ApplicationProperties;
 import com.stoecklin.bookstore.domain.Book;
-import com.stoecklin.bookstore.repository.BookRepository;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
-import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
@@ -13,6 +16,8 @@ import org.springframework.scheduling.annotation.Async;
 
 /**
  * Spring Data Elasticsearch repository for the {@link Book} entity.
+ * <p>
+ * Searches and index updates go to the {@link BookSearchBackend} selected by {@code application.book-search.backend}.
  */
 public interface BookSearchRepository extends ElasticsearchRepository<Book, Long>, BookSearchRepositoryInternal {}
 
@@ -26,22 +31,86 @@ interface BookSearchRepositoryInternal {
 
     @Async
     void deleteFromIndexById(Long id);
+
+    /**
+     * Index all the books, replacing the content of the index where the backend allows it.
+     */
+    void indexAll(List<Book> books);
+
+    /**
+     * Update only some fields of the indexed books, in one request where the backend allows it.
+     *
+     * @param books the books, with the current values of these fields.
+     * @param fields the names of the fields that changed.
+     */
+    void update(List<Book> books, Set<String> fields);
 }
 
 class BookSearchRepositoryInternalImpl implements BookSearchRepositoryInternal {
 
+    private static final Logger LOG = LoggerFactory.getLogger(BookSearchRepositoryInternalImpl.class);
+
     private final ElasticsearchTemplate elasticsearchTemplate;
-    private final BookRepository repository;
+    private final BookSearchBackend elasticsearch;
+    private final BookSearchBackend postgres;
+    private final BookSearchBackend lucene;
+    private final ApplicationProperties.BookSearch properties;
+    private final SearchCircuitBreaker circuitBreaker;
 
-    BookSearchRepositoryInternalImpl(ElasticsearchTemplate elasticsearchTemplate, BookRepository repository) {
+    BookSearchRepositoryInternalImpl(
+        ElasticsearchTemplate elasticsearchTemplate,
+        ElasticsearchBookSearchBackend elasticsearch,
+        PostgresBookSearchBackend postgres,
+        LuceneBookSearchBackend lucene,
+        ApplicationProperties applicationProperties
+    ) {
         this.elasticsearchTemplate = elasticsearchTemplate;
-        this.repository = repository;
+        this.elasticsearch = elasticsearch;
+        this.postgres = postgres;
+        this.lucene = lucene;
+        this.properties = applicationProperties.getBookSearch();
+        this.circuitBreaker = new SearchCircuitBreaker("Elasticsearch book search", properties.getCircuitBreaker(), System::nanoTime);
     }
 
     @Override
     public Stream<Book> search(String query) {
-        NativeQuery nativeQuery = new NativeQuery(QueryStringQuery.of(qs -> qs.query(query))._toQuery());
-        return search(nativeQuery);
+        int maxResults = properties.getMaxResults();
+        return switch (properties.getBackend()) {
+            case ELASTICSEARCH -> elasticsearch.search(query, maxResults).stream();
+            case POSTGRES -> postgres.search(query, maxResults).stream();
+            case FAILOVER -> searchWithFailover(query, maxResults).stream();
+            case LUCENE -> lucene.search(query, maxResults).stream();
+        };
+    }
+
+    private List<Book> searchWithFailover(String query, int maxResults) {
+        if (!circuitBreaker.tryAcquire()) {
+            return postgres.search(query, maxResults);
+        }
+        long start = System.nanoTime();
+        try {
+            List<Book> books = elasticsearch.search(query, maxResults);
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+            return books;
+        } catch (RuntimeException e) {
+            if (isClientError(e)) {
+                // e.g. a malformed query: Elasticsearch is fine, and PostgreSQL would not understand the query either
+                circuitBreaker.onSuccess(System.nanoTime() - start);
+                throw e;
+            }
+            circuitBreaker.onFailure();
+            LOG.warn("Elasticsearch book search failed, falling back to PostgreSQL: {}", e.getMessage());
+            return postgres.search(query, maxResults);
+        }
+    }
+
+    private static boolean isClientError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ElasticsearchException elasticsearchException) {
+                return elasticsearchException.status() >= 400 && elasticsearchException.status() < 500;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -51,11 +120,29 @@ class BookSearchRepositoryInternalImpl implements BookSearchRepositoryInternal {
 
     @Override
     public void index(Book entity) {
-        repository.findOneWithEagerRelationships(entity.getId()).ifPresent(elasticsearchTemplate::save);
+        indexingBackend().index(entity);
     }
 
     @Override
     public void deleteFromIndexById(Long id) {
-        elasticsearchTemplate.delete(String.valueOf(id), Book.class);
+        indexingBackend().deleteFromIndexById(id);
+    }
+
+    @Override
+    public void indexAll(List<Book> books) {
+        indexingBackend().indexAll(books);
+    }
+
+    @Override
+    public void update(List<Book> books, Set<String> fields) {
+        indexingBackend().update(books, fields);
+    }
+
+    private BookSearchBackend indexingBackend() {
+        return switch (properties.getBackend()) {
+            case ELASTICSEARCH, FAILOVER -> elasticsearch;
+            case POSTGRES -> postgres;
+            case LUCENE -> lucene;
+        };
     }
 }
@@ -0,0 +1,81 @@
+package com.stoecklin.bookstore.repository.search;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryStringQuery;
+import com.stoecklin.bookstore.domain.Book;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.stereotype.Component;
+
+/**
+ * Searches books with Elasticsearch {@code query_string} queries. Changes to single fields, such as the stock, are sent
+ * as partial updates.
+ */
+@Component
+class ElasticsearchBookSearchBackend implements BookSearchBackend {
+
+    private static final int BULK_SIZE = 1000;
+
+    private static final PartialDocuments<Book> PARTIAL_DOCUMENTS = new PartialDocuments<>(
+        Book.class,
+        Book::new,
+        Book::getId,
+        Map.of(
+            "title",
+            (from, to) -> to.setTitle(from.getTitle()),
+            "author",
+            (from, to) -> to.setAuthor(from.getAuthor()),
+            "description",
+            (from, to) -> to.setDescription(from.getDescription()),
+            "price",
+            (from, to) -> to.setPrice(from.getPrice()),
+            "stock",
+            (from, to) -> to.setStock(from.getStock()),
+            "averageRating",
+            (from, to) -> to.setAverageRating(from.getAverageRating())
+        )
+    );
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+
+    ElasticsearchBookSearchBackend(ElasticsearchTemplate elasticsearchTemplate) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+    }
+
+    @Override
+    public List<Book> search(String query, int maxResults) {
+        NativeQuery nativeQuery = new NativeQuery(QueryStringQuery.of(qs -> qs.query(query))._toQuery());
+        nativeQuery.setPageable(PageRequest.of(0, maxResults));
+        return elasticsearchTemplate.search(nativeQuery, Book.class).map(SearchHit::getContent).toList();
+    }
+
+    @Override
+    public void index(Book book) {
+        elasticsearchTemplate.save(book);
+    }
+
+    @Override
+    public void update(List<Book> books, Set<String> fields) {
+        if (PARTIAL_DOCUMENTS.canUpdate(fields)) {
+            PARTIAL_DOCUMENTS.update(elasticsearchTemplate, books, fields, this::index);
+        } else {
+            books.forEach(this::index);
+        }
+    }
+
+    @Override
+    public void deleteFromIndexById(Long id) {
+        elasticsearchTemplate.delete(String.valueOf(id), Book.class);
+    }
+
+    @Override
+    public void indexAll(List<Book> books) {
+        for (int from = 0; from < books.size(); from += BULK_SIZE) {
+            elasticsearchTemplate.save(books.subList(from, Math.min(books.size(), from + BULK_SIZE)));
+        }
+    }
+}
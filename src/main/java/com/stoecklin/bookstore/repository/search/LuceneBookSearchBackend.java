@@ -0,0 +1,80 @@
+package com.stoecklin.bookstore.repository.search;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.repository.BookRepository;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.lucene.document.Document;
+import org.springframework.stereotype.Component;
+
+/**
+ * Searches books in an embedded Lucene index, by title, author, description and category name.
+ */
+@Component
+class LuceneBookSearchBackend implements BookSearchBackend {
+
+    private static final String INDEX = "books";
+    private static final String[] FIELDS = { "title", "author", "description", "category" };
+    private static final Set<String> INDEXED_FIELDS = Set.of("title", "author", "description");
+    private static final Map<String, Float> BOOSTS = Map.of("title", 3f, "author", 2f);
+
+    private final LuceneSearchEngine engine;
+    private final BookRepository repository;
+
+    LuceneBookSearchBackend(LuceneSearchEngine engine, BookRepository repository) {
+        this.engine = engine;
+        this.repository = repository;
+    }
+
+    @Override
+    public List<Book> search(String query, int maxResults) {
+        List<Long> ids = index().search(engine.parse(query, FIELDS, BOOSTS), maxResults);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return SearchResults.inOrder(ids, repository.findAllById(ids), Book::getId);
+    }
+
+    @Override
+    public void index(Book book) {
+        index().update(book.getId(), document(book));
+    }
+
+    @Override
+    public void update(List<Book> books, Set<String> fields) {
+        if (fields.stream().anyMatch(INDEXED_FIELDS::contains)) {
+            books.forEach(this::index);
+        }
+    }
+
+    @Override
+    public void deleteFromIndexById(Long id) {
+        index().delete(id);
+    }
+
+    @Override
+    public void indexAll(List<Book> books) {
+        replaceAll(index(), books);
+    }
+
+    private LuceneIndex index() {
+        return engine.index(INDEX, index -> replaceAll(index, repository.findAllWithToOneRelationships()));
+    }
+
+    private static void replaceAll(LuceneIndex index, List<Book> books) {
+        Map<Long, Document> documents = new LinkedHashMap<>();
+        books.forEach(book -> documents.put(book.getId(), document(book)));
+        index.replaceAll(documents);
+    }
+
+    private static Document document(Book book) {
+        Document document = new Document();
+        LuceneIndex.addText(document, "title", book.getTitle());
+        LuceneIndex.addText(document, "author", book.getAuthor());
+        LuceneIndex.addText(document, "description", book.getDescription());
+        LuceneIndex.addText(document, "category", book.getCategory() == null ? null : book.getCategory().getName());
+        return document;
+    }
+}
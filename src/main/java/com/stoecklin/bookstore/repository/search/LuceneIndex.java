@@ -0,0 +1,137 @@
+package com.stoecklin.bookstore.repository.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.MMapDirectory;
+
+/**
+ * A Lucene index of entities, stored in a memory-mapped directory. Documents are keyed by entity id, which is the only
+ * stored field: searches return ids, and the entities are loaded from the database.
+ * <p>
+ * Searches use near-real-time readers from the index writer, which only see writes once {@link #refresh()} has run.
+ */
+final class LuceneIndex implements Closeable {
+
+    private static final String ID = "id";
+
+    private final MMapDirectory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    LuceneIndex(Path path, Analyzer analyzer) throws IOException {
+        this.directory = new MMapDirectory(path);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    /**
+     * Add a full-text field to a document, unless the value is {@code null}.
+     */
+    static void addText(Document document, String field, String value) {
+        if (value != null) {
+            document.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+
+    boolean isEmpty() {
+        return writer.getDocStats().numDocs == 0;
+    }
+
+    /**
+     * Add or replace the document of an entity.
+     */
+    void update(long id, Document document) {
+        document.add(new StringField(ID, Long.toString(id), Field.Store.YES));
+        try {
+            writer.updateDocument(new Term(ID, Long.toString(id)), document);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void delete(long id) {
+        try {
+            writer.deleteDocuments(new Term(ID, Long.toString(id)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replace the whole content of the index, and make it visible right away.
+     *
+     * @param documents the documents, by entity id.
+     */
+    void replaceAll(Map<Long, Document> documents) {
+        try {
+            writer.deleteAll();
+            for (Map.Entry<Long, Document> entry : documents.entrySet()) {
+                Document document = entry.getValue();
+                document.add(new StringField(ID, Long.toString(entry.getKey()), Field.Store.YES));
+                writer.addDocument(document);
+            }
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the ids of the best matches, best first.
+     */
+    List<Long> search(Query query, int maxResults) {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                ScoreDoc[] hits = searcher.search(query, maxResults).scoreDocs;
+                StoredFields storedFields = searcher.storedFields();
+                List<Long> ids = new ArrayList<>(hits.length);
+                for (ScoreDoc hit : hits) {
+                    ids.add(Long.valueOf(storedFields.document(hit.doc, Set.of(ID)).get(ID)));
+                }
+                return ids;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Make the writes so far visible to searches, and durable.
+     */
+    void refresh() throws IOException {
+        searcherManager.maybeRefresh();
+        if (writer.hasUncommittedChanges()) {
+            writer.commit();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (directory; writer; searcherManager) {
+            writer.commit();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.stoecklin.bookstore.repository.search;
+
+import com.stoecklin.bookstore.domain.Review;
+import com.stoecklin.bookstore.repository.ReviewRepository;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.document.Document;
+import org.springframework.stereotype.Component;
+
+/**
+ * Searches reviews in an embedded Lucene index, by comment and reviewer login.
+ */
+@Component
+class LuceneReviewSearchBackend {
+
+    private static final String INDEX = "reviews";
+    private static final String[] FIELDS = { "comment", "user" };
+
+    private final LuceneSearchEngine engine;
+    private final ReviewRepository repository;
+
+    LuceneReviewSearchBackend(LuceneSearchEngine engine, ReviewRepository repository) {
+        this.engine = engine;
+        this.repository = repository;
+    }
+
+    List<Review> search(String query, int maxResults) {
+        List<Long> ids = index().search(engine.parse(query, FIELDS, Map.of()), maxResults);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return SearchResults.inOrder(ids, repository.findAllWithToOneRelationshipsByIdIn(ids), Review::getId);
+    }
+
+    void index(Review review) {
+        repository
+            .findOneWithEagerRelationships(review.getId())
+            .ifPresentOrElse(found -> index().update(found.getId(), document(found)), () -> index().delete(review.getId()));
+    }
+
+    void deleteFromIndexById(Long id) {
+        index().delete(id);
+    }
+
+    private LuceneIndex index() {
+        return engine.index(INDEX, index -> {
+            Map<Long, Document> documents = new LinkedHashMap<>();
+            repository.findAllWithToOneRelationships().forEach(review -> documents.put(review.getId(), document(review)));
+            index.replaceAll(documents);
+        });
+    }
+
+    private static Document document(Review review) {
+        Document document = new Document();
+        LuceneIndex.addText(document, "comment", review.getComment());
+        LuceneIndex.addText(document, "user", review.getUser() == null ? null : review.getUser().getLogin());
+        return document;
+    }
+}
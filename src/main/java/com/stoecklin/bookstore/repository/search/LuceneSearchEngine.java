@@ -0,0 +1,111 @@
+package com.stoecklin.bookstore.repository.search;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * The embedded Lucene indexes, one per entity, under {@code application.lucene.directory}. Indexes are only opened
+ * when first used, that is with {@code application.book-search.backend: lucene}.
+ */
+@Component
+class LuceneSearchEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LuceneSearchEngine.class);
+
+    private final Path directory;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Map<String, LuceneIndex> indexes = new ConcurrentHashMap<>();
+
+    LuceneSearchEngine(ApplicationProperties applicationProperties) {
+        this.directory = Path.of(applicationProperties.getLucene().getDirectory());
+    }
+
+    /**
+     * Parse a query in the Lucene syntax, which Elasticsearch {@code query_string} queries also use. A query that does not
+     * parse is searched as plain text.
+     *
+     * @param query the query.
+     * @param fields the fields searched by terms that do not name one.
+     * @param boosts the boosts of some of these fields.
+     * @return the parsed query.
+     */
+    Query parse(String query, String[] fields, Map<String, Float> boosts) {
+        QueryParser parser = new MultiFieldQueryParser(fields, analyzer, boosts);
+        try {
+            return parser.parse(query);
+        } catch (ParseException e) {
+            try {
+                return parser.parse(QueryParser.escape(query));
+            } catch (ParseException escaped) {
+                throw new IllegalArgumentException("Invalid query: " + query, escaped);
+            }
+        }
+    }
+
+    /**
+     * Get an index, opening it if need be.
+     *
+     * @param name the name of the index.
+     * @param rebuild fills the index when it is opened empty.
+     * @return the index.
+     */
+    LuceneIndex index(String name, Consumer<LuceneIndex> rebuild) {
+        return indexes.computeIfAbsent(name, key -> {
+            try {
+                Path path = directory.resolve(key);
+                Files.createDirectories(path);
+                LuceneIndex index = new LuceneIndex(path, analyzer);
+                if (index.isEmpty()) {
+                    LOG.info("Building the Lucene index of {} from the database", key);
+                    rebuild.accept(index);
+                }
+                return index;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open the Lucene index of " + key, e);
+            }
+        });
+    }
+
+    @Scheduled(
+        fixedDelayString = "${application.lucene.refresh-interval:1s}",
+        initialDelayString = "${application.lucene.refresh-interval:1s}"
+    )
+    public void refresh() {
+        indexes.forEach((name, index) -> {
+            try {
+                index.refresh();
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Failed to refresh the Lucene index of {}: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        indexes.forEach((name, index) -> {
+            try {
+                index.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the Lucene index of {}: {}", name, e.getMessage());
+            }
+        });
+        indexes.clear();
+    }
+}
@@ -3,6 +3,9 @@ package com.stoecklin.bookstore.repository.search;
 import co.elastic.clients.elasticsearch._types.query_dsl.QueryStringQuery;
 import com.stoecklin.bookstore.domain.Order;
 import com.stoecklin.bookstore.repository.OrderRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
@@ -24,12 +27,35 @@ interface OrderSearchRepositoryInternal {
     @Async
     void index(Order entity);
 
+    /**
+     * Update only some fields of the indexed order, reindexing it whole if they cannot be updated on their own.
+     *
+     * @param entity the order, with the current values of these fields.
+     * @param fields the names of the fields that changed.
+     */
+    @Async
+    void update(Order entity, Set<String> fields);
+
     @Async
     void deleteFromIndexById(Long id);
 }
 
 class OrderSearchRepositoryInternalImpl implements OrderSearchRepositoryInternal {
 
+    private static final PartialDocuments<Order> PARTIAL_DOCUMENTS = new PartialDocuments<>(
+        Order.class,
+        Order::new,
+        Order::getId,
+        Map.of(
+            "totalPrice",
+            (from, to) -> to.setTotalPrice(from.getTotalPrice()),
+            "placedAt",
+            (from, to) -> to.setPlacedAt(from.getPlacedAt()),
+            "status",
+            (from, to) -> to.setStatus(from.getStatus())
+        )
+    );
+
     private final ElasticsearchTemplate elasticsearchTemplate;
     private final OrderRepository repository;
 
@@ -54,6 +80,15 @@ class OrderSearchRepositoryInternalImpl implements OrderSearchRepositoryInternal
         repository.findOneWithEagerRelationships(entity.getId()).ifPresent(elasticsearchTemplate::save);
     }
 
+    @Override
+    public void update(Order entity, Set<String> fields) {
+        if (PARTIAL_DOCUMENTS.canUpdate(fields)) {
+            PARTIAL_DOCUMENTS.update(elasticsearchTemplate, List.of(entity), fields, this::index);
+        } else {
+            index(entity);
+        }
+    }
+
     @Override
     public void deleteFromIndexById(Long id) {
         elasticsearchTemplate.delete(String.valueOf(id), Order.class);
@@ -0,0 +1,79 @@
+package com.stoecklin.bookstore.repository.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+
+/**
+ * Partial updates of Elasticsearch documents: only the changed fields of entities are sent, in one bulk request.
+ * <p>
+ * The changed fields are copied onto a blank entity which is then mapped like a whole document would be, so that
+ * values are converted the same way; the fields that a type does not know how to copy make for a full reindex.
+ *
+ * @param <T> the type of the entities.
+ */
+final class PartialDocuments<T> {
+
+    private final Class<T> type;
+    private final Supplier<T> blank;
+    private final Function<T, Long> idOf;
+    private final Map<String, BiConsumer<T, T>> copiers;
+
+    /**
+     * @param type the type of the entities.
+     * @param blank creates an entity with no field set.
+     * @param idOf the id of an entity.
+     * @param copiers how to copy each field that can be updated on its own, from an entity to another.
+     */
+    PartialDocuments(Class<T> type, Supplier<T> blank, Function<T, Long> idOf, Map<String, BiConsumer<T, T>> copiers) {
+        this.type = type;
+        this.blank = blank;
+        this.idOf = idOf;
+        this.copiers = copiers;
+    }
+
+    /**
+     * @return whether these fields can be updated without reindexing the whole document.
+     */
+    boolean canUpdate(Set<String> fields) {
+        return !fields.isEmpty() && copiers.keySet().containsAll(fields);
+    }
+
+    /**
+     * Update some fields of the documents of entities with a single bulk request.
+     *
+     * @param template the template.
+     * @param entities the entities, with the current values of the fields.
+     * @param fields the fields to update, which {@link #canUpdate(Set) can be updated}.
+     * @param reindex called with the entities whose document could not be updated, e.g. because it was missing.
+     */
+    void update(ElasticsearchTemplate template, List<T> entities, Set<String> fields, Consumer<T> reindex) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        List<UpdateQuery> queries = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            T copy = blank.get();
+            fields.forEach(field -> copiers.get(field).accept(entity, copy));
+            Document mapped = template.getElasticsearchConverter().mapObject(copy);
+            Document partial = Document.create();
+            fields.forEach(field -> partial.put(field, mapped.get(field)));
+            queries.add(UpdateQuery.builder(String.valueOf(idOf.apply(entity))).withDocument(partial).build());
+        }
+        try {
+            template.bulkUpdate(queries, type);
+        } catch (BulkFailureException e) {
+            Set<String> failed = e.getFailedDocuments().keySet();
+            entities.stream().filter(entity -> failed.contains(String.valueOf(idOf.apply(entity)))).forEach(reindex);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.stoecklin.bookstore.repository.search;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.repository.BookRepository;
+import java.util.List;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Searches books with PostgreSQL full-text search on the generated {@code book.search_vector} column, plus trigram
+ * similarity on title and author for misspelt queries. Both are backed by GIN indexes.
+ * <p>
+ * The query is read as a web search ({@code websearch_to_tsquery}), which accepts any input: Elasticsearch query syntax
+ * is not supported, but never fails. There is nothing to index, the column being maintained by the database.
+ */
+@Component
+class PostgresBookSearchBackend implements BookSearchBackend {
+
+    private static final String SEARCH_QUERY =
+        "SELECT b.id FROM book b, websearch_to_tsquery('simple', :query) q " +
+        "WHERE b.search_vector @@ q OR b.title % :query OR b.author % :query " +
+        "ORDER BY ts_rank(b.search_vector, q) + greatest(similarity(b.title, :query), similarity(b.author, :query)) DESC, b.id " +
+        "LIMIT :maxResults";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final BookRepository repository;
+
+    PostgresBookSearchBackend(DataSource dataSource, BookRepository repository) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        this.repository = repository;
+    }
+
+    @Override
+    public List<Book> search(String query, int maxResults) {
+        List<Long> ids = jdbcTemplate.queryForList(
+            SEARCH_QUERY,
+            new MapSqlParameterSource().addValue("query", query).addValue("maxResults", maxResults),
+            Long.class
+        );
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return SearchResults.inOrder(ids, repository.findAllById(ids), Book::getId);
+    }
+
+    @Override
+    public void index(Book book) {
+        // search_vector is a generated column
+    }
+
+    @Override
+    public void update(List<Book> books, Set<String> fields) {
+        // search_vector is a generated column
+    }
+
+    @Override
+    public void deleteFromIndexById(Long id) {
+        // search_vector is a generated column
+    }
+
+    @Override
+    public void indexAll(List<Book> books) {
+        // search_vector is a generated column
+    }
+}
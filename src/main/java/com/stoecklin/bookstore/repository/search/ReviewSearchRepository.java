@@ -1,6 +1,7 @@
 package com.stoecklin.bookstore.repository.search;
 
 import co.elastic.clients.elasticsearch._types.query_dsl.QueryStringQuery;
+import com.stoecklin.bookstore.config.ApplicationProperties;
 import com.stoecklin.bookstore.domain.Review;
 import com.stoecklin.bookstore.repository.ReviewRepository;
 import java.util.stream.Stream;
@@ -13,6 +14,9 @@ import org.springframework.scheduling.annotation.Async;
 
 /**
  * Spring Data Elasticsearch repository for the {@link Review} entity.
+ * <p>
+ * With {@code application.book-search.backend: lucene}, reviews are searched and indexed in an embedded Lucene index
+ * instead.
  */
 public interface ReviewSearchRepository extends ElasticsearchRepository<Review, Long>, ReviewSearchRepositoryInternal {}
 
@@ -32,14 +36,30 @@ class ReviewSearchRepositoryInternalImpl implements ReviewSearchRepositoryIntern
 
     private final ElasticsearchTemplate elasticsearchTemplate;
     private final ReviewRepository repository;
+    private final LuceneReviewSearchBackend lucene;
+    private final ApplicationProperties.BookSearch properties;
 
-    ReviewSearchRepositoryInternalImpl(ElasticsearchTemplate elasticsearchTemplate, ReviewRepository repository) {
+    ReviewSearchRepositoryInternalImpl(
+        ElasticsearchTemplate elasticsearchTemplate,
+        ReviewRepository repository,
+        LuceneReviewSearchBackend lucene,
+        ApplicationProperties applicationProperties
+    ) {
         this.elasticsearchTemplate = elasticsearchTemplate;
         this.repository = repository;
+        this.lucene = lucene;
+        this.properties = applicationProperties.getBookSearch();
+    }
+
+    private boolean useLucene() {
+        return properties.getBackend() == ApplicationProperties.BookSearch.Backend.LUCENE;
     }
 
     @Override
     public Stream<Review> search(String query) {
+        if (useLucene()) {
+            return lucene.search(query, properties.getMaxResults()).stream();
+        }
         NativeQuery nativeQuery = new NativeQuery(QueryStringQuery.of(qs -> qs.query(query))._toQuery());
         return search(nativeQuery);
     }
@@ -51,11 +71,19 @@ class ReviewSearchRepositoryInternalImpl implements ReviewSearchRepositoryIntern
 
     @Override
     public void index(Review entity) {
+        if (useLucene()) {
+            lucene.index(entity);
+            return;
+        }
         repository.findOneWithEagerRelationships(entity.getId()).ifPresent(elasticsearchTemplate::save);
     }
 
     @Override
     public void deleteFromIndexById(Long id) {
+        if (useLucene()) {
+            lucene.deleteFromIndexById(id);
+            return;
+        }
         elasticsearchTemplate.delete(String.valueOf(id), Review.class);
     }
 }
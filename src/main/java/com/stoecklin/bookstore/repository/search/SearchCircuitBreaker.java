@@ -0,0 +1,137 @@
+package com.stoecklin.bookstore.repository.search;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A circuit breaker over the outcomes of the last calls to a backend.
+ * <p>
+ * While closed, calls go through and their outcome (success, slow or failed) is recorded in a sliding window; when the
+ * rate of failed or of slow calls in the window crosses its threshold the breaker opens, and calls are refused for a
+ * while. It then lets a single trial call through: if it succeeds promptly the breaker closes with an empty window,
+ * otherwise it opens again.
+ */
+final class SearchCircuitBreaker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SearchCircuitBreaker.class);
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN,
+    }
+
+    private static final byte SUCCESS = 0;
+    private static final byte SLOW = 1;
+    private static final byte FAILURE = 2;
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    // guarded by this
+    private final byte[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    SearchCircuitBreaker(String name, ApplicationProperties.BookSearch.CircuitBreaker properties, LongSupplier nanoClock) {
+        this.name = name;
+        this.outcomes = new byte[Math.max(1, properties.getWindowSize())];
+        this.minimumCalls = Math.max(1, Math.min(properties.getMinimumCalls(), outcomes.length));
+        this.failureRateThreshold = properties.getFailureRateThreshold();
+        this.slowCallRateThreshold = properties.getSlowCallRateThreshold();
+        this.slowCallNanos = properties.getSlowCallDuration().toNanos();
+        this.openNanos = properties.getOpenDuration().toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @return whether a call may go through; if so its outcome must be recorded.
+     */
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    synchronized void onSuccess(long durationNanos) {
+        record(durationNanos >= slowCallNanos ? SLOW : SUCCESS);
+    }
+
+    synchronized void onFailure() {
+        record(FAILURE);
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void record(byte outcome) {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            if (outcome == SUCCESS) {
+                LOG.info("Circuit breaker of {} closed", name);
+                state = State.CLOSED;
+                next = recorded = failures = slowCalls = 0;
+            } else {
+                open();
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (recorded == outcomes.length) {
+            forget(outcomes[next]);
+        } else {
+            recorded++;
+        }
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        if (outcome == FAILURE) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+        if (
+            recorded >= minimumCalls &&
+            ((double) failures / recorded >= failureRateThreshold || (double) slowCalls / recorded >= slowCallRateThreshold)
+        ) {
+            LOG.warn("Circuit breaker of {} opened: {} failed and {} slow of the last {} calls", name, failures, slowCalls, recorded);
+            open();
+        }
+    }
+
+    private void forget(byte outcome) {
+        if (outcome == FAILURE) {
+            failures--;
+        } else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+}
@@ -0,0 +1,34 @@
+package com.stoecklin.bookstore.repository.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Helpers for search backends that find ids, then load the entities from the database.
+ */
+final class SearchResults {
+
+    private SearchResults() {}
+
+    /**
+     * @return the entities in the order of their ids, skipping the ids that were not found.
+     */
+    static <T> List<T> inOrder(List<Long> ids, Collection<T> entities, Function<T, Long> idOf) {
+        Map<Long, T> byId = new HashMap<>();
+        for (T entity : entities) {
+            byId.put(idOf.apply(entity), entity);
+        }
+        List<T> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T entity = byId.get(id);
+            if (entity != null) {
+                ordered.add(entity);
+            }
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,258 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.repository.BookRepository;
+import com.stoecklin.bookstore.service.dto.BookDeltaDTO;
+import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Pushes the stock and price of books to the clients showing them.
+ * <p>
+ * Each subscriber watches a bounded set of book ids and has its own buffer of pending deltas, keyed by book id: a
+ * newer delta replaces a pending one for the same book, so the buffer never holds more entries than the subscriber
+ * watches and a slow client only ever receives the latest state. Buffers are flushed by a small pool of sender
+ * threads, one subscriber at a time, so a slow client delays only itself. Changes committed on any instance reach it
+ * through the {@link BookChangeNotifications}.
+ */
+@Service
+public class BookChangeBroadcaster {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BookChangeBroadcaster.class);
+
+    /**
+     * Where the deltas of a subscriber are written, e.g. a server-sent events stream.
+     */
+    public interface Sink {
+        void send(List<BookDeltaDTO> deltas) throws IOException;
+
+        void heartbeat() throws IOException;
+    }
+
+    /**
+     * A subscription, to be cancelled when its client goes away.
+     */
+    public interface Subscription {
+        void cancel();
+    }
+
+    private final BookRepository bookRepository;
+    private final BookInventoryService bookInventoryService;
+    private final int maxSubscribers;
+    private final int maxBookIds;
+    private final Map<Long, Set<Subscriber>> subscribersByBook = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders;
+
+    public BookChangeBroadcaster(
+        BookRepository bookRepository,
+        BookInventoryService bookInventoryService,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.bookRepository = bookRepository;
+        this.bookInventoryService = bookInventoryService;
+        ApplicationProperties.BookStream properties = applicationProperties.getBookStream();
+        this.maxSubscribers = properties.getMaxSubscribers();
+        this.maxBookIds = properties.getMaxBookIds();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, properties.getSenderThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "book-stream-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("book.stream.subscribers", subscribers, Set::size)
+            .description("Clients subscribed to stock and price changes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Subscribe to the changes of some books. Their current state is sent right away.
+     *
+     * @param bookIds the ids of the books to watch.
+     * @param sink where to write the deltas; once a write fails, the subscription is cancelled.
+     * @return the subscription.
+     */
+    public Subscription subscribe(Collection<Long> bookIds, Sink sink) {
+        Set<Long> ids = Set.copyOf(bookIds);
+        if (ids.isEmpty() || ids.size() > maxBookIds) {
+            throw new BadRequestAlertException("Between 1 and " + maxBookIds + " book ids can be watched", "book", "invalidbookids");
+        }
+        if (subscribers.size() >= maxSubscribers) {
+            throw new BadRequestAlertException("Too many clients are watching books", "book", "toomanysubscribers");
+        }
+        Subscriber subscriber = new Subscriber(ids, sink);
+        subscribers.add(subscriber);
+        for (Long id : ids) {
+            subscribersByBook.compute(id, (key, watching) -> {
+                Set<Subscriber> result = watching != null ? watching : ConcurrentHashMap.newKeySet();
+                result.add(subscriber);
+                return result;
+            });
+        }
+        LOG.debug("Subscribed to changes of books {}", ids);
+        try {
+            load(ids).forEach(subscriber::offer);
+        } catch (RuntimeException e) {
+            subscriber.cancel();
+            throw e;
+        }
+        return subscriber;
+    }
+
+    /**
+     * Push the current stock and price of books to the clients watching them. Books nobody watches are not loaded.
+     *
+     * @param bookIds the ids of the changed books.
+     */
+    public void publish(Collection<Long> bookIds) {
+        List<Long> watched = bookIds.stream().filter(subscribersByBook::containsKey).distinct().toList();
+        if (watched.isEmpty()) {
+            return;
+        }
+        for (BookDeltaDTO delta : load(watched)) {
+            Set<Subscriber> watching = subscribersByBook.get(delta.id());
+            if (watching != null) {
+                watching.forEach(subscriber -> subscriber.offer(delta));
+            }
+        }
+    }
+
+    /**
+     * Keep idle streams alive, and find out about the clients that went away without closing them.
+     */
+    @Scheduled(
+        fixedDelayString = "${application.book-stream.heartbeat-interval:20s}",
+        initialDelayString = "${application.book-stream.heartbeat-interval:20s}"
+    )
+    public void heartbeat() {
+        subscribers.forEach(Subscriber::requestHeartbeat);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        senders.shutdownNow();
+        senders.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private List<BookDeltaDTO> load(Collection<Long> bookIds) {
+        return bookInventoryService
+            .attach(bookRepository.findAllById(bookIds))
+            .stream()
+            .map(book -> new BookDeltaDTO(book.getId(), book.getStock(), book.getPrice()))
+            .toList();
+    }
+
+    private final class Subscriber implements Subscription {
+
+        private final Set<Long> bookIds;
+        private final Sink sink;
+        // guarded by this
+        private final Map<Long, BookDeltaDTO> pending = new LinkedHashMap<>();
+        private boolean heartbeatRequested;
+        private boolean scheduled;
+        private boolean cancelled;
+
+        Subscriber(Set<Long> bookIds, Sink sink) {
+            this.bookIds = bookIds;
+            this.sink = sink;
+        }
+
+        void offer(BookDeltaDTO delta) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                pending.remove(delta.id());
+                pending.put(delta.id(), delta);
+            }
+            schedule();
+        }
+
+        void requestHeartbeat() {
+            synchronized (this) {
+                heartbeatRequested = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (scheduled || cancelled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            try {
+                senders.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                cancel();
+            }
+        }
+
+        private void flush() {
+            while (true) {
+                List<BookDeltaDTO> deltas;
+                boolean heartbeat;
+                synchronized (this) {
+                    if (cancelled || (pending.isEmpty() && !heartbeatRequested)) {
+                        scheduled = false;
+                        return;
+                    }
+                    deltas = new ArrayList<>(pending.values());
+                    pending.clear();
+                    heartbeat = heartbeatRequested && deltas.isEmpty();
+                    heartbeatRequested = false;
+                }
+                try {
+                    if (heartbeat) {
+                        sink.heartbeat();
+                    } else {
+                        sink.send(deltas);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    LOG.debug("Dropping book change subscriber: {}", e.getMessage());
+                    cancel();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                pending.clear();
+            }
+            subscribers.remove(this);
+            for (Long id : bookIds) {
+                subscribersByBook.computeIfPresent(id, (key, watching) -> {
+                    watching.remove(this);
+                    return watching.isEmpty() ? null : watching;
+                });
+            }
+        }
+    }
+}
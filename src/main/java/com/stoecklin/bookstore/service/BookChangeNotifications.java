@@ -0,0 +1,176 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * Fans the changes of books out to the {@link BookChangeBroadcaster} of every instance, through a PostgreSQL
+ * {@code NOTIFY} channel that each instance listens to on a connection of its own.
+ * <p>
+ * A notification is sent in the transaction of the caller, so it is only delivered if that transaction commits, and
+ * carries the ids of the changed books: each instance then loads the books its own clients watch. Notifications sent
+ * while the listening connection is being reopened are missed; clients get the state of these books with their next
+ * change or when they reconnect. Without a channel, changes are only pushed to the clients of the same instance.
+ */
+@Service
+public class BookChangeNotifications {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BookChangeNotifications.class);
+
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    /**
+     * Book ids per notification, well below the 8000 bytes a payload may hold.
+     */
+    static final int IDS_PER_NOTIFICATION = 400;
+
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final BookChangeBroadcaster bookChangeBroadcaster;
+    private final String channel;
+
+    private volatile Thread listener;
+    private volatile boolean running;
+
+    public BookChangeNotifications(
+        DataSource dataSource,
+        JdbcTemplate jdbcTemplate,
+        BookChangeBroadcaster bookChangeBroadcaster,
+        ApplicationProperties applicationProperties
+    ) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookChangeBroadcaster = bookChangeBroadcaster;
+        String notifyChannel = applicationProperties.getBookStream().getNotifyChannel();
+        if (StringUtils.hasText(notifyChannel) && !CHANNEL.matcher(notifyChannel).matches()) {
+            throw new IllegalArgumentException("Invalid book change notification channel: " + notifyChannel);
+        }
+        this.channel = StringUtils.hasText(notifyChannel) ? notifyChannel : null;
+    }
+
+    /**
+     * Push the current stock and price of books to the clients of every instance watching them, once the current
+     * transaction commits.
+     *
+     * @param bookIds the ids of the changed books.
+     */
+    public void notifyChanged(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        if (channel == null) {
+            bookChangeBroadcaster.publish(bookIds);
+            return;
+        }
+        for (String payload : payloads(bookIds)) {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", (RowCallbackHandler) rs -> {}, channel, payload);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (channel == null) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::listen, "book-change-listener");
+        thread.setDaemon(true);
+        listener = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        Thread current = listener;
+        if (current != null) {
+            current.interrupt();
+            current.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + channel);
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                LOG.debug("Listening to book changes on channel {}", channel);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) POLL_TIMEOUT.toMillis());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            publish(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                LOG.warn("Lost the book change notifications, listening again in {}: {}", RECONNECT_DELAY, e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void publish(String payload) {
+        try {
+            bookChangeBroadcaster.publish(parse(payload));
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to push the book changes {}: {}", payload, e.getMessage());
+        }
+    }
+
+    static List<String> payloads(Collection<Long> bookIds) {
+        List<Long> ids = bookIds.stream().distinct().toList();
+        List<String> payloads = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IDS_PER_NOTIFICATION) {
+            payloads.add(
+                ids
+                    .subList(from, Math.min(from + IDS_PER_NOTIFICATION, ids.size()))
+                    .stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(","))
+            );
+        }
+        return payloads;
+    }
+
+    static List<Long> parse(String payload) {
+        return Arrays.stream(payload.split(",")).filter(StringUtils::hasText).map(Long::valueOf).toList();
+    }
+}
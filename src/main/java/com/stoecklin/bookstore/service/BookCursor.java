@@ -0,0 +1,33 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The position of a book in a list sorted by title then id, given to clients as an opaque string to fetch the next
+ * page from.
+ *
+ * @param title the title of the last book seen.
+ * @param id the id of the last book seen.
+ */
+public record BookCursor(String title, Long id) {
+    public static BookCursor of(Book book) {
+        return new BookCursor(book.getTitle(), book.getId());
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((id + ":" + title).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            return new BookCursor(decoded.substring(separator + 1), Long.valueOf(decoded.substring(0, separator)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BadRequestAlertException("Invalid cursor", "book", "invalidcursor");
+        }
+    }
+}
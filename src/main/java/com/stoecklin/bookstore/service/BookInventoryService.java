@@ -0,0 +1,125 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.BookInventory;
+import com.stoecklin.bookstore.repository.BookInventoryRepository;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service layer for the stock and rating of books, kept in {@link BookInventory} rather than in the cached {@link Book}.
+ * <p>
+ * Books read from the database or the search index carry no stock or rating until {@link #attach(Collection)} fills
+ * them in, with one query for any number of books.
+ */
+@Service
+@Transactional
+public class BookInventoryService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BookInventoryService.class);
+
+    private final BookInventoryRepository bookInventoryRepository;
+
+    private final EntityAuditService entityAuditService;
+
+    public BookInventoryService(BookInventoryRepository bookInventoryRepository, EntityAuditService entityAuditService) {
+        this.bookInventoryRepository = bookInventoryRepository;
+        this.entityAuditService = entityAuditService;
+    }
+
+    /**
+     * Fill in the stock and average rating of a book.
+     *
+     * @param book the book, may be {@code null}.
+     * @return the same book.
+     */
+    @Transactional(readOnly = true)
+    public Book attach(Book book) {
+        if (book != null) {
+            attach(List.of(book));
+        }
+        return book;
+    }
+
+    /**
+     * Fill in the stock and average rating of books.
+     *
+     * @param books the books.
+     * @return the same books.
+     */
+    @Transactional(readOnly = true)
+    public <C extends Collection<Book>> C attach(C books) {
+        List<Long> ids = books.stream().map(Book::getId).filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            return books;
+        }
+        Map<Long, BookInventory> inventories = bookInventoryRepository
+            .findAllById(ids)
+            .stream()
+            .collect(Collectors.toMap(BookInventory::getBookId, Function.identity()));
+        for (Book book : books) {
+            BookInventory inventory = inventories.get(book.getId());
+            if (inventory != null) {
+                book.setStock(inventory.getStock());
+                book.setAverageRating(inventory.getAverageRating());
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Set the stock of a book, creating its inventory if it has none yet.
+     *
+     * @param bookId the id of the book.
+     * @param stock the number of units in stock.
+     */
+    public void setStock(Long bookId, int stock) {
+        LOG.debug("Request to set the stock of Book {} to {}", bookId, stock);
+        BookInventory inventory = bookInventoryRepository.findById(bookId).orElseGet(() -> new BookInventory().bookId(bookId));
+        inventory.setStock(stock);
+        bookInventoryRepository.save(inventory);
+    }
+
+    /**
+     * Take units of a book out of stock, atomically, unless fewer are left. The bulk update is not seen by the audit
+     * listener: it is audited as the number of units reserved.
+     *
+     * @param bookId the id of the book.
+     * @param quantity the number of units.
+     * @return whether there was enough stock.
+     */
+    public boolean reserve(Long bookId, int quantity) {
+        if (bookInventoryRepository.decrementStock(bookId, quantity) != 1) {
+            return false;
+        }
+        entityAuditService.recordAfterCommit("Book", bookId, "reserved", null, quantity);
+        return true;
+    }
+
+    /**
+     * Set the average rating of a book.
+     *
+     * @param bookId the id of the book.
+     * @param averageRating the average rating, {@code null} when the book has no review.
+     */
+    public void updateAverageRating(Long bookId, Double averageRating) {
+        bookInventoryRepository.updateAverageRating(bookId, averageRating);
+    }
+
+    /**
+     * Recompute the average rating of every reviewed book from its reviews.
+     *
+     * @return the number of books whose average rating changed.
+     */
+    public int backfillAverageRatings() {
+        return bookInventoryRepository.backfillAverageRatings();
+    }
+}
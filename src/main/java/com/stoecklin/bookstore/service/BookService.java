@@ -1,13 +1,26 @@
 package com.stoecklin.bookstore.service;
 
+import com.stoecklin.bookstore.config.ApplicationProperties;
 import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.domain.Review;
 import com.stoecklin.bookstore.repository.BookRepository;
 import com.stoecklin.bookstore.repository.search.BookSearchRepository;
+import com.stoecklin.bookstore.service.event.BookChanged;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,23 +35,45 @@ public class BookService {
 
     private final BookRepository bookRepository;
     private final BookSearchRepository bookSearchRepository;
+    private final CoPurchaseService coPurchaseService;
+    private final BookInventoryService bookInventoryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SingleFlightLoader<Long, Optional<Book>> bookLoader;
 
-    public BookService(BookRepository bookRepository, BookSearchRepository bookSearchRepository) {
+    public BookService(
+        BookRepository bookRepository,
+        BookSearchRepository bookSearchRepository,
+        CoPurchaseService coPurchaseService,
+        BookInventoryService bookInventoryService,
+        ApplicationEventPublisher eventPublisher,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
         this.bookRepository = bookRepository;
         this.bookSearchRepository = bookSearchRepository;
+        this.coPurchaseService = coPurchaseService;
+        this.bookInventoryService = bookInventoryService;
+        this.eventPublisher = eventPublisher;
+        this.bookLoader = new SingleFlightLoader<>(
+            "book",
+            applicationProperties.getSingleFlight().getWindow(),
+            meterRegistry,
+            book -> book.map(BookService::snapshot)
+        );
     }
 
     /**
-     * Save (create or update) a book and index it.
+     * Save (create or update) a book, with its stock when given; it is indexed once committed.
      */
     public Book save(Book book) {
         log.debug("Request to save Book : {}", book);
+        Long previousCategoryId = book.getId() == null ? null : bookRepository.findById(book.getId()).map(BookService::categoryId).orElse(null);
         Book result = bookRepository.save(book);
-        try {
-            bookSearchRepository.index(result); // async in the generated repo
-        } catch (RuntimeException e) {
-            log.warn("Failed to index book in Elasticsearch: {}", e.getMessage());
+        if (book.getStock() != null) {
+            bookInventoryService.setStock(result.getId(), book.getStock());
         }
+        bookInventoryService.attach(result);
+        notifyChanged(result.getId(), categoryId(result), previousCategoryId);
         return result;
     }
 
@@ -50,36 +85,33 @@ public class BookService {
 
         return bookRepository
             .findById(book.getId())
+            .map(bookInventoryService::attach)
             .map(existingBook -> {
-                if (book.getTitle() != null) {
-                    existingBook.setTitle(book.getTitle());
-                }
-                if (book.getAuthor() != null) {
-                    existingBook.setAuthor(book.getAuthor());
-                }
-                if (book.getDescription() != null) {
-                    existingBook.setDescription(book.getDescription());
-                }
-                if (book.getPrice() != null) {
-                    existingBook.setPrice(book.getPrice());
-                }
+                ChangedFields changed = patch(existingBook, book);
+                Book saved = bookRepository.save(existingBook);
                 if (book.getStock() != null) {
-                    existingBook.setStock(book.getStock());
-                }
-                // add other fields if your entity has more
-                return existingBook;
-            })
-            .map(bookRepository::save)
-            .map(saved -> {
-                try {
-                    bookSearchRepository.index(saved);
-                } catch (RuntimeException e) {
-                    log.warn("Failed to index book in Elasticsearch after partial update: {}", e.getMessage());
+                    bookInventoryService.setStock(saved.getId(), book.getStock());
                 }
+                notifyChanged(saved.getId(), changed);
                 return saved;
             });
     }
 
+    /**
+     * Apply the non-null fields of a patch to a book.
+     *
+     * @return the fields that changed.
+     */
+    public static ChangedFields patch(Book existingBook, Book patch) {
+        ChangedFields changed = new ChangedFields();
+        changed.patch("title", patch.getTitle(), existingBook::getTitle, existingBook::setTitle);
+        changed.patch("author", patch.getAuthor(), existingBook::getAuthor, existingBook::setAuthor);
+        changed.patch("description", patch.getDescription(), existingBook::getDescription, existingBook::setDescription);
+        changed.patch("price", patch.getPrice(), existingBook::getPrice, existingBook::setPrice);
+        changed.patch("stock", patch.getStock(), existingBook::getStock, existingBook::setStock);
+        return changed;
+    }
+
     /**
      * Get all books. If eagerload is true, returns relationships eagerly (many-to-many).
      */
@@ -87,33 +119,156 @@ public class BookService {
     public List<Book> findAll(boolean eagerload) {
         log.debug("Request to get all Books (eagerload={})", eagerload);
         if (eagerload) {
-            return bookRepository.findAllWithEagerRelationships();
+            return bookInventoryService.attach(bookRepository.findAllWithEagerRelationships());
         }
-        return bookRepository.findAll();
+        return bookInventoryService.attach(bookRepository.findAll());
     }
 
     /**
-     * Get one book by id.
+     * Get one book by id, with its category and reviews. Concurrent requests for the same book share one query.
      */
     @Transactional(readOnly = true)
     public Optional<Book> findOne(Long id) {
         log.debug("Request to get Book : {}", id);
-        return bookRepository.findOneWithEagerRelationships(id);
+        return bookLoader.get(id, () -> bookRepository.findOneWithEagerRelationships(id).map(bookInventoryService::attach));
+    }
+
+    /**
+     * Copy a book loaded with its category and reviews into detached objects, for the lookups sharing its load.
+     */
+    static Book snapshot(Book book) {
+        Book copy = new Book()
+            .id(book.getId())
+            .title(book.getTitle())
+            .author(book.getAuthor())
+            .description(book.getDescription())
+            .price(book.getPrice());
+        copy.setStock(book.getStock());
+        copy.setAverageRating(book.getAverageRating());
+        if (book.getCategory() != null) {
+            copy.setCategory(new Category().id(book.getCategory().getId()).name(book.getCategory().getName()));
+        }
+        if (Hibernate.isInitialized(book.getReviews())) {
+            // the users of the reviews of a book are not serialized
+            for (Review review : book.getReviews()) {
+                copy.addReview(
+                    new Review().id(review.getId()).rating(review.getRating()).comment(review.getComment()).createdAt(review.getCreatedAt())
+                );
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Make the next lookups of a book read its committed state, after it or one of its reviews changed.
+     */
+    public void evictLookups(Long id) {
+        bookLoader.evict(id);
+    }
+
+    /**
+     * Get the books most often bought together with a book. Ids come from the in-memory co-purchase model and books from
+     * the second-level cache, so no query hits the database once the cache is warm.
+     */
+    @Transactional(readOnly = true)
+    public List<Book> findRelated(Long id, int limit) {
+        log.debug("Request to get Books related to Book : {}", id);
+        return bookInventoryService.attach(
+            Arrays.stream(coPurchaseService.findRelatedBookIds(id, limit))
+                .mapToObj(bookRepository::findById)
+                .flatMap(Optional::stream)
+                .toList()
+        );
+    }
+
+    /**
+     * Get a page of the books of a category, sorted by title, starting after a cursor.
+     *
+     * @param categoryId the id of the category.
+     * @param after where the previous page ended, or {@code null} for the first page.
+     * @param size the maximum number of books.
+     * @param descending whether to sort by descending title.
+     * @return the books, with their stock.
+     */
+    @Transactional(readOnly = true)
+    public List<Book> findByCategory(Long categoryId, BookCursor after, int size, boolean descending) {
+        log.debug("Request to get {} Books of Category {} after {}", size, categoryId, after);
+        Pageable page = PageRequest.of(0, size);
+        List<Book> books;
+        if (after == null) {
+            books = descending
+                ? bookRepository.findFirstByCategoryOrderByTitleDesc(categoryId, page)
+                : bookRepository.findFirstByCategoryOrderByTitle(categoryId, page);
+        } else {
+            books = descending
+                ? bookRepository.findByCategoryBeforeOrderByTitleDesc(categoryId, after.title(), after.id(), page)
+                : bookRepository.findByCategoryAfterOrderByTitle(categoryId, after.title(), after.id(), page);
+        }
+        return bookInventoryService.attach(books);
     }
 
     /**
-     * Delete the book (DB + search index).
+     * Delete the book; it is removed from the search index once committed.
      */
     public void delete(Long id) {
         log.debug("Request to delete Book : {}", id);
+        Long categoryId = bookRepository.findById(id).map(BookService::categoryId).orElse(null);
         bookRepository.deleteById(id);
-        try {
-            bookSearchRepository.deleteFromIndexById(id);
-        } catch (RuntimeException e) {
-            log.warn("Failed to delete book from Elasticsearch index: {}", e.getMessage());
+        notifyDeleted(id, categoryId);
+    }
+
+    /**
+     * Record that a book was updated in the current transaction, without changing category: its lookups are evicted
+     * and it is indexed once the transaction has committed.
+     */
+    public void notifyChanged(Long id) {
+        evictLookups(id);
+        eventPublisher.publishEvent(new BookChanged(id, false, Set.of()));
+    }
+
+    /**
+     * Record that a partial update changed some fields of a book in the current transaction: its lookups are evicted
+     * and, once the transaction has committed, only these fields are updated in the search index.
+     */
+    public void notifyChanged(Long id, ChangedFields changed) {
+        evictLookups(id);
+        if (!changed.isEmpty()) {
+            eventPublisher.publishEvent(new BookChanged(id, false, Set.of(), Set.copyOf(changed.getNames())));
         }
     }
 
+    /**
+     * Record that a book was created or updated in the current transaction, as {@link #notifyChanged(Long)}; the book
+     * counts of its categories are updated as well.
+     *
+     * @param id the id of the book.
+     * @param categoryId the id of its category, if any.
+     * @param previousCategoryId the id of its category before the change, if any.
+     */
+    public void notifyChanged(Long id, Long categoryId, Long previousCategoryId) {
+        evictLookups(id);
+        Set<Long> categoryIds = Objects.equals(categoryId, previousCategoryId)
+            ? Set.of()
+            : Stream.of(categoryId, previousCategoryId).filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet());
+        eventPublisher.publishEvent(new BookChanged(id, false, categoryIds));
+    }
+
+    /**
+     * Record that a book was deleted in the current transaction: its lookups are evicted, and it is removed from the
+     * search index and the book count of its category once the transaction has committed.
+     */
+    public void notifyDeleted(Long id, Long categoryId) {
+        evictLookups(id);
+        eventPublisher.publishEvent(new BookChanged(id, true, categoryId == null ? Set.of() : Set.of(categoryId)));
+    }
+
+    /**
+     * @return the id of the category of a book, without loading the category.
+     */
+    public static Long categoryId(Book book) {
+        return book.getCategory() == null ? null : book.getCategory().getId();
+    }
+
     /**
      * Search for the books matching the query (delegates to the search repository). Returns a Stream so the controller
      * can collect as a List when desired.
@@ -133,12 +288,12 @@ public class BookService {
     }
 
     /**
-     * Reindex all books from the database into Elasticsearch.
+     * Reindex all books from the database into the search backend.
      */
     public void reindexAllBooks() {
-        log.debug("Reindexing all books into Elasticsearch...");
-        List<Book> books = bookRepository.findAll();
-        books.forEach(bookSearchRepository::index);
+        log.debug("Reindexing all books...");
+        List<Book> books = bookInventoryService.attach(bookRepository.findAllWithToOneRelationships());
+        bookSearchRepository.indexAll(books);
         log.debug("Reindexed {} books successfully", books.size());
     }
 }
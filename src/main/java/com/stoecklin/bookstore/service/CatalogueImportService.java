@@ -0,0 +1,570 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.domain.Review;
+import com.stoecklin.bookstore.repository.BookRepository;
+import com.stoecklin.bookstore.repository.CategoryRepository;
+import com.stoecklin.bookstore.repository.ReviewRepository;
+import com.stoecklin.bookstore.repository.search.BookSearchRepository;
+import com.stoecklin.bookstore.repository.search.CategorySearchRepository;
+import com.stoecklin.bookstore.repository.search.ReviewSearchRepository;
+import com.stoecklin.bookstore.service.dto.ImportReportDTO;
+import jakarta.persistence.EntityManagerFactory;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
+import org.hibernate.Cache;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bulk import of the catalogue (categories, books and reviews) from CSV or NDJSON.
+ * <p>
+ * Records are streamed from the input, validated one by one and written straight into a temporary staging table with
+ * {@code COPY}; the staging table is then merged into the real tables with a handful of set-based statements, all in one
+ * transaction. Only once it committed are the second-level cache regions evicted and the touched rows sent to
+ * Elasticsearch in bulk requests.
+ */
+@Service
+public class CatalogueImportService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CatalogueImportService.class);
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final int INDEX_BATCH_SIZE = 1000;
+
+    private static final int MAX_VARCHAR = 255;
+
+    private static final String UPSERT_STOCK_FROM_UPDATED =
+        "stocked AS (INSERT INTO book_inventory (book_id, stock) SELECT id, stock FROM updated " +
+        "ON CONFLICT (book_id) DO UPDATE SET stock = EXCLUDED.stock) ";
+
+    /**
+     * Supported input formats.
+     */
+    public enum Format {
+        CSV,
+        NDJSON;
+
+        /**
+         * @param name a content type or a file name.
+         * @return {@link #NDJSON} for JSON lines, {@link #CSV} otherwise.
+         */
+        public static Format detect(String name) {
+            String lowerCase = name == null ? "" : name.toLowerCase(Locale.ROOT);
+            return lowerCase.contains("ndjson") || lowerCase.contains("jsonl") || lowerCase.contains("json-seq") ? NDJSON : CSV;
+        }
+    }
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final BookRepository bookRepository;
+    private final BookSearchRepository bookSearchRepository;
+    private final CategoryRepository categoryRepository;
+    private final CategorySearchRepository categorySearchRepository;
+    private final ReviewRepository reviewRepository;
+    private final ReviewSearchRepository reviewSearchRepository;
+    private final BookInventoryService bookInventoryService;
+    private final CategoryBookCountService categoryBookCountService;
+
+    public CatalogueImportService(
+        DataSource dataSource,
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        EntityManagerFactory entityManagerFactory,
+        BookRepository bookRepository,
+        BookSearchRepository bookSearchRepository,
+        CategoryRepository categoryRepository,
+        CategorySearchRepository categorySearchRepository,
+        ReviewRepository reviewRepository,
+        ReviewSearchRepository reviewSearchRepository,
+        BookInventoryService bookInventoryService,
+        CategoryBookCountService categoryBookCountService
+    ) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.entityManagerFactory = entityManagerFactory;
+        this.bookRepository = bookRepository;
+        this.bookSearchRepository = bookSearchRepository;
+        this.categoryRepository = categoryRepository;
+        this.categorySearchRepository = categorySearchRepository;
+        this.reviewRepository = reviewRepository;
+        this.reviewSearchRepository = reviewSearchRepository;
+        this.bookInventoryService = bookInventoryService;
+        this.categoryBookCountService = categoryBookCountService;
+    }
+
+    /**
+     * Import categories; a category is identified by its name, case-insensitively, so existing ones are left untouched.
+     * Expected field: {@code name}.
+     *
+     * @param in the input, read to the end and closed.
+     * @param format the input format.
+     * @return the import report.
+     */
+    public ImportReportDTO importCategories(InputStream in, Format format) {
+        Report report = new Report("categories");
+        List<Long> inserted = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("CREATE TEMP TABLE category_import (line bigint, name varchar(255)) ON COMMIT DROP");
+            copy(in, format, "COPY category_import (line, name) FROM STDIN WITH (FORMAT csv)", report, CatalogueImportService::toCategoryRow);
+            return jdbcTemplate.queryForList(
+                "INSERT INTO category (id, name) SELECT nextval('sequence_generator'), s.name FROM (" +
+                "SELECT DISTINCT ON (lower(name)) name FROM category_import ORDER BY lower(name), line) s " +
+                "WHERE NOT EXISTS (SELECT 1 FROM category c WHERE lower(c.name) = lower(s.name)) RETURNING id",
+                Long.class
+            );
+        });
+        report.inserted = inserted.size();
+        evict(Category.class);
+        index(inserted, categoryRepository, categorySearchRepository);
+        return report.finish(LOG);
+    }
+
+    /**
+     * Import books. A record with an {@code id} updates that book; otherwise the book is matched on title and author and
+     * updated, or inserted when there is no such book. Unknown categories are created.
+     * Expected fields: {@code id} (optional), {@code title}, {@code author}, {@code description}, {@code price},
+     * {@code stock}, {@code category}.
+     *
+     * @param in the input, read to the end and closed.
+     * @param format the input format.
+     * @return the import report.
+     */
+    public ImportReportDTO importBooks(InputStream in, Format format) {
+        Report report = new Report("books");
+        List<Long> touched = new ArrayList<>();
+        List<Long> createdCategories = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute(
+                "CREATE TEMP TABLE book_import (line bigint, id bigint, title varchar(255), author varchar(255), " +
+                "description varchar(255), price decimal(21,2), stock integer, category_id bigint, category_name varchar(255)) " +
+                "ON COMMIT DROP"
+            );
+            Map<String, Long> categories = loadCategoryIds();
+            copy(
+                in,
+                format,
+                "COPY book_import (line, id, title, author, description, price, stock, category_id, category_name) " +
+                "FROM STDIN WITH (FORMAT csv)",
+                report,
+                (line, values) -> toBookRow(line, values, name -> categories.get(categoryKey(name)))
+            );
+            createdCategories.addAll(resolveNewCategories());
+
+            jdbcTemplate
+                .queryForList(
+                    "SELECT line FROM book_import s WHERE s.id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM book b WHERE b.id = s.id) " +
+                    "ORDER BY line",
+                    Long.class
+                )
+                .forEach(line -> report.reject(line, "unknown book id"));
+            // each statement also writes the stock of the books it touches to book_inventory
+            List<Long> updatedById = jdbcTemplate.queryForList(
+                "WITH updated AS (UPDATE book b SET title = s.title, author = s.author, description = s.description, " +
+                "price = s.price, category_id = s.category_id FROM (" +
+                "SELECT DISTINCT ON (id) * FROM book_import WHERE id IS NOT NULL ORDER BY id, line DESC) s " +
+                "WHERE b.id = s.id RETURNING b.id, s.stock), " +
+                UPSERT_STOCK_FROM_UPDATED +
+                "SELECT id FROM updated",
+                Long.class
+            );
+            List<Long> updatedByKey = jdbcTemplate.queryForList(
+                "WITH updated AS (UPDATE book b SET description = s.description, price = s.price, category_id = s.category_id " +
+                "FROM (SELECT DISTINCT ON (title, author) * FROM book_import WHERE id IS NULL ORDER BY title, author, line DESC) s " +
+                "WHERE b.title = s.title AND b.author = s.author RETURNING b.id, s.stock), " +
+                UPSERT_STOCK_FROM_UPDATED +
+                "SELECT id FROM updated",
+                Long.class
+            );
+            List<Long> inserted = jdbcTemplate.queryForList(
+                "WITH s AS (SELECT DISTINCT ON (title, author) * FROM book_import WHERE id IS NULL ORDER BY title, author, line DESC), " +
+                "created AS (INSERT INTO book (id, title, author, description, price, category_id) " +
+                "SELECT nextval('sequence_generator'), s.title, s.author, s.description, s.price, s.category_id FROM s " +
+                "WHERE NOT EXISTS (SELECT 1 FROM book b WHERE b.title = s.title AND b.author = s.author) " +
+                "RETURNING id, title, author), " +
+                "stocked AS (INSERT INTO book_inventory (book_id, stock) " +
+                "SELECT created.id, s.stock FROM created JOIN s ON s.title = created.title AND s.author = created.author) " +
+                "SELECT id FROM created",
+                Long.class
+            );
+            report.updated = updatedById.size() + updatedByKey.size();
+            report.inserted = inserted.size();
+            touched.addAll(updatedById);
+            touched.addAll(updatedByKey);
+            touched.addAll(inserted);
+        });
+        evict(Category.class);
+        evict(Book.class);
+        categoryBookCountService.refresh();
+        index(createdCategories, categoryRepository, categorySearchRepository);
+        index(touched, bookRepository, bookSearchRepository, bookInventoryService::attach);
+        return report.finish(LOG);
+    }
+
+    /**
+     * Import reviews. The book is given by {@code bookId}, or by {@code bookTitle} and {@code bookAuthor}; the optional
+     * author of the review by {@code userLogin}. A review identical to an existing one is skipped, so re-importing the
+     * same file is harmless. Average ratings of the reviewed books are recomputed.
+     * Expected fields: {@code bookId} or {@code bookTitle} and {@code bookAuthor}, {@code userLogin}, {@code rating},
+     * {@code comment}, {@code createdAt} (ISO-8601 instant, optional).
+     *
+     * @param in the input, read to the end and closed.
+     * @param format the input format.
+     * @return the import report.
+     */
+    public ImportReportDTO importReviews(InputStream in, Format format) {
+        Report report = new Report("reviews");
+        List<Long> inserted = new ArrayList<>();
+        List<Long> rated = new ArrayList<>();
+        Instant importedAt = Instant.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute(
+                "CREATE TEMP TABLE review_import (line bigint, book_id bigint, book_title varchar(255), book_author varchar(255), " +
+                "user_login varchar(50), rating integer, comment text, created_at timestamp) ON COMMIT DROP"
+            );
+            copy(
+                in,
+                format,
+                "COPY review_import (line, book_id, book_title, book_author, user_login, rating, comment, created_at) " +
+                "FROM STDIN WITH (FORMAT csv)",
+                report,
+                (line, values) -> toReviewRow(line, values, importedAt)
+            );
+            jdbcTemplate.update(
+                "UPDATE review_import s SET book_id = (SELECT min(b.id) FROM book b WHERE b.title = s.book_title AND b.author = s.book_author) " +
+                "WHERE s.book_id IS NULL"
+            );
+            jdbcTemplate
+                .queryForList(
+                    "SELECT line FROM review_import s WHERE NOT EXISTS (SELECT 1 FROM book b WHERE b.id = s.book_id) ORDER BY line",
+                    Long.class
+                )
+                .forEach(line -> report.reject(line, "unknown book"));
+            jdbcTemplate
+                .queryForList(
+                    "SELECT line FROM review_import s WHERE s.user_login IS NOT NULL " +
+                    "AND EXISTS (SELECT 1 FROM book b WHERE b.id = s.book_id) " +
+                    "AND NOT EXISTS (SELECT 1 FROM jhi_user u WHERE u.login = s.user_login) ORDER BY line",
+                    Long.class
+                )
+                .forEach(line -> report.reject(line, "unknown user"));
+            inserted.addAll(
+                jdbcTemplate.queryForList(
+                    "INSERT INTO review (id, rating, comment, created_at, user_id, book_id) " +
+                    "SELECT nextval('sequence_generator'), s.rating, s.comment, s.created_at, u.id, s.book_id " +
+                    "FROM review_import s JOIN book b ON b.id = s.book_id LEFT JOIN jhi_user u ON u.login = s.user_login " +
+                    "WHERE (s.user_login IS NULL OR u.id IS NOT NULL) AND NOT EXISTS (SELECT 1 FROM review r " +
+                    "WHERE r.book_id = s.book_id AND r.user_id IS NOT DISTINCT FROM u.id AND r.rating = s.rating " +
+                    "AND r.created_at IS NOT DISTINCT FROM s.created_at) RETURNING id",
+                    Long.class
+                )
+            );
+            rated.addAll(
+                jdbcTemplate.queryForList(
+                    "UPDATE book_inventory i SET average_rating = a.average FROM (SELECT book_id, AVG(rating) AS average FROM review " +
+                    "WHERE book_id IN (SELECT DISTINCT book_id FROM review_import) GROUP BY book_id) a " +
+                    "WHERE i.book_id = a.book_id RETURNING i.book_id",
+                    Long.class
+                )
+            );
+            report.inserted = inserted.size();
+        });
+        evict(Review.class);
+        entityManagerFactory.getCache().unwrap(Cache.class).evictCollectionData(Book.class.getName() + ".reviews");
+        index(inserted, reviewRepository, reviewSearchRepository);
+        index(rated, bookRepository, bookSearchRepository, bookInventoryService::attach);
+        return report.finish(LOG);
+    }
+
+    /**
+     * Convert a record into a staging row.
+     */
+    @FunctionalInterface
+    interface RowMapper {
+        Object[] toRow(long line, Map<String, String> values);
+    }
+
+    private void copy(InputStream in, Format format, String copySql, Report report, RowMapper rowMapper) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (CatalogueRecordReader reader = CatalogueRecordReader.open(in, format)) {
+            PGCopyOutputStream copyOut = new PGCopyOutputStream(connection.unwrap(PGConnection.class), copySql, 1 << 16);
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(copyOut, StandardCharsets.UTF_8), 1 << 16);
+                CatalogueRecordReader.Record record;
+                while ((record = reader.next()) != null) {
+                    report.rowsRead++;
+                    if (record.error() != null) {
+                        report.reject(record.line(), record.error());
+                        continue;
+                    }
+                    try {
+                        writeCsvRow(writer, rowMapper.toRow(record.line(), record.values()));
+                    } catch (IllegalArgumentException e) {
+                        report.reject(record.line(), e.getMessage());
+                    }
+                }
+                writer.close();
+            } catch (IOException | RuntimeException e) {
+                if (copyOut.isActive()) {
+                    copyOut.cancelCopy();
+                }
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to stream the import into the staging table", e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to stream the import into the staging table", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    static void writeCsvRow(Writer writer, Object[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = row[i];
+            if (value == null) {
+                continue; // unquoted empty field is NULL for COPY
+            }
+            writer.write('"');
+            writer.write(value.toString().replace("\"", "\"\""));
+            writer.write('"');
+        }
+        writer.write('\n');
+    }
+
+    static Object[] toCategoryRow(long line, Map<String, String> values) {
+        return new Object[] { line, requiredText(values, "name") };
+    }
+
+    static Object[] toBookRow(long line, Map<String, String> values, Function<String, Long> categoryIds) {
+        Long id = optionalLong(values, "id");
+        String title = requiredText(values, "title");
+        String author = requiredText(values, "author");
+        String description = optionalText(values, "description");
+        BigDecimal price = requiredDecimal(values, "price");
+        Integer stock = requiredInt(values, "stock");
+        String category = requiredText(values, "category");
+        if (price.signum() < 0) {
+            throw new IllegalArgumentException("price must not be negative");
+        }
+        if (stock < 0) {
+            throw new IllegalArgumentException("stock must not be negative");
+        }
+        Long categoryId = categoryIds.apply(category);
+        return new Object[] { line, id, title, author, description, price, stock, categoryId, categoryId == null ? category : null };
+    }
+
+    static Object[] toReviewRow(long line, Map<String, String> values, Instant defaultCreatedAt) {
+        Long bookId = optionalLong(values, "bookId");
+        String bookTitle = optionalText(values, "bookTitle");
+        String bookAuthor = optionalText(values, "bookAuthor");
+        if (bookId == null && (bookTitle == null || bookAuthor == null)) {
+            throw new IllegalArgumentException("bookId, or bookTitle and bookAuthor, are required");
+        }
+        String userLogin = optionalText(values, "userLogin");
+        Integer rating = requiredInt(values, "rating");
+        if (rating < 1 || rating > 5) {
+            throw new IllegalArgumentException("rating must be between 1 and 5");
+        }
+        String comment = values.get("comment");
+        Instant createdAt = defaultCreatedAt;
+        String createdAtText = optionalText(values, "createdAt");
+        if (createdAtText != null) {
+            try {
+                createdAt = Instant.parse(createdAtText);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("createdAt is not an ISO-8601 instant");
+            }
+        }
+        return new Object[] {
+            line,
+            bookId,
+            bookTitle,
+            bookAuthor,
+            userLogin == null ? null : userLogin.toLowerCase(Locale.ROOT),
+            rating,
+            comment,
+            LocalDateTime.ofInstant(createdAt, ZoneOffset.UTC),
+        };
+    }
+
+    private static String requiredText(Map<String, String> values, String field) {
+        String value = optionalText(values, field);
+        if (value == null) {
+            throw new IllegalArgumentException(field + " is required");
+        }
+        return value;
+    }
+
+    private static String optionalText(Map<String, String> values, String field) {
+        String value = values.get(field);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        value = value.strip();
+        if (value.length() > MAX_VARCHAR) {
+            throw new IllegalArgumentException(field + " is longer than " + MAX_VARCHAR + " characters");
+        }
+        return value;
+    }
+
+    private static Long optionalLong(Map<String, String> values, String field) {
+        String value = optionalText(values, field);
+        try {
+            return value == null ? null : Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " is not a number");
+        }
+    }
+
+    private static Integer requiredInt(Map<String, String> values, String field) {
+        try {
+            return Integer.valueOf(requiredText(values, field));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " is not an integer");
+        }
+    }
+
+    private static BigDecimal requiredDecimal(Map<String, String> values, String field) {
+        try {
+            return new BigDecimal(requiredText(values, field));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " is not a decimal number");
+        }
+    }
+
+    static String categoryKey(String name) {
+        return name.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private Map<String, Long> loadCategoryIds() {
+        Map<String, Long> categories = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM category ORDER BY id", rs -> {
+            categories.putIfAbsent(categoryKey(rs.getString("name")), rs.getLong("id"));
+        });
+        return categories;
+    }
+
+    /**
+     * Create the categories referenced by the staged books but not known yet, then point the books to them.
+     */
+    private List<Long> resolveNewCategories() {
+        List<Long> created = jdbcTemplate.queryForList(
+            "INSERT INTO category (id, name) SELECT nextval('sequence_generator'), s.category_name FROM (" +
+            "SELECT DISTINCT ON (lower(category_name)) category_name FROM book_import WHERE category_id IS NULL " +
+            "ORDER BY lower(category_name), line) s " +
+            "WHERE NOT EXISTS (SELECT 1 FROM category c WHERE lower(c.name) = lower(s.category_name)) RETURNING id",
+            Long.class
+        );
+        jdbcTemplate.update(
+            "UPDATE book_import s SET category_id = (SELECT min(c.id) FROM category c WHERE lower(c.name) = lower(s.category_name)) " +
+            "WHERE s.category_id IS NULL"
+        );
+        return created;
+    }
+
+    private void evict(Class<?> entityClass) {
+        entityManagerFactory.getCache().evict(entityClass);
+    }
+
+    private <T> void index(List<Long> ids, CrudRepository<T, Long> repository, CrudRepository<T, Long> searchRepository) {
+        index(ids, repository, searchRepository, UnaryOperator.identity());
+    }
+
+    private <T> void index(
+        List<Long> ids,
+        CrudRepository<T, Long> repository,
+        CrudRepository<T, Long> searchRepository,
+        UnaryOperator<List<T>> prepare
+    ) {
+        for (int from = 0; from < ids.size(); from += INDEX_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + INDEX_BATCH_SIZE, ids.size()));
+            try {
+                readOnlyTransactionTemplate.executeWithoutResult(status ->
+                    searchRepository.saveAll(prepare.apply(StreamSupport.stream(repository.findAllById(batch).spliterator(), false).toList()))
+                );
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to index {} imported rows in Elasticsearch: {}", batch.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Mutable accumulator behind {@link ImportReportDTO}.
+     */
+    private static final class Report {
+
+        private final String type;
+        private final long start = System.nanoTime();
+        private final List<ImportReportDTO.RowError> errors = new ArrayList<>();
+        private long rowsRead;
+        private long inserted;
+        private long updated;
+        private long rejected;
+
+        private Report(String type) {
+            this.type = type;
+        }
+
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportReportDTO.RowError(line, message));
+            }
+        }
+
+        private ImportReportDTO finish(Logger log) {
+            long durationMillis = (System.nanoTime() - start) / 1_000_000;
+            log.info(
+                "Imported {}: {} read, {} inserted, {} updated, {} rejected in {} ms ({} rows/s)",
+                type,
+                rowsRead,
+                inserted,
+                updated,
+                rejected,
+                durationMillis,
+                durationMillis == 0 ? rowsRead : rowsRead * 1000 / durationMillis
+            );
+            return new ImportReportDTO(type, rowsRead, inserted, updated, rejected, List.copyOf(errors), durationMillis);
+        }
+    }
+}
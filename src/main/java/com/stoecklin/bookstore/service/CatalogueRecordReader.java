@@ -0,0 +1,141 @@
+package com.stoecklin.bookstore.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Reads catalogue records one at a time from a CSV (with header) or NDJSON stream, so that files of any size are imported
+ * without being buffered. A malformed record is reported with its line number and does not stop the import, but a stream
+ * that cannot be read to its end, e.g. a truncated upload, fails with an {@link UncheckedIOException} rather than passing
+ * for a shorter file.
+ */
+final class CatalogueRecordReader implements Closeable {
+
+    /**
+     * A record, or the reason why the record at that line could not be read.
+     */
+    record Record(long line, Map<String, String> values, String error) {}
+
+    private static final CsvMapper CSV_MAPPER = new CsvMapper().enable(CsvParser.Feature.TRIM_SPACES);
+    private static final ObjectReader JSON_READER = new ObjectMapper().readerFor(JsonNode.class);
+
+    private final Closeable source;
+    private final Iterator<Record> records;
+
+    private CatalogueRecordReader(Closeable source, Iterator<Record> records) {
+        this.source = source;
+        this.records = records;
+    }
+
+    static CatalogueRecordReader open(InputStream in, CatalogueImportService.Format format) throws IOException {
+        return switch (format) {
+            case CSV -> csv(in);
+            case NDJSON -> ndjson(in);
+        };
+    }
+
+    /**
+     * @return the next record, or {@code null} at the end of the stream.
+     * @throws UncheckedIOException if the rest of the stream cannot be read.
+     */
+    Record next() {
+        return records.hasNext() ? records.next() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private static CatalogueRecordReader csv(InputStream in) throws IOException {
+        MappingIterator<Map<String, String>> rows = CSV_MAPPER.readerFor(Map.class)
+            .with(CsvSchema.emptySchema().withHeader())
+            .readValues(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Iterator<Record> records = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return rows.hasNextValue();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read the CSV after line " + rows.getCurrentLocation().getLineNr(), e);
+                }
+            }
+
+            @Override
+            public Record next() {
+                long line = rows.getCurrentLocation().getLineNr();
+                try {
+                    return new Record(line, rows.nextValue(), null);
+                } catch (JsonProcessingException | RuntimeException e) {
+                    return new Record(line, Map.of(), "malformed CSV record: " + e.getMessage());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read the CSV at line " + line, e);
+                }
+            }
+        };
+        return new CatalogueRecordReader(rows, records);
+    }
+
+    private static CatalogueRecordReader ndjson(InputStream in) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Iterator<Record> records = new Iterator<>() {
+            private long line;
+            private String nextLine;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (nextLine == null) {
+                        String candidate = reader.readLine();
+                        if (candidate == null) {
+                            return false;
+                        }
+                        line++;
+                        if (!candidate.isBlank()) {
+                            nextLine = candidate;
+                        }
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read the NDJSON after line " + line, e);
+                }
+            }
+
+            @Override
+            public Record next() {
+                String current = nextLine;
+                nextLine = null;
+                try {
+                    JsonNode node = JSON_READER.readValue(current);
+                    if (!node.isObject()) {
+                        return new Record(line, Map.of(), "expected a JSON object");
+                    }
+                    Map<String, String> values = new HashMap<>();
+                    node
+                        .fields()
+                        .forEachRemaining(field -> values.put(field.getKey(), field.getValue().isNull() ? null : field.getValue().asText()));
+                    return new Record(line, values, null);
+                } catch (JsonProcessingException e) {
+                    return new Record(line, Map.of(), "malformed JSON: " + e.getOriginalMessage());
+                }
+            }
+        };
+        return new CatalogueRecordReader(reader, records);
+    }
+}
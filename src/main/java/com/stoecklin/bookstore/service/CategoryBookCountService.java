@@ -0,0 +1,89 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.repository.BookRepository;
+import com.stoecklin.bookstore.service.dto.CategoryWithCountDTO;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Keeps the number of books of each category in memory, so that listing categories with their counts does not group
+ * the book table on every page load.
+ * <p>
+ * The counts are loaded on first use. The categories that gain or lose a book are recounted once the change has
+ * committed, with an indexed count; a periodic full recount repairs anything missed, e.g. bulk imports or changes made
+ * by another instance.
+ */
+@Service
+@Transactional
+public class CategoryBookCountService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CategoryBookCountService.class);
+
+    private final BookRepository bookRepository;
+
+    private volatile Map<Long, Long> counts;
+
+    public CategoryBookCountService(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    /**
+     * Attach the number of their books to categories.
+     */
+    @Transactional(readOnly = true)
+    public List<CategoryWithCountDTO> withCounts(List<Category> categories) {
+        Map<Long, Long> current = counts();
+        return categories
+            .stream()
+            .map(category -> new CategoryWithCountDTO(category.getId(), category.getName(), current.getOrDefault(category.getId(), 0L)))
+            .toList();
+    }
+
+    /**
+     * Recount the books of some categories, from the primary database so that a change just committed is seen.
+     */
+    public void recount(Collection<Long> categoryIds) {
+        Map<Long, Long> current = counts;
+        if (current == null || categoryIds.isEmpty()) {
+            return;
+        }
+        for (Long categoryId : categoryIds) {
+            current.put(categoryId, bookRepository.countByCategory_Id(categoryId));
+        }
+        LOG.debug("Recounted books of categories {}", categoryIds);
+    }
+
+    /**
+     * Recount the books of all categories, if they were loaded.
+     */
+    @Scheduled(
+        fixedDelayString = "${application.category-counts.refresh-interval:10m}",
+        initialDelayString = "${application.category-counts.refresh-interval:10m}"
+    )
+    public void refresh() {
+        if (counts != null) {
+            load();
+        }
+    }
+
+    private Map<Long, Long> counts() {
+        Map<Long, Long> current = counts;
+        return current != null ? current : load();
+    }
+
+    private synchronized Map<Long, Long> load() {
+        Map<Long, Long> fresh = new ConcurrentHashMap<>();
+        bookRepository.countByCategory().forEach(count -> fresh.put(count.getCategoryId(), count.getBookCount()));
+        counts = fresh;
+        LOG.debug("Loaded book counts of {} categories", fresh.size());
+        return fresh;
+    }
+}
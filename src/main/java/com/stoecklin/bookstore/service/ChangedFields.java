@@ -0,0 +1,58 @@
+package com.stoecklin.bookstore.service;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The fields a partial update actually changed on an entity, so that only these are sent to the search index.
+ */
+public final class ChangedFields {
+
+    private final Set<String> names = new LinkedHashSet<>();
+
+    /**
+     * Apply the value of a field from a patch: {@code null} leaves the field alone, and the field is only recorded as
+     * changed if the value differs from the current one.
+     *
+     * @param name the name of the field.
+     * @param patched the value from the patch.
+     * @param current the getter of the field.
+     * @param setter the setter of the field.
+     */
+    public <T> void patch(String name, T patched, Supplier<T> current, Consumer<T> setter) {
+        if (patched == null) {
+            return;
+        }
+        if (!sameValue(patched, current.get())) {
+            names.add(name);
+        }
+        setter.accept(patched);
+    }
+
+    /**
+     * Record a field as changed.
+     */
+    public void add(String name) {
+        names.add(name);
+    }
+
+    public boolean isEmpty() {
+        return names.isEmpty();
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(names);
+    }
+
+    private static boolean sameValue(Object patched, Object current) {
+        if (patched instanceof BigDecimal decimal && current instanceof BigDecimal other) {
+            return decimal.compareTo(other) == 0;
+        }
+        return Objects.equals(patched, current);
+    }
+}
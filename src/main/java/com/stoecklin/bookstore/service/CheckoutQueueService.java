@@ -0,0 +1,357 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.enumeration.CheckoutStatus;
+import com.stoecklin.bookstore.service.dto.CheckoutStatusDTO;
+import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
+import jakarta.annotation.PreDestroy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service for the queued checkout mode.
+ * <p>
+ * A checkout request is validated, written to the {@code checkout_request} table and handed to one of the worker lanes,
+ * in-memory bounded queues. The table is the durable queue: requests that did not fit in a lane or that were pending
+ * when the application stopped are picked up again by a periodic sweep. Requests are routed to a lane by the first book
+ * of their cart, so that the orders for a hot title are placed one after the other by the same worker instead of
+ * contending for its inventory row. Each order is placed by {@link OrderService#placeOrderFromCart(String)}, the same
+ * code as a synchronous checkout, in the transaction that marks the request completed.
+ */
+@Service
+public class CheckoutQueueService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckoutQueueService.class);
+
+    private static final String COLUMNS = "handle, status, order_id, error_key, error_message, created_at";
+
+    private static final RowMapper<CheckoutStatusDTO> STATUS_MAPPER = CheckoutQueueService::toStatus;
+
+    private final OrderService orderService;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationProperties.Checkout properties;
+    private final BlockingQueue<Long>[] lanes;
+    private final Set<Long> buffered = ConcurrentHashMap.newKeySet();
+    private final Map<String, CompletableFuture<CheckoutStatusDTO>> completions = new ConcurrentHashMap<>();
+
+    private volatile ExecutorService workers;
+    private volatile boolean running;
+
+    @SuppressWarnings("unchecked")
+    public CheckoutQueueService(
+        OrderService orderService,
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.orderService = orderService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getCheckout();
+        this.lanes = new BlockingQueue[Math.max(1, properties.getWorkers())];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayBlockingQueue<>(properties.getLaneCapacity());
+        }
+    }
+
+    /**
+     * @return whether checkouts are queued rather than placed synchronously.
+     */
+    public boolean isEnabled() {
+        return properties.getMode() == ApplicationProperties.Checkout.Mode.QUEUED;
+    }
+
+    /**
+     * Queue the checkout of the current user's shopping cart. The cart is validated right away, so that an empty cart
+     * is rejected with the same error as in synchronous mode. A user with a pending checkout gets its handle back
+     * instead of a second one.
+     *
+     * @return the state of the queued checkout.
+     */
+    public CheckoutStatusDTO enqueue() {
+        OrderService.CheckoutCart cart = orderService.validateCheckout();
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        List<Long> ids = jdbcTemplate.queryForList(
+            "INSERT INTO checkout_request (id, handle, user_login, lane_key, status, created_at, updated_at) " +
+            "VALUES (nextval('sequence_generator'), ?, ?, ?, 'QUEUED', ?, ?) " +
+            "ON CONFLICT (user_login) WHERE status = 'QUEUED' DO NOTHING RETURNING id",
+            Long.class,
+            UUID.randomUUID().toString(),
+            cart.userLogin(),
+            cart.bookIds().get(0),
+            now,
+            now
+        );
+        if (ids.isEmpty()) {
+            LOG.debug("User {} already has a queued checkout", cart.userLogin());
+        } else {
+            long id = ids.get(0);
+            long laneKey = cart.bookIds().get(0);
+            afterCommit(() -> offer(id, laneKey));
+        }
+        return jdbcTemplate.queryForObject(
+            "SELECT " + COLUMNS + " FROM checkout_request WHERE user_login = ? ORDER BY id DESC LIMIT 1",
+            STATUS_MAPPER,
+            cart.userLogin()
+        );
+    }
+
+    /**
+     * Get the state of a checkout of a user.
+     *
+     * @param handle the handle of the checkout.
+     * @param userLogin the login of the user.
+     * @return the state, or empty if the user has no such checkout.
+     */
+    public Optional<CheckoutStatusDTO> findStatus(String handle, String userLogin) {
+        return jdbcTemplate
+            .query("SELECT " + COLUMNS + " FROM checkout_request WHERE handle = ? AND user_login = ?", STATUS_MAPPER, handle, userLogin)
+            .stream()
+            .findFirst();
+    }
+
+    /**
+     * Wait until a checkout of a user is no longer queued, or the wait is over.
+     *
+     * @param handle the handle of the checkout.
+     * @param userLogin the login of the user.
+     * @param wait how long to wait at most, capped by the configured maximum.
+     * @return the state when the checkout completed or failed or when the wait was over; empty if the user has no such
+     *     checkout.
+     */
+    public CompletableFuture<Optional<CheckoutStatusDTO>> awaitStatus(String handle, String userLogin, Duration wait) {
+        Optional<CheckoutStatusDTO> current = findStatus(handle, userLogin);
+        if (current.isEmpty() || current.orElseThrow().status() != CheckoutStatus.QUEUED || wait.isZero() || wait.isNegative()) {
+            return CompletableFuture.completedFuture(current);
+        }
+        CompletableFuture<CheckoutStatusDTO> completion = completions.computeIfAbsent(handle, key -> new CompletableFuture<>());
+        // the worker may have finished between the first read and the registration
+        Optional<CheckoutStatusDTO> recheck = findStatus(handle, userLogin);
+        if (recheck.isPresent() && recheck.orElseThrow().status() != CheckoutStatus.QUEUED) {
+            return CompletableFuture.completedFuture(recheck);
+        }
+        Duration capped = wait.compareTo(properties.getMaxPollWait()) > 0 ? properties.getMaxPollWait() : wait;
+        return completion
+            .copy()
+            .completeOnTimeout(current.orElseThrow(), capped.toMillis(), TimeUnit.MILLISECONDS)
+            .thenApply(Optional::of);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(lanes.length, runnable -> {
+            Thread thread = new Thread(runnable, "checkout-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (BlockingQueue<Long> lane : lanes) {
+            workers.execute(() -> work(lane));
+        }
+        LOG.info("Started {} checkout workers", lanes.length);
+        sweep();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        ExecutorService current = workers;
+        if (current != null) {
+            current.shutdownNow();
+            current.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Feed the lanes with the queued requests they do not hold, and notify the clients waiting for requests completed
+     * elsewhere, e.g. by another instance.
+     */
+    @Scheduled(
+        fixedDelayString = "${application.checkout.sweep-interval:5s}",
+        initialDelayString = "${application.checkout.sweep-interval:5s}"
+    )
+    public void sweep() {
+        if (!running) {
+            return;
+        }
+        jdbcTemplate.query(
+            "SELECT id, lane_key FROM checkout_request WHERE status = 'QUEUED' ORDER BY id LIMIT ?",
+            rs -> {
+                long id = rs.getLong("id");
+                if (!buffered.contains(id)) {
+                    offer(id, rs.getLong("lane_key"));
+                }
+            },
+            properties.getLaneCapacity() * lanes.length
+        );
+        if (!completions.isEmpty()) {
+            namedParameterJdbcTemplate
+                .query(
+                    "SELECT " + COLUMNS + " FROM checkout_request WHERE handle IN (:handles) AND status <> 'QUEUED'",
+                    new MapSqlParameterSource("handles", List.copyOf(completions.keySet())),
+                    STATUS_MAPPER
+                )
+                .forEach(this::complete);
+        }
+    }
+
+    private void offer(long id, long laneKey) {
+        if (!running || !buffered.add(id)) {
+            return;
+        }
+        if (!lanes[(int) Math.floorMod(laneKey, (long) lanes.length)].offer(id)) {
+            // the lane is full: the request stays queued in the table until a sweep finds room for it
+            buffered.remove(id);
+        }
+    }
+
+    private void work(BlockingQueue<Long> lane) {
+        while (running) {
+            try {
+                Long id = lane.poll(1, TimeUnit.SECONDS);
+                if (id != null) {
+                    buffered.remove(id);
+                    process(id);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Checkout worker failed, the request stays queued", e);
+            }
+        }
+    }
+
+    /**
+     * Place the order of a queued request, unless it was already processed.
+     */
+    void process(long id) {
+        CheckoutStatusDTO result;
+        try {
+            result = transactionTemplate.execute(status -> {
+                // the row stays locked until the order is committed, so that no other worker or instance takes it
+                List<String> logins = jdbcTemplate.queryForList(
+                    "SELECT user_login FROM checkout_request WHERE id = ? AND status = 'QUEUED' FOR UPDATE SKIP LOCKED",
+                    String.class,
+                    id
+                );
+                if (logins.isEmpty()) {
+                    return null;
+                }
+                Order order = orderService.placeOrderFromCart(logins.get(0));
+                return jdbcTemplate.queryForObject(
+                    "UPDATE checkout_request SET status = 'COMPLETED', order_id = ?, updated_at = ? WHERE id = ? RETURNING " + COLUMNS,
+                    STATUS_MAPPER,
+                    order.getId(),
+                    LocalDateTime.now(ZoneOffset.UTC),
+                    id
+                );
+            });
+        } catch (BadRequestAlertException e) {
+            result = fail(id, e.getErrorKey(), e.getBody().getTitle());
+        } catch (RuntimeException e) {
+            LOG.error("Failed to place the order of checkout request {}", id, e);
+            result = fail(id, "checkoutfailed", "Checkout failed");
+        }
+        if (result != null) {
+            complete(result);
+        }
+    }
+
+    /**
+     * Mark a request failed, in a transaction of its own: the one that tried to place its order was rolled back.
+     */
+    private CheckoutStatusDTO fail(long id, String errorKey, String message) {
+        return transactionTemplate.execute(status ->
+            jdbcTemplate
+                .query(
+                    "UPDATE checkout_request SET status = 'FAILED', error_key = ?, error_message = ?, updated_at = ? " +
+                    "WHERE id = ? AND status = 'QUEUED' RETURNING " +
+                    COLUMNS,
+                    STATUS_MAPPER,
+                    errorKey,
+                    message == null || message.length() <= 255 ? message : message.substring(0, 255),
+                    LocalDateTime.now(ZoneOffset.UTC),
+                    id
+                )
+                .stream()
+                .findFirst()
+                .orElse(null)
+        );
+    }
+
+    private void complete(CheckoutStatusDTO result) {
+        CompletableFuture<CheckoutStatusDTO> completion = completions.remove(result.handle());
+        if (completion != null) {
+            completion.complete(result);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                }
+            );
+        } else {
+            action.run();
+        }
+    }
+
+    private static CheckoutStatusDTO toStatus(ResultSet rs, int rowNum) throws SQLException {
+        long orderId = rs.getLong("order_id");
+        boolean noOrder = rs.wasNull();
+        return new CheckoutStatusDTO(
+            rs.getString("handle"),
+            CheckoutStatus.valueOf(rs.getString("status")),
+            noOrder ? null : orderId,
+            rs.getString("error_key"),
+            rs.getString("error_message"),
+            rs.getObject("created_at", LocalDateTime.class).toInstant(ZoneOffset.UTC)
+        );
+    }
+}
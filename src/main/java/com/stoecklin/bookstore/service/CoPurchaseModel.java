@@ -0,0 +1,246 @@
+package com.stoecklin.bookstore.service;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.cursors.LongIntCursor;
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory "customers also bought" model: for every book, sparse counters of how often each other book was bought in the
+ * same order, and the precomputed top-K of those counters.
+ * <p>
+ * Counters are primitive-keyed HPPC maps, so a book with a few hundred neighbours costs a few KB rather than boxed map
+ * entries. A book keeps at most {@code maxCountersPerBook} counters: when it overflows, it is cut down to its strongest
+ * half, which keeps memory bounded while frequent co-purchases survive. Lookups only read the precomputed top-K array.
+ */
+public class CoPurchaseModel {
+
+    private static final int SNAPSHOT_MAGIC = 0x42435031; // "BCP1"
+
+    private final int topK;
+    private final int maxCountersPerBook;
+
+    private final LongObjectHashMap<LongIntHashMap> counters = new LongObjectHashMap<>();
+    private final LongObjectHashMap<long[]> related = new LongObjectHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public CoPurchaseModel(int topK, int maxCountersPerBook) {
+        this.topK = topK;
+        this.maxCountersPerBook = Math.max(maxCountersPerBook, 2 * topK);
+    }
+
+    /**
+     * Count every pair of distinct books of one order.
+     *
+     * @param bookIds the ids of the books of the order, duplicates allowed.
+     */
+    public void addBasket(long[] bookIds) {
+        long[] basket = distinct(bookIds);
+        if (basket.length < 2) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < basket.length; i++) {
+                for (int j = i + 1; j < basket.length; j++) {
+                    increment(basket[i], basket[j]);
+                    increment(basket[j], basket[i]);
+                }
+            }
+            for (long bookId : basket) {
+                refresh(bookId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the books most often bought together with a book.
+     *
+     * @param bookId the id of the book.
+     * @param limit the maximum number of ids to return.
+     * @return the ids of the related books, most frequent first.
+     */
+    public long[] related(long bookId, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] ids = related.get(bookId);
+            if (ids == null) {
+                return new long[0];
+            }
+            return Arrays.copyOf(ids, Math.min(limit, ids.length));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of books with at least one co-purchase.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return counters.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void increment(long bookId, long otherId) {
+        LongIntHashMap bookCounters = counters.get(bookId);
+        if (bookCounters == null) {
+            bookCounters = new LongIntHashMap();
+            counters.put(bookId, bookCounters);
+        }
+        bookCounters.addTo(otherId, 1);
+        if (bookCounters.size() > maxCountersPerBook) {
+            prune(bookCounters, maxCountersPerBook / 2, otherId);
+        }
+    }
+
+    /**
+     * Keep exactly the {@code keep} strongest counters. Among the counters tied with the weakest one kept, the counter
+     * just incremented is kept first, then the lowest ids, as in {@link #top(LongIntHashMap, int)}.
+     */
+    static void prune(LongIntHashMap bookCounters, int keep, long justCounted) {
+        if (bookCounters.size() <= keep) {
+            return;
+        }
+        int[] counts = bookCounters.values().toArray();
+        Arrays.sort(counts);
+        int threshold = counts[counts.length - keep];
+        int slots = keep;
+        for (int i = counts.length - 1; i >= 0 && counts[i] > threshold; i--) {
+            slots--;
+        }
+        if (bookCounters.getOrDefault(justCounted, 0) == threshold) {
+            slots--;
+        }
+        LongArrayList tied = new LongArrayList();
+        for (LongIntCursor cursor : bookCounters) {
+            if (cursor.value == threshold && cursor.key != justCounted) {
+                tied.add(cursor.key);
+            }
+        }
+        long[] tiedIds = tied.toArray();
+        Arrays.sort(tiedIds);
+        for (int i = slots; i < tiedIds.length; i++) {
+            bookCounters.remove(tiedIds[i]);
+        }
+        bookCounters.removeAll((long otherId, int count) -> count < threshold);
+    }
+
+    private void refresh(long bookId) {
+        LongIntHashMap bookCounters = counters.get(bookId);
+        if (bookCounters == null || bookCounters.isEmpty()) {
+            related.remove(bookId);
+            return;
+        }
+        related.put(bookId, top(bookCounters, topK));
+    }
+
+    static long[] top(LongIntHashMap bookCounters, int k) {
+        // insertion into a small sorted window: K is tiny compared to the number of counters
+        int size = Math.min(k, bookCounters.size());
+        long[] ids = new long[size];
+        int[] counts = new int[size];
+        int filled = 0;
+        for (LongIntCursor cursor : bookCounters) {
+            int pos = filled;
+            while (pos > 0 && ranksBefore(cursor.value, cursor.key, counts[pos - 1], ids[pos - 1])) {
+                pos--;
+            }
+            if (pos >= size) {
+                continue;
+            }
+            int shifted = Math.min(filled, size - 1) - pos;
+            System.arraycopy(ids, pos, ids, pos + 1, shifted);
+            System.arraycopy(counts, pos, counts, pos + 1, shifted);
+            ids[pos] = cursor.key;
+            counts[pos] = cursor.value;
+            if (filled < size) {
+                filled++;
+            }
+        }
+        return ids;
+    }
+
+    private static boolean ranksBefore(int count, long id, int otherCount, long otherId) {
+        return count > otherCount || (count == otherCount && id < otherId);
+    }
+
+    static long[] distinct(long[] bookIds) {
+        long[] sorted = bookIds.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+
+    /**
+     * Write the counters in a compact binary form; the top-K lists are recomputed when reading.
+     *
+     * @param out the output to write to.
+     * @throws IOException if the output cannot be written.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(counters.size());
+            for (LongObjectCursor<LongIntHashMap> book : counters) {
+                out.writeLong(book.key);
+                out.writeInt(book.value.size());
+                for (LongIntCursor counter : book.value) {
+                    out.writeLong(counter.key);
+                    out.writeInt(counter.value);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read a model written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from.
+     * @param topK the number of related books kept per book.
+     * @param maxCountersPerBook the maximum number of counters per book.
+     * @return the model.
+     * @throws IOException if the input cannot be read or is not a snapshot.
+     */
+    public static CoPurchaseModel readFrom(DataInput in, int topK, int maxCountersPerBook) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a co-purchase snapshot");
+        }
+        CoPurchaseModel model = new CoPurchaseModel(topK, maxCountersPerBook);
+        int books = in.readInt();
+        for (int b = 0; b < books; b++) {
+            long bookId = in.readLong();
+            int size = in.readInt();
+            LongIntHashMap bookCounters = new LongIntHashMap(size);
+            for (int c = 0; c < size; c++) {
+                bookCounters.put(in.readLong(), in.readInt());
+            }
+            if (bookCounters.size() > model.maxCountersPerBook) {
+                prune(bookCounters, model.maxCountersPerBook / 2, Long.MIN_VALUE);
+            }
+            model.counters.put(bookId, bookCounters);
+            model.refresh(bookId);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,318 @@
+package com.stoecklin.bookstore.service;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.OrderItem;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Array;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service keeping the {@link CoPurchaseModel} up to date.
+ * <p>
+ * Placed orders are added to the model once their transaction commits. The model is snapshotted to disk periodically
+ * and on shutdown, and restored on startup; without a snapshot, or with one older than
+ * {@code application.recommendation.max-snapshot-age}, it is rebuilt from the order history in the background. Orders
+ * placed while the model is restored are kept aside and added to the restored model. Orders placed while a rebuild reads
+ * the history are kept aside and added to the rebuilt model, unless the history it read already had them. No snapshot
+ * is written before the model is loaded, so that the one on disk is never replaced by a partial model.
+ */
+@Service
+public class CoPurchaseService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoPurchaseService.class);
+
+    private static final int REBUILD_FETCH_SIZE = 5000;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ApplicationProperties.Recommendation properties;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final Object basketLock = new Object();
+
+    private volatile CoPurchaseModel model;
+
+    private volatile boolean loaded;
+
+    /**
+     * The orders added since the current load started, {@code null} when the model is neither being restored nor
+     * rebuilt. Guarded by {@link #basketLock}.
+     */
+    private List<Basket> addedDuringLoad;
+
+    private record Basket(long orderId, long[] bookIds) {}
+
+    public CoPurchaseService(DataSource dataSource, PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(REBUILD_FETCH_SIZE);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        // one snapshot for the history and for checking which orders it has
+        this.readOnlyTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.properties = applicationProperties.getRecommendation();
+        this.model = newModel();
+        // until the model is loaded on startup
+        this.addedDuringLoad = new ArrayList<>();
+    }
+
+    /**
+     * Get the ids of the books most often bought together with a book.
+     *
+     * @param bookId the id of the book.
+     * @param limit the maximum number of ids.
+     * @return the ids, most frequent first.
+     */
+    public long[] findRelatedBookIds(long bookId, int limit) {
+        return model.related(bookId, Math.min(limit, properties.getTopK()));
+    }
+
+    /**
+     * Add a placed order to the model, once the current transaction (if any) has committed.
+     *
+     * @param order the placed order, with its items.
+     */
+    public void recordOrder(Order order) {
+        long[] basket = order
+            .getItems()
+            .stream()
+            .map(OrderItem::getBook)
+            .filter(book -> book != null && book.getId() != null)
+            .mapToLong(book -> book.getId())
+            .toArray();
+        if (basket.length < 2 || basket.length > properties.getMaxBasketSize()) {
+            return;
+        }
+        Basket placed = new Basket(order.getId(), basket);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        addBasket(placed);
+                    }
+                }
+            );
+        } else {
+            addBasket(placed);
+        }
+    }
+
+    private void addBasket(Basket basket) {
+        synchronized (basketLock) {
+            model.addBasket(basket.bookIds());
+            if (addedDuringLoad != null) {
+                addedDuringLoad.add(basket);
+            }
+        }
+        dirty.set(true);
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        Optional<Instant> snapshotTime = restoreSnapshot();
+        boolean stale = snapshotTime.map(time -> time.isBefore(Instant.now().minus(properties.getMaxSnapshotAge()))).orElse(true);
+        if (stale && properties.isRebuildOnStartup()) {
+            snapshotTime.ifPresent(time -> LOG.info("The co-purchase snapshot was written at {}, rebuilding the model", time));
+            rebuild();
+            return;
+        }
+        synchronized (basketLock) {
+            addedDuringLoad = null;
+        }
+        loaded = true;
+    }
+
+    /**
+     * Rebuild the model from the whole order history, live and archived, then swap it in.
+     *
+     * @return the number of books in the new model.
+     */
+    public synchronized int rebuild() {
+        LOG.info("Rebuilding the co-purchase model from the order history");
+        long start = System.nanoTime();
+        CoPurchaseModel rebuilt = newModel();
+        LongArrayList basket = new LongArrayList();
+        long[] currentOrder = { Long.MIN_VALUE };
+        synchronized (basketLock) {
+            // from before the history is read, so that no order committed meanwhile is missed
+            addedDuringLoad = new ArrayList<>();
+        }
+        try {
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                streamingJdbcTemplate.query(
+                    "SELECT order_id, book_id FROM (" +
+                    "SELECT order_id, book_id FROM order_item WHERE book_id IS NOT NULL " +
+                    "UNION ALL SELECT order_id, book_id FROM order_item_archive WHERE book_id IS NOT NULL" +
+                    ") items ORDER BY order_id",
+                    rs -> {
+                        long orderId = rs.getLong(1);
+                        if (orderId != currentOrder[0]) {
+                            addBasket(rebuilt, basket);
+                            basket.clear();
+                            currentOrder[0] = orderId;
+                        }
+                        basket.add(rs.getLong(2));
+                    }
+                );
+                addBasket(rebuilt, basket);
+                synchronized (basketLock) {
+                    int replayed = replayMissedOrders(rebuilt);
+                    model = rebuilt;
+                    LOG.debug("Added {} orders placed during the rebuild to the co-purchase model", replayed);
+                }
+            });
+        } finally {
+            synchronized (basketLock) {
+                addedDuringLoad = null;
+            }
+            loaded = true;
+        }
+        dirty.set(true);
+        snapshot();
+        LOG.info("Rebuilt the co-purchase model for {} books in {} ms", rebuilt.size(), (System.nanoTime() - start) / 1_000_000);
+        return rebuilt.size();
+    }
+
+    /**
+     * Add the orders placed during the rebuild that the history it read did not have, in the transaction that read it.
+     * Called with the basket lock held, so that no order is added to the old model once this has run.
+     *
+     * @return the number of orders added.
+     */
+    private int replayMissedOrders(CoPurchaseModel rebuilt) {
+        if (addedDuringLoad.isEmpty()) {
+            return 0;
+        }
+        Long[] orderIds = addedDuringLoad.stream().map(Basket::orderId).toArray(Long[]::new);
+        LongHashSet read = new LongHashSet();
+        streamingJdbcTemplate.query(
+            "SELECT order_id FROM order_item WHERE order_id = ANY (?) UNION SELECT order_id FROM order_item_archive WHERE order_id = ANY (?)",
+            ps -> {
+                Array ids = ps.getConnection().createArrayOf("bigint", orderIds);
+                ps.setArray(1, ids);
+                ps.setArray(2, ids);
+            },
+            rs -> {
+                read.add(rs.getLong(1));
+            }
+        );
+        int replayed = 0;
+        for (Basket missed : addedDuringLoad) {
+            if (!read.contains(missed.orderId())) {
+                rebuilt.addBasket(missed.bookIds());
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    private void addBasket(CoPurchaseModel target, LongArrayList basket) {
+        if (basket.size() >= 2 && basket.size() <= properties.getMaxBasketSize()) {
+            target.addBasket(basket.toArray());
+        }
+    }
+
+    @Scheduled(
+        fixedDelayString = "${application.recommendation.snapshot-interval:10m}",
+        initialDelayString = "${application.recommendation.snapshot-interval:10m}"
+    )
+    public void scheduledSnapshot() {
+        snapshot();
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshot();
+    }
+
+    /**
+     * Write the model to the snapshot file if it changed since the last snapshot. The file is replaced atomically, so a
+     * crash while writing never leaves a truncated snapshot behind.
+     */
+    public void snapshot() {
+        if (!loaded || !dirty.getAndSet(false)) {
+            return;
+        }
+        Path file = Path.of(properties.getSnapshotFile());
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                model.writeTo(new DataOutputStream(out));
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.debug("Wrote the co-purchase snapshot to {}", file);
+        } catch (IOException e) {
+            dirty.set(true);
+            LOG.warn("Failed to write the co-purchase snapshot to {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Swap in the model of the snapshot file, with the orders placed since startup added to it.
+     *
+     * @return when the snapshot was written, empty if there is no readable snapshot.
+     */
+    private Optional<Instant> restoreSnapshot() {
+        Path file = Path.of(properties.getSnapshotFile());
+        if (!Files.isReadable(file)) {
+            return Optional.empty();
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            Instant written = Files.getLastModifiedTime(file).toInstant();
+            CoPurchaseModel restored = CoPurchaseModel.readFrom(
+                new DataInputStream(in),
+                properties.getTopK(),
+                properties.getMaxCountersPerBook()
+            );
+            int replayed;
+            synchronized (basketLock) {
+                replayed = addedDuringLoad.size();
+                addedDuringLoad.forEach(basket -> restored.addBasket(basket.bookIds()));
+                addedDuringLoad.clear();
+                model = restored;
+            }
+            LOG.info("Restored the co-purchase model for {} books from {}, plus {} orders placed since startup", restored.size(), file, replayed);
+            return Optional.of(written);
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable co-purchase snapshot {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private CoPurchaseModel newModel() {
+        return new CoPurchaseModel(properties.getTopK(), properties.getMaxCountersPerBook());
+    }
+}
@@ -0,0 +1,219 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.repository.BookRepository;
+import com.stoecklin.bookstore.repository.CartItemRepository;
+import com.stoecklin.bookstore.repository.OrderRepository;
+import com.stoecklin.bookstore.repository.ReviewRepository;
+import com.stoecklin.bookstore.repository.UserRepository;
+import com.stoecklin.bookstore.repository.search.BookSearchRepository;
+import com.stoecklin.bookstore.repository.search.OrderSearchRepository;
+import com.stoecklin.bookstore.repository.search.ReviewSearchRepository;
+import com.stoecklin.bookstore.repository.search.UserSearchRepository;
+import com.stoecklin.bookstore.service.event.BookChanged;
+import com.stoecklin.bookstore.service.event.OrderChanged;
+import com.stoecklin.bookstore.service.event.OrderPlaced;
+import com.stoecklin.bookstore.service.event.ReviewCreated;
+import com.stoecklin.bookstore.service.event.UserRegistered;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the side effects of domain events once the transaction that published them has committed: nothing happens for a
+ * transaction that rolls back, and the request that caused the event does not wait for them.
+ * <p>
+ * Handlers run on the bounded {@code domainEventExecutor}. Each side effect runs in its own read-write transaction, so
+ * that it reads the committed state from the primary database, and is retried with exponential backoff; a side effect
+ * that still fails is logged and does not prevent the others from running. Search documents that drift this way are
+ * repaired by the reindex endpoints.
+ * <p>
+ * Changes to single fields, such as the stock after an order, the average rating after a review or the fields of a
+ * partial update, only update these fields of the search documents rather than reindexing the whole books or orders.
+ */
+@Service
+public class DomainEventHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DomainEventHandler.class);
+
+    private static final Set<String> STOCK = Set.of("stock");
+    private static final Set<String> AVERAGE_RATING = Set.of("averageRating");
+    private static final Set<String> PUSHED = Set.of("stock", "price");
+
+    private final OrderRepository orderRepository;
+    private final OrderSearchRepository orderSearchRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ReviewRepository reviewRepository;
+    private final ReviewSearchRepository reviewSearchRepository;
+    private final ReviewService reviewService;
+    private final BookRepository bookRepository;
+    private final BookSearchRepository bookSearchRepository;
+    private final BookInventoryService bookInventoryService;
+    private final UserRepository userRepository;
+    private final UserSearchRepository userSearchRepository;
+    private final BookChangeNotifications bookChangeNotifications;
+    private final CategoryBookCountService categoryBookCountService;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+
+    public DomainEventHandler(
+        OrderRepository orderRepository,
+        OrderSearchRepository orderSearchRepository,
+        CartItemRepository cartItemRepository,
+        ReviewRepository reviewRepository,
+        ReviewSearchRepository reviewSearchRepository,
+        ReviewService reviewService,
+        BookRepository bookRepository,
+        BookSearchRepository bookSearchRepository,
+        BookInventoryService bookInventoryService,
+        UserRepository userRepository,
+        UserSearchRepository userSearchRepository,
+        BookChangeNotifications bookChangeNotifications,
+        CategoryBookCountService categoryBookCountService,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.orderRepository = orderRepository;
+        this.orderSearchRepository = orderSearchRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.reviewRepository = reviewRepository;
+        this.reviewSearchRepository = reviewSearchRepository;
+        this.reviewService = reviewService;
+        this.bookRepository = bookRepository;
+        this.bookSearchRepository = bookSearchRepository;
+        this.bookInventoryService = bookInventoryService;
+        this.userRepository = userRepository;
+        this.userSearchRepository = userSearchRepository;
+        this.bookChangeNotifications = bookChangeNotifications;
+        this.categoryBookCountService = categoryBookCountService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = Math.max(1, applicationProperties.getDomainEvents().getMaxAttempts());
+        this.initialBackoff = applicationProperties.getDomainEvents().getInitialBackoff();
+    }
+
+    @Async("domainEventExecutor")
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlaced event) {
+        LOG.debug("Handling {}", event);
+        runWithRetries("index order " + event.orderId(), () ->
+            orderRepository.findByIdWithItemsAndBooks(event.orderId()).ifPresent(orderSearchRepository::index)
+        );
+        if (event.shoppingCartId() != null) {
+            runWithRetries("clear items of checked out cart " + event.shoppingCartId(), () ->
+                cartItemRepository.deleteByCartId(event.shoppingCartId())
+            );
+        }
+        runWithRetries("update stock of ordered books " + event.bookIds(), () ->
+            bookSearchRepository.update(bookInventoryService.attach(bookRepository.findAllById(event.bookIds())), STOCK)
+        );
+        runWithRetries("push stock of ordered books " + event.bookIds(), () -> bookChangeNotifications.notifyChanged(event.bookIds()));
+    }
+
+    @Async("domainEventExecutor")
+    @TransactionalEventListener
+    public void onOrderChanged(OrderChanged event) {
+        LOG.debug("Handling {}", event);
+        runWithRetries("update order " + event.orderId(), () ->
+            orderRepository.findById(event.orderId()).ifPresent(order -> orderSearchRepository.update(order, event.changedFields()))
+        );
+    }
+
+    @Async("domainEventExecutor")
+    @TransactionalEventListener
+    public void onReviewCreated(ReviewCreated event) {
+        LOG.debug("Handling {}", event);
+        runWithRetries("index review " + event.reviewId(), () ->
+            reviewRepository.findOneWithEagerRelationships(event.reviewId()).ifPresent(reviewSearchRepository::index)
+        );
+        if (event.bookId() != null) {
+            boolean recalculated = runWithRetries("recalculate average rating of book " + event.bookId(), () ->
+                reviewService.recalculateBookAverageRating(event.bookId())
+            );
+            if (recalculated) {
+                runWithRetries("update average rating of book " + event.bookId(), () ->
+                    bookSearchRepository.update(
+                        bookInventoryService.attach(bookRepository.findAllById(List.of(event.bookId()))),
+                        AVERAGE_RATING
+                    )
+                );
+            }
+        }
+    }
+
+    @Async("domainEventExecutor")
+    @TransactionalEventListener
+    public void onBookChanged(BookChanged event) {
+        LOG.debug("Handling {}", event);
+        runWithRetries("index book " + event.bookId(), () -> {
+            if (event.deleted()) {
+                bookSearchRepository.deleteFromIndexById(event.bookId());
+            } else if (event.changedFields().isEmpty()) {
+                bookRepository
+                    .findOneWithEagerRelationships(event.bookId())
+                    .map(bookInventoryService::attach)
+                    .ifPresentOrElse(bookSearchRepository::index, () -> bookSearchRepository.deleteFromIndexById(event.bookId()));
+            } else {
+                bookSearchRepository.update(
+                    bookInventoryService.attach(bookRepository.findAllById(List.of(event.bookId()))),
+                    event.changedFields()
+                );
+            }
+        });
+        if (!event.deleted() && (event.changedFields().isEmpty() || event.changedFields().stream().anyMatch(PUSHED::contains))) {
+            runWithRetries("push stock and price of book " + event.bookId(), () -> bookChangeNotifications.notifyChanged(List.of(event.bookId())));
+        }
+        if (!event.categoryIds().isEmpty()) {
+            runWithRetries("recount books of categories " + event.categoryIds(), () ->
+                categoryBookCountService.recount(event.categoryIds())
+            );
+        }
+    }
+
+    @Async("domainEventExecutor")
+    @TransactionalEventListener
+    public void onUserRegistered(UserRegistered event) {
+        LOG.debug("Handling {}", event);
+        runWithRetries("index user " + event.login(), () ->
+            userRepository.findOneWithAuthoritiesByLogin(event.login()).ifPresent(userSearchRepository::save)
+        );
+    }
+
+    /**
+     * Run a side effect in a new transaction, retrying with exponential backoff.
+     *
+     * @return whether the side effect eventually succeeded.
+     */
+    boolean runWithRetries(String description, Runnable sideEffect) {
+        long backoff = initialBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> sideEffect.run());
+                return true;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    LOG.error("Failed to {} after {} attempts", description, attempt, e);
+                    return false;
+                }
+                LOG.warn("Failed to {} (attempt {} of {}), retrying in {} ms: {}", description, attempt, maxAttempts, backoff, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("Interrupted while waiting to retry: {}", description);
+                return false;
+            }
+            backoff *= 2;
+        }
+    }
+}
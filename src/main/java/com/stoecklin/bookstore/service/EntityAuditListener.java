@@ -0,0 +1,128 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.BookInventory;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.Review;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.Set;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands the changes of audited fields to the {@link EntityAuditService} once their transaction has committed, so that
+ * rolled back changes never reach the audit trail. Only the entities and fields listed here are audited; the stock of
+ * a book, kept in {@link BookInventory}, is audited as a field of the book.
+ */
+@Component
+class EntityAuditListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private record Audited(String entityType, Set<String> fields) {}
+
+    private static final Map<Class<?>, Audited> AUDITED = Map.of(
+        Book.class,
+        new Audited("Book", Set.of("price")),
+        BookInventory.class,
+        new Audited("Book", Set.of("stock")),
+        Order.class,
+        new Audited("Order", Set.of("status")),
+        Review.class,
+        new Audited("Review", Set.of("rating", "comment"))
+    );
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final EntityAuditService entityAuditService;
+
+    EntityAuditListener(EntityManagerFactory entityManagerFactory, EntityAuditService entityAuditService) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.entityAuditService = entityAuditService;
+    }
+
+    @PostConstruct
+    void register() {
+        if (!entityAuditService.isEnabled()) {
+            return;
+        }
+        EventListenerRegistry registry = entityManagerFactory
+            .unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry()
+            .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return AUDITED.containsKey(persister.getMappedClass());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Audited audited = AUDITED.get(event.getPersister().getMappedClass());
+        if (audited == null) {
+            return;
+        }
+        String[] names = event.getPersister().getPropertyNames();
+        for (int i = 0; i < names.length; i++) {
+            if (audited.fields().contains(names[i])) {
+                entityAuditService.record(audited.entityType(), (Long) event.getId(), names[i], null, event.getState()[i]);
+            }
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Audited audited = AUDITED.get(event.getPersister().getMappedClass());
+        if (audited == null || event.getOldState() == null) {
+            // without the loaded state, e.g. for an entity reattached with update(), the old values are unknown
+            return;
+        }
+        String[] names = event.getPersister().getPropertyNames();
+        for (int i = 0; i < names.length; i++) {
+            if (audited.fields().contains(names[i])) {
+                entityAuditService.record(audited.entityType(), (Long) event.getId(), names[i], event.getOldState()[i], event.getState()[i]);
+            }
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Audited audited = AUDITED.get(event.getPersister().getMappedClass());
+        if (audited == null) {
+            return;
+        }
+        String[] names = event.getPersister().getPropertyNames();
+        for (int i = 0; i < names.length; i++) {
+            if (audited.fields().contains(names[i])) {
+                entityAuditService.record(audited.entityType(), (Long) event.getId(), names[i], event.getDeletedState()[i], null);
+            }
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // nothing was committed, nothing to audit
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // nothing was committed, nothing to audit
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // nothing was committed, nothing to audit
+    }
+}
@@ -0,0 +1,257 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.config.Constants;
+import com.stoecklin.bookstore.management.EntityAuditMetersService;
+import com.stoecklin.bookstore.security.SecurityUtils;
+import com.stoecklin.bookstore.service.dto.EntityChangeDTO;
+import jakarta.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service for the audit trail of entity changes, kept in the append-only {@code entity_audit} table.
+ * <p>
+ * Committed changes are put in a {@link ChangeRingBuffer} by the thread that made them, which costs no database
+ * round trip, and written in JDBC batches by a background writer: every {@code application.audit.flush-interval}, or
+ * as soon as a batch is full. Each batch is committed in a transaction of its own; one that fails to be written or
+ * committed is retried at the next flush. When the buffer is full,
+ * changes are dropped rather than slowing down requests; the {@code audit.changes} metric counts them.
+ */
+@Service
+public class EntityAuditService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntityAuditService.class);
+
+    private static final int MAX_VALUE_LENGTH = 255;
+
+    private static final String INSERT =
+        "INSERT INTO entity_audit (entity_type, entity_id, field, old_value, new_value, changed_by, changed_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final RowMapper<EntityChangeDTO> CHANGE_MAPPER = EntityAuditService::toChange;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityAuditMetersService meters;
+    private final ApplicationProperties.Audit properties;
+    private final ChangeRingBuffer<EntityChangeDTO> buffer;
+    private final List<EntityChangeDTO> pending = new ArrayList<>();
+
+    private volatile Thread writer;
+    private volatile boolean running;
+
+    public EntityAuditService(
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        EntityAuditMetersService meters,
+        ApplicationProperties applicationProperties
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meters = meters;
+        this.properties = applicationProperties.getAudit();
+        this.buffer = new ChangeRingBuffer<>(properties.getBufferCapacity());
+        meters.registerBuffer(buffer::size, buffer.capacity());
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Buffer the committed change of a field. Never blocks: the change is dropped if the buffer is full.
+     *
+     * @param entityType the kind of entity, e.g. {@code Book}.
+     * @param entityId the id of the entity.
+     * @param field the changed field.
+     * @param oldValue the value before the change, {@code null} when the entity was created.
+     * @param newValue the value after the change, {@code null} when the entity was deleted.
+     */
+    public void record(String entityType, Long entityId, String field, Object oldValue, Object newValue) {
+        if (!isEnabled() || entityId == null) {
+            return;
+        }
+        String oldText = format(oldValue);
+        String newText = format(newValue);
+        if (Objects.equals(oldText, newText)) {
+            return;
+        }
+        EntityChangeDTO change = new EntityChangeDTO(
+            null,
+            entityType,
+            entityId,
+            field,
+            oldText,
+            newText,
+            SecurityUtils.getCurrentUserLogin().orElse(Constants.SYSTEM),
+            Instant.now()
+        );
+        if (!buffer.offer(change)) {
+            meters.trackDropped();
+            return;
+        }
+        meters.trackBuffered();
+        if (buffer.size() >= properties.getBatchSize()) {
+            Thread current = writer;
+            if (current != null) {
+                LockSupport.unpark(current);
+            }
+        }
+    }
+
+    /**
+     * Like {@link #record(String, Long, String, Object, Object)}, once the current transaction commits, for changes
+     * made by bulk updates that Hibernate does not see.
+     */
+    public void recordAfterCommit(String entityType, Long entityId, String field, Object oldValue, Object newValue) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        record(entityType, entityId, field, oldValue, newValue);
+                    }
+                }
+            );
+        } else {
+            record(entityType, entityId, field, oldValue, newValue);
+        }
+    }
+
+    /**
+     * Get the changes of an entity, the latest first. Changes still in the buffer are not included.
+     *
+     * @param entityType the kind of entity.
+     * @param entityId the id of the entity.
+     * @param before only the changes older than this one, to get the next page; {@code null} for the latest.
+     * @param size the maximum number of changes.
+     * @return the changes.
+     */
+    public List<EntityChangeDTO> findChanges(String entityType, Long entityId, Long before, int size) {
+        return jdbcTemplate.query(
+            "SELECT id, entity_type, entity_id, field, old_value, new_value, changed_by, changed_at FROM entity_audit " +
+            "WHERE entity_type = ? AND entity_id = ? AND id < ? ORDER BY id DESC LIMIT ?",
+            CHANGE_MAPPER,
+            entityType,
+            entityId,
+            before == null ? Long.MAX_VALUE : before,
+            size
+        );
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::write, "audit-writer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        Thread current = writer;
+        if (current != null) {
+            LockSupport.unpark(current);
+            current.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void write() {
+        long interval = properties.getFlushInterval().toNanos();
+        while (running) {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                LOG.error("Audit writer failed", e);
+            }
+            LockSupport.parkNanos(this, interval);
+        }
+        // the last changes before shutdown
+        flush();
+    }
+
+    /**
+     * Write the buffered changes, in batches, until the buffer is empty or a batch fails.
+     */
+    synchronized void flush() {
+        while (true) {
+            if (pending.isEmpty() && buffer.drainTo(pending, Math.max(1, properties.getBatchSize())) == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT, pending, pending.size(), (ps, change) -> {
+                        ps.setString(1, change.entityType());
+                        ps.setLong(2, change.entityId());
+                        ps.setString(3, change.field());
+                        ps.setString(4, change.oldValue());
+                        ps.setString(5, change.newValue());
+                        ps.setString(6, change.changedBy());
+                        ps.setObject(7, LocalDateTime.ofInstant(change.changedAt(), ZoneOffset.UTC));
+                    })
+                );
+            } catch (DataAccessException | TransactionException e) {
+                meters.trackWriteFailed(System.nanoTime() - start);
+                LOG.warn("Failed to write {} changes to the audit trail, will retry: {}", pending.size(), e.getMessage());
+                return;
+            }
+            meters.trackWritten(pending.size(), System.nanoTime() - start);
+            pending.clear();
+        }
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value instanceof BigDecimal decimal ? decimal.stripTrailingZeros().toPlainString() : value.toString();
+        return text.length() <= MAX_VALUE_LENGTH ? text : text.substring(0, MAX_VALUE_LENGTH);
+    }
+
+    private static EntityChangeDTO toChange(ResultSet rs, int rowNum) throws SQLException {
+        return new EntityChangeDTO(
+            rs.getLong("id"),
+            rs.getString("entity_type"),
+            rs.getLong("entity_id"),
+            rs.getString("field"),
+            rs.getString("old_value"),
+            rs.getString("new_value"),
+            rs.getString("changed_by"),
+            rs.getObject("changed_at", LocalDateTime.class).toInstant(ZoneOffset.UTC)
+        );
+    }
+}
@@ -0,0 +1,184 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.OrderItem;
+import com.stoecklin.bookstore.domain.enumeration.OrderStatus;
+import com.stoecklin.bookstore.repository.search.OrderSearchRepository;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.hibernate.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves {@link OrderStatus#COMPLETED} and {@link OrderStatus#CANCELLED} orders older than the configured retention out of
+ * {@code jhi_order}/{@code order_item} into the month-partitioned {@code jhi_order_archive}/{@code order_item_archive} tables.
+ * <p>
+ * Keeping only live orders in the hot tables means admin listings, user history and search reindexing stay the same size
+ * however long the order history grows. Each batch runs in its own transaction so a long backlog never holds locks for long.
+ */
+@Service
+public class OrderArchiveService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OrderArchiveService.class);
+
+    private static final List<String> ARCHIVABLE_STATUSES = List.of(OrderStatus.COMPLETED.name(), OrderStatus.CANCELLED.name());
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final OrderSearchRepository orderSearchRepository;
+    private final ApplicationProperties.OrderArchive properties;
+    private final Clock clock;
+
+    public OrderArchiveService(
+        NamedParameterJdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        EntityManagerFactory entityManagerFactory,
+        OrderSearchRepository orderSearchRepository,
+        ApplicationProperties applicationProperties
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManagerFactory = entityManagerFactory;
+        this.orderSearchRepository = orderSearchRepository;
+        this.properties = applicationProperties.getOrderArchive();
+        this.clock = Clock.systemUTC();
+    }
+
+    @Scheduled(cron = "${application.order-archive.cron:0 30 3 * * *}")
+    public void scheduledArchive() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        archiveOrders();
+    }
+
+    /**
+     * Archive every eligible order, batch by batch.
+     *
+     * @return the number of archived orders.
+     */
+    public int archiveOrders() {
+        LocalDateTime cutoff = archiveCutoff(LocalDateTime.now(clock), properties.getRetentionMonths());
+        LOG.info("Archiving completed and cancelled orders placed before {}", cutoff);
+        int total = 0;
+        int archived;
+        do {
+            archived = archiveBatch(cutoff, properties.getBatchSize());
+            total += archived;
+        } while (archived == properties.getBatchSize());
+        LOG.info("Archived {} orders", total);
+        return total;
+    }
+
+    private int archiveBatch(LocalDateTime cutoff, int batchSize) {
+        List<Long> archivedIds = transactionTemplate.execute(status -> moveBatch(cutoff, batchSize));
+        if (archivedIds == null || archivedIds.isEmpty()) {
+            return 0;
+        }
+        Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        archivedIds.forEach(id -> {
+            cache.evictEntityData(Order.class, id);
+            cache.evictCollectionData(Order.class.getName() + ".items", id);
+        });
+        cache.evictEntityData(OrderItem.class);
+        try {
+            orderSearchRepository.deleteAllById(archivedIds);
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to remove archived orders from the search index: {}", e.getMessage());
+        }
+        return archivedIds.size();
+    }
+
+    private List<Long> moveBatch(LocalDateTime cutoff, int batchSize) {
+        MapSqlParameterSource candidatesParams = new MapSqlParameterSource()
+            .addValue("statuses", ARCHIVABLE_STATUSES)
+            .addValue("cutoff", cutoff)
+            .addValue("limit", batchSize);
+        List<Map<String, Object>> candidates = jdbcTemplate.queryForList(
+            "SELECT id, placed_at FROM jhi_order WHERE status IN (:statuses) AND placed_at < :cutoff " +
+            "ORDER BY placed_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+            candidatesParams
+        );
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        SortedSet<YearMonth> months = new TreeSet<>();
+        List<Long> ids = candidates
+            .stream()
+            .map(row -> {
+                months.add(YearMonth.from(toLocalDateTime(row.get("placed_at"))));
+                return ((Number) row.get("id")).longValue();
+            })
+            .toList();
+        months.forEach(this::ensurePartitions);
+
+        MapSqlParameterSource idParams = new MapSqlParameterSource("ids", ids);
+        jdbcTemplate.update(
+            "INSERT INTO order_item_archive (id, quantity, price, book_id, category_id, order_id, order_placed_at) " +
+            "SELECT oi.id, oi.quantity, oi.price, oi.book_id, oi.category_id, oi.order_id, o.placed_at " +
+            "FROM order_item oi JOIN jhi_order o ON o.id = oi.order_id WHERE o.id IN (:ids)",
+            idParams
+        );
+        jdbcTemplate.update(
+            "INSERT INTO jhi_order_archive (id, total_price, placed_at, status, user_id, archived_at) " +
+            "SELECT id, total_price, placed_at, status, user_id, now() FROM jhi_order WHERE id IN (:ids)",
+            idParams
+        );
+        jdbcTemplate.update("DELETE FROM order_item WHERE order_id IN (:ids)", idParams);
+        jdbcTemplate.update("DELETE FROM jhi_order WHERE id IN (:ids)", idParams);
+        LOG.debug("Moved {} orders to the archive across {} month(s)", ids.size(), months.size());
+        return ids;
+    }
+
+    private void ensurePartitions(YearMonth month) {
+        String from = month.atDay(1).atStartOfDay().toString();
+        String to = month.plusMonths(1).atDay(1).atStartOfDay().toString();
+        String suffix = partitionSuffix(month);
+        jdbcTemplate.getJdbcTemplate().execute(
+            "CREATE TABLE IF NOT EXISTS jhi_order_archive_" + suffix + " PARTITION OF jhi_order_archive " +
+            "FOR VALUES FROM ('" + from + "') TO ('" + to + "')"
+        );
+        jdbcTemplate.getJdbcTemplate().execute(
+            "CREATE TABLE IF NOT EXISTS order_item_archive_" + suffix + " PARTITION OF order_item_archive " +
+            "FOR VALUES FROM ('" + from + "') TO ('" + to + "')"
+        );
+    }
+
+    static LocalDateTime archiveCutoff(LocalDateTime now, int retentionMonths) {
+        return YearMonth.from(now).minusMonths(retentionMonths).atDay(1).atStartOfDay();
+    }
+
+    static String partitionSuffix(YearMonth month) {
+        return "p" + month.format(PARTITION_SUFFIX);
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof java.sql.Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        if (value instanceof java.time.OffsetDateTime offsetDateTime) {
+            return offsetDateTime.withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+}
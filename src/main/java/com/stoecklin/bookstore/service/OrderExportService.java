@@ -0,0 +1,231 @@
+package com.stoecklin.bookstore.service;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Streams orders and their lines as CSV, one line per order line, straight from a JDBC cursor.
+ * <p>
+ * Rows are read with a bounded fetch size inside a read-only transaction (which PostgreSQL needs to use a cursor) and
+ * written as they arrive, so neither entities nor result lists are ever materialised and memory use does not depend on
+ * the size of the export. Live and archived orders are read by two cursors, each ordered on its own, and merged on
+ * the fly: a sort over both tables would have to read the whole range before returning the first row. An order lives in
+ * exactly one of the tables, so the merged rows are ordered by order id and an interrupted export is resumed by passing
+ * the last order id that was fully received as {@code afterOrderId}.
+ */
+@Service
+public class OrderExportService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OrderExportService.class);
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String HEADER =
+        "order_id,placed_at_utc,status,total_price,customer_login,archived,order_item_id,book_id,book_title,quantity,price";
+
+    private static final String LIVE_QUERY =
+        "SELECT o.id AS order_id, o.placed_at, o.status, o.total_price, u.login, false AS archived, " +
+        "oi.id AS order_item_id, oi.book_id, b.title, oi.quantity, oi.price " +
+        "FROM jhi_order o LEFT JOIN jhi_user u ON u.id = o.user_id LEFT JOIN order_item oi ON oi.order_id = o.id " +
+        "LEFT JOIN book b ON b.id = oi.book_id " +
+        "WHERE o.placed_at >= ? AND o.placed_at < ? AND o.id > ? ORDER BY o.id, oi.id";
+
+    private static final String ARCHIVE_QUERY =
+        "SELECT o.id AS order_id, o.placed_at, o.status, o.total_price, u.login, true AS archived, " +
+        "oi.id AS order_item_id, oi.book_id, b.title, oi.quantity, oi.price " +
+        "FROM jhi_order_archive o LEFT JOIN jhi_user u ON u.id = o.user_id " +
+        "LEFT JOIN order_item_archive oi ON oi.order_id = o.id AND oi.order_placed_at = o.placed_at " +
+        "LEFT JOIN book b ON b.id = oi.book_id " +
+        "WHERE o.placed_at >= ? AND o.placed_at < ? AND o.id > ? ORDER BY o.id, oi.id";
+
+    /**
+     * Compression applied to the exported file.
+     */
+    public enum Compression {
+        NONE(""),
+        GZIP(".gz"),
+        ZSTD(".zst");
+
+        private final String fileExtension;
+
+        Compression(String fileExtension) {
+            this.fileExtension = fileExtension;
+        }
+
+        public String getFileExtension() {
+            return fileExtension;
+        }
+
+        public static Compression fromName(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public OrderExportService(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Write the lines of the orders placed in a date range, live and archived, as CSV.
+     *
+     * @param out where to write the export; it is finished but not closed.
+     * @param from the first day, inclusive.
+     * @param to the last day, inclusive.
+     * @param afterOrderId only export orders with a greater id, to resume an interrupted export.
+     * @param compression the compression to apply.
+     * @return the number of lines written, header excluded.
+     */
+    public long export(OutputStream out, LocalDate from, LocalDate to, long afterOrderId, Compression compression) {
+        LOG.debug("Exporting orders placed from {} to {} after order {}", from, to, afterOrderId);
+        Object[] parameters = { from.atStartOfDay(), to.plusDays(1).atStartOfDay(), afterOrderId };
+        try {
+            OutputStream compressed = compress(out, compression);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(compressed, StandardCharsets.UTF_8), 1 << 16);
+            writer.write(HEADER);
+            writer.write('\n');
+            Long lines = readOnlyTransactionTemplate.execute(status ->
+                jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                    try (
+                        PreparedStatement live = cursor(connection, LIVE_QUERY, parameters);
+                        PreparedStatement archive = cursor(connection, ARCHIVE_QUERY, parameters);
+                        ResultSet liveRows = live.executeQuery();
+                        ResultSet archiveRows = archive.executeQuery()
+                    ) {
+                        return merge(writer, liveRows, archiveRows);
+                    }
+                })
+            );
+            writer.flush();
+            finish(compressed);
+            LOG.debug("Exported {} order lines", lines);
+            return lines == null ? 0 : lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the order export", e);
+        }
+    }
+
+    private static PreparedStatement cursor(Connection connection, String query, Object[] parameters) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(query);
+        statement.setFetchSize(FETCH_SIZE);
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+        return statement;
+    }
+
+    /**
+     * Write the rows of two result sets ordered by order id, interleaving them by order id. The rows of an order all
+     * come from the same result set, so comparing order ids is enough to keep them together.
+     */
+    static long merge(Writer writer, ResultSet first, ResultSet second) throws SQLException {
+        long lines = 0;
+        boolean firstHasRow = first.next();
+        boolean secondHasRow = second.next();
+        while (firstHasRow || secondHasRow) {
+            if (firstHasRow && (!secondHasRow || first.getLong("order_id") <= second.getLong("order_id"))) {
+                writeLine(writer, first);
+                firstHasRow = first.next();
+            } else {
+                writeLine(writer, second);
+                secondHasRow = second.next();
+            }
+            lines++;
+        }
+        return lines;
+    }
+
+    private static OutputStream compress(OutputStream out, Compression compression) throws IOException {
+        return switch (compression) {
+            case NONE -> out;
+            case GZIP -> new GZIPOutputStream(out, 1 << 16);
+            case ZSTD -> new ZstdOutputStream(StreamUtils.nonClosing(out));
+        };
+    }
+
+    private static void finish(OutputStream compressed) throws IOException {
+        if (compressed instanceof GZIPOutputStream gzip) {
+            gzip.finish();
+        } else if (compressed instanceof ZstdOutputStream zstd) {
+            zstd.close(); // writes the frame epilogue, the target stream itself is shielded from close()
+        }
+    }
+
+    private static void writeLine(Writer writer, ResultSet rs) throws SQLException {
+        try {
+            writer.write(Long.toString(rs.getLong("order_id")));
+            writer.write(',');
+            LocalDateTime placedAt = rs.getObject("placed_at", LocalDateTime.class);
+            writer.write(placedAt == null ? "" : placedAt.toString());
+            writer.write(',');
+            writer.write(csv(rs.getString("status")));
+            writer.write(',');
+            writer.write(decimal(rs.getBigDecimal("total_price")));
+            writer.write(',');
+            writer.write(csv(rs.getString("login")));
+            writer.write(',');
+            writer.write(Boolean.toString(rs.getBoolean("archived")));
+            writer.write(',');
+            writer.write(nullableLong(rs, "order_item_id"));
+            writer.write(',');
+            writer.write(nullableLong(rs, "book_id"));
+            writer.write(',');
+            writer.write(csv(rs.getString("title")));
+            writer.write(',');
+            writer.write(nullableLong(rs, "quantity"));
+            writer.write(',');
+            writer.write(decimal(rs.getBigDecimal("price")));
+            writer.write('\n');
+        } catch (IOException e) {
+            // most likely the client went away: abort the query rather than reading the rest of the cursor
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String nullableLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? "" : Long.toString(value);
+    }
+
+    private static String decimal(BigDecimal value) {
+        return value == null ? "" : value.toPlainString();
+    }
+
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -7,20 +7,21 @@ import com.stoecklin.bookstore.domain.OrderItem;
 import com.stoecklin.bookstore.domain.ShoppingCart;
 import com.stoecklin.bookstore.domain.User;
 import com.stoecklin.bookstore.domain.enumeration.OrderStatus;
-import com.stoecklin.bookstore.repository.BookRepository;
-import com.stoecklin.bookstore.repository.CartItemRepository;
 import com.stoecklin.bookstore.repository.OrderRepository;
-import com.stoecklin.bookstore.repository.ShoppingCartRepository;
 import com.stoecklin.bookstore.repository.UserRepository;
-import com.stoecklin.bookstore.repository.search.OrderSearchRepository;
+import com.stoecklin.bookstore.repository.cart.CartStore;
 import com.stoecklin.bookstore.security.SecurityUtils;
+import com.stoecklin.bookstore.service.event.OrderPlaced;
 import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,49 +32,47 @@ public class OrderService {
     private static final Logger LOG = LoggerFactory.getLogger(OrderService.class);
 
     private final OrderRepository orderRepository;
-    private final OrderSearchRepository orderSearchRepository;
-    private final ShoppingCartRepository shoppingCartRepository;
-    private final BookRepository bookRepository;
+    private final CartStore cartStore;
+    private final BookInventoryService bookInventoryService;
     private final UserRepository userRepository;
-    private final CartItemRepository cartItemRepository;
+    private final SalesAnalyticsService salesAnalyticsService;
+    private final CoPurchaseService coPurchaseService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public OrderService(
         OrderRepository orderRepository,
-        OrderSearchRepository orderSearchRepository,
-        ShoppingCartRepository shoppingCartRepository,
-        BookRepository bookRepository,
+        CartStore cartStore,
+        BookInventoryService bookInventoryService,
         UserRepository userRepository,
-        CartItemRepository cartItemRepository
+        SalesAnalyticsService salesAnalyticsService,
+        CoPurchaseService coPurchaseService,
+        ApplicationEventPublisher eventPublisher
     ) {
         this.orderRepository = orderRepository;
-        this.orderSearchRepository = orderSearchRepository;
-        this.shoppingCartRepository = shoppingCartRepository;
-        this.bookRepository = bookRepository;
+        this.cartStore = cartStore;
+        this.bookInventoryService = bookInventoryService;
         this.userRepository = userRepository;
-        this.cartItemRepository = cartItemRepository;
+        this.salesAnalyticsService = salesAnalyticsService;
+        this.coPurchaseService = coPurchaseService;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
      * Place an order from the current user's shopping cart
      */
     public Order placeOrderFromCart() {
-        LOG.debug("Request to place order from shopping cart");
-
-        // Get current user's cart
-        String userLogin = SecurityUtils.getCurrentUserLogin()
-            .orElseThrow(() -> new BadRequestAlertException("User not authenticated", "Order", "notauthenticated"));
-
-        User user = userRepository
-            .findOneByLogin(userLogin)
-            .orElseThrow(() -> new BadRequestAlertException("User not found", "User", "usernotfound"));
+        return placeOrderFromCart(currentUserLogin());
+    }
 
-        ShoppingCart cart = shoppingCartRepository
-            .findByUserAndCompletedWithItems(user.getId(), false)
-            .orElseThrow(() -> new BadRequestAlertException("Shopping cart not found", "ShoppingCart", "notfound"));
+    /**
+     * Place an order from a user's shopping cart. Both checkout modes end up here, so that a queued checkout places
+     * exactly the order a synchronous one would have.
+     */
+    public Order placeOrderFromCart(String userLogin) {
+        LOG.debug("Request to place order from shopping cart of {}", userLogin);
 
-        if (cart.getItems() == null || cart.getItems().isEmpty()) {
-            throw new BadRequestAlertException("Shopping cart is empty", "ShoppingCart", "cartempty");
-        }
+        User user = findUser(userLogin);
+        ShoppingCart cart = findCheckoutCart(user);
 
         // Create new order
         Order order = new Order();
@@ -84,12 +83,14 @@ public class OrderService {
         BigDecimal totalPrice = BigDecimal.ZERO;
         Set<OrderItem> orderItems = new HashSet<>();
 
-        // Convert cart items to order items and update stock
-        for (CartItem cartItem : cart.getItems()) {
+        // Convert cart items to order items and take them out of stock, in book id order so that concurrent orders
+        // lock inventory rows in the same order
+        List<CartItem> cartItems = cart.getItems().stream().sorted(Comparator.comparing(item -> item.getBook().getId())).toList();
+        for (CartItem cartItem : cartItems) {
             Book book = cartItem.getBook();
 
-            // Check stock availability
-            if (book.getStock() < cartItem.getQuantity()) {
+            // Check stock availability and decrement it in one statement
+            if (!bookInventoryService.reserve(book.getId(), cartItem.getQuantity())) {
                 throw new BadRequestAlertException("Insufficient stock for book: " + book.getTitle(), "Book", "insufficientstock");
             }
 
@@ -98,6 +99,7 @@ public class OrderService {
             orderItem.setBook(book);
             orderItem.setQuantity(cartItem.getQuantity());
             orderItem.setPrice(book.getPrice());
+            orderItem.setCategoryId(book.getCategory() != null ? book.getCategory().getId() : null);
             orderItem.setOrder(order);
 
             orderItems.add(orderItem);
@@ -105,10 +107,6 @@ public class OrderService {
             // Calculate total
             BigDecimal itemTotal = book.getPrice().multiply(BigDecimal.valueOf(cartItem.getQuantity()));
             totalPrice = totalPrice.add(itemTotal);
-
-            // Decrement stock
-            book.setStock(book.getStock() - cartItem.getQuantity());
-            bookRepository.save(book);
         }
 
         order.setTotalPrice(totalPrice);
@@ -116,18 +114,60 @@ public class OrderService {
 
         // Save order
         order = orderRepository.save(order);
-        orderSearchRepository.index(order);
+        salesAnalyticsService.recordOrderPlaced(order);
+        coPurchaseService.recordOrder(order);
 
-        // mark cart completed
-        cart.setCompleted(true);
-        shoppingCartRepository.save(cart);
-
-        // optionally, clear old cart items
-        for (CartItem cartItem : cart.getItems()) {
-            cartItemRepository.delete(cartItem);
-        }
+        // close the cart in the same transaction, so that it cannot be checked out twice; indexing the order and
+        // clearing the items of a database cart happen once committed
+        cartStore.checkOut(cart);
+        eventPublisher.publishEvent(
+            new OrderPlaced(order.getId(), cart.getId(), cartItems.stream().map(item -> item.getBook().getId()).distinct().toList())
+        );
 
         LOG.debug("Order placed successfully with ID: {}", order.getId());
         return orderRepository.findByIdWithItemsAndBooks(order.getId()).orElse(order);
     }
+
+    /**
+     * Check that the current user's shopping cart can be checked out, with the same errors as
+     * {@link #placeOrderFromCart()}.
+     *
+     * @return the login of the current user and the ids of the books in the cart.
+     */
+    @Transactional(readOnly = true)
+    public CheckoutCart validateCheckout() {
+        String userLogin = currentUserLogin();
+        ShoppingCart cart = findCheckoutCart(findUser(userLogin));
+        return new CheckoutCart(userLogin, cart.getItems().stream().map(item -> item.getBook().getId()).sorted().distinct().toList());
+    }
+
+    /**
+     * A shopping cart ready to be checked out.
+     *
+     * @param userLogin the login of its owner.
+     * @param bookIds the ids of the books in the cart, in ascending order.
+     */
+    public record CheckoutCart(String userLogin, List<Long> bookIds) {}
+
+    private static String currentUserLogin() {
+        return SecurityUtils.getCurrentUserLogin()
+            .orElseThrow(() -> new BadRequestAlertException("User not authenticated", "Order", "notauthenticated"));
+    }
+
+    private User findUser(String userLogin) {
+        return userRepository
+            .findOneByLogin(userLogin)
+            .orElseThrow(() -> new BadRequestAlertException("User not found", "User", "usernotfound"));
+    }
+
+    private ShoppingCart findCheckoutCart(User user) {
+        ShoppingCart cart = cartStore
+            .findOpenCart(user)
+            .orElseThrow(() -> new BadRequestAlertException("Shopping cart not found", "ShoppingCart", "notfound"));
+
+        if (cart.getItems() == null || cart.getItems().isEmpty()) {
+            throw new BadRequestAlertException("Shopping cart is empty", "ShoppingCart", "cartempty");
+        }
+        return cart;
+    }
 }
@@ -0,0 +1,219 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.management.SecurityMetersService;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service for the refresh tokens, which get a new access token without the password: a refresh costs two statements
+ * instead of a BCrypt hash and the loading of the user.
+ * <p>
+ * A token is {@code <family>.<secret>}, both random, and only its SHA-256 hash is stored: the secret is long enough for
+ * a fast hash. Each token is used once: a refresh revokes it and issues the next one of its family. A revoked token
+ * presented again means that it leaked, so its whole family is revoked. Revoked families are also kept in memory until
+ * they would have expired, so that their tokens are turned away without a query.
+ * <p>
+ * The login, id and authorities of the user are copied into the token at login. Changing the password or the account
+ * of a user revokes their tokens.
+ */
+@Service
+@Transactional
+public class RefreshTokenService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private static final int FAMILY_BYTES = 16;
+    private static final int FAMILY_LENGTH = 22;
+    private static final int SECRET_BYTES = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    /**
+     * What a valid refresh token grants.
+     *
+     * @param userId the id of the user.
+     * @param login the login of the user.
+     * @param authorities the authorities of the user at login, separated by spaces.
+     * @param rememberMe whether the user asked to be remembered.
+     * @param refreshToken the next refresh token, replacing the one used.
+     */
+    public record Grant(Long userId, String login, String authorities, boolean rememberMe, String refreshToken) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SecurityMetersService securityMetersService;
+    private final ApplicationProperties.RefreshToken properties;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Instant> revokedFamilies = new ConcurrentHashMap<>();
+
+    public RefreshTokenService(
+        JdbcTemplate jdbcTemplate,
+        SecurityMetersService securityMetersService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.securityMetersService = securityMetersService;
+        this.properties = applicationProperties.getRefreshToken();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public Duration getAccessTokenValidity() {
+        return properties.getAccessTokenValidity();
+    }
+
+    /**
+     * Issue the first refresh token of a new family, at login.
+     *
+     * @return the refresh token.
+     */
+    public String issue(Long userId, String login, String authorities, boolean rememberMe) {
+        return insert(randomToken(FAMILY_BYTES), userId, login, authorities, rememberMe);
+    }
+
+    /**
+     * Use a refresh token: revoke it and issue the next one of its family.
+     *
+     * @param token the refresh token.
+     * @return what the token grants, or empty if it is unknown, expired or revoked.
+     */
+    public Optional<Grant> rotate(String token) {
+        String family = familyOf(token);
+        if (family == null || isRevoked(family)) {
+            return Optional.empty();
+        }
+        String hash = hash(token);
+        List<Grant> used = jdbcTemplate.query(
+            "UPDATE refresh_token SET revoked = true WHERE token_hash = ? AND revoked = false AND expires_at > ? " +
+            "RETURNING user_id, login, authorities, remember_me",
+            (rs, rowNum) -> new Grant(rs.getLong("user_id"), rs.getString("login"), rs.getString("authorities"), rs.getBoolean("remember_me"), null),
+            hash,
+            now()
+        );
+        if (used.isEmpty()) {
+            List<Boolean> revoked = jdbcTemplate.queryForList("SELECT revoked FROM refresh_token WHERE token_hash = ?", Boolean.class, hash);
+            if (!revoked.isEmpty() && revoked.get(0)) {
+                LOG.warn("A rotated refresh token was used again, revoking its family");
+                securityMetersService.trackRefreshTokenReuse();
+                revokeFamily(family);
+            }
+            return Optional.empty();
+        }
+        Grant grant = used.get(0);
+        String next = insert(family, grant.userId(), grant.login(), grant.authorities(), grant.rememberMe());
+        return Optional.of(new Grant(grant.userId(), grant.login(), grant.authorities(), grant.rememberMe(), next));
+    }
+
+    /**
+     * Revoke a refresh token and the rest of its family, at logout.
+     */
+    public void revoke(String token) {
+        String family = familyOf(token);
+        if (family != null && !jdbcTemplate.queryForList("SELECT id FROM refresh_token WHERE token_hash = ?", Long.class, hash(token)).isEmpty()) {
+            revokeFamily(family);
+        }
+    }
+
+    /**
+     * Revoke all the refresh tokens of a user, e.g. when their password or authorities change.
+     */
+    public void revokeAll(Long userId) {
+        jdbcTemplate
+            .queryForList("UPDATE refresh_token SET revoked = true WHERE user_id = ? AND revoked = false RETURNING family", String.class, userId)
+            .forEach(this::cacheRevoked);
+    }
+
+    /**
+     * Delete the expired refresh tokens, and forget the revoked families that have expired.
+     */
+    @Scheduled(
+        fixedDelayString = "${application.refresh-token.purge-interval:1h}",
+        initialDelayString = "${application.refresh-token.purge-interval:1h}"
+    )
+    public void purge() {
+        Instant now = Instant.now();
+        revokedFamilies.values().removeIf(expiry -> expiry.isBefore(now));
+        int deleted = jdbcTemplate.update("DELETE FROM refresh_token WHERE expires_at < ?", now());
+        LOG.debug("Deleted {} expired refresh tokens", deleted);
+    }
+
+    private String insert(String family, Long userId, String login, String authorities, boolean rememberMe) {
+        String token = family + "." + randomToken(SECRET_BYTES);
+        LocalDateTime now = now();
+        jdbcTemplate.update(
+            "INSERT INTO refresh_token (id, token_hash, family, user_id, login, authorities, remember_me, revoked, created_at, expires_at) " +
+            "VALUES (nextval('sequence_generator'), ?, ?, ?, ?, ?, ?, false, ?, ?)",
+            hash(token),
+            family,
+            userId,
+            login,
+            authorities,
+            rememberMe,
+            now,
+            now.plus(validity(rememberMe))
+        );
+        return token;
+    }
+
+    private void revokeFamily(String family) {
+        jdbcTemplate.update("UPDATE refresh_token SET revoked = true WHERE family = ? AND revoked = false", family);
+        cacheRevoked(family);
+    }
+
+    private void cacheRevoked(String family) {
+        // no token of the family outlives the longest validity
+        revokedFamilies.put(family, Instant.now().plus(validity(true)));
+    }
+
+    private boolean isRevoked(String family) {
+        Instant expiry = revokedFamilies.get(family);
+        return expiry != null && expiry.isAfter(Instant.now());
+    }
+
+    private Duration validity(boolean rememberMe) {
+        return rememberMe ? properties.getValidityForRememberMe() : properties.getValidity();
+    }
+
+    private String randomToken(int bytes) {
+        byte[] value = new byte[bytes];
+        random.nextBytes(value);
+        return ENCODER.encodeToString(value);
+    }
+
+    private static String familyOf(String token) {
+        int separator = token == null ? -1 : token.indexOf('.');
+        return separator == FAMILY_LENGTH ? token.substring(0, separator) : null;
+    }
+
+    private static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static LocalDateTime now() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+}
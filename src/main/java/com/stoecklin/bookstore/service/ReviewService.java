@@ -1,20 +1,22 @@
 package com.stoecklin.bookstore.service;
 
+import com.stoecklin.bookstore.config.ApplicationProperties;
 import com.stoecklin.bookstore.domain.Book;
 import com.stoecklin.bookstore.domain.Review;
 import com.stoecklin.bookstore.domain.User;
-import com.stoecklin.bookstore.repository.BookRepository;
 import com.stoecklin.bookstore.repository.ReviewRepository;
 import com.stoecklin.bookstore.repository.UserRepository;
-import com.stoecklin.bookstore.repository.search.ReviewSearchRepository;
 import com.stoecklin.bookstore.security.SecurityUtils;
-import jakarta.transaction.Transactional;
+import com.stoecklin.bookstore.service.event.ReviewCreated;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Instant;
 import java.util.DoubleSummaryStatistics;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @Transactional
@@ -23,20 +25,32 @@ public class ReviewService {
     private final Logger log = LoggerFactory.getLogger(ReviewService.class);
 
     private final ReviewRepository reviewRepository;
-    private final BookRepository bookRepository;
-    private final ReviewSearchRepository reviewSearchRepository;
     private final UserRepository userRepository;
+    private final BookService bookService;
+    private final BookInventoryService bookInventoryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SingleFlightLoader<Long, List<Review>> reviewsByBookLoader;
 
     public ReviewService(
         ReviewRepository reviewRepository,
-        BookRepository bookRepository,
-        ReviewSearchRepository reviewSearchRepository,
-        UserRepository userRepository
+        UserRepository userRepository,
+        BookService bookService,
+        BookInventoryService bookInventoryService,
+        ApplicationEventPublisher eventPublisher,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
     ) {
         this.reviewRepository = reviewRepository;
-        this.bookRepository = bookRepository;
-        this.reviewSearchRepository = reviewSearchRepository;
         this.userRepository = userRepository;
+        this.bookService = bookService;
+        this.bookInventoryService = bookInventoryService;
+        this.eventPublisher = eventPublisher;
+        this.reviewsByBookLoader = new SingleFlightLoader<>(
+            "reviews-by-book",
+            applicationProperties.getSingleFlight().getWindow(),
+            meterRegistry,
+            reviews -> reviews.stream().map(ReviewService::snapshot).toList()
+        );
     }
 
     public Review save(Review review) {
@@ -55,17 +69,16 @@ public class ReviewService {
         }
 
         Review result = reviewRepository.save(review);
-        reviewSearchRepository.index(result);
 
-        // recalculate average rating for the associated book
-        if (review.getBook() != null && review.getBook().getId() != null) {
-            updateBookAverageRating(review.getBook().getId());
-        }
+        // the review is indexed and the average rating of its book recalculated once committed
+        Long bookId = review.getBook() != null ? review.getBook().getId() : null;
+        eventPublisher.publishEvent(new ReviewCreated(result.getId(), bookId));
 
         return result;
     }
 
     private void updateBookAverageRating(Long bookId) {
+        evictLookups(bookId);
         List<Review> reviews = reviewRepository.findByBook_Id(bookId);
 
         if (!reviews.isEmpty()) {
@@ -73,20 +86,12 @@ public class ReviewService {
 
             double average = stats.getAverage();
 
-            Book book = bookRepository.findById(bookId).orElse(null);
-            if (book != null) {
-                book.setAverageRating(average);
-                bookRepository.save(book);
-                log.debug("Updated average rating for book {} to {}", bookId, average);
-            }
+            bookInventoryService.updateAverageRating(bookId, average);
+            log.debug("Updated average rating for book {} to {}", bookId, average);
         } else {
-            // If no reviews, set average rating to null or 0
-            Book book = bookRepository.findById(bookId).orElse(null);
-            if (book != null) {
-                book.setAverageRating(null);
-                bookRepository.save(book);
-                log.debug("Cleared average rating for book {} (no reviews)", bookId);
-            }
+            // If no reviews, clear the average rating
+            bookInventoryService.updateAverageRating(bookId, null);
+            log.debug("Cleared average rating for book {} (no reviews)", bookId);
         }
     }
 
@@ -95,8 +100,50 @@ public class ReviewService {
         updateBookAverageRating(bookId);
     }
 
+    /**
+     * Get the reviews of a book, with their authors. Concurrent requests for the same book share one query.
+     */
+    @Transactional(readOnly = true)
     public List<Review> findByBook(Long bookId) {
         log.debug("Request to get all Reviews for Book ID : {}", bookId);
-        return reviewRepository.findByBook_IdWithUser(bookId);
+        return reviewsByBookLoader.get(bookId, () -> reviewRepository.findByBook_IdWithUser(bookId));
+    }
+
+    /**
+     * Copy a review loaded with its user into detached objects, for the lookups sharing its load. Its book is not
+     * loaded and only keeps its id.
+     */
+    static Review snapshot(Review review) {
+        Review copy = new Review().id(review.getId()).rating(review.getRating()).comment(review.getComment()).createdAt(review.getCreatedAt());
+        if (review.getBook() != null) {
+            copy.setBook(new Book().id(review.getBook().getId()));
+        }
+        User user = review.getUser();
+        if (user != null) {
+            User userCopy = new User();
+            userCopy.setId(user.getId());
+            userCopy.setLogin(user.getLogin());
+            userCopy.setFirstName(user.getFirstName());
+            userCopy.setLastName(user.getLastName());
+            userCopy.setEmail(user.getEmail());
+            userCopy.setActivated(user.isActivated());
+            userCopy.setLangKey(user.getLangKey());
+            userCopy.setImageUrl(user.getImageUrl());
+            userCopy.setResetDate(user.getResetDate());
+            userCopy.setCreatedBy(user.getCreatedBy());
+            userCopy.setCreatedDate(user.getCreatedDate());
+            userCopy.setLastModifiedBy(user.getLastModifiedBy());
+            userCopy.setLastModifiedDate(user.getLastModifiedDate());
+            copy.setUser(userCopy);
+        }
+        return copy;
+    }
+
+    /**
+     * Make the next lookups of a book and its reviews read their committed state.
+     */
+    public void evictLookups(Long bookId) {
+        reviewsByBookLoader.evict(bookId);
+        bookService.evictLookups(bookId);
     }
 }
@@ -0,0 +1,262 @@
+package com.stoecklin.bookstore.service;
+
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.OrderItem;
+import com.stoecklin.bookstore.domain.enumeration.OrderStatus;
+import com.stoecklin.bookstore.service.dto.BookSalesDTO;
+import com.stoecklin.bookstore.service.dto.CategorySalesDTO;
+import com.stoecklin.bookstore.service.dto.DailySalesDTO;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Maintains the {@code sales_daily_book} and {@code sales_daily_category} aggregates and serves the sales reports from them.
+ * <p>
+ * Every placed order adds its lines to the row of its (UTC) day, and cancelling an order subtracts them again, so reports
+ * only ever read a few rows per day whatever the order volume. Lines count towards the category their book had when the
+ * order was placed, kept in {@code order_item.category_id}. {@link #rebuild()} recomputes both tables from the live and
+ * archived orders, e.g. after a manual data fix.
+ */
+@Service
+@Transactional
+public class SalesAnalyticsService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SalesAnalyticsService.class);
+
+    private static final String UPSERT_BOOK =
+        "INSERT INTO sales_daily_book (day, book_id, units, revenue) VALUES (:day, :id, :units, :revenue) " +
+        "ON CONFLICT (day, book_id) DO UPDATE SET units = sales_daily_book.units + EXCLUDED.units, " +
+        "revenue = sales_daily_book.revenue + EXCLUDED.revenue";
+
+    private static final String UPSERT_CATEGORY =
+        "INSERT INTO sales_daily_category (day, category_id, units, revenue) VALUES (:day, :id, :units, :revenue) " +
+        "ON CONFLICT (day, category_id) DO UPDATE SET units = sales_daily_category.units + EXCLUDED.units, " +
+        "revenue = sales_daily_category.revenue + EXCLUDED.revenue";
+
+    /**
+     * The lines of the orders that count, live and archived, with the category of their book at order time.
+     */
+    private static final String PLACED_LINES =
+        "SELECT CAST(o.placed_at AS date) AS day, oi.book_id, oi.category_id, oi.quantity AS units, oi.quantity * oi.price AS revenue " +
+        "FROM order_item oi JOIN jhi_order o ON o.id = oi.order_id WHERE o.status <> :cancelled AND oi.book_id IS NOT NULL " +
+        "UNION ALL " +
+        "SELECT CAST(a.order_placed_at AS date), a.book_id, a.category_id, a.quantity, a.quantity * a.price " +
+        "FROM order_item_archive a JOIN jhi_order_archive o ON o.id = a.order_id AND o.placed_at = a.order_placed_at " +
+        "WHERE o.status <> :cancelled AND a.book_id IS NOT NULL";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public SalesAnalyticsService(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Add the lines of a newly placed order to the aggregates.
+     *
+     * @param order the placed order, with its items.
+     */
+    public void recordOrderPlaced(Order order) {
+        if (order.getStatus() != OrderStatus.CANCELLED && order.getPlacedAt() != null && order.getItems() != null) {
+            LocalDate day = order.getPlacedAt().atZone(ZoneOffset.UTC).toLocalDate();
+            apply(order.getId(), day, order.getItems().stream().map(Line::of).toList(), 1);
+        }
+    }
+
+    /**
+     * Keep the aggregates in line with a status update: cancelling an order removes its lines, reinstating a cancelled
+     * order adds them back. Any other transition leaves the figures untouched.
+     * <p>
+     * The lines and the day are read from the database, not from the updated order, so this must be called before the
+     * update is flushed.
+     *
+     * @param orderId the id of the updated order.
+     * @param previousStatus the status of the order before the update.
+     * @param status the status of the order after the update.
+     */
+    public void recordStatusChange(Long orderId, OrderStatus previousStatus, OrderStatus status) {
+        boolean wasCounted = previousStatus != OrderStatus.CANCELLED;
+        boolean isCounted = status != OrderStatus.CANCELLED;
+        if (wasCounted != isCounted) {
+            List<PlacedLine> lines = jdbcTemplate.query(
+                "SELECT CAST(o.placed_at AS date) AS day, oi.book_id, oi.category_id, oi.quantity, oi.price " +
+                "FROM order_item oi JOIN jhi_order o ON o.id = oi.order_id WHERE o.id = :id AND o.placed_at IS NOT NULL",
+                Map.of("id", orderId),
+                (rs, rowNum) ->
+                    new PlacedLine(
+                        rs.getObject("day", LocalDate.class),
+                        new Line(
+                            rs.getObject("book_id", Long.class),
+                            rs.getObject("category_id", Long.class),
+                            rs.getObject("quantity", Integer.class),
+                            rs.getBigDecimal("price")
+                        )
+                    )
+            );
+            if (!lines.isEmpty()) {
+                apply(orderId, lines.get(0).day(), lines.stream().map(PlacedLine::line).toList(), isCounted ? 1 : -1);
+            }
+        }
+    }
+
+    private void apply(Long orderId, LocalDate day, List<Line> lines, int sign) {
+        Aggregates aggregates = aggregate(lines);
+        // keys are sorted so that concurrent orders always lock aggregate rows in the same order
+        jdbcTemplate.batchUpdate(UPSERT_BOOK, parameters(day, aggregates.byBook(), sign));
+        jdbcTemplate.batchUpdate(UPSERT_CATEGORY, parameters(day, aggregates.byCategory(), sign));
+        LOG.debug("Applied order {} to the sales aggregates of {} ({})", orderId, day, sign > 0 ? "added" : "removed");
+    }
+
+    private static SqlParameterSource[] parameters(LocalDate day, SortedMap<Long, Figures> figures, int sign) {
+        return figures
+            .entrySet()
+            .stream()
+            .map(entry ->
+                new MapSqlParameterSource()
+                    .addValue("day", day)
+                    .addValue("id", entry.getKey())
+                    .addValue("units", sign * entry.getValue().units())
+                    .addValue("revenue", entry.getValue().revenue().multiply(BigDecimal.valueOf(sign)))
+            )
+            .toArray(SqlParameterSource[]::new);
+    }
+
+    static Aggregates aggregate(Iterable<Line> lines) {
+        SortedMap<Long, Figures> byBook = new TreeMap<>();
+        SortedMap<Long, Figures> byCategory = new TreeMap<>();
+        for (Line line : lines) {
+            if (line.bookId() == null || line.quantity() == null || line.price() == null) {
+                continue;
+            }
+            Figures figures = new Figures(line.quantity(), line.price().multiply(BigDecimal.valueOf(line.quantity())));
+            byBook.merge(line.bookId(), figures, Figures::plus);
+            if (line.categoryId() != null) {
+                byCategory.merge(line.categoryId(), figures, Figures::plus);
+            }
+        }
+        return new Aggregates(byBook, byCategory);
+    }
+
+    /**
+     * Get the units and revenue of every day of a date range.
+     *
+     * @param from the first day, inclusive.
+     * @param to the last day, inclusive.
+     * @return the figures per day, for the days with sales.
+     */
+    @Transactional(readOnly = true)
+    public List<DailySalesDTO> findDailySales(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(
+            "SELECT day, SUM(units) AS units, SUM(revenue) AS revenue FROM sales_daily_category " +
+            "WHERE day BETWEEN :from AND :to GROUP BY day ORDER BY day",
+            range(from, to),
+            (rs, rowNum) -> new DailySalesDTO(rs.getObject("day", LocalDate.class), rs.getLong("units"), rs.getBigDecimal("revenue"))
+        );
+    }
+
+    /**
+     * Get the best selling books of a date range.
+     *
+     * @param from the first day, inclusive.
+     * @param to the last day, inclusive.
+     * @param limit the maximum number of books to return.
+     * @return the books by descending units sold.
+     */
+    @Transactional(readOnly = true)
+    public List<BookSalesDTO> findTopSellers(LocalDate from, LocalDate to, int limit) {
+        return jdbcTemplate.query(
+            "SELECT s.book_id, b.title, b.author, SUM(s.units) AS units, SUM(s.revenue) AS revenue " +
+            "FROM sales_daily_book s LEFT JOIN book b ON b.id = s.book_id WHERE s.day BETWEEN :from AND :to " +
+            "GROUP BY s.book_id, b.title, b.author HAVING SUM(s.units) > 0 " +
+            "ORDER BY units DESC, revenue DESC, s.book_id LIMIT :limit",
+            range(from, to).addValue("limit", limit),
+            (rs, rowNum) ->
+                new BookSalesDTO(
+                    rs.getLong("book_id"),
+                    rs.getString("title"),
+                    rs.getString("author"),
+                    rs.getLong("units"),
+                    rs.getBigDecimal("revenue")
+                )
+        );
+    }
+
+    /**
+     * Get the breakdown of a date range by category.
+     *
+     * @param from the first day, inclusive.
+     * @param to the last day, inclusive.
+     * @return the categories by descending revenue.
+     */
+    @Transactional(readOnly = true)
+    public List<CategorySalesDTO> findCategorySales(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(
+            "SELECT s.category_id, c.name, SUM(s.units) AS units, SUM(s.revenue) AS revenue " +
+            "FROM sales_daily_category s LEFT JOIN category c ON c.id = s.category_id WHERE s.day BETWEEN :from AND :to " +
+            "GROUP BY s.category_id, c.name ORDER BY revenue DESC, s.category_id",
+            range(from, to),
+            (rs, rowNum) -> new CategorySalesDTO(rs.getLong("category_id"), rs.getString("name"), rs.getLong("units"), rs.getBigDecimal("revenue"))
+        );
+    }
+
+    /**
+     * Recompute both aggregate tables from the live and archived orders. Incremental updates of orders placed meanwhile
+     * wait for the rebuild to commit, so none of them is lost or counted twice.
+     *
+     * @return the number of (day, book) rows.
+     */
+    public int rebuild() {
+        LOG.info("Rebuilding the daily sales aggregates");
+        jdbcTemplate.getJdbcTemplate().execute("LOCK TABLE sales_daily_book, sales_daily_category IN EXCLUSIVE MODE");
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM sales_daily_category");
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM sales_daily_book");
+        Map<String, String> cancelled = Map.of("cancelled", OrderStatus.CANCELLED.name());
+        int rows = jdbcTemplate.update(
+            "INSERT INTO sales_daily_book (day, book_id, units, revenue) " +
+            "SELECT day, book_id, SUM(units), SUM(revenue) FROM (" + PLACED_LINES + ") lines GROUP BY day, book_id",
+            cancelled
+        );
+        jdbcTemplate.update(
+            "INSERT INTO sales_daily_category (day, category_id, units, revenue) " +
+            "SELECT day, category_id, SUM(units), SUM(revenue) FROM (" + PLACED_LINES + ") lines " +
+            "WHERE category_id IS NOT NULL GROUP BY day, category_id",
+            cancelled
+        );
+        LOG.info("Rebuilt the daily sales aggregates: {} (day, book) rows", rows);
+        return rows;
+    }
+
+    private static MapSqlParameterSource range(LocalDate from, LocalDate to) {
+        return new MapSqlParameterSource().addValue("from", from).addValue("to", to);
+    }
+
+    record Figures(long units, BigDecimal revenue) {
+        Figures plus(Figures other) {
+            return new Figures(units + other.units, revenue.add(other.revenue));
+        }
+    }
+
+    /**
+     * An order line as the aggregates see it.
+     */
+    record Line(Long bookId, Long categoryId, Integer quantity, BigDecimal price) {
+        static Line of(OrderItem item) {
+            return new Line(item.getBook() != null ? item.getBook().getId() : null, item.getCategoryId(), item.getQuantity(), item.getPrice());
+        }
+    }
+
+    private record PlacedLine(LocalDate day, Line line) {}
+
+    record Aggregates(SortedMap<Long, Figures> byBook, SortedMap<Long, Figures> byCategory) {}
+}
@@ -2,128 +2,128 @@ package com.stoecklin.bookstore.service;
 
 import com.stoecklin.bookstore.domain.Book;
 import com.stoecklin.bookstore.domain.CartItem;
-import com.stoecklin.bookstore.domain.Order;
-import com.stoecklin.bookstore.domain.OrderItem;
 import com.stoecklin.bookstore.domain.ShoppingCart;
 import com.stoecklin.bookstore.domain.User;
-import com.stoecklin.bookstore.domain.enumeration.OrderStatus;
 import com.stoecklin.bookstore.repository.BookRepository;
-import com.stoecklin.bookstore.repository.CartItemRepository;
-import com.stoecklin.bookstore.repository.OrderItemRepository;
-import com.stoecklin.bookstore.repository.OrderRepository;
-import com.stoecklin.bookstore.repository.ShoppingCartRepository;
 import com.stoecklin.bookstore.repository.UserRepository;
+import com.stoecklin.bookstore.repository.cart.CartStore;
 import com.stoecklin.bookstore.security.SecurityUtils;
+import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
 import java.time.Instant;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * The shopping cart of the current user, kept in the {@link CartStore} selected by {@code application.cart.store}.
+ * Carts are checked out by {@link OrderService#placeOrderFromCart()}.
+ * <p>
+ * Anonymous visitors keep their cart in a cookie: this service only checks and loads the books of such a cart, and
+ * merges it into the cart of the visitor once they log in.
+ */
 @Service
 @Transactional
 public class ShoppingCartService {
 
-    private final ShoppingCartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
+    private final CartStore cartStore;
     private final BookRepository bookRepository;
-    private final OrderRepository orderRepository;
-    private final OrderItemRepository orderItemRepository;
     private final UserRepository userRepository;
 
-    public ShoppingCartService(
-        ShoppingCartRepository cartRepository,
-        CartItemRepository cartItemRepository,
-        BookRepository bookRepository,
-        OrderRepository orderRepository,
-        OrderItemRepository orderItemRepository,
-        UserRepository userRepository
-    ) {
-        this.cartRepository = cartRepository;
-        this.cartItemRepository = cartItemRepository;
+    public ShoppingCartService(CartStore cartStore, BookRepository bookRepository, UserRepository userRepository) {
+        this.cartStore = cartStore;
         this.bookRepository = bookRepository;
-        this.orderRepository = orderRepository;
-        this.orderItemRepository = orderItemRepository;
         this.userRepository = userRepository;
     }
 
     public ShoppingCart getOrCreateCurrentUserCart() {
-        String login = SecurityUtils.getCurrentUserLogin().orElseThrow(() -> new IllegalStateException("User not logged in"));
-
-        User user = userRepository.findOneByLogin(login).orElseThrow(() -> new IllegalStateException("User not found: " + login));
-
-        return cartRepository
-            .findOneWithEagerRelationshipsByUserAndCompletedFalse(user)
-            .orElseGet(() -> {
-                ShoppingCart c = new ShoppingCart();
-                c.setCreatedAt(Instant.now());
-                c.setCompleted(false);
-                c.setUser(user);
-                c.setItems(new java.util.HashSet<>());
-                return cartRepository.save(c);
-            });
+        return cartStore.getOrCreateOpenCart(currentUser());
     }
 
     public CartItem addItem(Long bookId, Integer quantity) {
-        ShoppingCart cart = getOrCreateCurrentUserCart();
+        if (quantity == null || quantity < 1) {
+            throw new BadRequestAlertException("At least one copy must be added", "cartItem", "invalidquantity");
+        }
+        User user = currentUser();
 
         Book book = bookRepository.findById(bookId).orElseThrow(() -> new IllegalStateException("Book not found"));
 
-        CartItem item = cartItemRepository
-            .findByCartAndBook(cart, book)
-            .map(existing -> {
-                existing.setQuantity(existing.getQuantity() + quantity);
-                return existing;
-            })
-            .orElseGet(() -> {
-                CartItem newItem = new CartItem();
-                newItem.setCart(cart);
-                newItem.setBook(book);
-                newItem.setQuantity(quantity);
-                return newItem;
-            });
+        try {
+            return cartStore.addItem(user, book, quantity);
+        } catch (CartStore.CartFullException e) {
+            throw new BadRequestAlertException(e.getMessage(), "shoppingCart", "cartfull");
+        } catch (ArithmeticException e) {
+            throw new BadRequestAlertException("Too many copies of the book", "cartItem", "invalidquantity");
+        }
+    }
 
-        return cartItemRepository.save(item);
+    public void removeItem(Long bookId) {
+        cartStore.removeItem(currentUser(), bookId);
     }
 
-    public void removeItem(Long cartId, Long itemId) {
-        cartItemRepository.findById(itemId).ifPresent(cartItemRepository::delete);
+    /**
+     * The cart of an anonymous visitor, as read from their cookie.
+     *
+     * @param items the quantity of each book in the cart.
+     * @return a transient cart, without the books that no longer exist.
+     */
+    @Transactional(readOnly = true)
+    public ShoppingCart guestCart(Map<Long, Integer> items) {
+        ShoppingCart cart = new ShoppingCart();
+        cart.setCreatedAt(Instant.now());
+        cart.setCompleted(false);
+        Map<Long, Book> books = bookRepository.findAllById(items.keySet()).stream().collect(Collectors.toMap(Book::getId, Function.identity()));
+        LinkedHashSet<CartItem> cartItems = new LinkedHashSet<>();
+        items.forEach((bookId, quantity) -> {
+            Book book = books.get(bookId);
+            if (book != null) {
+                cartItems.add(guestItem(book, quantity));
+            }
+        });
+        cart.setItems(cartItems);
+        return cart;
     }
 
-    public void checkout(Long cartId) {
-        ShoppingCart cart = cartRepository.findById(cartId).orElseThrow();
-        // create order
-        Order order = new Order();
-        order.setPlacedAt(Instant.now());
-        order.setUser(cart.getUser());
-        // compute total
-        java.math.BigDecimal total = cart
-            .getItems()
-            .stream()
-            .map(ci -> ci.getBook().getPrice().multiply(java.math.BigDecimal.valueOf(ci.getQuantity())))
-            .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add);
-        order.setTotalPrice(total);
-        order.setStatus(OrderStatus.PENDING);
-        orderRepository.save(order);
+    /**
+     * Check a book that an anonymous visitor adds to their cart.
+     *
+     * @return a transient item of the book, with the given quantity.
+     */
+    @Transactional(readOnly = true)
+    public CartItem guestItem(Long bookId, Integer quantity) {
+        if (quantity == null || quantity < 1) {
+            throw new BadRequestAlertException("At least one copy must be added", "cartItem", "invalidquantity");
+        }
+        Book book = bookRepository.findById(bookId).orElseThrow(() -> new IllegalStateException("Book not found"));
+        return guestItem(book, quantity);
+    }
 
-        // create order items
-        for (CartItem ci : cart.getItems()) {
-            OrderItem oi = new OrderItem();
-            oi.setOrder(order);
-            oi.setBook(ci.getBook());
-            oi.setPrice(ci.getBook().getPrice());
-            oi.setQuantity(ci.getQuantity());
-            orderItemRepository.save(oi);
+    /**
+     * Move the cart a visitor filled before logging in to their own cart, in one batch.
+     *
+     * @param login the login of the user who just authenticated.
+     * @param items the quantity of each book in the guest cart.
+     */
+    public void mergeGuestCart(String login, Map<Long, Integer> items) {
+        if (items.isEmpty()) {
+            return;
         }
-        // mark cart completed/archived (add a boolean field 'completed' to ShoppingCart if you like)
-        cart.setCompleted(true);
-        cartRepository.save(cart);
+        User user = userRepository.findOneByLogin(login).orElseThrow(() -> new IllegalStateException("User not found: " + login));
+        cartStore.addItems(user, items);
+    }
+
+    private static CartItem guestItem(Book book, int quantity) {
+        CartItem item = new CartItem();
+        item.setBook(book);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    private User currentUser() {
+        String login = SecurityUtils.getCurrentUserLogin().orElseThrow(() -> new IllegalStateException("User not logged in"));
 
-        // Automatically create a new empty cart
-        ShoppingCart newCart = new ShoppingCart();
-        newCart.setUser(cart.getUser());
-        newCart.setCreatedAt(Instant.now());
-        newCart.setCompleted(false);
-        newCart.setItems(new HashSet<>());
-        cartRepository.save(newCart);
+        return userRepository.findOneByLogin(login).orElseThrow(() -> new IllegalStateException("User not found: " + login));
     }
 }
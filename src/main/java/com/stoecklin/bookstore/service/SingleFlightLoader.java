@@ -0,0 +1,189 @@
+package com.stoecklin.bookstore.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Collapses concurrent loads of the same key into a single database load.
+ * <p>
+ * The first caller for a key runs the load; callers arriving while it is in flight wait for it and share its result. A
+ * completed result keeps being served for a short window, so that a burst of requests for a trending book costs one
+ * query instead of one per request. Failures are never shared beyond the callers already waiting, and a key is evicted
+ * once the transaction that changed it has committed.
+ * <p>
+ * Values loaded as managed entities belong to the session of the caller that loaded them and must not reach other
+ * threads: the loader is then given a snapshot function, which copies the loaded value into detached objects once, and
+ * every other caller gets its own snapshot of that copy.
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the loaded values.
+ */
+public class SingleFlightLoader<K, V> {
+
+    public static final String METER_NAME = "cache.single-flight.requests";
+    public static final String NAME_DIMENSION = "name";
+    public static final String RESULT_DIMENSION = "result";
+
+    private static final int SWEEP_EVERY = 256;
+
+    private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final AtomicInteger loadsSinceSweep = new AtomicInteger();
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+    private final UnaryOperator<V> snapshot;
+    private final Counter loaded;
+    private final Counter coalesced;
+    private final Counter recent;
+
+    /**
+     * A loader sharing the loaded values themselves, which must be immutable.
+     */
+    public SingleFlightLoader(String name, Duration window, MeterRegistry meterRegistry) {
+        this(name, window, meterRegistry, UnaryOperator.identity());
+    }
+
+    /**
+     * A loader sharing copies of the loaded values.
+     *
+     * @param snapshot copies a value into objects that no session manages and that no other caller holds.
+     */
+    public SingleFlightLoader(String name, Duration window, MeterRegistry meterRegistry, UnaryOperator<V> snapshot) {
+        this(name, window, meterRegistry, snapshot, System::nanoTime);
+    }
+
+    SingleFlightLoader(String name, Duration window, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this(name, window, meterRegistry, UnaryOperator.identity(), nanoClock);
+    }
+
+    SingleFlightLoader(String name, Duration window, MeterRegistry meterRegistry, UnaryOperator<V> snapshot, LongSupplier nanoClock) {
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+        this.snapshot = snapshot;
+        this.loaded = counter(meterRegistry, name, "loaded");
+        this.coalesced = counter(meterRegistry, name, "coalesced");
+        this.recent = counter(meterRegistry, name, "recent");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String result) {
+        return Counter.builder(METER_NAME)
+            .description("Lookups served by a single-flight loader, by whether they hit the database.")
+            .tag(NAME_DIMENSION, name)
+            .tag(RESULT_DIMENSION, result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Get the value of a key, loading it unless a load for the key is in flight or has just completed.
+     *
+     * @param key the key.
+     * @param loader loads the value when this caller has to.
+     * @return the value.
+     */
+    public V get(K key, Supplier<V> loader) {
+        while (true) {
+            Flight<V> flight = flights.get(key);
+            if (flight != null) {
+                if (!flight.result.isDone()) {
+                    coalesced.increment();
+                    return await(flight);
+                }
+                if (nanoClock.getAsLong() - flight.completedAt < windowNanos) {
+                    recent.increment();
+                    return await(flight);
+                }
+                flights.remove(key, flight);
+                continue;
+            }
+            Flight<V> mine = new Flight<>();
+            if (flights.putIfAbsent(key, mine) == null) {
+                return load(key, mine, loader);
+            }
+        }
+    }
+
+    private V load(K key, Flight<V> flight, Supplier<V> loader) {
+        loaded.increment();
+        sweepIfDue();
+        V value;
+        V shared;
+        try {
+            value = loader.get();
+            shared = snapshot.apply(value);
+        } catch (RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+        flight.completedAt = nanoClock.getAsLong();
+        flight.result.complete(shared);
+        if (windowNanos <= 0) {
+            flights.remove(key, flight);
+        }
+        return value;
+    }
+
+    private V await(Flight<V> flight) {
+        try {
+            return snapshot.apply(flight.result.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private void sweepIfDue() {
+        if (loadsSinceSweep.incrementAndGet() % SWEEP_EVERY == 0) {
+            long now = nanoClock.getAsLong();
+            flights.values().removeIf(flight -> flight.result.isDone() && now - flight.completedAt >= windowNanos);
+        }
+    }
+
+    /**
+     * Forget the value of a key once the current transaction (if any) has committed, so that the next caller reads
+     * the committed state.
+     *
+     * @param key the key.
+     */
+    public void evict(K key) {
+        flights.remove(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        flights.remove(key);
+                    }
+                }
+            );
+        }
+    }
+
+    /**
+     * Forget all values.
+     */
+    public void evictAll() {
+        flights.clear();
+    }
+
+    private static final class Flight<V> {
+
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private volatile long completedAt;
+    }
+}
@@ -10,6 +10,7 @@ import com.stoecklin.bookstore.security.AuthoritiesConstants;
 import com.stoecklin.bookstore.security.SecurityUtils;
 import com.stoecklin.bookstore.service.dto.AdminUserDTO;
 import com.stoecklin.bookstore.service.dto.UserDTO;
+import com.stoecklin.bookstore.service.event.UserRegistered;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.HashSet;
@@ -21,6 +22,7 @@ import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -48,18 +50,26 @@ public class UserService {
 
     private final CacheManager cacheManager;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final RefreshTokenService refreshTokenService;
+
     public UserService(
         UserRepository userRepository,
         PasswordEncoder passwordEncoder,
         UserSearchRepository userSearchRepository,
         AuthorityRepository authorityRepository,
-        CacheManager cacheManager
+        CacheManager cacheManager,
+        ApplicationEventPublisher eventPublisher,
+        RefreshTokenService refreshTokenService
     ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.userSearchRepository = userSearchRepository;
         this.authorityRepository = authorityRepository;
         this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
+        this.refreshTokenService = refreshTokenService;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -86,6 +96,7 @@ public class UserService {
                 user.setPassword(passwordEncoder.encode(newPassword));
                 user.setResetKey(null);
                 user.setResetDate(null);
+                refreshTokenService.revokeAll(user.getId());
                 this.clearUserCaches(user);
                 return user;
             });
@@ -144,7 +155,7 @@ public class UserService {
         authorityRepository.findById(AuthoritiesConstants.USER).ifPresent(authorities::add);
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
-        userSearchRepository.save(newUser);
+        eventPublisher.publishEvent(new UserRegistered(newUser.getLogin()));
         this.clearUserCaches(newUser);
         LOG.debug("Created Information for User: {}", newUser);
         return newUser;
@@ -228,6 +239,8 @@ public class UserService {
                     .forEach(managedAuthorities::add);
                 userRepository.save(user);
                 userSearchRepository.index(user);
+                // refresh tokens carry the login and authorities
+                refreshTokenService.revokeAll(user.getId());
                 this.clearUserCaches(user);
                 LOG.debug("Changed Information for User: {}", user);
                 return user;
@@ -241,6 +254,7 @@ public class UserService {
             .ifPresent(user -> {
                 userRepository.delete(user);
                 userSearchRepository.deleteFromIndex(user);
+                refreshTokenService.revokeAll(user.getId());
                 this.clearUserCaches(user);
                 LOG.debug("Deleted User: {}", user);
             });
@@ -284,6 +298,7 @@ public class UserService {
                 }
                 String encryptedPassword = passwordEncoder.encode(newPassword);
                 user.setPassword(encryptedPassword);
+                refreshTokenService.revokeAll(user.getId());
                 this.clearUserCaches(user);
                 LOG.debug("Changed password for User: {}", user);
             });
@@ -0,0 +1,13 @@
+package com.stoecklin.bookstore.service.dto;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * A DTO carrying the current stock and price of a book, pushed to the clients watching it.
+ *
+ * @param id the id of the book.
+ * @param stock the number of copies in stock.
+ * @param price the price of the book.
+ */
+public record BookDeltaDTO(Long id, Integer stock, BigDecimal price) implements Serializable {}
@@ -0,0 +1,9 @@
+package com.stoecklin.bookstore.service.dto;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * A DTO representing the units sold and the revenue of a book over a date range.
+ */
+public record BookSalesDTO(Long bookId, String title, String author, long units, BigDecimal revenue) implements Serializable {}
@@ -0,0 +1,9 @@
+package com.stoecklin.bookstore.service.dto;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * A DTO representing the units sold and the revenue of a category over a date range.
+ */
+public record CategorySalesDTO(Long categoryId, String name, long units, BigDecimal revenue) implements Serializable {}
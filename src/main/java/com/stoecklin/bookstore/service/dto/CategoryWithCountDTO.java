@@ -0,0 +1,12 @@
+package com.stoecklin.bookstore.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO representing a category with the number of its books.
+ *
+ * @param id the id of the category.
+ * @param name the name of the category.
+ * @param bookCount the number of books in the category.
+ */
+public record CategoryWithCountDTO(Long id, String name, long bookCount) implements Serializable {}
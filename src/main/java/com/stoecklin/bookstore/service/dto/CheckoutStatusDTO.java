@@ -0,0 +1,27 @@
+package com.stoecklin.bookstore.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.stoecklin.bookstore.domain.enumeration.CheckoutStatus;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A DTO representing the state of a queued checkout.
+ *
+ * @param handle the handle to poll the checkout with.
+ * @param status the state of the checkout.
+ * @param orderId the id of the placed order, once {@link CheckoutStatus#COMPLETED}.
+ * @param errorKey why the checkout failed, the same key a synchronous checkout would have answered with.
+ * @param message a readable description of the failure.
+ * @param createdAt when the checkout was requested.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CheckoutStatusDTO(
+    String handle,
+    CheckoutStatus status,
+    Long orderId,
+    String errorKey,
+    String message,
+    Instant createdAt
+)
+    implements Serializable {}
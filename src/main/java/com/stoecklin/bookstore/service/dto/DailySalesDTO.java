@@ -0,0 +1,10 @@
+package com.stoecklin.bookstore.service.dto;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A DTO representing the units sold and the revenue of a single day.
+ */
+public record DailySalesDTO(LocalDate day, long units, BigDecimal revenue) implements Serializable {}
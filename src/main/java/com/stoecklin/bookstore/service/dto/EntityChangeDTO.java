@@ -0,0 +1,30 @@
+package com.stoecklin.bookstore.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A DTO representing the change of one audited field of an entity.
+ *
+ * @param id the position of the change in the audit trail, {@code null} until it is written.
+ * @param entityType the kind of entity, e.g. {@code Book}.
+ * @param entityId the id of the entity.
+ * @param field the changed field.
+ * @param oldValue the value before the change, {@code null} when the entity was created.
+ * @param newValue the value after the change, {@code null} when the entity was deleted.
+ * @param changedBy the login of the user who made the change.
+ * @param changedAt when the change was committed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record EntityChangeDTO(
+    Long id,
+    String entityType,
+    Long entityId,
+    String field,
+    String oldValue,
+    String newValue,
+    String changedBy,
+    Instant changedAt
+)
+    implements Serializable {}
@@ -0,0 +1,34 @@
+package com.stoecklin.bookstore.service.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A DTO representing the outcome of a bulk catalogue import.
+ *
+ * @param type what was imported: books, categories or reviews.
+ * @param rowsRead the number of records read from the input.
+ * @param inserted the number of rows inserted.
+ * @param updated the number of existing rows updated.
+ * @param rejected the number of records rejected.
+ * @param errors the first rejected records, with the reason.
+ * @param durationMillis how long the import took.
+ */
+public record ImportReportDTO(
+    String type,
+    long rowsRead,
+    long inserted,
+    long updated,
+    long rejected,
+    List<RowError> errors,
+    long durationMillis
+)
+    implements Serializable {
+    /**
+     * A rejected record.
+     *
+     * @param line the line of the record in the input.
+     * @param message why the record was rejected.
+     */
+    public record RowError(long line, String message) implements Serializable {}
+}
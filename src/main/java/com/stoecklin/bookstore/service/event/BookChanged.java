@@ -0,0 +1,17 @@
+package com.stoecklin.bookstore.service.event;
+
+import java.util.Set;
+
+/**
+ * A book was created, updated or deleted.
+ *
+ * @param bookId the id of the book.
+ * @param deleted whether the book was deleted.
+ * @param categoryIds the ids of the categories that gained or lost the book.
+ * @param changedFields the fields a partial update changed, or none if the whole book may have changed.
+ */
+public record BookChanged(Long bookId, boolean deleted, Set<Long> categoryIds, Set<String> changedFields) {
+    public BookChanged(Long bookId, boolean deleted, Set<Long> categoryIds) {
+        this(bookId, deleted, categoryIds, Set.of());
+    }
+}
@@ -0,0 +1,11 @@
+package com.stoecklin.bookstore.service.event;
+
+import java.util.Set;
+
+/**
+ * Fields of an order were changed by a partial update.
+ *
+ * @param orderId the id of the order.
+ * @param changedFields the names of the changed fields.
+ */
+public record OrderChanged(Long orderId, Set<String> changedFields) {}
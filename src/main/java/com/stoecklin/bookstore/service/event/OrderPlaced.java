@@ -0,0 +1,12 @@
+package com.stoecklin.bookstore.service.event;
+
+import java.util.List;
+
+/**
+ * An order was placed from a shopping cart.
+ *
+ * @param orderId the id of the order.
+ * @param shoppingCartId the id of the checked out cart, now completed; {@code null} if carts are not kept in the database.
+ * @param bookIds the ids of the ordered books, whose stock went down.
+ */
+public record OrderPlaced(Long orderId, Long shoppingCartId, List<Long> bookIds) {}
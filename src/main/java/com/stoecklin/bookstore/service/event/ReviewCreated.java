@@ -0,0 +1,9 @@
+package com.stoecklin.bookstore.service.event;
+
+/**
+ * A review was created.
+ *
+ * @param reviewId the id of the review.
+ * @param bookId the id of the reviewed book, {@code null} if none.
+ */
+public record ReviewCreated(Long reviewId, Long bookId) {}
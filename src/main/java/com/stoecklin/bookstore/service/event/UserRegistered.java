@@ -0,0 +1,8 @@
+package com.stoecklin.bookstore.service.event;
+
+/**
+ * A user registered an account.
+ *
+ * @param login the login of the user.
+ */
+public record UserRegistered(String login) {}
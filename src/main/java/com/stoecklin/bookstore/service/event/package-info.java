@@ -0,0 +1,4 @@
+/**
+ * Domain events, published inside the transaction that caused them and handled once it has committed.
+ */
+package com.stoecklin.bookstore.service.event;
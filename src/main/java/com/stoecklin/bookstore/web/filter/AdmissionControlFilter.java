@@ -0,0 +1,209 @@
+package com.stoecklin.bookstore.web.filter;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.management.AdmissionControlMetersService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Admission control for the endpoints that can saturate the database: checkout and search.
+ * <p>
+ * Each configured endpoint class has token buckets per authenticated user and per client address, and a global cap on
+ * concurrent requests. A request over any limit is answered right away with {@code 429 Too Many Requests} and a
+ * {@code Retry-After} header, so it never waits for a pooled connection.
+ * <p>
+ * Behind proxies the TCP peer is the last proxy, so with {@code trusted-proxies} set the client address is read from
+ * {@code X-Forwarded-For} instead: the entry appended by the outermost trusted proxy. Entries left of it are whatever
+ * the client sent and are never used, so a client cannot pick its own bucket.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<EndpointClass> endpointClasses = new ArrayList<>();
+    private final AdmissionControlMetersService metersService;
+    private final boolean enabled;
+    private final int trustedProxies;
+
+    public AdmissionControlFilter(ApplicationProperties.AdmissionControl properties, AdmissionControlMetersService metersService) {
+        this(properties, metersService, System::nanoTime);
+    }
+
+    AdmissionControlFilter(
+        ApplicationProperties.AdmissionControl properties,
+        AdmissionControlMetersService metersService,
+        LongSupplier nanoClock
+    ) {
+        this.metersService = metersService;
+        this.enabled = properties.isEnabled();
+        this.trustedProxies = properties.getTrustedProxies();
+        long ttlNanos = properties.getBucketTtl().toNanos();
+        for (Map.Entry<String, ApplicationProperties.AdmissionControl.EndpointClass> entry : properties.getEndpointClasses().entrySet()) {
+            ApplicationProperties.AdmissionControl.EndpointClass config = entry.getValue();
+            Semaphore permits = null;
+            if (config.getMaxConcurrent() > 0) {
+                permits = new Semaphore(config.getMaxConcurrent());
+                metersService.registerInFlight(entry.getKey(), permits, config.getMaxConcurrent());
+            }
+            endpointClasses.add(
+                new EndpointClass(
+                    entry.getKey(),
+                    List.copyOf(config.getPatterns()),
+                    permits,
+                    config.getMaxWait().toNanos(),
+                    buckets(config.getPerUser(), properties.getStripes(), ttlNanos, nanoClock),
+                    buckets(config.getPerIp(), properties.getStripes(), ttlNanos, nanoClock)
+                )
+            );
+        }
+    }
+
+    private static TokenBucketStore buckets(
+        ApplicationProperties.AdmissionControl.RateLimit limit,
+        int stripes,
+        long ttlNanos,
+        LongSupplier nanoClock
+    ) {
+        if (limit.getCapacity() <= 0 || limit.getRefillPerSecond() <= 0) {
+            return null;
+        }
+        return new TokenBucketStore(stripes, limit.getCapacity(), limit.getRefillPerSecond(), ttlNanos, nanoClock);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || endpointClasses.isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        EndpointClass endpointClass = match(path);
+        if (endpointClass == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String user = currentUser();
+        if (user != null && endpointClass.perUser != null) {
+            long waitNanos = endpointClass.perUser.tryAcquire(user);
+            if (waitNanos > 0) {
+                reject(response, endpointClass, AdmissionControlMetersService.REASON_USER_RATE, waitNanos);
+                return;
+            }
+        }
+        if (endpointClass.perIp != null) {
+            long waitNanos = endpointClass.perIp.tryAcquire(clientAddress(request, trustedProxies));
+            if (waitNanos > 0) {
+                reject(response, endpointClass, AdmissionControlMetersService.REASON_IP_RATE, waitNanos);
+                return;
+            }
+        }
+        if (endpointClass.permits == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean admitted;
+        try {
+            admitted = endpointClass.permits.tryAcquire(endpointClass.maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            reject(response, endpointClass, AdmissionControlMetersService.REASON_CONCURRENCY, TimeUnit.SECONDS.toNanos(1));
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            endpointClass.permits.release();
+        }
+    }
+
+    private EndpointClass match(String path) {
+        for (EndpointClass endpointClass : endpointClasses) {
+            for (String pattern : endpointClass.patterns) {
+                if (pathMatcher.match(pattern, path)) {
+                    return endpointClass;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The address the outermost of {@code trustedProxies} proxies received the request from, falling back to the TCP
+     * peer when the request did not go through that many proxies.
+     */
+    static String clientAddress(HttpServletRequest request, int trustedProxies) {
+        if (trustedProxies <= 0) {
+            return request.getRemoteAddr();
+        }
+        List<String> forwardedFor = new ArrayList<>();
+        for (Enumeration<String> headers = request.getHeaders(X_FORWARDED_FOR); headers.hasMoreElements();) {
+            for (String address : headers.nextElement().split(",")) {
+                if (!address.isBlank()) {
+                    forwardedFor.add(address.trim());
+                }
+            }
+        }
+        if (forwardedFor.size() < trustedProxies) {
+            return request.getRemoteAddr();
+        }
+        return forwardedFor.get(forwardedFor.size() - trustedProxies);
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private void reject(HttpServletResponse response, EndpointClass endpointClass, String reason, long waitNanos) throws IOException {
+        metersService.trackRejection(endpointClass.name, reason);
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        response
+            .getWriter()
+            .write(
+                "{\"title\":\"Too Many Requests\",\"status\":429,\"detail\":\"" +
+                reason +
+                "\",\"message\":\"error.http.429\"}"
+            );
+    }
+
+    private record EndpointClass(
+        String name,
+        List<String> patterns,
+        Semaphore permits,
+        long maxWaitNanos,
+        TokenBucketStore perUser,
+        TokenBucketStore perIp
+    ) {}
+}
@@ -0,0 +1,401 @@
+package com.stoecklin.bookstore.web.filter;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.management.ResponseCompressionMetersService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Gzips the API responses of compressible types once their body reaches a minimum size, for the clients that accept it.
+ * <p>
+ * The start of the body is buffered until either the minimum size is reached, and the rest is compressed as it is
+ * written, or the body ends or is flushed first, and it is sent as is. Responses that already have a
+ * {@code Content-Encoding}, ask for {@code no-transform}, or are written asynchronously (streams and server-sent
+ * events, whose chunks must not wait for a compressor) are never compressed. The size of every compressed body, before
+ * and after, is recorded by the {@link ResponseCompressionMetersService}.
+ */
+public class ResponseCompressionFilter extends OncePerRequestFilter {
+
+    private static final String GZIP = "gzip";
+
+    private final ResponseCompressionMetersService metersService;
+    private final boolean enabled;
+    private final int minResponseSize;
+    private final int level;
+    private final List<MimeType> mimeTypes;
+
+    public ResponseCompressionFilter(ApplicationProperties.Http.Compression properties, ResponseCompressionMetersService metersService) {
+        this.metersService = metersService;
+        this.enabled = properties.isEnabled();
+        this.minResponseSize = Math.max(1, properties.getMinResponseSize());
+        this.level = properties.getLevel();
+        this.mimeTypes = properties.getMimeTypes().stream().map(MimeTypeUtils::parseMimeType).toList();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || HttpMethod.HEAD.matches(request.getMethod()) || !acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        CompressingResponse compressingResponse = new CompressingResponse(response);
+        try {
+            filterChain.doFilter(request, compressingResponse);
+        } catch (IOException | ServletException | RuntimeException e) {
+            compressingResponse.discardPending();
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            compressingResponse.passThrough();
+        } else {
+            compressingResponse.finish();
+        }
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (!StringUtils.hasText(acceptEncoding)) {
+            return false;
+        }
+        boolean accepted = false;
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!coding.equals(GZIP) && !coding.equals("x-gzip") && !coding.equals("*")) {
+                continue;
+            }
+            boolean zeroQuality = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        zeroQuality = Double.parseDouble(parameter.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        zeroQuality = true;
+                    }
+                }
+            }
+            if (coding.equals("*")) {
+                accepted = accepted || !zeroQuality;
+            } else {
+                return !zeroQuality; // an explicit gzip entry overrides the wildcard
+            }
+        }
+        return accepted;
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            MimeType mimeType = MimeTypeUtils.parseMimeType(contentType);
+            return mimeTypes.stream().anyMatch(candidate -> candidate.equalsTypeAndSubtype(mimeType));
+        } catch (InvalidMimeTypeException e) {
+            return false;
+        }
+    }
+
+    private final class CompressingResponse extends HttpServletResponseWrapper {
+
+        private final HttpServletResponse response;
+        private CompressingOutputStream outputStream;
+        private PrintWriter writer;
+        private long contentLength = -1;
+
+        CompressingResponse(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            return stream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(stream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        private CompressingOutputStream stream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CompressingOutputStream(response.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            setContentLengthLong(length);
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            if (outputStream != null && outputStream.decided) {
+                if (!outputStream.compressing) {
+                    response.setContentLengthLong(length);
+                }
+            } else {
+                contentLength = length;
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(value == null ? -1 : Long.parseLong(value));
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(Long.parseLong(value));
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(value);
+            } else {
+                super.setIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(value);
+            } else {
+                super.addIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (outputStream != null) {
+                outputStream.flush();
+            }
+            response.flushBuffer();
+        }
+
+        @Override
+        public void resetBuffer() {
+            response.resetBuffer();
+            if (outputStream != null) {
+                outputStream.discard();
+            }
+        }
+
+        @Override
+        public void reset() {
+            response.reset();
+            contentLength = -1;
+            if (outputStream != null) {
+                outputStream.discard();
+            }
+        }
+
+        void discardPending() {
+            if (outputStream != null && !outputStream.decided) {
+                outputStream.discard();
+            }
+        }
+
+        void passThrough() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (outputStream == null) {
+                if (contentLength >= 0) {
+                    response.setContentLengthLong(contentLength);
+                }
+            } else if (!outputStream.decided) {
+                outputStream.decide(false);
+            }
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (outputStream == null) {
+                if (contentLength >= 0) {
+                    response.setContentLengthLong(contentLength);
+                }
+                return;
+            }
+            if (!outputStream.decided) {
+                outputStream.decide(false);
+            }
+            outputStream.finish();
+        }
+
+        private boolean shouldCompress() {
+            if (response.containsHeader(HttpHeaders.CONTENT_ENCODING) || response.isCommitted()) {
+                return false;
+            }
+            int status = response.getStatus();
+            if (status == HttpServletResponse.SC_NO_CONTENT || status == HttpServletResponse.SC_NOT_MODIFIED) {
+                return false;
+            }
+            String cacheControl = response.getHeader(HttpHeaders.CACHE_CONTROL);
+            return cacheControl == null || !cacheControl.toLowerCase(Locale.ROOT).contains("no-transform");
+        }
+
+        private final class CompressingOutputStream extends ServletOutputStream {
+
+            private final ServletOutputStream target;
+            private ByteArrayOutputStream pending = new ByteArrayOutputStream(Math.min(minResponseSize, 8192));
+            private boolean decided;
+            private boolean compressing;
+            private CountingOutputStream compressedCount;
+            private GZIPOutputStream gzip;
+            private long originalCount;
+
+            CompressingOutputStream(ServletOutputStream target) {
+                this.target = target;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                if (!decided) {
+                    if (pending.size() + length < minResponseSize) {
+                        pending.write(bytes, offset, length);
+                        return;
+                    }
+                    decide(true);
+                }
+                if (compressing) {
+                    originalCount += length;
+                    gzip.write(bytes, offset, length);
+                } else {
+                    target.write(bytes, offset, length);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (!decided) {
+                    decide(false);
+                }
+                // a gzip stream is not sync-flushed, that would cost ratio for nothing the clients of the API wait for
+                target.flush();
+            }
+
+            void decide(boolean large) throws IOException {
+                decided = true;
+                boolean compressible = isCompressible(response.getContentType());
+                if (compressible && !response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT_ENCODING)) {
+                    response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                }
+                compressing = large && compressible && shouldCompress();
+                if (compressing) {
+                    response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+                    compressedCount = new CountingOutputStream(target);
+                    gzip = new GZIPOutputStream(compressedCount, 8192) {
+                        {
+                            def.setLevel(level);
+                        }
+                    };
+                } else if (contentLength >= 0) {
+                    response.setContentLengthLong(contentLength);
+                }
+                byte[] buffered = pending.toByteArray();
+                pending = null;
+                if (buffered.length > 0) {
+                    write(buffered, 0, buffered.length);
+                }
+            }
+
+            void discard() {
+                if (decided) {
+                    return;
+                }
+                pending.reset();
+            }
+
+            void finish() throws IOException {
+                if (compressing) {
+                    gzip.finish();
+                    metersService.trackCompressed(originalCount, compressedCount.count);
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return target.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                target.setWriteListener(writeListener);
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private final OutputStream target;
+        private long count;
+
+        CountingOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            target.write(bytes, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.stoecklin.bookstore.web.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets keyed by user or client address.
+ * <p>
+ * Keys are spread over a fixed number of stripes, each a plain map behind its own lock, so that concurrent requests
+ * rarely contend and no global lock is ever taken. Buckets left idle for longer than the TTL are dropped while the stripe
+ * is swept, which bounds memory however many distinct addresses show up.
+ */
+final class TokenBucketStore {
+
+    private static final int SWEEP_EVERY = 1024;
+
+    private final Stripe[] stripes;
+    private final int capacity;
+    private final double refillPerNanosecond;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    TokenBucketStore(int stripes, int capacity, double refillPerSecond, long ttlNanos, LongSupplier nanoClock) {
+        this.stripes = new Stripe[Math.max(1, stripes)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.capacity = capacity;
+        this.refillPerNanosecond = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.ttlNanos = ttlNanos;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Take one token from the bucket of a key.
+     *
+     * @param key the user login or client address.
+     * @return 0 if a token was taken, otherwise how many nanoseconds until the next token is available.
+     */
+    long tryAcquire(String key) {
+        Stripe stripe = stripes[Math.floorMod(key.hashCode(), stripes.length)];
+        long now = nanoClock.getAsLong();
+        stripe.lock.lock();
+        try {
+            if (++stripe.operations % SWEEP_EVERY == 0) {
+                stripe.buckets.values().removeIf(bucket -> now - bucket.lastAccess > ttlNanos);
+            }
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+            }
+            bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.lastAccess) * refillPerNanosecond);
+            bucket.lastAccess = now;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) / refillPerNanosecond);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.buckets.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Bucket> buckets = new HashMap<>();
+        private long operations;
+    }
+
+    private static final class Bucket {
+
+        private double tokens;
+        private long lastAccess;
+
+        private Bucket(double tokens, long lastAccess) {
+            this.tokens = tokens;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -4,13 +4,21 @@ import static com.stoecklin.bookstore.security.SecurityUtils.AUTHORITIES_CLAIM;
 import static com.stoecklin.bookstore.security.SecurityUtils.JWT_ALGORITHM;
 import static com.stoecklin.bookstore.security.SecurityUtils.USER_ID_CLAIM;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.stoecklin.bookstore.management.SecurityMetersService;
 import com.stoecklin.bookstore.security.DomainUserDetailsService.UserWithId;
+import com.stoecklin.bookstore.service.RefreshTokenService;
+import com.stoecklin.bookstore.service.ShoppingCartService;
 import com.stoecklin.bookstore.web.rest.vm.LoginVM;
+import com.stoecklin.bookstore.web.rest.vm.RefreshTokenVM;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.security.Principal;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,9 +26,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.JwsHeader;
@@ -48,24 +58,106 @@ public class AuthenticateController {
 
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
 
-    public AuthenticateController(JwtEncoder jwtEncoder, AuthenticationManagerBuilder authenticationManagerBuilder) {
+    private final ShoppingCartService shoppingCartService;
+
+    private final GuestCartCookies guestCartCookies;
+
+    private final RefreshTokenService refreshTokenService;
+
+    private final SecurityMetersService securityMetersService;
+
+    public AuthenticateController(
+        JwtEncoder jwtEncoder,
+        AuthenticationManagerBuilder authenticationManagerBuilder,
+        ShoppingCartService shoppingCartService,
+        GuestCartCookies guestCartCookies,
+        RefreshTokenService refreshTokenService,
+        SecurityMetersService securityMetersService
+    ) {
         this.jwtEncoder = jwtEncoder;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
+        this.shoppingCartService = shoppingCartService;
+        this.guestCartCookies = guestCartCookies;
+        this.refreshTokenService = refreshTokenService;
+        this.securityMetersService = securityMetersService;
     }
 
+    /**
+     * {@code POST /authenticate} : log in, moving the books of the guest cart cookie, if any, to the user's cart. A
+     * client asking for a refresh token gets a short-lived access token along with it.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the JWT.
+     */
     @PostMapping("/authenticate")
-    public ResponseEntity<JWTToken> authorize(@Valid @RequestBody LoginVM loginVM) {
+    public ResponseEntity<JWTToken> authorize(
+        @Valid @RequestBody LoginVM loginVM,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) {
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
             loginVM.getUsername(),
             loginVM.getPassword()
         );
 
-        Authentication authentication = authenticationManagerBuilder.getObject().authenticate(authenticationToken);
+        Authentication authentication;
+        try {
+            authentication = authenticationManagerBuilder.getObject().authenticate(authenticationToken);
+        } catch (AuthenticationException e) {
+            securityMetersService.trackPasswordLogin(false);
+            throw e;
+        }
+        securityMetersService.trackPasswordLogin(true);
         SecurityContextHolder.getContext().setAuthentication(authentication);
+        mergeGuestCart(authentication.getName(), request, response);
+        if (loginVM.isWithRefreshToken() && refreshTokenService.isEnabled()) {
+            Long userId = authentication.getPrincipal() instanceof UserWithId user ? user.getId() : null;
+            String authorities = authorities(authentication);
+            String refreshToken = refreshTokenService.issue(userId, authentication.getName(), authorities, loginVM.isRememberMe());
+            String jwt = createToken(authentication.getName(), authorities, userId, refreshTokenService.getAccessTokenValidity());
+            return tokenResponse(new JWTToken(jwt, refreshToken));
+        }
         String jwt = this.createToken(authentication, loginVM.isRememberMe());
+        return tokenResponse(new JWTToken(jwt));
+    }
+
+    /**
+     * {@code POST /authenticate/refresh} : exchange a refresh token for a new access token and the next refresh
+     * token, without checking the password or loading the user again.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the JWT, or with status
+     * {@code 401 (Unauthorized)} if the refresh token is unknown, expired or revoked.
+     */
+    @PostMapping("/authenticate/refresh")
+    public ResponseEntity<JWTToken> refresh(@Valid @RequestBody RefreshTokenVM refreshTokenVM) {
+        if (!refreshTokenService.isEnabled()) {
+            throw new BadCredentialsException("Refresh tokens are disabled");
+        }
+        RefreshTokenService.Grant grant = refreshTokenService
+            .rotate(refreshTokenVM.getRefreshToken())
+            .orElseThrow(() -> {
+                securityMetersService.trackRefresh(false);
+                return new BadCredentialsException("Invalid refresh token");
+            });
+        securityMetersService.trackRefresh(true);
+        String jwt = createToken(grant.login(), grant.authorities(), grant.userId(), refreshTokenService.getAccessTokenValidity());
+        return tokenResponse(new JWTToken(jwt, grant.refreshToken()));
+    }
+
+    /**
+     * {@code POST /authenticate/revoke} : log out a client holding a refresh token, revoking it.
+     *
+     * @return the {@link ResponseEntity} with status {@code 204 (No Content)}.
+     */
+    @PostMapping("/authenticate/revoke")
+    public ResponseEntity<Void> revoke(@Valid @RequestBody RefreshTokenVM refreshTokenVM) {
+        refreshTokenService.revoke(refreshTokenVM.getRefreshToken());
+        return ResponseEntity.noContent().build();
+    }
+
+    private static ResponseEntity<JWTToken> tokenResponse(JWTToken token) {
         HttpHeaders httpHeaders = new HttpHeaders();
-        httpHeaders.setBearerAuth(jwt);
-        return new ResponseEntity<>(new JWTToken(jwt), httpHeaders, HttpStatus.OK);
+        httpHeaders.setBearerAuth(token.getIdToken());
+        return new ResponseEntity<>(token, httpHeaders, HttpStatus.OK);
     }
 
     /**
@@ -80,42 +172,66 @@ public class AuthenticateController {
         return ResponseEntity.status(principal == null ? HttpStatus.UNAUTHORIZED : HttpStatus.NO_CONTENT).build();
     }
 
+    private void mergeGuestCart(String login, HttpServletRequest request, HttpServletResponse response) {
+        Map<Long, Integer> items = guestCartCookies.read(request);
+        if (items.isEmpty()) {
+            return;
+        }
+        try {
+            shoppingCartService.mergeGuestCart(login, items);
+            guestCartCookies.clear(request, response);
+        } catch (RuntimeException e) {
+            // logging in matters more than the cart: the cookie is kept, and merged at the next login
+            LOG.warn("Could not merge the guest cart of {}: {}", login, e.getMessage());
+        }
+    }
+
     public String createToken(Authentication authentication, boolean rememberMe) {
-        String authorities = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.joining(" "));
+        Long userId = authentication.getPrincipal() instanceof UserWithId user ? user.getId() : null;
+        long validity = rememberMe ? this.tokenValidityInSecondsForRememberMe : this.tokenValidityInSeconds;
+        return createToken(authentication.getName(), authorities(authentication), userId, Duration.ofSeconds(validity));
+    }
 
+    private String createToken(String login, String authorities, Long userId, Duration validity) {
         Instant now = Instant.now();
-        Instant validity;
-        if (rememberMe) {
-            validity = now.plus(this.tokenValidityInSecondsForRememberMe, ChronoUnit.SECONDS);
-        } else {
-            validity = now.plus(this.tokenValidityInSeconds, ChronoUnit.SECONDS);
-        }
 
         // @formatter:off
         JwtClaimsSet.Builder builder = JwtClaimsSet.builder()
             .issuedAt(now)
-            .expiresAt(validity)
-            .subject(authentication.getName())
+            .expiresAt(now.plus(validity))
+            .subject(login)
             .claim(AUTHORITIES_CLAIM, authorities);
-        if (authentication.getPrincipal() instanceof UserWithId user) {
-            builder.claim(USER_ID_CLAIM, user.getId());
+        if (userId != null) {
+            builder.claim(USER_ID_CLAIM, userId);
         }
 
         JwsHeader jwsHeader = JwsHeader.with(JWT_ALGORITHM).build();
         return this.jwtEncoder.encode(JwtEncoderParameters.from(jwsHeader, builder.build())).getTokenValue();
     }
 
+    private static String authorities(Authentication authentication) {
+        return authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.joining(" "));
+    }
+
     /**
      * Object to return as body in JWT Authentication.
      */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     static class JWTToken {
 
         private String idToken;
 
+        private String refreshToken;
+
         JWTToken(String idToken) {
             this.idToken = idToken;
         }
 
+        JWTToken(String idToken, String refreshToken) {
+            this.idToken = idToken;
+            this.refreshToken = refreshToken;
+        }
+
         @JsonProperty("id_token")
         String getIdToken() {
             return idToken;
@@ -124,5 +240,14 @@ public class AuthenticateController {
         void setIdToken(String idToken) {
             this.idToken = idToken;
         }
+
+        @JsonProperty("refresh_token")
+        String getRefreshToken() {
+            return refreshToken;
+        }
+
+        void setRefreshToken(String refreshToken) {
+            this.refreshToken = refreshToken;
+        }
     }
 }
@@ -1,15 +1,24 @@
 package com.stoecklin.bookstore.web.rest;
 
+import com.stoecklin.bookstore.config.ApplicationProperties;
 import com.stoecklin.bookstore.domain.Book;
 import com.stoecklin.bookstore.repository.BookRepository;
 import com.stoecklin.bookstore.repository.search.BookSearchRepository;
+import com.stoecklin.bookstore.service.BookChangeBroadcaster;
+import com.stoecklin.bookstore.service.BookInventoryService;
 import com.stoecklin.bookstore.service.BookService;
+import com.stoecklin.bookstore.service.ChangedFields;
+import com.stoecklin.bookstore.service.dto.BookDeltaDTO;
 import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
 import com.stoecklin.bookstore.web.rest.errors.ElasticsearchExceptionMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -17,9 +26,11 @@ import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -29,6 +40,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
@@ -53,10 +65,30 @@ public class BookResource {
 
     private final BookService bookService;
 
-    public BookResource(BookRepository bookRepository, BookSearchRepository bookSearchRepository, BookService bookService) {
+    private final BookInventoryService bookInventoryService;
+
+    private final BookChangeBroadcaster bookChangeBroadcaster;
+
+    private final ListResponseWriter listResponseWriter;
+
+    private final Duration streamTimeout;
+
+    public BookResource(
+        BookRepository bookRepository,
+        BookSearchRepository bookSearchRepository,
+        BookService bookService,
+        BookInventoryService bookInventoryService,
+        BookChangeBroadcaster bookChangeBroadcaster,
+        ListResponseWriter listResponseWriter,
+        ApplicationProperties applicationProperties
+    ) {
         this.bookRepository = bookRepository;
         this.bookSearchRepository = bookSearchRepository;
         this.bookService = bookService;
+        this.bookInventoryService = bookInventoryService;
+        this.bookChangeBroadcaster = bookChangeBroadcaster;
+        this.listResponseWriter = listResponseWriter;
+        this.streamTimeout = applicationProperties.getBookStream().getTimeout();
     }
 
     /**
@@ -74,7 +106,8 @@ public class BookResource {
             throw new BadRequestAlertException("A new book cannot already have an ID", ENTITY_NAME, "idexists");
         }
         book = bookRepository.save(book);
-        bookSearchRepository.index(book);
+        bookInventoryService.setStock(book.getId(), book.getStock());
+        bookService.notifyChanged(book.getId(), BookService.categoryId(book), null);
         return ResponseEntity.created(new URI("/api/books/" + book.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, book.getId().toString()))
             .body(book);
@@ -108,8 +141,11 @@ public class BookResource {
         // Fetch the existing book to preserve reviews
         Book existingBook = bookRepository
             .findById(id)
+            .map(bookInventoryService::attach)
             .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
 
+        Long previousCategoryId = BookService.categoryId(existingBook);
+
         // Update only the fields that should be modified, preserve reviews
         existingBook.setTitle(book.getTitle());
         existingBook.setAuthor(book.getAuthor());
@@ -120,7 +156,8 @@ public class BookResource {
         // Don't touch reviews - they are managed separately
 
         existingBook = bookRepository.save(existingBook);
-        bookSearchRepository.index(existingBook);
+        bookInventoryService.setStock(id, book.getStock());
+        bookService.notifyChanged(id, BookService.categoryId(existingBook), previousCategoryId);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, existingBook.getId().toString()))
             .body(existingBook);
@@ -155,28 +192,14 @@ public class BookResource {
 
         Optional<Book> result = bookRepository
             .findById(book.getId())
+            .map(bookInventoryService::attach)
             .map(existingBook -> {
-                if (book.getTitle() != null) {
-                    existingBook.setTitle(book.getTitle());
-                }
-                if (book.getAuthor() != null) {
-                    existingBook.setAuthor(book.getAuthor());
-                }
-                if (book.getDescription() != null) {
-                    existingBook.setDescription(book.getDescription());
-                }
-                if (book.getPrice() != null) {
-                    existingBook.setPrice(book.getPrice());
-                }
+                ChangedFields changed = BookService.patch(existingBook, book);
+                Book savedBook = bookRepository.save(existingBook);
                 if (book.getStock() != null) {
-                    existingBook.setStock(book.getStock());
+                    bookInventoryService.setStock(id, book.getStock());
                 }
-
-                return existingBook;
-            })
-            .map(bookRepository::save)
-            .map(savedBook -> {
-                bookSearchRepository.index(savedBook);
+                bookService.notifyChanged(id, changed);
                 return savedBook;
             });
 
@@ -189,17 +212,57 @@ public class BookResource {
     /**
      * {@code GET  /books} : get all the books.
      *
+     * The list is streamed to the response as it is serialized, in the format the client accepts.
+     *
      * @param eagerload flag to eager load entities from relationships (This is applicable for many-to-many).
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of books in body.
+     * @param request the request.
+     * @param response the response, with status {@code 200 (OK)} and the list of books in body.
+     * @throws HttpMediaTypeNotAcceptableException if the client accepts none of the formats of the list.
+     * @throws IOException if the response cannot be written.
      */
     @GetMapping("")
-    public List<Book> getAllBooks(@RequestParam(name = "eagerload", required = false, defaultValue = "true") boolean eagerload) {
+    @Transactional(readOnly = true)
+    public void getAllBooks(
+        @RequestParam(name = "eagerload", required = false, defaultValue = "true") boolean eagerload,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws HttpMediaTypeNotAcceptableException, IOException {
         LOG.debug("REST request to get all Books");
-        if (eagerload) {
-            return bookRepository.findAllWithEagerRelationships();
-        } else {
-            return bookRepository.findAll();
-        }
+        listResponseWriter.write(request, response, Book.class, bookService.findAll(eagerload));
+    }
+
+    /**
+     * {@code GET  /books/stream?ids=:ids} : stream the stock and price of books as server-sent events.
+     * <p>
+     * The current state of the books is sent first, then every change as it is committed. Each {@code books} event
+     * carries a JSON array of deltas.
+     *
+     * @param ids the ids of the books to watch.
+     * @return the event stream.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Transactional(readOnly = true)
+    public SseEmitter streamBookChanges(@RequestParam("ids") List<Long> ids) {
+        LOG.debug("REST request to stream changes of Books : {}", ids);
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        BookChangeBroadcaster.Subscription subscription = bookChangeBroadcaster.subscribe(
+            ids,
+            new BookChangeBroadcaster.Sink() {
+                @Override
+                public void send(List<BookDeltaDTO> deltas) throws IOException {
+                    emitter.send(SseEmitter.event().name("books").data(deltas, MediaType.APPLICATION_JSON));
+                }
+
+                @Override
+                public void heartbeat() throws IOException {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            }
+        );
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
+        return emitter;
     }
 
     /**
@@ -210,12 +273,33 @@ public class BookResource {
      *     {@code 404 (Not Found)}.
      */
     @GetMapping("/{id}")
+    @Transactional(readOnly = true)
     public ResponseEntity<Book> getBook(@PathVariable("id") Long id) {
         LOG.debug("REST request to get Book : {}", id);
-        Optional<Book> book = bookRepository.findOneWithEagerRelationships(id);
+        Optional<Book> book = bookService.findOne(id);
         return ResponseUtil.wrapOrNotFound(book);
     }
 
+    /**
+     * {@code GET  /books/:id/related} : get the books most often bought together with the "id" book.
+     *
+     * @param id the id of the book.
+     * @param limit the maximum number of books.
+     * @return the list of related books, most frequent first.
+     */
+    @GetMapping("/{id}/related")
+    @Transactional(readOnly = true)
+    public List<Book> getRelatedBooks(
+        @PathVariable("id") Long id,
+        @RequestParam(name = "limit", required = false, defaultValue = "10") int limit
+    ) {
+        LOG.debug("REST request to get Books related to Book : {}", id);
+        if (limit < 1) {
+            throw new BadRequestAlertException("limit must be positive", ENTITY_NAME, "invalidlimit");
+        }
+        return bookService.findRelated(id, limit);
+    }
+
     /**
      * {@code DELETE  /books/:id} : delete the "id" book.
      *
@@ -225,8 +309,9 @@ public class BookResource {
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteBook(@PathVariable("id") Long id) {
         LOG.debug("REST request to delete Book : {}", id);
+        Long categoryId = bookRepository.findById(id).map(BookService::categoryId).orElse(null);
         bookRepository.deleteById(id);
-        bookSearchRepository.deleteFromIndexById(id);
+        bookService.notifyDeleted(id, categoryId);
         return ResponseEntity.noContent()
             .headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id.toString()))
             .build();
@@ -239,10 +324,11 @@ public class BookResource {
      * @return the result of the search.
      */
     @GetMapping("/_search")
+    @Transactional(readOnly = true)
     public List<Book> searchBooks(@RequestParam("query") String query) {
         LOG.debug("REST request to search Books for query {}", query);
         try {
-            return StreamSupport.stream(bookSearchRepository.search(query).spliterator(), false).toList();
+            return bookInventoryService.attach(StreamSupport.stream(bookSearchRepository.search(query).spliterator(), false).toList());
         } catch (RuntimeException e) {
             throw ElasticsearchExceptionMapper.mapException(e);
         }
@@ -0,0 +1,78 @@
+package com.stoecklin.bookstore.web.rest;
+
+import com.stoecklin.bookstore.security.AuthoritiesConstants;
+import com.stoecklin.bookstore.service.CatalogueImportService;
+import com.stoecklin.bookstore.service.dto.ImportReportDTO;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for the bulk catalogue import. The request body is a CSV file with a header line
+ * ({@code text/csv}) or one JSON object per line ({@code application/x-ndjson}); it is streamed into the database, never
+ * held in memory.
+ */
+@RestController
+@RequestMapping("/api/admin/catalogue-import")
+@PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+public class CatalogueImportResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CatalogueImportResource.class);
+
+    private final CatalogueImportService catalogueImportService;
+
+    public CatalogueImportResource(CatalogueImportService catalogueImportService) {
+        this.catalogueImportService = catalogueImportService;
+    }
+
+    /**
+     * {@code POST  /admin/catalogue-import/categories} : import categories.
+     *
+     * @param request the request, whose body is the file to import.
+     * @return the import report, with the rejected records.
+     * @throws IOException if the request body cannot be read.
+     */
+    @PostMapping("/categories")
+    public ImportReportDTO importCategories(HttpServletRequest request) throws IOException {
+        LOG.debug("REST request to import categories");
+        try (InputStream in = request.getInputStream()) {
+            return catalogueImportService.importCategories(in, CatalogueImportService.Format.detect(request.getContentType()));
+        }
+    }
+
+    /**
+     * {@code POST  /admin/catalogue-import/books} : import books.
+     *
+     * @param request the request, whose body is the file to import.
+     * @return the import report, with the rejected records.
+     * @throws IOException if the request body cannot be read.
+     */
+    @PostMapping("/books")
+    public ImportReportDTO importBooks(HttpServletRequest request) throws IOException {
+        LOG.debug("REST request to import books");
+        try (InputStream in = request.getInputStream()) {
+            return catalogueImportService.importBooks(in, CatalogueImportService.Format.detect(request.getContentType()));
+        }
+    }
+
+    /**
+     * {@code POST  /admin/catalogue-import/reviews} : import reviews.
+     *
+     * @param request the request, whose body is the file to import.
+     * @return the import report, with the rejected records.
+     * @throws IOException if the request body cannot be read.
+     */
+    @PostMapping("/reviews")
+    public ImportReportDTO importReviews(HttpServletRequest request) throws IOException {
+        LOG.debug("REST request to import reviews");
+        try (InputStream in = request.getInputStream()) {
+            return catalogueImportService.importReviews(in, CatalogueImportService.Format.detect(request.getContentType()));
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.stoecklin.bookstore.web.rest;
 
+import com.stoecklin.bookstore.domain.Book;
 import com.stoecklin.bookstore.domain.Category;
 import com.stoecklin.bookstore.repository.CategoryRepository;
 import com.stoecklin.bookstore.repository.search.CategorySearchRepository;
+import com.stoecklin.bookstore.service.BookCursor;
+import com.stoecklin.bookstore.service.BookService;
+import com.stoecklin.bookstore.service.CategoryBookCountService;
+import com.stoecklin.bookstore.service.dto.CategoryWithCountDTO;
 import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
 import com.stoecklin.bookstore.web.rest.errors.ElasticsearchExceptionMapper;
 import jakarta.validation.Valid;
@@ -16,9 +21,11 @@ import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
@@ -34,6 +41,8 @@ public class CategoryResource {
 
     private static final String ENTITY_NAME = "category";
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -41,9 +50,20 @@ public class CategoryResource {
 
     private final CategorySearchRepository categorySearchRepository;
 
-    public CategoryResource(CategoryRepository categoryRepository, CategorySearchRepository categorySearchRepository) {
+    private final BookService bookService;
+
+    private final CategoryBookCountService categoryBookCountService;
+
+    public CategoryResource(
+        CategoryRepository categoryRepository,
+        CategorySearchRepository categorySearchRepository,
+        BookService bookService,
+        CategoryBookCountService categoryBookCountService
+    ) {
         this.categoryRepository = categoryRepository;
         this.categorySearchRepository = categorySearchRepository;
+        this.bookService = bookService;
+        this.categoryBookCountService = categoryBookCountService;
     }
 
     /**
@@ -155,11 +175,69 @@ public class CategoryResource {
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of categories in body.
      */
     @GetMapping("")
+    @Transactional(readOnly = true)
     public List<Category> getAllCategories() {
         LOG.debug("REST request to get all Categories");
         return categoryRepository.findAll();
     }
 
+    /**
+     * {@code GET  /categories?withCounts=true} : get all the categories, with the number of their books.
+     *
+     * @return the list of categories with their book counts.
+     */
+    @GetMapping(value = "", params = "withCounts=true")
+    @Transactional(readOnly = true)
+    public List<CategoryWithCountDTO> getAllCategoriesWithCounts() {
+        LOG.debug("REST request to get all Categories with their book counts");
+        return categoryBookCountService.withCounts(categoryRepository.findAll());
+    }
+
+    /**
+     * {@code GET  /categories/:id/books} : get a page of the books of the "id" category, sorted by title.
+     * <p>
+     * Pages are fetched from a cursor rather than an offset: when there may be more books, the {@code Link} header
+     * gives the URL of the next page.
+     *
+     * @param id the id of the category.
+     * @param after the cursor where the previous page ended, absent for the first page.
+     * @param size the maximum number of books.
+     * @param sort {@code title,asc} or {@code title,desc}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the books in body, or with status
+     *     {@code 404 (Not Found)}.
+     */
+    @GetMapping("/{id}/books")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<Book>> getCategoryBooks(
+        @PathVariable("id") Long id,
+        @RequestParam(name = "after", required = false) String after,
+        @RequestParam(name = "size", required = false, defaultValue = "20") int size,
+        @RequestParam(name = "sort", required = false, defaultValue = "title,asc") String sort
+    ) {
+        LOG.debug("REST request to get Books of Category : {}", id);
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestAlertException("size must be between 1 and " + MAX_PAGE_SIZE, ENTITY_NAME, "invalidsize");
+        }
+        boolean descending = switch (sort) {
+            case "title", "title,asc" -> false;
+            case "title,desc" -> true;
+            default -> throw new BadRequestAlertException("Books can only be sorted by title", ENTITY_NAME, "invalidsort");
+        };
+        if (!categoryRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        BookCursor cursor = after == null || after.isEmpty() ? null : BookCursor.decode(after);
+        List<Book> books = bookService.findByCategory(id, cursor, size, descending);
+        HttpHeaders headers = new HttpHeaders();
+        if (books.size() == size) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", BookCursor.of(books.get(books.size() - 1)).encode())
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(books);
+    }
+
     /**
      * {@code GET  /categories/:id} : get the "id" category.
      *
@@ -167,6 +245,7 @@ public class CategoryResource {
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the category, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/{id}")
+    @Transactional(readOnly = true)
     public ResponseEntity<Category> getCategory(@PathVariable("id") Long id) {
         LOG.debug("REST request to get Category : {}", id);
         Optional<Category> category = categoryRepository.findById(id);
@@ -197,6 +276,7 @@ public class CategoryResource {
      * @return the result of the search.
      */
     @GetMapping("/_search")
+    @Transactional(readOnly = true)
     public List<Category> searchCategories(@RequestParam("query") String query) {
         LOG.debug("REST request to search Categories for query {}", query);
         try {
@@ -0,0 +1,66 @@
+package com.stoecklin.bookstore.web.rest;
+
+import com.stoecklin.bookstore.security.AuthoritiesConstants;
+import com.stoecklin.bookstore.service.EntityAuditService;
+import com.stoecklin.bookstore.service.dto.EntityChangeDTO;
+import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for the audit trail of entity changes.
+ */
+@RestController
+@RequestMapping("/api/admin/audit")
+@PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+public class EntityAuditResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntityAuditResource.class);
+
+    private static final String ENTITY_NAME = "entityAudit";
+
+    private static final Set<String> ENTITY_TYPES = Set.of("Book", "Order", "Review");
+
+    private static final int MAX_SIZE = 500;
+
+    private final EntityAuditService entityAuditService;
+
+    public EntityAuditResource(EntityAuditService entityAuditService) {
+        this.entityAuditService = entityAuditService;
+    }
+
+    /**
+     * {@code GET  /admin/audit/:entityType/:entityId} : get the changes of an entity, the latest first. Changes made in
+     * the last moments may not be written yet.
+     *
+     * @param entityType the kind of entity: {@code Book}, {@code Order} or {@code Review}.
+     * @param entityId the id of the entity.
+     * @param before the id of the last change of the previous page, to get the next one.
+     * @param size the maximum number of changes.
+     * @return the changes.
+     */
+    @GetMapping("/{entityType}/{entityId}")
+    public List<EntityChangeDTO> getChanges(
+        @PathVariable("entityType") String entityType,
+        @PathVariable("entityId") Long entityId,
+        @RequestParam(name = "before", required = false) Long before,
+        @RequestParam(name = "size", defaultValue = "50") int size
+    ) {
+        LOG.debug("REST request to get the changes of {} {}", entityType, entityId);
+        if (!ENTITY_TYPES.contains(entityType)) {
+            throw new BadRequestAlertException("Unknown entity type", ENTITY_NAME, "invalidentitytype");
+        }
+        if (size < 1 || size > MAX_SIZE) {
+            throw new BadRequestAlertException("size must be between 1 and " + MAX_SIZE, ENTITY_NAME, "invalidsize");
+        }
+        return entityAuditService.findChanges(entityType, entityId, before, size);
+    }
+}
@@ -0,0 +1,179 @@
+package com.stoecklin.bookstore.web.rest;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the cart of an anonymous visitor in a cookie, so that guests cost no server state and no database writes.
+ * <p>
+ * The cookie holds a version byte, the number of books and the book id and quantity of each as varints, followed by a
+ * truncated HMAC-SHA256 of all that, in unpadded base64url: a cart of a few books takes a few dozen characters. The key
+ * is derived from the JWT secret. A cookie that is missing, malformed or not signed by us reads as an empty cart.
+ */
+@Component
+public class GuestCartCookies {
+
+    private static final byte VERSION = 1;
+    private static final int MAC_LENGTH = 16;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final String cookieName;
+    private final Duration maxAge;
+    private final int maxItems;
+
+    public GuestCartCookies(
+        @Value("${jhipster.security.authentication.jwt.base64-secret}") String jwtSecret,
+        ApplicationProperties applicationProperties
+    ) {
+        ApplicationProperties.GuestCart properties = applicationProperties.getGuestCart();
+        SecretKeySpec jwtKey = new SecretKeySpec(com.nimbusds.jose.util.Base64.from(jwtSecret).decode(), MAC_ALGORITHM);
+        // a key of its own, so that a cookie can never pass for a token
+        this.key = new SecretKeySpec(mac(jwtKey, "guest-cart".getBytes(StandardCharsets.UTF_8)), MAC_ALGORITHM);
+        this.cookieName = properties.getCookieName();
+        this.maxAge = properties.getMaxAge();
+        this.maxItems = properties.getMaxItems();
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * @return the quantity of each book in the guest cart of the request, in the order they were added; empty if there
+     *     is no valid cart.
+     */
+    public Map<Long, Integer> read(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return Collections.emptyMap();
+        }
+        return Arrays.stream(cookies)
+            .filter(cookie -> cookieName.equals(cookie.getName()))
+            .findFirst()
+            .map(cookie -> decode(cookie.getValue()))
+            .orElseGet(Collections::emptyMap);
+    }
+
+    /**
+     * Store a guest cart in the response, or clear it when the cart is empty.
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, Map<Long, Integer> items) {
+        if (items.isEmpty()) {
+            clear(request, response);
+        } else {
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie(request, encode(items), maxAge).toString());
+        }
+    }
+
+    public void clear(HttpServletRequest request, HttpServletResponse response) {
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(request, "", Duration.ZERO).toString());
+    }
+
+    String encode(Map<Long, Integer> items) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + items.size() * 4 + MAC_LENGTH);
+        out.write(VERSION);
+        writeVarint(out, items.size());
+        items.forEach((bookId, quantity) -> {
+            writeVarint(out, bookId);
+            writeVarint(out, quantity);
+        });
+        byte[] payload = out.toByteArray();
+        out.writeBytes(Arrays.copyOf(mac(key, payload), MAC_LENGTH));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(out.toByteArray());
+    }
+
+    Map<Long, Integer> decode(String value) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(value);
+            if (bytes.length <= MAC_LENGTH) {
+                return Collections.emptyMap();
+            }
+            int length = bytes.length - MAC_LENGTH;
+            byte[] expected = Arrays.copyOf(mac(key, Arrays.copyOf(bytes, length)), MAC_LENGTH);
+            if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(bytes, length, bytes.length))) {
+                return Collections.emptyMap();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+            if (buffer.get() != VERSION) {
+                return Collections.emptyMap();
+            }
+            long count = readVarint(buffer);
+            if (count > maxItems) {
+                return Collections.emptyMap();
+            }
+            Map<Long, Integer> items = new LinkedHashMap<>();
+            for (long i = 0; i < count; i++) {
+                long bookId = readVarint(buffer);
+                long quantity = readVarint(buffer);
+                if (quantity < 1 || quantity > Integer.MAX_VALUE) {
+                    return Collections.emptyMap();
+                }
+                items.merge(bookId, (int) quantity, Math::addExact);
+            }
+            return buffer.hasRemaining() ? Collections.emptyMap() : items;
+        } catch (IllegalArgumentException | BufferUnderflowException | ArithmeticException e) {
+            return Collections.emptyMap();
+        }
+    }
+
+    private ResponseCookie cookie(HttpServletRequest request, String value, Duration maxAge) {
+        return ResponseCookie.from(cookieName, value)
+            .path("/api")
+            .maxAge(maxAge)
+            .httpOnly(true)
+            .secure(request.isSecure())
+            .sameSite("Lax")
+            .build();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    private static byte[] mac(SecretKeySpec key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.stoecklin.bookstore.web.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes large lists as a JSON array straight to the response, one element at a time.
+ * <p>
+ * The serializer of each element type is resolved once and kept, rather than looked up for every response, and the
+ * elements go through a single generator writing to the response stream, which is only flushed once the array is
+ * complete.
+ */
+@Component
+public class JsonArrayWriter {
+
+    private final ObjectMapper objectMapper;
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public JsonArrayWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write elements as a JSON array with status {@code 200 (OK)}.
+     *
+     * @param response the response, which must not have been committed yet.
+     * @param type the type of the elements.
+     * @param elements the elements.
+     * @throws IOException if the response cannot be written, e.g. because the client went away.
+     */
+    public <T> void write(HttpServletResponse response, Class<T> type, Iterable<? extends T> elements) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        write(response.getOutputStream(), type, elements);
+    }
+
+    /**
+     * Write elements as a JSON array.
+     *
+     * @param out where to write the array; it is flushed but not closed.
+     * @param type the type of the elements.
+     * @param elements the elements.
+     * @throws IOException if the array cannot be written.
+     */
+    public <T> void write(OutputStream out, Class<T> type, Iterable<? extends T> elements) throws IOException {
+        ObjectWriter writer = writers.computeIfAbsent(type, key ->
+            objectMapper.writerFor(key).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+        );
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            for (T element : elements) {
+                writer.writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.stoecklin.bookstore.web.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * Writes large lists to the response in the format the client accepts, as Spring MVC would for a returned list: the
+ * {@code Accept} header is matched against the message converters, in their order, so JSON is used unless the client
+ * asks for another format. JSON is streamed by the {@link JsonArrayWriter}; the other formats are written by their
+ * converter.
+ */
+@Component
+public class ListResponseWriter {
+
+    private final JsonArrayWriter jsonArrayWriter;
+    private final ObjectProvider<RequestMappingHandlerAdapter> handlerAdapter;
+
+    public ListResponseWriter(JsonArrayWriter jsonArrayWriter, ObjectProvider<RequestMappingHandlerAdapter> handlerAdapter) {
+        this.jsonArrayWriter = jsonArrayWriter;
+        this.handlerAdapter = handlerAdapter;
+    }
+
+    /**
+     * Write elements with status {@code 200 (OK)}.
+     *
+     * @param request the request, with the media types the client accepts.
+     * @param response the response, which must not have been committed yet.
+     * @param type the type of the elements.
+     * @param elements the elements.
+     * @throws HttpMediaTypeNotAcceptableException if no accepted format can represent the list.
+     * @throws IOException if the response cannot be written, e.g. because the client went away.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void write(HttpServletRequest request, HttpServletResponse response, Class<T> type, List<? extends T> elements)
+        throws HttpMediaTypeNotAcceptableException, IOException {
+        Type listType = ResolvableType.forClassWithGenerics(List.class, type).getType();
+        List<MediaType> producible = new ArrayList<>();
+        for (MediaType accepted : acceptedMediaTypes(request)) {
+            for (HttpMessageConverter<?> converter : handlerAdapter.getObject().getMessageConverters()) {
+                if (!(converter instanceof GenericHttpMessageConverter<?> generic)) {
+                    continue;
+                }
+                for (MediaType supported : converter.getSupportedMediaTypes(List.class)) {
+                    if (!supported.isConcrete() || !generic.canWrite(listType, List.class, supported)) {
+                        continue;
+                    }
+                    if (!accepted.includes(supported)) {
+                        producible.add(supported);
+                        continue;
+                    }
+                    if (MediaType.APPLICATION_JSON.equalsTypeAndSubtype(supported)) {
+                        jsonArrayWriter.write(response, type, elements);
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        ServletServerHttpResponse outputMessage = new ServletServerHttpResponse(response);
+                        ((GenericHttpMessageConverter<Object>) generic).write(elements, listType, supported, outputMessage);
+                        outputMessage.flush();
+                    }
+                    return;
+                }
+            }
+        }
+        throw new HttpMediaTypeNotAcceptableException(producible.stream().distinct().toList());
+    }
+
+    private static List<MediaType> acceptedMediaTypes(HttpServletRequest request) throws HttpMediaTypeNotAcceptableException {
+        List<String> headers = Collections.list(request.getHeaders(HttpHeaders.ACCEPT));
+        try {
+            List<MediaType> accepted = new ArrayList<>(MediaType.parseMediaTypes(headers));
+            if (accepted.isEmpty()) {
+                return List.of(MediaType.ALL);
+            }
+            MimeTypeUtils.sortBySpecificity(accepted);
+            return accepted;
+        } catch (InvalidMediaTypeException e) {
+            throw new HttpMediaTypeNotAcceptableException("Could not parse 'Accept' header " + headers + ": " + e.getMessage());
+        }
+    }
+}
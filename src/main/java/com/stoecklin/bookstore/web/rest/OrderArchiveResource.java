@@ -0,0 +1,41 @@
+package com.stoecklin.bookstore.web.rest;
+
+import com.stoecklin.bookstore.security.AuthoritiesConstants;
+import com.stoecklin.bookstore.service.OrderArchiveService;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller to trigger the cold archival of completed and cancelled orders.
+ */
+@RestController
+@RequestMapping("/api/admin/order-archive")
+public class OrderArchiveResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OrderArchiveResource.class);
+
+    private final OrderArchiveService orderArchiveService;
+
+    public OrderArchiveResource(OrderArchiveService orderArchiveService) {
+        this.orderArchiveService = orderArchiveService;
+    }
+
+    /**
+     * {@code POST  /admin/order-archive} : archive eligible orders now instead of waiting for the scheduled run.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of archived orders in body.
+     */
+    @PostMapping("")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Map<String, Integer>> archiveOrders() {
+        LOG.debug("REST request to archive completed and cancelled orders");
+        int archived = orderArchiveService.archiveOrders();
+        return ResponseEntity.ok(Map.of("archived", archived));
+    }
+}
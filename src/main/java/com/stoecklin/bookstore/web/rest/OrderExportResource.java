@@ -0,0 +1,78 @@
+package com.stoecklin.bookstore.web.rest;
+
+import com.stoecklin.bookstore.security.AuthoritiesConstants;
+import com.stoecklin.bookstore.service.OrderExportService;
+import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
+import java.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * REST controller streaming the order export used by finance.
+ */
+@RestController
+@RequestMapping("/api/admin/order-export")
+public class OrderExportResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OrderExportResource.class);
+
+    private static final String ENTITY_NAME = "orderExport";
+
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    private final OrderExportService orderExportService;
+
+    public OrderExportResource(OrderExportService orderExportService) {
+        this.orderExportService = orderExportService;
+    }
+
+    /**
+     * {@code GET  /admin/order-export} : export the lines of the orders placed in a date range as CSV.
+     *
+     * @param from the first day, inclusive.
+     * @param to the last day, inclusive.
+     * @param afterOrderId resume an interrupted export after this order id.
+     * @param compression {@code none}, {@code gzip} or {@code zstd}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the export streamed in body.
+     */
+    @GetMapping("")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+        @RequestParam("from") LocalDate from,
+        @RequestParam("to") LocalDate to,
+        @RequestParam(name = "afterOrderId", required = false, defaultValue = "0") long afterOrderId,
+        @RequestParam(name = "compression", required = false, defaultValue = "gzip") String compression
+    ) {
+        LOG.debug("REST request to export orders from {} to {} after order {}", from, to, afterOrderId);
+        if (from.isAfter(to)) {
+            throw new BadRequestAlertException("from must not be after to", ENTITY_NAME, "invalidrange");
+        }
+        OrderExportService.Compression codec;
+        try {
+            codec = OrderExportService.Compression.fromName(compression);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Unsupported compression " + compression, ENTITY_NAME, "invalidcompression");
+        }
+        String fileName = "orders-" + from + "-" + to + (afterOrderId > 0 ? "-after-" + afterOrderId : "") + ".csv" + codec.getFileExtension();
+        MediaType contentType = switch (codec) {
+            case NONE -> TEXT_CSV;
+            case GZIP -> MediaType.parseMediaType("application/gzip");
+            case ZSTD -> MediaType.parseMediaType("application/zstd");
+        };
+        StreamingResponseBody body = out -> orderExportService.export(out, from, to, afterOrderId, codec);
+        return ResponseEntity.ok()
+            .contentType(contentType)
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+            .body(body);
+    }
+}
@@ -1,24 +1,39 @@
 package com.stoecklin.bookstore.web.rest;
 
 import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.enumeration.OrderStatus;
 import com.stoecklin.bookstore.repository.OrderRepository;
 import com.stoecklin.bookstore.repository.search.OrderSearchRepository;
+import com.stoecklin.bookstore.security.SecurityUtils;
+import com.stoecklin.bookstore.service.ChangedFields;
+import com.stoecklin.bookstore.service.CheckoutQueueService;
 import com.stoecklin.bookstore.service.OrderService;
+import com.stoecklin.bookstore.service.SalesAnalyticsService;
+import com.stoecklin.bookstore.service.dto.CheckoutStatusDTO;
+import com.stoecklin.bookstore.service.event.OrderChanged;
 import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
 import com.stoecklin.bookstore.web.rest.errors.ElasticsearchExceptionMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -53,10 +68,30 @@ public class OrderResource {
 
     private final OrderService orderService;
 
-    public OrderResource(OrderRepository orderRepository, OrderSearchRepository orderSearchRepository, OrderService orderService) {
+    private final SalesAnalyticsService salesAnalyticsService;
+
+    private final CheckoutQueueService checkoutQueueService;
+
+    private final ListResponseWriter listResponseWriter;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public OrderResource(
+        OrderRepository orderRepository,
+        OrderSearchRepository orderSearchRepository,
+        OrderService orderService,
+        SalesAnalyticsService salesAnalyticsService,
+        CheckoutQueueService checkoutQueueService,
+        ListResponseWriter listResponseWriter,
+        ApplicationEventPublisher eventPublisher
+    ) {
         this.orderRepository = orderRepository;
         this.orderSearchRepository = orderSearchRepository;
         this.orderService = orderService;
+        this.salesAnalyticsService = salesAnalyticsService;
+        this.checkoutQueueService = checkoutQueueService;
+        this.listResponseWriter = listResponseWriter;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -101,10 +136,12 @@ public class OrderResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!orderRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
+        OrderStatus previousStatus = orderRepository
+            .findStatusById(id)
+            .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
 
+        // before saving, so that the persisted lines of the order are subtracted, whatever the request body holds
+        salesAnalyticsService.recordStatusChange(id, previousStatus, order.getStatus());
         order = orderRepository.save(order);
         orderSearchRepository.index(order);
         return ResponseEntity.ok()
@@ -142,21 +179,17 @@ public class OrderResource {
         Optional<Order> result = orderRepository
             .findById(order.getId())
             .map(existingOrder -> {
-                if (order.getTotalPrice() != null) {
-                    existingOrder.setTotalPrice(order.getTotalPrice());
-                }
-                if (order.getPlacedAt() != null) {
-                    existingOrder.setPlacedAt(order.getPlacedAt());
-                }
-                if (order.getStatus() != null) {
-                    existingOrder.setStatus(order.getStatus());
-                }
+                OrderStatus previousStatus = existingOrder.getStatus();
+                ChangedFields changed = new ChangedFields();
+                changed.patch("totalPrice", order.getTotalPrice(), existingOrder::getTotalPrice, existingOrder::setTotalPrice);
+                changed.patch("placedAt", order.getPlacedAt(), existingOrder::getPlacedAt, existingOrder::setPlacedAt);
+                changed.patch("status", order.getStatus(), existingOrder::getStatus, existingOrder::setStatus);
+                salesAnalyticsService.recordStatusChange(existingOrder.getId(), previousStatus, existingOrder.getStatus());
 
-                return existingOrder;
-            })
-            .map(orderRepository::save)
-            .map(savedOrder -> {
-                orderSearchRepository.index(savedOrder);
+                Order savedOrder = orderRepository.save(existingOrder);
+                if (!changed.isEmpty()) {
+                    eventPublisher.publishEvent(new OrderChanged(savedOrder.getId(), Set.copyOf(changed.getNames())));
+                }
                 return savedOrder;
             });
 
@@ -169,17 +202,24 @@ public class OrderResource {
     /**
      * {@code GET  /orders} : get all the orders.
      *
+     * The list is streamed to the response as it is serialized, in the format the client accepts.
+     *
      * @param eagerload flag to eager load entities from relationships (This is applicable for many-to-many).
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of orders in body.
+     * @param request the request.
+     * @param response the response, with status {@code 200 (OK)} and the list of orders in body.
+     * @throws HttpMediaTypeNotAcceptableException if the client accepts none of the formats of the list.
+     * @throws IOException if the response cannot be written.
      */
     @GetMapping("")
-    public List<Order> getAllOrders(@RequestParam(name = "eagerload", required = false, defaultValue = "true") boolean eagerload) {
+    @Transactional(readOnly = true)
+    public void getAllOrders(
+        @RequestParam(name = "eagerload", required = false, defaultValue = "true") boolean eagerload,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws HttpMediaTypeNotAcceptableException, IOException {
         LOG.debug("REST request to get all Orders");
-        if (eagerload) {
-            return orderRepository.findAllWithItemsAndBooks();
-        } else {
-            return orderRepository.findAll();
-        }
+        List<Order> orders = eagerload ? orderRepository.findAllWithItemsAndBooks() : orderRepository.findAll();
+        listResponseWriter.write(request, response, Order.class, orders);
     }
 
     /**
@@ -190,6 +230,7 @@ public class OrderResource {
      *     {@code 404 (Not Found)}.
      */
     @GetMapping("/{id}")
+    @Transactional(readOnly = true)
     public ResponseEntity<Order> getOrder(@PathVariable("id") Long id) {
         LOG.debug("REST request to get Order : {}", id);
         Optional<Order> order = orderRepository.findByIdWithItemsAndBooks(id);
@@ -219,6 +260,7 @@ public class OrderResource {
      * @return the result of the search.
      */
     @GetMapping("/_search")
+    @Transactional(readOnly = true)
     public List<Order> searchOrders(@RequestParam("query") String query) {
         LOG.debug("REST request to search Orders for query {}", query);
         try {
@@ -230,16 +272,45 @@ public class OrderResource {
 
     /**
      * {@code POST  /orders/place-order} : Place an order from the current user's shopping cart.
+     * <p>
+     * In queued checkout mode the cart is only validated and the order is placed in the background: the response then
+     * has status {@code 202 (Accepted)}, with the state of the checkout in body and its polling URL as location.
      *
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new order.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new order, or with status
+     *     {@code 202 (Accepted)} and with body the queued checkout.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/place-order")
-    public ResponseEntity<Order> placeOrder() throws URISyntaxException {
+    public ResponseEntity<?> placeOrder() throws URISyntaxException {
         LOG.debug("REST request to place order from shopping cart");
+        if (checkoutQueueService.isEnabled()) {
+            CheckoutStatusDTO checkout = checkoutQueueService.enqueue();
+            return ResponseEntity.accepted().location(new URI("/api/orders/checkouts/" + checkout.handle())).body(checkout);
+        }
         Order order = orderService.placeOrderFromCart();
         return ResponseEntity.created(new URI("/api/orders/" + order.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, order.getId().toString()))
             .body(order);
     }
+
+    /**
+     * {@code GET  /orders/checkouts/:handle} : get the state of a queued checkout of the current user.
+     * <p>
+     * Not read-only on purpose: the state is read from the primary database, never from a lagging replica.
+     *
+     * @param handle the handle of the checkout.
+     * @param waitSeconds how long to wait for the checkout to complete or fail before answering, 0 to answer right away.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the checkout, or with status
+     *     {@code 404 (Not Found)}.
+     */
+    @GetMapping("/checkouts/{handle}")
+    public CompletableFuture<ResponseEntity<CheckoutStatusDTO>> getCheckout(
+        @PathVariable("handle") String handle,
+        @RequestParam(name = "waitSeconds", defaultValue = "0") long waitSeconds
+    ) {
+        LOG.debug("REST request to get Checkout : {}", handle);
+        String login = SecurityUtils.getCurrentUserLogin()
+            .orElseThrow(() -> new BadRequestAlertException("User not authenticated", ENTITY_NAME, "notauthenticated"));
+        return checkoutQueueService.awaitStatus(handle, login, Duration.ofSeconds(waitSeconds)).thenApply(ResponseUtil::wrapOrNotFound);
+    }
 }
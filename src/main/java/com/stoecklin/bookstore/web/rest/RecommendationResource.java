@@ -0,0 +1,41 @@
+package com.stoecklin.bookstore.web.rest;
+
+import com.stoecklin.bookstore.security.AuthoritiesConstants;
+import com.stoecklin.bookstore.service.CoPurchaseService;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller to manage the "customers also bought" model.
+ */
+@RestController
+@RequestMapping("/api/admin/recommendations")
+public class RecommendationResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecommendationResource.class);
+
+    private final CoPurchaseService coPurchaseService;
+
+    public RecommendationResource(CoPurchaseService coPurchaseService) {
+        this.coPurchaseService = coPurchaseService;
+    }
+
+    /**
+     * {@code POST  /admin/recommendations/rebuild} : rebuild the co-purchase model from the whole order history.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of books in the model in body.
+     */
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Map<String, Integer>> rebuild() {
+        LOG.debug("REST request to rebuild the co-purchase model");
+        int books = coPurchaseService.rebuild();
+        return ResponseEntity.ok(Map.of("books", books));
+    }
+}
@@ -109,6 +109,9 @@ public class ReviewResource {
 
         review = reviewRepository.save(review);
         reviewSearchRepository.index(review);
+        if (review.getBook() != null) {
+            reviewService.evictLookups(review.getBook().getId());
+        }
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, review.getId().toString()))
             .body(review);
@@ -160,6 +163,9 @@ public class ReviewResource {
             .map(reviewRepository::save)
             .map(savedReview -> {
                 reviewSearchRepository.index(savedReview);
+                if (savedReview.getBook() != null) {
+                    reviewService.evictLookups(savedReview.getBook().getId());
+                }
                 return savedReview;
             });
 
@@ -176,6 +182,7 @@ public class ReviewResource {
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of reviews in body.
      */
     @GetMapping("")
+    @Transactional(readOnly = true)
     public List<Review> getAllReviews(@RequestParam(name = "eagerload", required = false, defaultValue = "true") boolean eagerload) {
         LOG.debug("REST request to get all Reviews");
         if (eagerload) {
@@ -186,6 +193,7 @@ public class ReviewResource {
     }
 
     @GetMapping("/book/{bookId}")
+    @Transactional(readOnly = true)
     public ResponseEntity<List<Review>> getReviewsByBook(@PathVariable Long bookId) {
         List<Review> reviews = reviewService.findByBook(bookId);
         return ResponseEntity.ok(reviews);
@@ -199,6 +207,7 @@ public class ReviewResource {
      *     {@code 404 (Not Found)}.
      */
     @GetMapping("/{id}")
+    @Transactional(readOnly = true)
     public ResponseEntity<Review> getReview(@PathVariable("id") Long id) {
         LOG.debug("REST request to get Review : {}", id);
         Optional<Review> review = reviewRepository.findOneWithEagerRelationships(id);
@@ -239,6 +248,7 @@ public class ReviewResource {
      * @return the result of the search.
      */
     @GetMapping("/_search")
+    @Transactional(readOnly = true)
     public List<Review> searchReviews(@RequestParam("query") String query) {
         LOG.debug("REST request to search Reviews for query {}", query);
         try {
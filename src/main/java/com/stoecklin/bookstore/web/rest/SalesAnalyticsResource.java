@@ -0,0 +1,108 @@
+package com.stoecklin.bookstore.web.rest;
+
+import com.stoecklin.bookstore.security.AuthoritiesConstants;
+import com.stoecklin.bookstore.service.SalesAnalyticsService;
+import com.stoecklin.bookstore.service.dto.BookSalesDTO;
+import com.stoecklin.bookstore.service.dto.CategorySalesDTO;
+import com.stoecklin.bookstore.service.dto.DailySalesDTO;
+import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for the sales reports, served from the daily sales aggregates.
+ */
+@RestController
+@RequestMapping("/api/admin/sales")
+@PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+public class SalesAnalyticsResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SalesAnalyticsResource.class);
+
+    private static final String ENTITY_NAME = "sales";
+
+    private static final int MAX_TOP_SELLERS = 100;
+
+    private final SalesAnalyticsService salesAnalyticsService;
+
+    public SalesAnalyticsResource(SalesAnalyticsService salesAnalyticsService) {
+        this.salesAnalyticsService = salesAnalyticsService;
+    }
+
+    /**
+     * {@code GET  /admin/sales/revenue} : get the units sold and the revenue per day.
+     *
+     * @param from the first day, inclusive.
+     * @param to the last day, inclusive.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the figures per day in body.
+     */
+    @GetMapping("/revenue")
+    public List<DailySalesDTO> getRevenue(@RequestParam("from") LocalDate from, @RequestParam("to") LocalDate to) {
+        LOG.debug("REST request to get the revenue from {} to {}", from, to);
+        checkRange(from, to);
+        return salesAnalyticsService.findDailySales(from, to);
+    }
+
+    /**
+     * {@code GET  /admin/sales/top-sellers} : get the best selling books.
+     *
+     * @param from the first day, inclusive.
+     * @param to the last day, inclusive.
+     * @param limit the maximum number of books.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the books in body.
+     */
+    @GetMapping("/top-sellers")
+    public List<BookSalesDTO> getTopSellers(
+        @RequestParam("from") LocalDate from,
+        @RequestParam("to") LocalDate to,
+        @RequestParam(name = "limit", defaultValue = "10") int limit
+    ) {
+        LOG.debug("REST request to get the {} top sellers from {} to {}", limit, from, to);
+        checkRange(from, to);
+        if (limit < 1 || limit > MAX_TOP_SELLERS) {
+            throw new BadRequestAlertException("limit must be between 1 and " + MAX_TOP_SELLERS, ENTITY_NAME, "invalidlimit");
+        }
+        return salesAnalyticsService.findTopSellers(from, to, limit);
+    }
+
+    /**
+     * {@code GET  /admin/sales/categories} : get the units sold and the revenue per category.
+     *
+     * @param from the first day, inclusive.
+     * @param to the last day, inclusive.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the categories in body.
+     */
+    @GetMapping("/categories")
+    public List<CategorySalesDTO> getCategoryBreakdown(@RequestParam("from") LocalDate from, @RequestParam("to") LocalDate to) {
+        LOG.debug("REST request to get the category breakdown from {} to {}", from, to);
+        checkRange(from, to);
+        return salesAnalyticsService.findCategorySales(from, to);
+    }
+
+    /**
+     * {@code POST  /admin/sales/rebuild} : recompute the daily sales aggregates from the orders.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the number of aggregate rows in body.
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuild() {
+        LOG.debug("REST request to rebuild the daily sales aggregates");
+        return ResponseEntity.ok(Map.of("rows", salesAnalyticsService.rebuild()));
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new BadRequestAlertException("from must not be after to", ENTITY_NAME, "invalidrange");
+        }
+    }
+}
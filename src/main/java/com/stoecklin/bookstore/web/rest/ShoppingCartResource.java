@@ -5,14 +5,19 @@ import com.stoecklin.bookstore.domain.ShoppingCart;
 import com.stoecklin.bookstore.repository.ShoppingCartRepository;
 import com.stoecklin.bookstore.repository.UserRepository;
 import com.stoecklin.bookstore.repository.search.ShoppingCartSearchRepository;
+import com.stoecklin.bookstore.security.SecurityUtils;
 import com.stoecklin.bookstore.service.ShoppingCartService;
 import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
 import com.stoecklin.bookstore.web.rest.errors.ElasticsearchExceptionMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.StreamSupport;
@@ -57,16 +62,20 @@ public class ShoppingCartResource {
 
     private final UserRepository userRepository;
 
+    private final GuestCartCookies guestCartCookies;
+
     public ShoppingCartResource(
         ShoppingCartRepository shoppingCartRepository,
         ShoppingCartSearchRepository shoppingCartSearchRepository,
         ShoppingCartService shoppingCartService,
-        UserRepository userRepository
+        UserRepository userRepository,
+        GuestCartCookies guestCartCookies
     ) {
         this.shoppingCartRepository = shoppingCartRepository;
         this.shoppingCartSearchRepository = shoppingCartSearchRepository;
         this.shoppingCartService = shoppingCartService;
         this.userRepository = userRepository;
+        this.guestCartCookies = guestCartCookies;
     }
 
     /**
@@ -91,27 +100,54 @@ public class ShoppingCartResource {
     }
 
     /**
-     * {@code POST  /shopping-carts/add-book} : Add a book to the current user's cart.
+     * {@code POST  /shopping-carts/add-book} : Add a book to the current user's cart. The cart of an anonymous visitor
+     * is kept in a signed cookie, see {@link GuestCartCookies}.
      *
      * @param bookId the ID of the book to add
      * @param quantity the quantity to add (default 1)
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the cart item
      */
     @PostMapping("/add-book")
-    public ResponseEntity<CartItem> addBookToCart(@RequestParam Long bookId, @RequestParam(defaultValue = "1") Integer quantity) {
+    public ResponseEntity<CartItem> addBookToCart(
+        @RequestParam Long bookId,
+        @RequestParam(defaultValue = "1") Integer quantity,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) {
         LOG.debug("REST request to add book {} to current user's cart", bookId);
+        if (!SecurityUtils.isAuthenticated()) {
+            CartItem cartItem = shoppingCartService.guestItem(bookId, quantity);
+            Map<Long, Integer> items = new LinkedHashMap<>(guestCartCookies.read(request));
+            if (!items.containsKey(bookId) && items.size() >= guestCartCookies.getMaxItems()) {
+                throw new BadRequestAlertException(
+                    "A shopping cart holds at most " + guestCartCookies.getMaxItems() + " different books",
+                    ENTITY_NAME,
+                    "cartfull"
+                );
+            }
+            try {
+                cartItem.setQuantity(items.merge(bookId, quantity, Math::addExact));
+            } catch (ArithmeticException e) {
+                throw new BadRequestAlertException("Too many copies of the book", "cartItem", "invalidquantity");
+            }
+            guestCartCookies.write(request, response, items);
+            return ResponseEntity.ok(cartItem);
+        }
         CartItem cartItem = shoppingCartService.addItem(bookId, quantity);
         return ResponseEntity.ok(cartItem);
     }
 
     /**
-     * {@code GET  /shopping-carts/my-cart} : Get the current user's active cart.
+     * {@code GET  /shopping-carts/my-cart} : Get the current user's active cart, or the cart of an anonymous visitor.
      *
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the shopping cart
      */
     @GetMapping("/my-cart")
-    public ResponseEntity<ShoppingCart> getMyCart() {
+    public ResponseEntity<ShoppingCart> getMyCart(HttpServletRequest request) {
         LOG.debug("REST request to get current user's cart");
+        if (!SecurityUtils.isAuthenticated()) {
+            return ResponseEntity.ok(shoppingCartService.guestCart(guestCartCookies.read(request)));
+        }
         try {
             ShoppingCart cart = shoppingCartService.getOrCreateCurrentUserCart();
             return ResponseEntity.ok(cart);
@@ -18,6 +18,8 @@ public class LoginVM {
 
     private boolean rememberMe;
 
+    private boolean withRefreshToken;
+
     public String getUsername() {
         return username;
     }
@@ -42,12 +44,21 @@ public class LoginVM {
         this.rememberMe = rememberMe;
     }
 
+    public boolean isWithRefreshToken() {
+        return withRefreshToken;
+    }
+
+    public void setWithRefreshToken(boolean withRefreshToken) {
+        this.withRefreshToken = withRefreshToken;
+    }
+
     // prettier-ignore
     @Override
     public String toString() {
         return "LoginVM{" +
             "username='" + username + '\'' +
             ", rememberMe=" + rememberMe +
+            ", withRefreshToken=" + withRefreshToken +
             '}';
     }
 }
@@ -0,0 +1,151 @@
+package com.stoecklin.bookstore.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Payload size, encoding time and decoding time of a page of books in each format the API serves. Encoding uses the
+ * mappers the converters are built with; decoding reads a tree, as a client without the entity classes would.
+ * <p>
+ * Not a test: run {@link #main(String[])} once the test classes are compiled ({@code ./mvnw test-compile}); the payload
+ * sizes are printed before the benchmarks run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ApiFormatsBenchmark {
+
+    private static final Type BOOK_LIST = ResolvableType.forClassWithGenerics(List.class, Book.class).getType();
+
+    @Param({ "json", "cbor", "smile", "protobuf" })
+    String format;
+
+    @Param({ "1000" })
+    int books;
+
+    private Object value;
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<Book> page = page(books);
+        value = page;
+        switch (format) {
+            case "json" -> {
+                ObjectMapper mapper = builder().build();
+                writer = mapper.writerFor(List.class);
+                reader = mapper.reader();
+            }
+            case "cbor" -> {
+                ObjectMapper mapper = builder().factory(new CBORFactory()).build();
+                writer = mapper.writerFor(List.class);
+                reader = mapper.reader();
+            }
+            case "smile" -> {
+                ObjectMapper mapper = builder().factory(new SmileFactory()).build();
+                writer = mapper.writerFor(List.class);
+                reader = mapper.reader();
+            }
+            case "protobuf" -> {
+                JacksonProtobufHttpMessageConverter converter = new JacksonProtobufHttpMessageConverter(builder());
+                ProtobufSchema schema = converter.schemaFor(BOOK_LIST);
+                value = Map.of("books", page);
+                writer = converter.getObjectMapper().writer(schema);
+                reader = converter.getObjectMapper().reader(schema);
+            }
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        }
+        payload = writer.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public JsonNode decode() throws IOException {
+        return reader.readTree(payload);
+    }
+
+    static List<Book> page(int books) {
+        List<Category> categories = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            categories.add(new Category().id(id).name("Category " + id));
+        }
+        List<Book> page = new ArrayList<>(books);
+        for (long id = 1; id <= books; id++) {
+            page.add(
+                new Book()
+                    .id(id)
+                    .title("Title of book " + id)
+                    .author("Author " + (id % 300))
+                    .description("A description of book " + id + " that is about as long as the ones in the catalogue.")
+                    .price(BigDecimal.valueOf(1000 + id % 4000, 2))
+                    .stock((int) (id % 50))
+                    .averageRating(1 + (id % 40) / 10.0)
+                    .category(categories.get((int) (id % categories.size())))
+            );
+        }
+        return page;
+    }
+
+    private static Jackson2ObjectMapperBuilder builder() {
+        JacksonConfiguration configuration = new JacksonConfiguration();
+        return Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(configuration.hibernate6Module(), configuration.blackbirdModule(), configuration.dtoSerializersModule());
+    }
+
+    private static void printPayloadSizes() throws IOException, ReflectiveOperationException {
+        ApiFormatsBenchmark benchmark = new ApiFormatsBenchmark();
+        benchmark.books = Integer.parseInt(ApiFormatsBenchmark.class.getDeclaredField("books").getAnnotation(Param.class).value()[0]);
+        for (String format : ApiFormatsBenchmark.class.getDeclaredField("format").getAnnotation(Param.class).value()) {
+            benchmark.format = format;
+            benchmark.setUp();
+            System.out.printf("%s payload for %d books: %d bytes%n", format, benchmark.books, benchmark.payload.length);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, ReflectiveOperationException, RunnerException {
+        printPayloadSizes();
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(ApiFormatsBenchmark.class.getSimpleName() + "." + System.getProperty("benchmark.include", ""));
+        new Runner(options.build()).run();
+    }
+}
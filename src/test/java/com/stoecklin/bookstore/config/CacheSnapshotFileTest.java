@@ -0,0 +1,57 @@
+package com.stoecklin.bookstore.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CacheSnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        Instant createdAt = Instant.ofEpochMilli(1_700_000_000_000L);
+        List<CacheSnapshotFile.Region> regions = List.of(
+            new CacheSnapshotFile.Region("com.stoecklin.bookstore.domain.Book", List.of(1L, 2L, 42L)),
+            new CacheSnapshotFile.Region("usersByLogin", List.of("admin", "ünïcode")),
+            new CacheSnapshotFile.Region("empty", List.of())
+        );
+
+        CacheSnapshotFile.write(file, createdAt, regions);
+        CacheSnapshotFile.Snapshot snapshot = CacheSnapshotFile.read(file);
+
+        assertThat(snapshot.createdAt()).isEqualTo(createdAt);
+        assertThat(snapshot.regions()).isEqualTo(regions);
+        try (var files = Files.list(directory)) {
+            assertThat(files).containsExactly(file);
+        }
+    }
+
+    @Test
+    void rejectsTruncatedSnapshot() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        CacheSnapshotFile.write(file, Instant.now(), List.of(new CacheSnapshotFile.Region("usersByLogin", List.of("admin", "user"))));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertThatThrownBy(() -> CacheSnapshotFile.read(file)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        Files.writeString(file, "not a snapshot at all");
+
+        assertThatThrownBy(() -> CacheSnapshotFile.read(file)).isInstanceOf(IOException.class);
+    }
+}
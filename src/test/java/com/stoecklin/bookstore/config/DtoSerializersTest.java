@@ -0,0 +1,30 @@
+package com.stoecklin.bookstore.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stoecklin.bookstore.service.dto.BookDeltaDTO;
+import com.stoecklin.bookstore.service.dto.CategoryWithCountDTO;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DtoSerializersTest {
+
+    private final ObjectMapper introspecting = new ObjectMapper();
+    private final ObjectMapper handWritten = new ObjectMapper().registerModule(DtoSerializers.module());
+
+    @Test
+    void bookDeltasAreWrittenAsTheRecordsWouldBe() throws Exception {
+        List<BookDeltaDTO> deltas = List.of(new BookDeltaDTO(1L, 3, new BigDecimal("12.50")), new BookDeltaDTO(2L, null, null));
+
+        assertThat(handWritten.writeValueAsString(deltas)).isEqualTo(introspecting.writeValueAsString(deltas));
+    }
+
+    @Test
+    void categoryCountsAreWrittenAsTheRecordsWouldBe() throws Exception {
+        List<CategoryWithCountDTO> categories = List.of(new CategoryWithCountDTO(1L, "Poetry \"and\" verse", 42), new CategoryWithCountDTO(2L, null, 0));
+
+        assertThat(handWritten.writeValueAsString(categories)).isEqualTo(introspecting.writeValueAsString(categories));
+    }
+}
@@ -0,0 +1,126 @@
+package com.stoecklin.bookstore.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.OrderItem;
+import com.stoecklin.bookstore.domain.Review;
+import com.stoecklin.bookstore.domain.User;
+import com.stoecklin.bookstore.domain.enumeration.OrderStatus;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+class JacksonProtobufHttpMessageConverterTest {
+
+    private static final Type BOOK_LIST = ResolvableType.forClassWithGenerics(List.class, Book.class).getType();
+
+    private JacksonProtobufHttpMessageConverter converter;
+
+    @BeforeEach
+    void setup() {
+        converter = new JacksonProtobufHttpMessageConverter(
+            Jackson2ObjectMapperBuilder.json().modulesToInstall(new JacksonConfiguration().hibernate6Module())
+        );
+    }
+
+    @Test
+    void writesOnlyTypesWithAMessage() {
+        MediaType protobuf = JacksonProtobufHttpMessageConverter.APPLICATION_PROTOBUF;
+
+        assertThat(converter.canWrite(Book.class, protobuf)).isTrue();
+        assertThat(converter.canWrite(BOOK_LIST, List.class, protobuf)).isTrue();
+        assertThat(converter.canWrite(Category.class, protobuf)).isFalse();
+        assertThat(converter.canWrite(Book.class, MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(converter.canRead(Book.class, protobuf)).isFalse();
+    }
+
+    @Test
+    void rejectsRequestBodiesAsNotReadable() {
+        MockHttpInputMessage input = new MockHttpInputMessage(new byte[] { 10, 1, 65 });
+
+        assertThatThrownBy(() -> converter.read(Book.class, input)).isInstanceOf(HttpMessageNotReadableException.class);
+        assertThatThrownBy(() -> converter.read(BOOK_LIST, null, input)).isInstanceOf(HttpMessageNotReadableException.class);
+    }
+
+    @Test
+    void writesTheSchemaPropertiesOfABook() throws Exception {
+        Book book = book(1L);
+        book.addReview(new Review().id(9L).rating(5).comment("Not in the schema"));
+
+        Map<String, Object> decoded = read(write(book, Book.class), Book.class);
+
+        assertThat(decoded)
+            .containsEntry("id", 1L)
+            .containsEntry("title", "Title 1")
+            .containsEntry("price", "12.50")
+            .containsEntry("stock", 3)
+            .containsEntry("category", Map.of("id", 7L, "name", "Poetry"))
+            .doesNotContainKey("reviews");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writesListsAsTheRepeatedFieldOfTheirWrapper() throws Exception {
+        Map<String, Object> decoded = read(write(List.of(book(1L), book(2L)), BOOK_LIST), BOOK_LIST);
+
+        assertThat(decoded).containsOnlyKeys("books");
+        assertThat((List<Map<String, Object>>) decoded.get("books")).extracting(value -> value.get("id")).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void writesOnlyTheIdAndLoginOfUsers() throws Exception {
+        User user = new User();
+        user.setId(4L);
+        user.setLogin("reader");
+        user.setEmail("reader@localhost");
+        Order order = new Order()
+            .id(3L)
+            .totalPrice(new BigDecimal("25.00"))
+            .placedAt(Instant.parse("2026-10-19T12:00:00Z"))
+            .status(OrderStatus.values()[0])
+            .user(user)
+            .addItems(new OrderItem().id(8L).quantity(2).price(new BigDecimal("12.50")).book(book(1L)));
+
+        Map<String, Object> decoded = read(write(order, Order.class), Order.class);
+
+        assertThat(decoded)
+            .containsEntry("placedAt", "2026-10-19T12:00:00Z")
+            .containsEntry("status", OrderStatus.values()[0].name())
+            .containsEntry("user", Map.of("id", 4L, "login", "reader"));
+        assertThat((List<?>) decoded.get("items")).hasSize(1);
+    }
+
+    private static Book book(long id) {
+        return new Book()
+            .id(id)
+            .title("Title " + id)
+            .author("Author")
+            .price(new BigDecimal("12.50"))
+            .stock(3)
+            .category(new Category().id(7L).name("Poetry"));
+    }
+
+    private byte[] write(Object value, Type type) throws Exception {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(value, type, JacksonProtobufHttpMessageConverter.APPLICATION_PROTOBUF, output);
+        return output.getBodyAsBytes();
+    }
+
+    private Map<String, Object> read(byte[] bytes, Type type) throws Exception {
+        return converter.getObjectMapper().readerFor(Map.class).with(converter.schemaFor(type)).readValue(bytes);
+    }
+}
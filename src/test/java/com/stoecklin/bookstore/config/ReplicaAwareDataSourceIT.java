@@ -0,0 +1,121 @@
+package com.stoecklin.bookstore.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Routes through the {@link ReadReplicaConfiguration} data source to two real databases, the "replica" being a second
+ * database holding a different {@code node} row, so that every statement tells which database answered it.
+ */
+class ReplicaAwareDataSourceIT {
+
+    private static final PostgreSQLContainer<?> PRIMARY = new PostgreSQLContainer<>("postgres:17.4").withDatabaseName("primary");
+    private static final PostgreSQLContainer<?> REPLICA = new PostgreSQLContainer<>("postgres:17.4").withDatabaseName("replica");
+
+    private static HikariDataSource primaryPool;
+    private static HikariDataSource replicaPool;
+
+    @BeforeAll
+    static void startDatabases() {
+        PRIMARY.start();
+        REPLICA.start();
+        primaryPool = pool(PRIMARY);
+        replicaPool = pool(REPLICA);
+        createNode(primaryPool, "primary");
+        createNode(replicaPool, "replica");
+    }
+
+    @AfterAll
+    static void stopDatabases() {
+        primaryPool.close();
+        replicaPool.close();
+        PRIMARY.stop();
+        REPLICA.stop();
+    }
+
+    @AfterEach
+    void cleanup() {
+        ReadYourWritesContext.clear();
+    }
+
+    @Test
+    void readOnlyTransactionsShouldHitTheReplica() {
+        DataSource dataSource = routingDataSource(null);
+
+        assertThat(node(dataSource, true)).isEqualTo("replica");
+    }
+
+    @Test
+    void readWriteTransactionsShouldHitThePrimary() {
+        DataSource dataSource = routingDataSource(null);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        transaction.executeWithoutResult(status -> new JdbcTemplate(dataSource).update("UPDATE node SET name = 'written'"));
+
+        assertThat(new JdbcTemplate(primaryPool).queryForObject("SELECT name FROM node", String.class)).isEqualTo("written");
+        assertThat(new JdbcTemplate(replicaPool).queryForObject("SELECT name FROM node", String.class)).isEqualTo("replica");
+        transaction.executeWithoutResult(status -> new JdbcTemplate(dataSource).update("UPDATE node SET name = 'primary'"));
+    }
+
+    @Test
+    void readOnlyTransactionsShouldHitThePrimaryWhileTheReplicaLags() {
+        DataSource dataSource = routingDataSource("SELECT 60");
+
+        assertThat(node(dataSource, true)).isEqualTo("primary");
+    }
+
+    @Test
+    void readOnlyTransactionsShouldHitThePrimaryAfterAWriteInTheSameRequest() {
+        DataSource dataSource = routingDataSource(null);
+        ReadYourWritesContext.markWritten();
+
+        assertThat(node(dataSource, true)).isEqualTo("primary");
+    }
+
+    private static DataSource routingDataSource(String lagQuery) {
+        ApplicationProperties.ReadReplica properties = new ApplicationProperties.ReadReplica();
+        properties.setLagQuery(lagQuery);
+        properties.setMaxLag(Duration.ofSeconds(5));
+        ReplicationLagMonitor monitor = new ReplicationLagMonitor(replicaPool, properties, new SimpleMeterRegistry());
+        if (lagQuery != null) {
+            monitor.check();
+        }
+        return new ReadReplicaConfiguration().dataSource(primaryPool, replicaPool, monitor);
+    }
+
+    private static String node(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class));
+    }
+
+    private static void createNode(DataSource dataSource, String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource)).executeWithoutResult(status -> {
+            jdbcTemplate.execute("CREATE TABLE node (name varchar(10))");
+            jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", name);
+        });
+    }
+
+    private static HikariDataSource pool(PostgreSQLContainer<?> container) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(container.getJdbcUrl());
+        pool.setUsername(container.getUsername());
+        pool.setPassword(container.getPassword());
+        pool.setAutoCommit(false);
+        pool.setMaximumPoolSize(2);
+        return pool;
+    }
+}
@@ -0,0 +1,105 @@
+package com.stoecklin.bookstore.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+class ReplicaAwareDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+    private Connection primaryConnection;
+    private Connection replicaConnection;
+    private AtomicBoolean replicaUsable;
+    private LazyConnectionDataSourceProxy dataSource;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        primary = mock(DataSource.class);
+        replica = mock(DataSource.class);
+        primaryConnection = mock(Connection.class);
+        replicaConnection = mock(Connection.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(primaryConnection.getAutoCommit()).thenReturn(false);
+        when(primaryConnection.getTransactionIsolation()).thenReturn(Connection.TRANSACTION_READ_COMMITTED);
+        replicaUsable = new AtomicBoolean(true);
+
+        dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setDefaultAutoCommit(false);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        dataSource.setReadOnlyDataSource(new ReplicaAwareDataSource(replica, primary, replicaUsable::get));
+    }
+
+    @AfterEach
+    void cleanup() {
+        ReadYourWritesContext.clear();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void commitsShouldPinOnlyRequestThreadsToThePrimary() {
+        TransactionExecution transaction = mock(TransactionExecution.class);
+        ReadYourWritesContext.WriteTrackingListener listener = new ReadYourWritesContext.WriteTrackingListener();
+
+        listener.afterCommit(transaction, null);
+        assertThat(ReadYourWritesContext.isPinnedToPrimary()).isFalse();
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        listener.afterCommit(transaction, null);
+        assertThat(ReadYourWritesContext.isPinnedToPrimary()).isTrue();
+    }
+
+    @Test
+    void readOnlyConnectionsShouldUseTheReplica() throws SQLException {
+        assertThat(firstStatementTarget(true)).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void readWriteConnectionsShouldUseThePrimary() throws SQLException {
+        assertThat(firstStatementTarget(false)).isSameAs(primaryConnection);
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void readOnlyConnectionsShouldFallBackToThePrimaryWhenTheReplicaLags() throws SQLException {
+        replicaUsable.set(false);
+
+        assertThat(firstStatementTarget(true)).isSameAs(primaryConnection);
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void readOnlyConnectionsShouldUseThePrimaryAfterAWriteInTheSameRequest() throws SQLException {
+        ReadYourWritesContext.markWritten();
+
+        assertThat(firstStatementTarget(true)).isSameAs(primaryConnection);
+
+        ReadYourWritesContext.clear();
+
+        assertThat(firstStatementTarget(true)).isSameAs(replicaConnection);
+    }
+
+    private Connection firstStatementTarget(boolean readOnly) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        connection.setReadOnly(readOnly);
+        connection.createStatement();
+        return ((ConnectionProxy) connection).getTargetConnection();
+    }
+}
@@ -0,0 +1,188 @@
+package com.stoecklin.bookstore.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.DefaultHealthContributorRegistry;
+import org.springframework.boot.actuate.health.HealthContributorRegistry;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+
+class StartupTaskRunnerTest {
+
+    private HealthContributorRegistry registry;
+    private ApplicationProperties applicationProperties;
+    private StartupTaskRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        registry = new DefaultHealthContributorRegistry();
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getStartupTasks().setMaxAttempts(3);
+        applicationProperties.getStartupTasks().setInitialBackoff(Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (runner != null) {
+            runner.stop();
+        }
+    }
+
+    @Test
+    void holdsReadinessUntilTasksAreDone() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        runner = new StartupTaskRunner(
+            List.of(task("blocking", true, Set.of(), progress -> release.await()), task("background", false, Set.of(), progress -> {})),
+            registry,
+            applicationProperties
+        );
+        assertThat(status("blocking")).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(status("background")).isEqualTo(Status.UP);
+
+        runner.start();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> runner.getProgress("background").getStatus() == StartupTaskProgress.Status.DONE);
+        assertThat(status("blocking")).isEqualTo(Status.OUT_OF_SERVICE);
+
+        release.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> status("blocking").equals(Status.UP));
+    }
+
+    @Test
+    void runsIndependentTasksInParallelAndDependentOnesInOrder() {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger finishedBeforeLast = new AtomicInteger(-1);
+        runner = new StartupTaskRunner(
+            List.of(
+                task("last", true, Set.of("first", "second"), progress -> finishedBeforeLast.set(finished.get())),
+                task("first", true, Set.of(), progress -> {
+                    bothRunning.countDown();
+                    bothRunning.await();
+                    finished.incrementAndGet();
+                }),
+                task("second", true, Set.of(), progress -> {
+                    bothRunning.countDown();
+                    bothRunning.await();
+                    finished.incrementAndGet();
+                })
+            ),
+            registry,
+            applicationProperties
+        );
+
+        runner.start();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> status("last").equals(Status.UP));
+        assertThat(finishedBeforeLast.get()).isEqualTo(2);
+    }
+
+    @Test
+    void retriesFailedTasksThenReportsThemAsFailed() {
+        AtomicInteger flakyAttempts = new AtomicInteger();
+        runner = new StartupTaskRunner(
+            List.of(
+                task("flaky", true, Set.of(), progress -> {
+                    if (flakyAttempts.incrementAndGet() < 2) {
+                        throw new IllegalStateException("not yet");
+                    }
+                }),
+                task("broken", true, Set.of(), progress -> {
+                    throw new IllegalStateException("never");
+                }),
+                task("dependent", true, Set.of("broken"), progress -> {})
+            ),
+            registry,
+            applicationProperties
+        );
+
+        runner.start();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> status("dependent").equals(Status.DOWN));
+        assertThat(status("flaky")).isEqualTo(Status.UP);
+        assertThat(runner.getProgress("flaky").getAttempts()).isEqualTo(2);
+        assertThat(status("broken")).isEqualTo(Status.DOWN);
+        assertThat(runner.getProgress("broken").getAttempts()).isEqualTo(3);
+        assertThat(runner.getProgress("dependent").getAttempts()).isZero();
+    }
+
+    @Test
+    void keepsRetryingFailedTasksInTheBackground() {
+        applicationProperties.getStartupTasks().setMaxBackoff(Duration.ofMillis(50));
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch recover = new CountDownLatch(1);
+        runner = new StartupTaskRunner(
+            List.of(
+                task("unreachable", true, Set.of(), progress -> {
+                    if (attempts.incrementAndGet() > 3) {
+                        recover.await();
+                    } else {
+                        throw new IllegalStateException("unreachable");
+                    }
+                }),
+                task("dependent", true, Set.of("unreachable"), progress -> {})
+            ),
+            registry,
+            applicationProperties
+        );
+
+        runner.start();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> status("dependent").equals(Status.DOWN));
+        assertThat(status("unreachable")).isIn(Status.DOWN, Status.OUT_OF_SERVICE);
+
+        recover.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> status("dependent").equals(Status.UP));
+        assertThat(status("unreachable")).isEqualTo(Status.UP);
+        assertThat(runner.getProgress("unreachable").getAttempts()).isEqualTo(4);
+    }
+
+    @Test
+    void rejectsDependencyCycles() {
+        List<StartupTask> tasks = List.of(task("a", true, Set.of("b"), progress -> {}), task("b", true, Set.of("a"), progress -> {}));
+
+        assertThatThrownBy(() -> new StartupTaskRunner(tasks, registry, applicationProperties)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private Status status(String name) {
+        return ((HealthIndicator) registry.getContributor(name)).health().getStatus();
+    }
+
+    private interface Body {
+        void run(StartupTaskProgress progress) throws Exception;
+    }
+
+    private static StartupTask task(String name, boolean blocksReadiness, Set<String> dependencies, Body body) {
+        return new StartupTask() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public boolean blocksReadiness() {
+                return blocksReadiness;
+            }
+
+            @Override
+            public Set<String> getDependencies() {
+                return dependencies;
+            }
+
+            @Override
+            public void run(StartupTaskProgress progress) throws Exception {
+                body.run(progress);
+            }
+        };
+    }
+}
@@ -8,10 +8,13 @@ import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.CacheControl;
+import org.springframework.http.server.PathContainer;
 import org.springframework.mock.web.MockServletContext;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
 import tech.jhipster.config.JHipsterDefaults;
 import tech.jhipster.config.JHipsterProperties;
 
@@ -73,4 +76,26 @@ class StaticResourcesWebConfigurerTest {
             .extracting(CacheControl::getHeaderValue)
             .isEqualTo(cacheExpected.getHeaderValue());
     }
+
+    @Test
+    void shouldServeHashedResourcesAsImmutable() {
+        staticResourcesWebConfiguration.addResourceHandlers(resourceHandlerRegistry);
+
+        verify(resourceHandlerRegistry, times(1)).addResourceHandler(HASHED_RESOURCE_PATHS);
+        verify(staticResourcesWebConfiguration, times(1)).initializeHashedResourceHandler(any(ResourceHandlerRegistration.class));
+        assertThat(staticResourcesWebConfiguration.getHashedCacheControl().getHeaderValue())
+            .isEqualTo("max-age=31536000, public, immutable");
+    }
+
+    @Test
+    void shouldOnlyMatchContentHashedBundlesAsImmutable() {
+        PathPattern hashedBundles = PathPatternParser.defaultInstance.parse(HASHED_RESOURCE_PATHS[0]);
+        PathPattern bundles = PathPatternParser.defaultInstance.parse("/*.js");
+
+        assertThat(hashedBundles.matches(PathContainer.parsePath("/main.1c3b5a7e9d0f2468.js"))).isTrue();
+        assertThat(hashedBundles.matches(PathContainer.parsePath("/styles.0123456789abcdef.css"))).isTrue();
+        assertThat(hashedBundles.matches(PathContainer.parsePath("/ngsw-worker.js"))).isFalse();
+        assertThat(hashedBundles.matches(PathContainer.parsePath("/worker-basic.min.js"))).isFalse();
+        assertThat(PathPattern.SPECIFICITY_COMPARATOR.compare(hashedBundles, bundles)).isNegative();
+    }
 }
@@ -13,6 +13,8 @@ class SecurityMetersServiceTests {
 
     private static final String INVALID_TOKENS_METER_EXPECTED_NAME = "security.authentication.invalid-tokens";
 
+    private static final String AUTHENTICATIONS_METER_EXPECTED_NAME = "security.authentication.requests";
+
     private MeterRegistry meterRegistry;
 
     private SecurityMetersService securityMetersService;
@@ -67,4 +69,31 @@ class SecurityMetersServiceTests {
 
         assertThat(meterRegistry.get(INVALID_TOKENS_METER_EXPECTED_NAME).tag("cause", "malformed").counter().count()).isEqualTo(1);
     }
+
+    @Test
+    void testAuthenticationCountersByGrantAndOutcomeAreCreated() {
+        Collection<Counter> counters = meterRegistry.find(AUTHENTICATIONS_METER_EXPECTED_NAME).counters();
+
+        assertThat(counters).hasSize(4);
+        assertThat(meterRegistry.get("security.authentication.refresh-token-reuse").counter().count()).isZero();
+    }
+
+    @Test
+    void testLoginsAndRefreshesAreCountedApart() {
+        securityMetersService.trackPasswordLogin(true);
+        securityMetersService.trackPasswordLogin(false);
+        securityMetersService.trackRefresh(true);
+        securityMetersService.trackRefresh(true);
+        securityMetersService.trackRefreshTokenReuse();
+
+        assertThat(authentications("password", "success")).isEqualTo(1);
+        assertThat(authentications("password", "failure")).isEqualTo(1);
+        assertThat(authentications("refresh-token", "success")).isEqualTo(2);
+        assertThat(authentications("refresh-token", "failure")).isZero();
+        assertThat(meterRegistry.get("security.authentication.refresh-token-reuse").counter().count()).isEqualTo(1);
+    }
+
+    private double authentications(String grant, String outcome) {
+        return meterRegistry.get(AUTHENTICATIONS_METER_EXPECTED_NAME).tag("grant", grant).tag("outcome", outcome).counter().count();
+    }
 }
@@ -0,0 +1,218 @@
+package com.stoecklin.bookstore.repository.cart;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.CartItem;
+import com.stoecklin.bookstore.domain.ShoppingCart;
+import com.stoecklin.bookstore.domain.User;
+import com.stoecklin.bookstore.repository.BookRepository;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class MappedCartStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private ApplicationProperties applicationProperties;
+
+    @BeforeEach
+    void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getCart().setDirectory(directory.toString());
+        applicationProperties.getCart().setMaxItems(3);
+        applicationProperties.getCart().setInitialCapacity(4);
+        when(bookRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false).map(MappedCartStoreTest::book).collect(Collectors.toList());
+        });
+    }
+
+    @Test
+    void addsAndRemovesBooksInOrder() throws IOException {
+        MappedCartStore store = open();
+        User user = user(1);
+
+        assertThat(store.findOpenCart(user)).isEmpty();
+        assertThat(store.getOrCreateOpenCart(user).getItems()).isEmpty();
+        store.addItem(user, book(30), 1);
+        store.addItem(user, book(10), 2);
+        CartItem item = store.addItem(user, book(30), 2);
+        store.addItem(user(2), book(10), 1);
+
+        assertThat(item.getQuantity()).isEqualTo(3);
+        assertThat(items(store, user)).containsExactly(Map.entry(30L, 3), Map.entry(10L, 2));
+        store.removeItem(user, 30L);
+        assertThat(items(store, user)).containsExactly(Map.entry(10L, 2));
+        store.removeItem(user, 10L);
+        assertThat(store.findOpenCart(user)).isEmpty();
+        assertThat(items(store, user(2))).containsExactly(Map.entry(10L, 1));
+    }
+
+    @Test
+    void rejectsMoreBooksThanACartHolds() throws IOException {
+        MappedCartStore store = open();
+        User user = user(1);
+        store.addItem(user, book(1), 1);
+        store.addItem(user, book(2), 1);
+        store.addItem(user, book(3), 1);
+
+        assertThatThrownBy(() -> store.addItem(user, book(4), 1)).isInstanceOf(CartStore.CartFullException.class);
+        assertThat(store.addItem(user, book(3), 1).getQuantity()).isEqualTo(2);
+        assertThat(items(store, user)).hasSize(3);
+    }
+
+    @Test
+    void rejectsQuantitiesThatOverflow() throws IOException {
+        MappedCartStore store = open();
+        User user = user(1);
+        store.addItem(user, book(1), Integer.MAX_VALUE - 1);
+
+        assertThatThrownBy(() -> store.addItem(user, book(1), 2)).isInstanceOf(ArithmeticException.class);
+        store.addItems(user, Map.of(1L, 2));
+        assertThat(items(store, user)).containsExactly(Map.entry(1L, Integer.MAX_VALUE - 1));
+    }
+
+    @Test
+    void mergesSeveralBooksAndLeavesOutThoseThatDoNotFit() throws IOException {
+        MappedCartStore store = open();
+        User user = user(1);
+        store.addItem(user, book(1), 1);
+        store.addItem(user, book(2), 1);
+        Map<Long, Integer> guestCart = new LinkedHashMap<>();
+        guestCart.put(2L, 3);
+        guestCart.put(3L, 1);
+        guestCart.put(4L, 2);
+
+        store.addItems(user, guestCart);
+
+        assertThat(items(store, user)).containsExactly(Map.entry(1L, 1), Map.entry(2L, 4), Map.entry(3L, 1));
+        assertThat(items(open(), user)).containsExactly(Map.entry(1L, 1), Map.entry(2L, 4), Map.entry(3L, 1));
+    }
+
+    @Test
+    void recoversFromTheLogAfterACrash() throws IOException {
+        MappedCartStore store = open();
+        store.addItem(user(1), book(1), 2);
+        store.addItem(user(1), book(2), 1);
+        store.removeItem(user(1), 1L);
+        store.addItem(user(2), book(5), 4);
+
+        // no close(): the log has not been compacted
+        MappedCartStore recovered = open();
+
+        assertThat(items(recovered, user(1))).containsExactly(Map.entry(2L, 1));
+        assertThat(items(recovered, user(2))).containsExactly(Map.entry(5L, 4));
+    }
+
+    @Test
+    void replaysTheLogOverTheSnapshotAndCutsOffATornRecord() throws IOException {
+        MappedCartStore store = open();
+        store.addItem(user(1), book(1), 1);
+        store.addItem(user(2), book(2), 2);
+        store.compact();
+        store.addItem(user(1), book(3), 3);
+        store.removeItem(user(2), 2L);
+        Files.write(directory.resolve("carts.wal"), new byte[] { 1, 0, 0, 7 }, StandardOpenOption.APPEND);
+
+        MappedCartStore recovered = open();
+
+        assertThat(items(recovered, user(1))).containsExactly(Map.entry(1L, 1), Map.entry(3L, 3));
+        assertThat(recovered.findOpenCart(user(2))).isEmpty();
+        recovered.addItem(user(2), book(4), 1);
+        assertThat(items(open(), user(2))).containsExactly(Map.entry(4L, 1));
+    }
+
+    @Test
+    void growsAndShrinksTheTable() throws IOException {
+        MappedCartStore store = open();
+        for (long id = 1; id <= 500; id++) {
+            store.addItem(user(id), book(id), (int) id);
+        }
+        for (long id = 1; id <= 500; id += 2) {
+            store.removeItem(user(id), id);
+        }
+
+        MappedCartStore reopened = open();
+        for (long id = 1; id <= 500; id++) {
+            if (id % 2 == 0) {
+                assertThat(items(store, user(id))).containsExactly(Map.entry(id, (int) id));
+                assertThat(items(reopened, user(id))).containsExactly(Map.entry(id, (int) id));
+            } else {
+                assertThat(store.findOpenCart(user(id))).isEmpty();
+            }
+        }
+    }
+
+    @Test
+    void takesCheckedOutBooksOutAndPutsThemBackOnRollback() throws IOException {
+        MappedCartStore store = open();
+        User user = user(1);
+        store.addItem(user, book(1), 2);
+        store.addItem(user, book(2), 1);
+        ShoppingCart cart = store.findOpenCart(user).orElseThrow();
+
+        List<TransactionSynchronization> synchronizations = new ArrayList<>();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.checkOut(cart);
+            assertThatThrownBy(() -> store.checkOut(cart)).isInstanceOf(ConcurrencyFailureException.class);
+            synchronizations.addAll(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(store.findOpenCart(user)).isEmpty();
+
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(items(store, user)).containsExactly(Map.entry(1L, 2), Map.entry(2L, 1));
+    }
+
+    private MappedCartStore open() throws IOException {
+        return new MappedCartStore(bookRepository, applicationProperties);
+    }
+
+    private static Map<Long, Integer> items(MappedCartStore store, User user) {
+        return store
+            .findOpenCart(user)
+            .orElseThrow()
+            .getItems()
+            .stream()
+            .collect(Collectors.toMap(item -> item.getBook().getId(), CartItem::getQuantity, Integer::sum, LinkedHashMap::new));
+    }
+
+    private static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static Book book(long id) {
+        Book book = new Book();
+        book.setId(id);
+        book.setPrice(BigDecimal.TEN);
+        return book;
+    }
+}
@@ -0,0 +1,186 @@
+package com.stoecklin.bookstore.repository.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.lucene.document.Document;
+import org.elasticsearch.client.RestClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Latency of book searches in the embedded Lucene index against Elasticsearch, on the same synthetic catalogue. Only the
+ * search itself is measured, up to the ids of the best matches: loading the books from the database is the same for
+ * both.
+ * <p>
+ * Not a test: run {@link #main(String[])} once the test classes are compiled ({@code ./mvnw test-compile}). The
+ * Elasticsearch benchmark needs a node at {@code -Dbenchmark.elasticsearch.url} (default {@code http://localhost:9200}),
+ * where it creates a {@code book-benchmark} index; run only the Lucene one with {@code -Dbenchmark.include=lucene}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookSearchBenchmark {
+
+    private static final String ES_INDEX = "book-benchmark";
+    private static final String[] FIELDS = { "title", "author", "description", "category" };
+    private static final Map<String, Float> BOOSTS = Map.of("title", 3f, "author", 2f);
+    private static final String[] WORDS = {
+        "shadow", "river", "empire", "garden", "winter", "silent", "glass", "machine", "orchard", "harbor",
+        "letters", "north", "crown", "forest", "island", "memory", "salt", "thunder", "paper", "lantern",
+    };
+    private static final String[] QUERIES = { "shadow", "winter garden", "title:empire", "crown AND forest", "lantern*", "memory -salt" };
+
+    @Param({ "10000", "100000" })
+    int books;
+
+    @Param({ "20" })
+    int maxResults;
+
+    private Path directory;
+    private LuceneSearchEngine engine;
+    private LuceneIndex index;
+    private RestClient restClient;
+    private ElasticsearchClient elasticsearch;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        Map<Long, Map<String, String>> catalogue = new LinkedHashMap<>();
+        for (long id = 1; id <= books; id++) {
+            catalogue.put(
+                id,
+                Map.of(
+                    "title",
+                    words(random, 3),
+                    "author",
+                    words(random, 2),
+                    "description",
+                    words(random, 40),
+                    "category",
+                    WORDS[random.nextInt(WORDS.length)]
+                )
+            );
+        }
+
+        directory = Files.createTempDirectory("lucene-benchmark");
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getLucene().setDirectory(directory.toString());
+        engine = new LuceneSearchEngine(applicationProperties);
+        index = engine.index("books", empty -> {
+            Map<Long, Document> documents = new LinkedHashMap<>();
+            catalogue.forEach((id, fields) -> {
+                Document document = new Document();
+                fields.forEach((field, value) -> LuceneIndex.addText(document, field, value));
+                documents.put(id, document);
+            });
+            empty.replaceAll(documents);
+        });
+
+        if (!"lucene".equals(System.getProperty("benchmark.include"))) {
+            restClient = RestClient.builder(HttpHost.create(System.getProperty("benchmark.elasticsearch.url", "http://localhost:9200"))).build();
+            elasticsearch = new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+            if (elasticsearch.indices().exists(request -> request.index(ES_INDEX)).value()) {
+                elasticsearch.indices().delete(request -> request.index(ES_INDEX));
+            }
+            BulkRequest.Builder bulk = new BulkRequest.Builder();
+            int pending = 0;
+            for (Map.Entry<Long, Map<String, String>> entry : catalogue.entrySet()) {
+                bulk.operations(operation -> operation.index(i -> i.index(ES_INDEX).id(entry.getKey().toString()).document(entry.getValue())));
+                if (++pending == 1000) {
+                    elasticsearch.bulk(bulk.build());
+                    bulk = new BulkRequest.Builder();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                elasticsearch.bulk(bulk.build());
+            }
+            elasticsearch.indices().refresh(request -> request.index(ES_INDEX));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        engine.close();
+        if (restClient != null) {
+            elasticsearch.indices().delete(request -> request.index(ES_INDEX));
+            restClient.close();
+        }
+        try (var paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<Long> lucene() {
+        return index.search(engine.parse(nextQuery(), FIELDS, BOOSTS), maxResults);
+    }
+
+    @Benchmark
+    public List<String> elasticsearch() throws IOException {
+        String query = nextQuery();
+        return elasticsearch
+            .search(
+                request -> request.index(ES_INDEX).size(maxResults).source(source -> source.fetch(false)).query(q -> q.queryString(qs -> qs.query(query))),
+                Void.class
+            )
+            .hits()
+            .hits()
+            .stream()
+            .map(hit -> hit.id())
+            .toList();
+    }
+
+    private String nextQuery() {
+        next = (next + 1) % QUERIES.length;
+        return QUERIES[next];
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(BookSearchBenchmark.class.getSimpleName() + "." + System.getProperty("benchmark.include", ""));
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package com.stoecklin.bookstore.repository.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.lucene.document.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LuceneSearchEngineTest {
+
+    private static final String[] FIELDS = { "title", "author" };
+
+    @TempDir
+    Path directory;
+
+    private ApplicationProperties applicationProperties;
+    private LuceneSearchEngine engine;
+    private final AtomicInteger rebuilds = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getLucene().setDirectory(directory.toString());
+        engine = new LuceneSearchEngine(applicationProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    void rebuildsAnEmptyIndexWhenOpened() {
+        LuceneIndex index = open();
+
+        assertThat(rebuilds.get()).isEqualTo(1);
+        assertThat(search(index, "dune")).containsExactly(1L);
+        assertThat(search(index, "author:tolkien")).containsExactly(2L);
+        assertThat(engine.index("books", this::rebuild)).isSameAs(index);
+        assertThat(rebuilds.get()).isEqualTo(1);
+    }
+
+    @Test
+    void showsUpdatesOnceRefreshed() throws IOException {
+        LuceneIndex index = open();
+
+        index.update(3L, document("Dune Messiah", "Frank Herbert"));
+        index.delete(1L);
+        assertThat(search(index, "dune")).containsExactly(1L);
+
+        index.refresh();
+        assertThat(search(index, "dune")).containsExactly(3L);
+    }
+
+    @Test
+    void ranksTitleMatchesFirst() {
+        LuceneIndex index = open();
+
+        assertThat(index.search(engine.parse("herbert dune", FIELDS, Map.of("title", 3f)), 10)).startsWith(1L);
+        assertThat(search(index, "herbert OR tolkien")).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void searchesQueriesThatDoNotParseAsText() {
+        LuceneIndex index = open();
+
+        assertThat(search(index, "dune)")).containsExactly(1L);
+        assertThat(search(index, "title:")).isEmpty();
+    }
+
+    @Test
+    void keepsTheIndexAcrossRestarts() throws IOException {
+        LuceneIndex index = open();
+        index.update(3L, document("Dune Messiah", "Frank Herbert"));
+        engine.close();
+
+        engine = new LuceneSearchEngine(applicationProperties);
+        LuceneIndex reopened = open();
+
+        assertThat(rebuilds.get()).isEqualTo(1);
+        assertThat(search(reopened, "messiah")).containsExactly(3L);
+    }
+
+    private LuceneIndex open() {
+        return engine.index("books", this::rebuild);
+    }
+
+    private void rebuild(LuceneIndex index) {
+        rebuilds.incrementAndGet();
+        Map<Long, Document> documents = new LinkedHashMap<>();
+        documents.put(1L, document("Dune", "Frank Herbert"));
+        documents.put(2L, document("The Hobbit", "J. R. R. Tolkien"));
+        index.replaceAll(documents);
+    }
+
+    private List<Long> search(LuceneIndex index, String query) {
+        return index.search(engine.parse(query, FIELDS, Map.of()), 10);
+    }
+
+    private static Document document(String title, String author) {
+        Document document = new Document();
+        LuceneIndex.addText(document, "title", title);
+        LuceneIndex.addText(document, "author", author);
+        return document;
+    }
+}
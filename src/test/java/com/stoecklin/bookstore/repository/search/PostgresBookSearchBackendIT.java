@@ -0,0 +1,85 @@
+package com.stoecklin.bookstore.repository.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.stoecklin.bookstore.IntegrationTest;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import jakarta.persistence.EntityManager;
+import java.math.BigDecimal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for {@link PostgresBookSearchBackend}, against the generated {@code search_vector} column and the
+ * {@code pg_trgm} indexes of the real schema.
+ */
+@IntegrationTest
+@Transactional
+class PostgresBookSearchBackendIT {
+
+    @Autowired
+    private PostgresBookSearchBackend backend;
+
+    @Autowired
+    private EntityManager em;
+
+    private Book inTitle;
+
+    private Book inDescription;
+
+    private Book byAuthor;
+
+    @BeforeEach
+    void initTest() {
+        Category category = new Category().name("Search");
+        em.persist(category);
+        inTitle = book(category, "Quorvath Tides", "Mira Lenhart", "A voyage.");
+        inDescription = book(category, "Salt Roads", "Mira Lenhart", "The quorvath tides come back every winter.");
+        byAuthor = book(category, "Glass Orchard", "Teodor Vasquelline", null);
+        em.flush();
+    }
+
+    @Test
+    void titleMatchesShouldRankAboveDescriptionMatches() {
+        assertThat(backend.search("quorvath tides", 10)).extracting(Book::getId).containsExactly(inTitle.getId(), inDescription.getId());
+    }
+
+    @Test
+    void shouldMatchTheAuthor() {
+        assertThat(backend.search("Vasquelline", 10)).extracting(Book::getId).containsExactly(byAuthor.getId());
+    }
+
+    @Test
+    void shouldFindMisspeltTitlesAndAuthors() {
+        assertThat(backend.search("Quorvat Tids", 10)).extracting(Book::getId).contains(inTitle.getId());
+        assertThat(backend.search("Teodor Vaskeline", 10)).extracting(Book::getId).contains(byAuthor.getId());
+    }
+
+    @Test
+    void shouldReadTheQueryAsAWebSearch() {
+        assertThat(backend.search("quorvath -winter", 10))
+            .extracting(Book::getId)
+            .contains(inTitle.getId())
+            .doesNotContain(inDescription.getId());
+        assertThat(backend.search("title:(quorvath AND", 10)).isNotNull();
+    }
+
+    @Test
+    void shouldFindNothingForUnrelatedQueries() {
+        assertThat(backend.search("xylophonic zeppelin", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldStopAtMaxResults() {
+        assertThat(backend.search("quorvath", 1)).extracting(Book::getId).containsExactly(inTitle.getId());
+    }
+
+    private Book book(Category category, String title, String author, String description) {
+        Book book = new Book().title(title).author(author).description(description).price(BigDecimal.TEN).category(category);
+        em.persist(book);
+        return book;
+    }
+}
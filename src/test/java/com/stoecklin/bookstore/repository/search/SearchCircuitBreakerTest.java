@@ -0,0 +1,117 @@
+package com.stoecklin.bookstore.repository.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SearchCircuitBreakerTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofSeconds(3).toNanos();
+
+    private final AtomicLong clock = new AtomicLong();
+    private SearchCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties.BookSearch.CircuitBreaker properties = new ApplicationProperties.BookSearch.CircuitBreaker();
+        properties.setWindowSize(10);
+        properties.setMinimumCalls(5);
+        properties.setFailureRateThreshold(0.5);
+        properties.setSlowCallDuration(Duration.ofSeconds(2));
+        properties.setSlowCallRateThreshold(0.8);
+        properties.setOpenDuration(Duration.ofSeconds(30));
+        circuitBreaker = new SearchCircuitBreaker("test", properties, clock::get);
+    }
+
+    @Test
+    void staysClosedBelowTheMinimumNumberOfCalls() {
+        for (int i = 0; i < 4; i++) {
+            assertThat(circuitBreaker.tryAcquire()).isTrue();
+            circuitBreaker.onFailure();
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(SearchCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void opensWhenTheFailureRateCrossesTheThreshold() {
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.tryAcquire();
+            circuitBreaker.onSuccess(FAST);
+        }
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.tryAcquire();
+            circuitBreaker.onFailure();
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(SearchCircuitBreaker.State.CLOSED);
+
+        circuitBreaker.tryAcquire();
+        circuitBreaker.onFailure();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(SearchCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void opensWhenCallsAreSlow() {
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.tryAcquire();
+            circuitBreaker.onSuccess(SLOW);
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(SearchCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void forgetsOutcomesThatLeftTheWindow() {
+        for (int i = 0; i < 6; i++) {
+            circuitBreaker.tryAcquire();
+            circuitBreaker.onSuccess(FAST);
+        }
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.tryAcquire();
+            circuitBreaker.onFailure();
+        }
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.tryAcquire();
+            circuitBreaker.onSuccess(FAST);
+        }
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.tryAcquire();
+            circuitBreaker.onFailure();
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(SearchCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void letsASingleTrialCallThroughOnceTheOpenDurationIsOver() {
+        openCircuit();
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.getState()).isEqualTo(SearchCircuitBreaker.State.OPEN);
+
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onSuccess(FAST);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(SearchCircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.tryAcquire();
+            circuitBreaker.onFailure();
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(SearchCircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,124 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.repository.BookRepository;
+import com.stoecklin.bookstore.service.dto.BookDeltaDTO;
+import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BookChangeBroadcasterTest {
+
+    private BookRepository bookRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private BookChangeBroadcaster broadcaster;
+
+    @BeforeEach
+    void setup() {
+        bookRepository = mock(BookRepository.class);
+        BookInventoryService bookInventoryService = mock(BookInventoryService.class);
+        when(bookInventoryService.attach(any(List.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getBookStream().setMaxBookIds(2);
+        meterRegistry = new SimpleMeterRegistry();
+        broadcaster = new BookChangeBroadcaster(bookRepository, bookInventoryService, applicationProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        broadcaster.stop();
+    }
+
+    @Test
+    void sendsCurrentStateThenChanges() {
+        when(bookRepository.findAllById(anyIterable())).thenReturn(List.of(book(1L, 5)), List.of(book(1L, 4)));
+        RecordingSink sink = new RecordingSink();
+
+        broadcaster.subscribe(List.of(1L), sink);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sink.deltas.size() == 1);
+        broadcaster.publish(List.of(1L, 2L));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sink.deltas.size() == 2);
+        assertThat(sink.deltas).extracting(BookDeltaDTO::stock).containsExactly(5, 4);
+    }
+
+    @Test
+    void unwatchedBooksAreNotLoaded() {
+        broadcaster.publish(List.of(3L));
+
+        verify(bookRepository, never()).findAllById(anyIterable());
+    }
+
+    @Test
+    void failingSinkIsUnsubscribed() {
+        when(bookRepository.findAllById(anyIterable())).thenReturn(List.of(book(1L, 5)));
+        AtomicInteger attempts = new AtomicInteger();
+
+        broadcaster.subscribe(
+            List.of(1L),
+            new BookChangeBroadcaster.Sink() {
+                @Override
+                public void send(List<BookDeltaDTO> deltas) throws IOException {
+                    attempts.incrementAndGet();
+                    throw new IOException("client went away");
+                }
+
+                @Override
+                public void heartbeat() {}
+            }
+        );
+        await().atMost(5, TimeUnit.SECONDS).until(() -> meterRegistry.get("book.stream.subscribers").gauge().value() == 0);
+        broadcaster.publish(List.of(1L));
+
+        assertThat(attempts).hasValue(1);
+
+        verify(bookRepository).findAllById(anyIterable());
+    }
+
+    @Test
+    void rejectsTooManyBookIds() {
+        assertThatThrownBy(() -> broadcaster.subscribe(List.of(1L, 2L, 3L), new RecordingSink()))
+            .isInstanceOf(BadRequestAlertException.class)
+            .hasMessageContaining("book ids");
+    }
+
+    private static Book book(Long id, int stock) {
+        Book book = new Book().id(id).price(BigDecimal.TEN);
+        book.setStock(stock);
+        return book;
+    }
+
+    private static class RecordingSink implements BookChangeBroadcaster.Sink {
+
+        private final List<BookDeltaDTO> deltas = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(List<BookDeltaDTO> batch) {
+            deltas.addAll(batch);
+        }
+
+        @Override
+        public void heartbeat() {}
+    }
+}
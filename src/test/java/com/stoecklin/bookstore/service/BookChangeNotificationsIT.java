@@ -0,0 +1,116 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.stoecklin.bookstore.IntegrationTest;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.service.dto.BookDeltaDTO;
+import jakarta.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link BookChangeNotifications}, with the notifications of other instances sent straight
+ * to the channel. Nothing is transactional here: notifications are only delivered once their transaction commits.
+ */
+@IntegrationTest
+class BookChangeNotificationsIT {
+
+    @Autowired
+    private BookChangeNotifications bookChangeNotifications;
+
+    @Autowired
+    private BookChangeBroadcaster bookChangeBroadcaster;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Book book;
+
+    private BookChangeBroadcaster.Subscription subscription;
+
+    @BeforeEach
+    void initTest() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            Category category = new Category().name("Notified");
+            em.persist(category);
+            book = new Book().title("Notified").author("Notifier").price(BigDecimal.TEN).category(category);
+            em.persist(book);
+        });
+    }
+
+    @AfterEach
+    void cleanup() {
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM book_inventory WHERE book_id = ?", book.getId());
+            jdbcTemplate.update("DELETE FROM book WHERE id = ?", book.getId());
+            jdbcTemplate.update("DELETE FROM category WHERE id = ?", book.getCategory().getId());
+        });
+    }
+
+    @Test
+    void changesCommittedElsewhereShouldReachTheSubscribers() {
+        RecordingSink sink = new RecordingSink();
+        subscription = bookChangeBroadcaster.subscribe(List.of(book.getId()), sink);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sink.deltas.size() == 1);
+
+        transactionTemplate.executeWithoutResult(status ->
+            jdbcTemplate.query("SELECT pg_notify('book_changes', ?)", (RowCallbackHandler) rs -> {}, "0," + book.getId())
+        );
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sink.deltas.size() == 2);
+        assertThat(sink.deltas).extracting(BookDeltaDTO::id).containsOnly(book.getId());
+    }
+
+    @Test
+    void rolledBackChangesShouldNotReachTheSubscribers() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        subscription = bookChangeBroadcaster.subscribe(List.of(book.getId()), sink);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sink.deltas.size() == 1);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            bookChangeNotifications.notifyChanged(List.of(book.getId()));
+            status.setRollbackOnly();
+        });
+
+        TimeUnit.SECONDS.sleep(1);
+        assertThat(sink.deltas).hasSize(1);
+    }
+
+    private static class RecordingSink implements BookChangeBroadcaster.Sink {
+
+        private final List<BookDeltaDTO> deltas = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(List<BookDeltaDTO> batch) {
+            deltas.addAll(batch);
+        }
+
+        @Override
+        public void heartbeat() {}
+    }
+}
@@ -0,0 +1,48 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import java.util.List;
+import java.util.stream.LongStream;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class BookChangeNotificationsTest {
+
+    @Test
+    void payloadsShouldSplitManyBooksAcrossNotifications() {
+        List<Long> bookIds = LongStream.rangeClosed(1, BookChangeNotifications.IDS_PER_NOTIFICATION + 1).boxed().toList();
+
+        List<String> payloads = BookChangeNotifications.payloads(bookIds);
+
+        assertThat(payloads).hasSize(2);
+        assertThat(payloads.get(0).length()).isLessThan(8000);
+        assertThat(payloads.get(1)).isEqualTo(Integer.toString(BookChangeNotifications.IDS_PER_NOTIFICATION + 1));
+        assertThat(payloads.stream().flatMap(payload -> BookChangeNotifications.parse(payload).stream())).isEqualTo(bookIds);
+    }
+
+    @Test
+    void payloadsShouldNameEachBookOnce() {
+        assertThat(BookChangeNotifications.payloads(List.of(3L, 1L, 3L))).containsExactly("3,1");
+        assertThat(BookChangeNotifications.parse("3,1")).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void shouldPublishLocallyWithoutAChannel() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getBookStream().setNotifyChannel("");
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        BookChangeBroadcaster broadcaster = mock(BookChangeBroadcaster.class);
+        BookChangeNotifications notifications = new BookChangeNotifications(mock(DataSource.class), jdbcTemplate, broadcaster, properties);
+
+        notifications.notifyChanged(List.of(1L, 2L));
+
+        verify(broadcaster).publish(List.of(1L, 2L));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
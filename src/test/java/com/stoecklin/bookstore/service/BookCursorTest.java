@@ -0,0 +1,23 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.stoecklin.bookstore.web.rest.errors.BadRequestAlertException;
+import org.junit.jupiter.api.Test;
+
+class BookCursorTest {
+
+    @Test
+    void roundTripsTitlesWithSeparators() {
+        BookCursor cursor = new BookCursor("Dune: Messiah / Part 2", 42L);
+
+        assertThat(BookCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThatThrownBy(() -> BookCursor.decode("not a cursor")).isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> BookCursor.decode("bm8tc2VwYXJhdG9y")).isInstanceOf(BadRequestAlertException.class);
+    }
+}
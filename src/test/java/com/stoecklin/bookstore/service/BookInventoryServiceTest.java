@@ -0,0 +1,69 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.BookInventory;
+import com.stoecklin.bookstore.repository.BookInventoryRepository;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BookInventoryServiceTest {
+
+    private BookInventoryRepository bookInventoryRepository;
+
+    private EntityAuditService entityAuditService;
+
+    private BookInventoryService bookInventoryService;
+
+    @BeforeEach
+    void setup() {
+        bookInventoryRepository = mock(BookInventoryRepository.class);
+        entityAuditService = mock(EntityAuditService.class);
+        bookInventoryService = new BookInventoryService(bookInventoryRepository, entityAuditService);
+    }
+
+    @Test
+    void attachFillsStockAndRatingWithOneQuery() {
+        when(bookInventoryRepository.findAllById(anyIterable())).thenReturn(
+            List.of(new BookInventory().bookId(1L).stock(3).averageRating(4.5), new BookInventory().bookId(2L).stock(0))
+        );
+        Book first = new Book().id(1L);
+        Book second = new Book().id(2L);
+        Book withoutInventory = new Book().id(3L);
+
+        bookInventoryService.attach(List.of(first, second, withoutInventory));
+
+        assertThat(first.getStock()).isEqualTo(3);
+        assertThat(first.getAverageRating()).isEqualTo(4.5);
+        assertThat(second.getStock()).isZero();
+        assertThat(second.getAverageRating()).isNull();
+        assertThat(withoutInventory.getStock()).isNull();
+        verify(bookInventoryRepository).findAllById(List.of(1L, 2L, 3L));
+    }
+
+    @Test
+    void attachSkipsQueryWithoutIds() {
+        bookInventoryService.attach(List.of(new Book()));
+
+        verify(bookInventoryRepository, never()).findAllById(anyIterable());
+    }
+
+    @Test
+    void reserveReportsInsufficientStock() {
+        when(bookInventoryRepository.decrementStock(1L, 2)).thenReturn(1);
+        when(bookInventoryRepository.decrementStock(1L, 5)).thenReturn(0);
+
+        assertThat(bookInventoryService.reserve(1L, 2)).isTrue();
+        assertThat(bookInventoryService.reserve(1L, 5)).isFalse();
+        verify(entityAuditService).recordAfterCommit("Book", 1L, "reserved", null, 2);
+        verifyNoMoreInteractions(entityAuditService);
+    }
+}
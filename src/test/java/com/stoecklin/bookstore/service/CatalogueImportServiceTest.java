@@ -0,0 +1,162 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class CatalogueImportServiceTest {
+
+    @Test
+    void csvRecordsShouldBeReadWithTheirLineNumbers() throws IOException {
+        String csv = "title,author,price\nDune,Frank Herbert,9.99\n\"Quoted, title\",Someone,1\n";
+
+        List<CatalogueRecordReader.Record> records = readAll(csv, CatalogueImportService.Format.CSV);
+
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).line()).isEqualTo(2);
+        assertThat(records.get(0).values()).containsEntry("title", "Dune").containsEntry("price", "9.99");
+        assertThat(records.get(1).line()).isEqualTo(3);
+        assertThat(records.get(1).values()).containsEntry("title", "Quoted, title");
+    }
+
+    @Test
+    void malformedNdjsonLinesShouldBeReportedWithoutStoppingTheImport() throws IOException {
+        String ndjson = "{\"name\":\"Poetry\"}\n\n{broken\n{\"name\":\"Travel\",\"rank\":3}\n";
+
+        List<CatalogueRecordReader.Record> records = readAll(ndjson, CatalogueImportService.Format.NDJSON);
+
+        assertThat(records).hasSize(3);
+        assertThat(records.get(0).values()).containsEntry("name", "Poetry");
+        assertThat(records.get(1).line()).isEqualTo(3);
+        assertThat(records.get(1).error()).startsWith("malformed JSON");
+        assertThat(records.get(2).line()).isEqualTo(4);
+        assertThat(records.get(2).values()).containsEntry("rank", "3");
+    }
+
+    @Test
+    void csvRecordCutInTheMiddleShouldBeReported() throws IOException {
+        String csv = "title,author,price\nDune,Frank Herbert,9.99\n\"Cut, in the mid";
+
+        List<CatalogueRecordReader.Record> records = readAll(csv, CatalogueImportService.Format.CSV);
+
+        assertThat(records).hasSize(2);
+        assertThat(records.get(1).line()).isEqualTo(3);
+        assertThat(records.get(1).error()).startsWith("malformed CSV record");
+    }
+
+    @Test
+    void unreadableCsvShouldFailRatherThanEndTheImport() {
+        String csv = "title,author,price\nDune,Frank Herbert,9.99\n";
+
+        assertThatThrownBy(() -> readAll(failingAfter(csv), CatalogueImportService.Format.CSV)).isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void unreadableNdjsonShouldFailRatherThanEndTheImport() {
+        String ndjson = "{\"name\":\"Poetry\"}\n";
+
+        assertThatThrownBy(() -> readAll(failingAfter(ndjson), CatalogueImportService.Format.NDJSON))
+            .isInstanceOf(UncheckedIOException.class)
+            .hasMessageContaining("after line 1");
+    }
+
+    @Test
+    void bookRowShouldResolveKnownCategoriesInMemory() {
+        Object[] row = CatalogueImportService.toBookRow(
+            7,
+            Map.of("title", " Dune ", "author", "Frank Herbert", "price", "9.99", "stock", "3", "category", "Science Fiction"),
+            name -> CatalogueImportService.categoryKey(name).equals("science fiction") ? 42L : null
+        );
+
+        assertThat(row).containsExactly(7L, null, "Dune", "Frank Herbert", null, new BigDecimal("9.99"), 3, 42L, null);
+    }
+
+    @Test
+    void bookRowShouldKeepTheNameOfUnknownCategories() {
+        Object[] row = CatalogueImportService.toBookRow(
+            1,
+            Map.of("title", "Dune", "author", "Frank Herbert", "price", "9.99", "stock", "3", "category", "New"),
+            name -> null
+        );
+
+        assertThat(row[7]).isNull();
+        assertThat(row[8]).isEqualTo("New");
+    }
+
+    @Test
+    void invalidBookRowsShouldBeRejectedWithAReason() {
+        Map<String, String> negativeStock = Map.of("title", "Dune", "author", "F. H.", "price", "1", "stock", "-1", "category", "SF");
+        Map<String, String> missingTitle = Map.of("author", "F. H.", "price", "1", "stock", "1", "category", "SF");
+        Map<String, String> badPrice = Map.of("title", "Dune", "author", "F. H.", "price", "cheap", "stock", "1", "category", "SF");
+
+        assertThatThrownBy(() -> CatalogueImportService.toBookRow(1, negativeStock, name -> 1L)).hasMessage("stock must not be negative");
+        assertThatThrownBy(() -> CatalogueImportService.toBookRow(1, missingTitle, name -> 1L)).hasMessage("title is required");
+        assertThatThrownBy(() -> CatalogueImportService.toBookRow(1, badPrice, name -> 1L)).hasMessage("price is not a decimal number");
+    }
+
+    @Test
+    void reviewRowShouldRequireABookAndAValidRating() {
+        Instant now = Instant.parse("2026-10-19T10:00:00Z");
+
+        Object[] row = CatalogueImportService.toReviewRow(3, Map.of("bookId", "5", "userLogin", "Admin", "rating", "4"), now);
+
+        assertThat(row).containsExactly(3L, 5L, null, null, "admin", 4, null, LocalDateTime.of(2026, 10, 19, 10, 0));
+        assertThatThrownBy(() -> CatalogueImportService.toReviewRow(1, Map.of("rating", "4"), now)).hasMessageContaining("bookId");
+        assertThatThrownBy(() -> CatalogueImportService.toReviewRow(1, Map.of("bookId", "5", "rating", "6"), now)).hasMessage(
+            "rating must be between 1 and 5"
+        );
+    }
+
+    @Test
+    void copyRowsShouldQuoteValuesAndLeaveNullsEmpty() throws IOException {
+        StringWriter writer = new StringWriter();
+
+        CatalogueImportService.writeCsvRow(writer, new Object[] { 1L, null, "say \"hi\", then\nleave", "" });
+
+        assertThat(writer).hasToString("\"1\",,\"say \"\"hi\"\", then\nleave\",\"\"\n");
+    }
+
+    /**
+     * A stream that fails after its content, like an upload cut off by the client.
+     */
+    private static InputStream failingAfter(String content) {
+        return new SequenceInputStream(
+            new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+            new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("Connection reset");
+                }
+            }
+        );
+    }
+
+    private static List<CatalogueRecordReader.Record> readAll(String content, CatalogueImportService.Format format) throws IOException {
+        return readAll(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), format);
+    }
+
+    private static List<CatalogueRecordReader.Record> readAll(InputStream in, CatalogueImportService.Format format) throws IOException {
+        List<CatalogueRecordReader.Record> records = new ArrayList<>();
+        try (CatalogueRecordReader reader = CatalogueRecordReader.open(in, format)) {
+            CatalogueRecordReader.Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,77 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.repository.BookRepository;
+import com.stoecklin.bookstore.service.dto.CategoryWithCountDTO;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CategoryBookCountServiceTest {
+
+    private BookRepository bookRepository;
+
+    private CategoryBookCountService categoryBookCountService;
+
+    @BeforeEach
+    void setup() {
+        bookRepository = mock(BookRepository.class);
+        categoryBookCountService = new CategoryBookCountService(bookRepository);
+        when(bookRepository.countByCategory()).thenReturn(List.of(count(1L, 3)));
+    }
+
+    @Test
+    void loadsCountsOnceAndDefaultsToZero() {
+        List<Category> categories = List.of(new Category().id(1L).name("Fiction"), new Category().id(2L).name("Poetry"));
+
+        categoryBookCountService.withCounts(categories);
+        List<CategoryWithCountDTO> counts = categoryBookCountService.withCounts(categories);
+
+        assertThat(counts).containsExactly(new CategoryWithCountDTO(1L, "Fiction", 3), new CategoryWithCountDTO(2L, "Poetry", 0));
+        verify(bookRepository, times(1)).countByCategory();
+    }
+
+    @Test
+    void recountsChangedCategories() {
+        categoryBookCountService.withCounts(List.of());
+        when(bookRepository.countByCategory_Id(1L)).thenReturn(4L);
+        when(bookRepository.countByCategory_Id(2L)).thenReturn(1L);
+
+        categoryBookCountService.recount(Set.of(1L, 2L));
+
+        assertThat(categoryBookCountService.withCounts(List.of(new Category().id(1L).name("Fiction"), new Category().id(2L).name("Poetry"))))
+            .extracting(CategoryWithCountDTO::bookCount)
+            .containsExactly(4L, 1L);
+    }
+
+    @Test
+    void doesNothingBeforeFirstUse() {
+        categoryBookCountService.recount(Set.of(1L));
+        categoryBookCountService.refresh();
+
+        verify(bookRepository, never()).countByCategory_Id(1L);
+        verify(bookRepository, never()).countByCategory();
+    }
+
+    private static BookRepository.CategoryBookCount count(Long categoryId, long bookCount) {
+        return new BookRepository.CategoryBookCount() {
+            @Override
+            public Long getCategoryId() {
+                return categoryId;
+            }
+
+            @Override
+            public long getBookCount() {
+                return bookCount;
+            }
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+class CoPurchaseModelTest {
+
+    @Test
+    void relatedShouldRankBooksByCoPurchaseCount() {
+        CoPurchaseModel model = new CoPurchaseModel(10, 100);
+        model.addBasket(new long[] { 1, 2, 3 });
+        model.addBasket(new long[] { 1, 3 });
+        model.addBasket(new long[] { 1, 3, 4, 4 });
+
+        assertThat(model.related(1, 10)).containsExactly(3, 2, 4);
+        assertThat(model.related(3, 10)).containsExactly(1, 2, 4);
+        assertThat(model.related(1, 1)).containsExactly(3);
+        assertThat(model.related(42, 10)).isEmpty();
+    }
+
+    @Test
+    void singleBookOrdersShouldNotCount() {
+        CoPurchaseModel model = new CoPurchaseModel(10, 100);
+        model.addBasket(new long[] { 1, 1 });
+
+        assertThat(model.size()).isZero();
+    }
+
+    @Test
+    void relatedShouldKeepOnlyTopK() {
+        CoPurchaseModel model = new CoPurchaseModel(2, 100);
+        model.addBasket(new long[] { 1, 2, 3, 4 });
+        model.addBasket(new long[] { 1, 4 });
+
+        assertThat(model.related(1, 10)).containsExactly(4, 2);
+    }
+
+    @Test
+    void countersShouldStayBoundedPerBook() {
+        CoPurchaseModel model = new CoPurchaseModel(2, 4);
+        for (int i = 0; i < 5; i++) {
+            model.addBasket(new long[] { 1, 2 });
+        }
+        for (long other = 100; other < 200; other++) {
+            model.addBasket(new long[] { 1, other });
+        }
+
+        assertThat(model.related(1, 10)).startsWith(2);
+    }
+
+    @Test
+    void pruneShouldKeepExactlyHalfWhenAllCountsAreTied() {
+        CoPurchaseModel model = new CoPurchaseModel(2, 4);
+        for (long other = 100; other < 108; other++) {
+            model.addBasket(new long[] { 1, other });
+        }
+
+        // the fifth and the eighth books overflow the counters of book 1: each time, the lowest id and the book just
+        // counted are kept
+        assertThat(model.related(1, 10)).containsExactly(100, 107);
+    }
+
+    @Test
+    void pruneShouldKeepTheStrongestCountersThenTheJustCountedOneThenTheLowestIds() {
+        LongIntHashMap counters = new LongIntHashMap();
+        counters.put(10, 5);
+        counters.put(20, 1);
+        counters.put(30, 2);
+        counters.put(40, 2);
+        counters.put(50, 2);
+        counters.put(60, 2);
+
+        CoPurchaseModel.prune(counters, 3, 50);
+
+        assertThat(counters.size()).isEqualTo(3);
+        assertThat(counters.containsKey(10)).isTrue();
+        assertThat(counters.containsKey(50)).isTrue();
+        assertThat(counters.containsKey(30)).isTrue();
+    }
+
+    @Test
+    void snapshotShouldRoundTrip() throws IOException {
+        CoPurchaseModel model = new CoPurchaseModel(10, 100);
+        model.addBasket(new long[] { 1, 2, 3 });
+        model.addBasket(new long[] { 1, 3 });
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        model.writeTo(new DataOutputStream(bytes));
+        CoPurchaseModel restored = CoPurchaseModel.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 10, 100);
+
+        assertThat(restored.size()).isEqualTo(3);
+        assertThat(restored.related(1, 10)).containsExactly(3, 2);
+    }
+
+    @Test
+    void readFromShouldRejectOtherFiles() {
+        byte[] garbage = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+        assertThatThrownBy(() -> CoPurchaseModel.readFrom(new DataInputStream(new ByteArrayInputStream(garbage)), 10, 100)).isInstanceOf(
+            IOException.class
+        );
+    }
+}
@@ -0,0 +1,75 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.OrderItem;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class CoPurchaseServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private Path snapshotFile;
+
+    private CoPurchaseService service;
+
+    @BeforeEach
+    void setup() {
+        snapshotFile = directory.resolve("co-purchase.bin");
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getRecommendation().setSnapshotFile(snapshotFile.toString());
+        properties.getRecommendation().setRebuildOnStartup(false);
+        service = new CoPurchaseService(mock(DataSource.class), mock(PlatformTransactionManager.class), properties);
+    }
+
+    @Test
+    void restoringShouldKeepTheOrdersPlacedSinceStartup() throws IOException {
+        CoPurchaseModel saved = new CoPurchaseModel(20, 500);
+        saved.addBasket(new long[] { 1, 2 });
+        try (OutputStream out = Files.newOutputStream(snapshotFile)) {
+            saved.writeTo(new DataOutputStream(out));
+        }
+        service.recordOrder(order(10L, 3L, 4L));
+
+        service.loadOnStartup();
+
+        assertThat(service.findRelatedBookIds(1, 10)).containsExactly(2);
+        assertThat(service.findRelatedBookIds(3, 10)).containsExactly(4);
+        service.recordOrder(order(11L, 1L, 5L));
+        assertThat(service.findRelatedBookIds(1, 10)).containsExactlyInAnyOrder(2, 5);
+    }
+
+    @Test
+    void shouldNotSnapshotBeforeTheModelIsLoaded() {
+        service.recordOrder(order(10L, 3L, 4L));
+
+        service.snapshot();
+        assertThat(snapshotFile).doesNotExist();
+
+        service.loadOnStartup();
+        service.snapshot();
+        assertThat(snapshotFile).exists();
+    }
+
+    private static Order order(Long id, Long... bookIds) {
+        Order order = new Order().id(id);
+        for (Long bookId : bookIds) {
+            order.addItems(new OrderItem().quantity(1).book(new Book().id(bookId)));
+        }
+        return order;
+    }
+}
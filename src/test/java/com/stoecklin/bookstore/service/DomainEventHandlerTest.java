@@ -0,0 +1,161 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.repository.BookRepository;
+import com.stoecklin.bookstore.repository.CartItemRepository;
+import com.stoecklin.bookstore.repository.OrderRepository;
+import com.stoecklin.bookstore.repository.ReviewRepository;
+import com.stoecklin.bookstore.repository.UserRepository;
+import com.stoecklin.bookstore.repository.search.BookSearchRepository;
+import com.stoecklin.bookstore.repository.search.OrderSearchRepository;
+import com.stoecklin.bookstore.repository.search.ReviewSearchRepository;
+import com.stoecklin.bookstore.repository.search.UserSearchRepository;
+import com.stoecklin.bookstore.service.event.BookChanged;
+import com.stoecklin.bookstore.service.event.OrderChanged;
+import com.stoecklin.bookstore.service.event.OrderPlaced;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class DomainEventHandlerTest {
+
+    private OrderRepository orderRepository;
+    private OrderSearchRepository orderSearchRepository;
+    private CartItemRepository cartItemRepository;
+    private BookRepository bookRepository;
+    private BookSearchRepository bookSearchRepository;
+    private BookInventoryService bookInventoryService;
+    private CategoryBookCountService categoryBookCountService;
+
+    private DomainEventHandler handler;
+
+    @BeforeEach
+    void setup() {
+        orderRepository = mock(OrderRepository.class);
+        orderSearchRepository = mock(OrderSearchRepository.class);
+        cartItemRepository = mock(CartItemRepository.class);
+        bookRepository = mock(BookRepository.class);
+        bookSearchRepository = mock(BookSearchRepository.class);
+        bookInventoryService = mock(BookInventoryService.class);
+        categoryBookCountService = mock(CategoryBookCountService.class);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getDomainEvents().setMaxAttempts(3);
+        applicationProperties.getDomainEvents().setInitialBackoff(Duration.ofMillis(1));
+        handler = new DomainEventHandler(
+            orderRepository,
+            orderSearchRepository,
+            cartItemRepository,
+            mock(ReviewRepository.class),
+            mock(ReviewSearchRepository.class),
+            mock(ReviewService.class),
+            bookRepository,
+            bookSearchRepository,
+            bookInventoryService,
+            mock(UserRepository.class),
+            mock(UserSearchRepository.class),
+            mock(BookChangeNotifications.class),
+            categoryBookCountService,
+            mock(PlatformTransactionManager.class),
+            applicationProperties
+        );
+    }
+
+    @Test
+    void retriesUntilSuccess() {
+        AtomicInteger calls = new AtomicInteger();
+
+        boolean succeeded = handler.runWithRetries("flaky", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new IllegalStateException("unavailable");
+            }
+        });
+
+        assertThat(succeeded).isTrue();
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+
+        boolean succeeded = handler.runWithRetries("broken", () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("unavailable");
+        });
+
+        assertThat(succeeded).isFalse();
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void failedIndexingDoesNotPreventCartCleanup() {
+        Order order = new Order().id(1L);
+        when(orderRepository.findByIdWithItemsAndBooks(1L)).thenReturn(Optional.of(order));
+        doThrow(new IllegalStateException("search down")).when(orderSearchRepository).index(order);
+
+        handler.onOrderPlaced(new OrderPlaced(1L, 2L, List.of(3L)));
+
+        verify(orderSearchRepository, times(3)).index(order);
+        verify(cartItemRepository).deleteByCartId(2L);
+    }
+
+    @Test
+    void changedOrderOnlyUpdatesTheseFields() {
+        Order order = new Order().id(1L);
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+
+        handler.onOrderChanged(new OrderChanged(1L, Set.of("status")));
+
+        verify(orderSearchRepository).update(order, Set.of("status"));
+        verify(orderSearchRepository, never()).index(any());
+    }
+
+    @Test
+    void deletedBookIsRemovedFromIndex() {
+        handler.onBookChanged(new BookChanged(5L, true, Set.of(7L)));
+
+        verify(bookSearchRepository).deleteFromIndexById(5L);
+        verify(bookRepository, never()).findOneWithEagerRelationships(5L);
+        verify(categoryBookCountService).recount(Set.of(7L));
+    }
+
+    @Test
+    void partiallyChangedBookOnlyUpdatesTheseFields() {
+        List<Book> books = List.of(new Book().id(5L).title("New title"));
+        when(bookRepository.findAllById(List.of(5L))).thenReturn(books);
+        when(bookInventoryService.attach(books)).thenReturn(books);
+
+        handler.onBookChanged(new BookChanged(5L, false, Set.of(), Set.of("title")));
+
+        verify(bookSearchRepository).update(books, Set.of("title"));
+        verify(bookSearchRepository, never()).index(any());
+        verify(bookRepository, never()).findOneWithEagerRelationships(5L);
+    }
+
+    @Test
+    void placedOrderUpdatesStockOfOrderedBooks() {
+        List<Book> books = List.of(new Book().id(3L));
+        when(bookRepository.findAllById(List.of(3L))).thenReturn(books);
+        when(bookInventoryService.attach(books)).thenReturn(books);
+
+        handler.onOrderPlaced(new OrderPlaced(1L, 2L, List.of(3L)));
+
+        verify(bookSearchRepository).update(books, Set.of("stock"));
+    }
+}
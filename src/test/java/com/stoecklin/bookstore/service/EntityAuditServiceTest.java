@@ -0,0 +1,138 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.management.EntityAuditMetersService;
+import com.stoecklin.bookstore.service.dto.EntityChangeDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+
+class EntityAuditServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final List<List<EntityChangeDTO>> batches = new ArrayList<>();
+    private EntityAuditService service;
+
+    @BeforeEach
+    void setup() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getAudit().setBufferCapacity(4);
+        properties.getAudit().setBatchSize(3);
+        service = new EntityAuditService(jdbcTemplate, transactionManager, new EntityAuditMetersService(registry), properties);
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any(ParameterizedPreparedStatementSetter.class))).thenAnswer(
+            invocation -> {
+                batches.add(List.copyOf(invocation.<Collection<EntityChangeDTO>>getArgument(1)));
+                return new int[0][];
+            }
+        );
+    }
+
+    @Test
+    void writesChangesInBatchesAndSkipsUnchangedValues() {
+        service.record("Book", 1L, "price", new BigDecimal("10.50"), new BigDecimal("12.00"));
+        service.record("Book", 1L, "price", new BigDecimal("12.00"), new BigDecimal("12"));
+        service.record("Order", 2L, "status", null, "PENDING");
+        service.record("Review", 3L, "rating", 4, null);
+        service.record("Book", 1L, "stock", 5, 3);
+
+        service.flush();
+
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0)).extracting(EntityChangeDTO::entityType).containsExactly("Book", "Order", "Review");
+        EntityChangeDTO price = batches.get(0).get(0);
+        assertThat(price.oldValue()).isEqualTo("10.5");
+        assertThat(price.newValue()).isEqualTo("12");
+        assertThat(price.changedBy()).isEqualTo("system");
+        assertThat(batches.get(1)).extracting(EntityChangeDTO::field).containsExactly("stock");
+        assertThat(counter(EntityAuditMetersService.OUTCOME_WRITTEN)).isEqualTo(4);
+    }
+
+    @Test
+    void dropsChangesWhenTheBufferIsFull() {
+        for (int i = 0; i < 6; i++) {
+            service.record("Book", (long) i, "stock", i, i + 1);
+        }
+
+        assertThat(counter(EntityAuditMetersService.OUTCOME_BUFFERED)).isEqualTo(4);
+        assertThat(counter(EntityAuditMetersService.OUTCOME_DROPPED)).isEqualTo(2);
+        assertThat(registry.get(EntityAuditMetersService.BUFFER_METER_NAME).gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    void retriesABatchThatFailed() {
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenThrow(new DataAccessResourceFailureException("down"))
+            .thenAnswer(invocation -> {
+                batches.add(List.copyOf(invocation.<Collection<EntityChangeDTO>>getArgument(1)));
+                return new int[0][];
+            });
+        service.record("Order", 1L, "status", "PENDING", "SHIPPED");
+
+        service.flush();
+        assertThat(batches).isEmpty();
+        service.flush();
+
+        assertThat(batches).singleElement().satisfies(batch -> assertThat(batch).extracting(EntityChangeDTO::newValue).containsExactly("SHIPPED"));
+        assertThat(registry.get(EntityAuditMetersService.WRITES_METER_NAME).tag("outcome", "failed").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void countsABatchAsWrittenOnlyOnceCommitted() {
+        doThrow(new TransactionSystemException("commit failed")).doNothing().when(transactionManager).commit(any());
+        service.record("Order", 1L, "status", "PENDING", "SHIPPED");
+
+        service.flush();
+        assertThat(counter(EntityAuditMetersService.OUTCOME_WRITTEN)).isZero();
+        service.flush();
+
+        assertThat(batches).hasSize(2);
+        verify(transactionManager, times(2)).commit(any());
+        assertThat(counter(EntityAuditMetersService.OUTCOME_WRITTEN)).isEqualTo(1);
+        assertThat(registry.get(EntityAuditMetersService.WRITES_METER_NAME).tag("outcome", "failed").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsNothingWhenDisabled() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getAudit().setEnabled(false);
+        EntityAuditService disabled = new EntityAuditService(
+            jdbcTemplate,
+            transactionManager,
+            new EntityAuditMetersService(new SimpleMeterRegistry()),
+            properties
+        );
+
+        disabled.record("Book", 1L, "price", 1, 2);
+        disabled.flush();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(Collection.class), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        assertThat(batches).isEmpty();
+    }
+
+    private double counter(String outcome) {
+        return registry.get(EntityAuditMetersService.CHANGES_METER_NAME).tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,210 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.stoecklin.bookstore.IntegrationTest;
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.enumeration.OrderStatus;
+import com.stoecklin.bookstore.repository.search.OrderSearchRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link OrderArchiveService}, moving orders into the month partitions of the archive tables.
+ * Nothing is transactional here: each batch commits in its own transaction. The orders are placed in months long gone,
+ * so that the partitions created for them belong to this test only.
+ */
+@IntegrationTest
+class OrderArchiveServiceIT {
+
+    private static final List<String> PARTITIONS = List.of(
+        "order_item_archive_p200101",
+        "order_item_archive_p200102",
+        "jhi_order_archive_p200101",
+        "jhi_order_archive_p200102"
+    );
+
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+
+    @Autowired
+    private OrderSearchRepository orderSearchRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int batchSize;
+
+    private Book book;
+
+    private Long january;
+
+    private Long february;
+
+    private Long pending;
+
+    @BeforeEach
+    void initTest() {
+        batchSize = applicationProperties.getOrderArchive().getBatchSize();
+        // one order per batch, so that the batches are chained
+        applicationProperties.getOrderArchive().setBatchSize(1);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            Category category = new Category().name("Archived");
+            em.persist(category);
+            book = new Book().title("Archived").author("Archivist").price(BigDecimal.TEN).category(category);
+            em.persist(book);
+            em.flush();
+            january = insertOrder(OrderStatus.COMPLETED, LocalDateTime.of(2001, 1, 31, 23, 30), 2);
+            february = insertOrder(OrderStatus.CANCELLED, LocalDateTime.of(2001, 2, 1, 0, 0), 1);
+            pending = insertOrder(OrderStatus.PENDING, LocalDateTime.of(2001, 1, 15, 12, 0), 3);
+        });
+        // cache and index the orders, as serving them would
+        transactionTemplate.executeWithoutResult(status ->
+            List.of(january, february, pending).forEach(id -> orderSearchRepository.index(em.find(Order.class, id)))
+        );
+    }
+
+    @AfterEach
+    void cleanup() {
+        applicationProperties.getOrderArchive().setBatchSize(batchSize);
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> ids = List.of(january, february, pending);
+            for (Long id : ids) {
+                jdbcTemplate.update("DELETE FROM order_item_archive WHERE order_id = ?", id);
+                jdbcTemplate.update("DELETE FROM jhi_order_archive WHERE id = ?", id);
+                jdbcTemplate.update("DELETE FROM order_item WHERE order_id = ?", id);
+                jdbcTemplate.update("DELETE FROM jhi_order WHERE id = ?", id);
+            }
+            PARTITIONS.forEach(partition -> jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition));
+            jdbcTemplate.update("DELETE FROM book WHERE id = ?", book.getId());
+            jdbcTemplate.update("DELETE FROM category WHERE id = ?", book.getCategory().getId());
+        });
+        orderSearchRepository.deleteAllById(List.of(january, february, pending));
+    }
+
+    @Test
+    void shouldMoveFinishedOrdersIntoTheirMonthPartitions() {
+        assertThat(entityManagerFactory.getCache().contains(Order.class, january)).isTrue();
+
+        assertThat(orderArchiveService.archiveOrders()).isGreaterThanOrEqualTo(2);
+
+        assertThat(liveOrders()).containsExactly(pending);
+        assertThat(count("SELECT COUNT(*) FROM order_item WHERE order_id = ?", pending)).isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM order_item WHERE order_id IN (?, ?)", january, february)).isZero();
+
+        assertThat(PARTITIONS).allSatisfy(partition ->
+            assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition)).isTrue()
+        );
+        assertThat(archivedOrder("jhi_order_archive_p200101", january))
+            .containsEntry("status", OrderStatus.COMPLETED.name())
+            .containsEntry("total_price", new BigDecimal("20.00"));
+        assertThat(archivedOrder("jhi_order_archive_p200102", february)).containsEntry("status", OrderStatus.CANCELLED.name());
+        assertThat(archivedItem("order_item_archive_p200101", january))
+            .containsEntry("quantity", 2)
+            .containsEntry("book_id", book.getId())
+            .containsEntry("category_id", book.getCategory().getId())
+            .containsEntry("order_placed_at", Timestamp.valueOf(LocalDateTime.of(2001, 1, 31, 23, 30)));
+        assertThat(archivedItem("order_item_archive_p200102", february)).containsEntry("quantity", 1);
+        assertThat(count("SELECT COUNT(*) FROM jhi_order_archive_default WHERE id IN (?, ?)", january, february)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM order_item_archive_default WHERE order_id IN (?, ?)", january, february)).isZero();
+
+        assertThat(entityManagerFactory.getCache().contains(Order.class, january)).isFalse();
+        assertThat(entityManagerFactory.getCache().contains(Order.class, february)).isFalse();
+        assertThat(entityManagerFactory.getCache().contains(Order.class, pending)).isTrue();
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .untilAsserted(() -> {
+                assertThat(orderSearchRepository.existsById(january)).isFalse();
+                assertThat(orderSearchRepository.existsById(february)).isFalse();
+                assertThat(orderSearchRepository.existsById(pending)).isTrue();
+            });
+    }
+
+    @Test
+    void shouldArchiveNothingTwice() {
+        orderArchiveService.archiveOrders();
+
+        orderArchiveService.archiveOrders();
+
+        assertThat(count("SELECT COUNT(*) FROM jhi_order_archive WHERE id IN (?, ?)", january, february)).isEqualTo(2);
+        assertThat(count("SELECT COUNT(*) FROM order_item_archive WHERE order_id IN (?, ?)", january, february)).isEqualTo(2);
+    }
+
+    private Long insertOrder(OrderStatus status, LocalDateTime placedAt, int quantity) {
+        BigDecimal total = book.getPrice().multiply(BigDecimal.valueOf(quantity));
+        Long id = jdbcTemplate.queryForObject(
+            "INSERT INTO jhi_order (id, total_price, placed_at, status) VALUES (nextval('sequence_generator'), ?, ?, ?) RETURNING id",
+            Long.class,
+            total,
+            placedAt,
+            status.name()
+        );
+        jdbcTemplate.update(
+            "INSERT INTO order_item (id, quantity, price, book_id, category_id, order_id) " +
+            "VALUES (nextval('sequence_generator'), ?, ?, ?, ?, ?)",
+            quantity,
+            book.getPrice(),
+            book.getId(),
+            book.getCategory().getId(),
+            id
+        );
+        return id;
+    }
+
+    private List<Long> liveOrders() {
+        return jdbcTemplate.queryForList(
+            "SELECT id FROM jhi_order WHERE id IN (?, ?, ?) ORDER BY id",
+            Long.class,
+            january,
+            february,
+            pending
+        );
+    }
+
+    private Map<String, Object> archivedOrder(String partition, Long orderId) {
+        return jdbcTemplate.queryForMap("SELECT status, total_price FROM " + partition + " WHERE id = ?", orderId);
+    }
+
+    private Map<String, Object> archivedItem(String partition, Long orderId) {
+        return jdbcTemplate.queryForMap(
+            "SELECT quantity, book_id, category_id, order_placed_at FROM " + partition + " WHERE order_id = ?",
+            orderId
+        );
+    }
+
+    private int count(String query, Object... parameters) {
+        return jdbcTemplate.queryForObject(query, Integer.class, parameters);
+    }
+}
@@ -0,0 +1,24 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import org.junit.jupiter.api.Test;
+
+class OrderArchiveServiceTest {
+
+    @Test
+    void archiveCutoffShouldStartAtTheFirstDayOfTheRetainedMonth() {
+        LocalDateTime now = LocalDateTime.of(2026, 10, 19, 14, 30);
+
+        assertThat(OrderArchiveService.archiveCutoff(now, 12)).isEqualTo(LocalDateTime.of(2025, 10, 1, 0, 0));
+        assertThat(OrderArchiveService.archiveCutoff(now, 0)).isEqualTo(LocalDateTime.of(2026, 10, 1, 0, 0));
+    }
+
+    @Test
+    void partitionSuffixShouldBeSortableByMonth() {
+        assertThat(OrderArchiveService.partitionSuffix(YearMonth.of(2024, 1))).isEqualTo("p202401");
+        assertThat(OrderArchiveService.partitionSuffix(YearMonth.of(2024, 12))).isEqualTo("p202412");
+    }
+}
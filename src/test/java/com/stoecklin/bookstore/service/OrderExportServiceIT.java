@@ -0,0 +1,109 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.stoecklin.bookstore.IntegrationTest;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.OrderItem;
+import com.stoecklin.bookstore.domain.enumeration.OrderStatus;
+import jakarta.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for {@link OrderExportService}, with the middle one of three orders moved to the archive.
+ */
+@IntegrationTest
+@Transactional
+class OrderExportServiceIT {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 14);
+
+    @Autowired
+    private OrderExportService orderExportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    private Order first;
+
+    private Order archived;
+
+    private Order last;
+
+    @BeforeEach
+    void initTest() {
+        first = createOrder(2);
+        archived = createOrder(1);
+        last = createOrder(1);
+        em.flush();
+        jdbcTemplate.update(
+            "INSERT INTO order_item_archive (id, quantity, price, book_id, category_id, order_id, order_placed_at) " +
+            "SELECT oi.id, oi.quantity, oi.price, oi.book_id, oi.category_id, oi.order_id, o.placed_at " +
+            "FROM order_item oi JOIN jhi_order o ON o.id = oi.order_id WHERE o.id = ?",
+            archived.getId()
+        );
+        jdbcTemplate.update(
+            "INSERT INTO jhi_order_archive (id, total_price, placed_at, status, user_id, archived_at) " +
+            "SELECT id, total_price, placed_at, status, user_id, now() FROM jhi_order WHERE id = ?",
+            archived.getId()
+        );
+        jdbcTemplate.update("DELETE FROM order_item WHERE order_id = ?", archived.getId());
+        jdbcTemplate.update("DELETE FROM jhi_order WHERE id = ?", archived.getId());
+        em.clear();
+    }
+
+    @Test
+    void exportShouldInterleaveLiveAndArchivedOrdersById() {
+        List<String[]> lines = export(0);
+
+        assertThat(lines).extracting(line -> Long.valueOf(line[0])).containsExactly(
+            first.getId(),
+            first.getId(),
+            archived.getId(),
+            last.getId()
+        );
+        assertThat(lines).extracting(line -> line[5]).containsExactly("false", "false", "true", "false");
+    }
+
+    @Test
+    void exportShouldResumeAfterTheLastReceivedOrder() {
+        assertThat(export(first.getId())).extracting(line -> Long.valueOf(line[0])).containsExactly(archived.getId(), last.getId());
+        assertThat(export(archived.getId())).extracting(line -> Long.valueOf(line[0])).containsExactly(last.getId());
+        assertThat(export(last.getId())).isEmpty();
+    }
+
+    private List<String[]> export(long afterOrderId) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = orderExportService.export(out, DAY, DAY, afterOrderId, OrderExportService.Compression.NONE);
+        List<String[]> lines = out
+            .toString(StandardCharsets.UTF_8)
+            .lines()
+            .skip(1)
+            .map(line -> line.split(",", -1))
+            .toList();
+        assertThat(lines).hasSize((int) written);
+        return lines;
+    }
+
+    private Order createOrder(int lines) {
+        Order order = new Order().totalPrice(BigDecimal.TEN).placedAt(Instant.parse("2026-03-14T10:00:00Z")).status(OrderStatus.COMPLETED);
+        em.persist(order);
+        for (int i = 0; i < lines; i++) {
+            em.persist(new OrderItem().quantity(1).price(BigDecimal.ONE).order(order));
+        }
+        return order;
+    }
+}
@@ -0,0 +1,65 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.StringWriter;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.junit.jupiter.api.Test;
+
+class OrderExportServiceTest {
+
+    @Test
+    void csvShouldOnlyQuoteWhenNeeded() {
+        assertThat(OrderExportService.csv(null)).isEmpty();
+        assertThat(OrderExportService.csv("COMPLETED")).isEqualTo("COMPLETED");
+        assertThat(OrderExportService.csv("Dune, Part 2")).isEqualTo("\"Dune, Part 2\"");
+        assertThat(OrderExportService.csv("The \"Best\" Book")).isEqualTo("\"The \"\"Best\"\" Book\"");
+        assertThat(OrderExportService.csv("two\nlines")).isEqualTo("\"two\nlines\"");
+    }
+
+    @Test
+    void compressionShouldBeParsedCaseInsensitively() {
+        assertThat(OrderExportService.Compression.fromName("Zstd")).isEqualTo(OrderExportService.Compression.ZSTD);
+        assertThat(OrderExportService.Compression.fromName("gzip").getFileExtension()).isEqualTo(".gz");
+    }
+
+    @Test
+    void mergeShouldInterleaveOrdersAndKeepTheirLinesTogether() throws SQLException {
+        StringWriter out = new StringWriter();
+
+        long lines = OrderExportService.merge(
+            out,
+            rows(new long[] { 1, 10 }, new long[] { 1, 11 }, new long[] { 4, 12 }),
+            rows(new long[] { 2, 5 }, new long[] { 3, 6 }, new long[] { 3, 7 }, new long[] { 5, 8 })
+        );
+
+        assertThat(lines).isEqualTo(7);
+        assertThat(out.toString().lines().map(line -> line.split(",", -1)))
+            .extracting(line -> line[0] + "/" + line[6])
+            .containsExactly("1/10", "1/11", "2/5", "3/6", "3/7", "4/12", "5/8");
+    }
+
+    @Test
+    void mergeShouldDrainEitherSideAlone() throws SQLException {
+        StringWriter out = new StringWriter();
+
+        assertThat(OrderExportService.merge(out, rows(), rows(new long[] { 1, 1 }, new long[] { 2, 2 }))).isEqualTo(2);
+        assertThat(OrderExportService.merge(out, rows(new long[] { 3, 3 }), rows())).isEqualTo(1);
+        assertThat(out.toString().lines()).extracting(line -> line.split(",")[0]).containsExactly("1", "2", "3");
+    }
+
+    /**
+     * A result set positioned over {@code {order_id, order_item_id}} rows, every other column being empty.
+     */
+    private static ResultSet rows(long[]... rows) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        int[] row = { -1 };
+        when(rs.next()).thenAnswer(invocation -> ++row[0] < rows.length);
+        when(rs.getLong("order_id")).thenAnswer(invocation -> rows[row[0]][0]);
+        when(rs.getLong("order_item_id")).thenAnswer(invocation -> rows[row[0]][1]);
+        return rs;
+    }
+}
@@ -0,0 +1,101 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.management.SecurityMetersService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+class RefreshTokenServiceTest {
+
+    private static final String ROTATE = "UPDATE refresh_token SET revoked = true WHERE token_hash";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private RefreshTokenService service;
+
+    @BeforeEach
+    void setup() {
+        service = new RefreshTokenService(jdbcTemplate, new SecurityMetersService(registry), new ApplicationProperties());
+    }
+
+    @Test
+    void storesOnlyTheHashOfAnIssuedToken() {
+        String token = service.issue(7L, "user", "ROLE_USER", false);
+
+        assertThat(token).matches("[\\w-]{22}\\.[\\w-]{43}");
+        ArgumentCaptor<Object[]> arguments = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).update(startsWith("INSERT INTO refresh_token"), arguments.capture());
+        List<Object> values = List.of(arguments.getValue());
+        assertThat((String) values.get(0)).matches("[0-9a-f]{64}").doesNotContain(token);
+        assertThat(values.get(1)).isEqualTo(token.substring(0, 22));
+        assertThat(values).contains(7L, "user", "ROLE_USER");
+    }
+
+    @Test
+    void rotatesATokenWithinItsFamily() {
+        String token = service.issue(7L, "user", "ROLE_USER ROLE_ADMIN", true);
+        when(jdbcTemplate.query(startsWith(ROTATE), any(RowMapper.class), any(), any())).thenReturn(
+            List.of(new RefreshTokenService.Grant(7L, "user", "ROLE_USER ROLE_ADMIN", true, null))
+        );
+
+        Optional<RefreshTokenService.Grant> grant = service.rotate(token);
+
+        assertThat(grant).hasValueSatisfying(value -> {
+            assertThat(value.login()).isEqualTo("user");
+            assertThat(value.authorities()).isEqualTo("ROLE_USER ROLE_ADMIN");
+            assertThat(value.rememberMe()).isTrue();
+            assertThat(value.refreshToken()).startsWith(token.substring(0, 23)).isNotEqualTo(token);
+        });
+    }
+
+    @Test
+    void revokesTheFamilyOfAReusedTokenAndThenTurnsItAwayWithoutAQuery() {
+        String token = service.issue(7L, "user", "ROLE_USER", false);
+        when(jdbcTemplate.query(startsWith(ROTATE), any(RowMapper.class), any(), any())).thenReturn(List.of());
+        when(jdbcTemplate.queryForList(anyString(), eq(Boolean.class), any())).thenReturn(List.of(true));
+
+        assertThat(service.rotate(token)).isEmpty();
+        assertThat(service.rotate(token.substring(0, 23) + "another-secret-of-the-same-family-0000000000")).isEmpty();
+
+        verify(jdbcTemplate, times(1)).query(startsWith(ROTATE), any(RowMapper.class), any(), any());
+        verify(jdbcTemplate).update(startsWith("UPDATE refresh_token SET revoked = true WHERE family"), eq(token.substring(0, 22)));
+        assertThat(registry.get(SecurityMetersService.REFRESH_TOKEN_REUSE_METER_NAME).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsAnExpiredTokenWithoutRevokingItsFamily() {
+        String token = service.issue(7L, "user", "ROLE_USER", false);
+        when(jdbcTemplate.query(startsWith(ROTATE), any(RowMapper.class), any(), any())).thenReturn(List.of());
+        when(jdbcTemplate.queryForList(anyString(), eq(Boolean.class), any())).thenReturn(List.of(false));
+
+        assertThat(service.rotate(token)).isEmpty();
+
+        assertThat(registry.get(SecurityMetersService.REFRESH_TOKEN_REUSE_METER_NAME).counter().count()).isZero();
+    }
+
+    @Test
+    void rejectsMalformedTokensWithoutAQuery() {
+        assertThat(service.rotate("not-a-refresh-token")).isEmpty();
+        assertThat(service.rotate(null)).isEmpty();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,59 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.domain.OrderItem;
+import java.math.BigDecimal;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class SalesAnalyticsServiceTest {
+
+    @Test
+    void aggregateShouldSumLinesPerBookAndPerCategory() {
+        Book first = new Book().id(10L);
+        Book second = new Book().id(11L);
+        Book third = new Book().id(12L);
+
+        SalesAnalyticsService.Aggregates aggregates = aggregate(
+            item(first, 1L, 2, "10.00"),
+            item(second, 1L, 1, "5.50"),
+            item(third, 2L, 3, "2.00"),
+            item(first, 1L, 1, "9.00")
+        );
+
+        assertThat(aggregates.byBook()).containsOnlyKeys(10L, 11L, 12L);
+        assertThat(aggregates.byBook().get(10L)).isEqualTo(new SalesAnalyticsService.Figures(3, new BigDecimal("29.00")));
+        assertThat(aggregates.byCategory()).containsOnlyKeys(1L, 2L);
+        assertThat(aggregates.byCategory().get(1L)).isEqualTo(new SalesAnalyticsService.Figures(4, new BigDecimal("34.50")));
+        assertThat(aggregates.byCategory().get(2L)).isEqualTo(new SalesAnalyticsService.Figures(3, new BigDecimal("6.00")));
+    }
+
+    @Test
+    void aggregateShouldSkipLinesWithoutBook() {
+        SalesAnalyticsService.Aggregates aggregates = aggregate(item(null, 1L, 2, "10.00"));
+
+        assertThat(aggregates.byBook()).isEmpty();
+        assertThat(aggregates.byCategory()).isEmpty();
+    }
+
+    @Test
+    void aggregateShouldUseTheCategoryAtOrderTime() {
+        Book moved = new Book().id(10L).category(new Category().id(2L));
+
+        SalesAnalyticsService.Aggregates aggregates = aggregate(item(moved, 1L, 1, "10.00"), item(moved, null, 1, "10.00"));
+
+        assertThat(aggregates.byBook().get(10L)).isEqualTo(new SalesAnalyticsService.Figures(2, new BigDecimal("20.00")));
+        assertThat(aggregates.byCategory()).containsOnlyKeys(1L);
+    }
+
+    private static SalesAnalyticsService.Aggregates aggregate(OrderItem... items) {
+        return SalesAnalyticsService.aggregate(Stream.of(items).map(SalesAnalyticsService.Line::of).toList());
+    }
+
+    private static OrderItem item(Book book, Long categoryId, int quantity, String price) {
+        return new OrderItem().book(book).categoryId(categoryId).quantity(quantity).price(new BigDecimal(price));
+    }
+}
@@ -0,0 +1,146 @@
+package com.stoecklin.bookstore.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightLoaderTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlightLoader<Long, String> loader = new SingleFlightLoader<>("book", Duration.ZERO, meterRegistry, clock::get);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<String> leader = executor.submit(() ->
+                loader.get(1L, () -> {
+                    loading.countDown();
+                    await(release);
+                    return "book-" + loads.incrementAndGet();
+                })
+            );
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(executor.submit(() -> loader.get(1L, () -> "book-" + loads.incrementAndGet())));
+            }
+            while (count("coalesced") < 7) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("book-1");
+            for (Future<String> follower : followers) {
+                assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("book-1");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(count("loaded")).isEqualTo(1);
+        assertThat(count("coalesced")).isEqualTo(7);
+
+        assertThat(loader.get(1L, () -> "book-" + loads.incrementAndGet())).isEqualTo("book-2");
+    }
+
+    @Test
+    void reusesResultWithinWindow() {
+        SingleFlightLoader<Long, String> loader = new SingleFlightLoader<>("book", Duration.ofSeconds(1), meterRegistry, clock::get);
+
+        assertThat(loader.get(1L, () -> "book-" + loads.incrementAndGet())).isEqualTo("book-1");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertThat(loader.get(1L, () -> "book-" + loads.incrementAndGet())).isEqualTo("book-1");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(loader.get(1L, () -> "book-" + loads.incrementAndGet())).isEqualTo("book-2");
+
+        assertThat(count("recent")).isEqualTo(1);
+        assertThat(count("loaded")).isEqualTo(2);
+    }
+
+    @Test
+    void sharesSnapshotsRatherThanTheLoadedValue() {
+        SingleFlightLoader<Long, List<String>> loader = new SingleFlightLoader<>(
+            "book",
+            Duration.ofSeconds(1),
+            meterRegistry,
+            ArrayList::new,
+            clock::get
+        );
+        List<String> loaded = new ArrayList<>(List.of("book-1"));
+
+        List<String> leader = loader.get(1L, () -> loaded);
+        leader.add("changed by the leader");
+        List<String> follower = loader.get(1L, () -> List.of("book-2"));
+        follower.add("changed by a follower");
+
+        assertThat(leader).isSameAs(loaded);
+        assertThat(follower).isNotSameAs(loaded);
+        assertThat(loader.get(1L, () -> List.of("book-2"))).containsExactly("book-1");
+        assertThat(count("recent")).isEqualTo(2);
+    }
+
+    @Test
+    void evictForcesReload() {
+        SingleFlightLoader<Long, String> loader = new SingleFlightLoader<>("book", Duration.ofMinutes(1), meterRegistry, clock::get);
+
+        loader.get(1L, () -> "book-" + loads.incrementAndGet());
+        loader.evict(1L);
+
+        assertThat(loader.get(1L, () -> "book-" + loads.incrementAndGet())).isEqualTo("book-2");
+    }
+
+    @Test
+    void failuresAreNotCached() {
+        SingleFlightLoader<Long, String> loader = new SingleFlightLoader<>("book", Duration.ofMinutes(1), meterRegistry, clock::get);
+
+        assertThatThrownBy(() ->
+            loader.get(1L, () -> {
+                throw new IllegalStateException("database down");
+            })
+        ).isInstanceOf(IllegalStateException.class);
+
+        assertThat(loader.get(1L, () -> "book")).isEqualTo("book");
+    }
+
+    private double count(String result) {
+        return meterRegistry
+            .get(SingleFlightLoader.METER_NAME)
+            .tag(SingleFlightLoader.NAME_DIMENSION, "book")
+            .tag(SingleFlightLoader.RESULT_DIMENSION, result)
+            .counter()
+            .count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
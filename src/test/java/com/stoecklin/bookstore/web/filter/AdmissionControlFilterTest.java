@@ -0,0 +1,164 @@
+package com.stoecklin.bookstore.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.management.AdmissionControlMetersService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+class AdmissionControlFilterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private MeterRegistry meterRegistry;
+    private ApplicationProperties.AdmissionControl properties;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new ApplicationProperties.AdmissionControl();
+        ApplicationProperties.AdmissionControl.EndpointClass checkout = new ApplicationProperties.AdmissionControl.EndpointClass();
+        checkout.setPatterns(List.of("/api/orders/place-order"));
+        checkout.setMaxConcurrent(1);
+        checkout.setMaxWait(Duration.ZERO);
+        checkout.getPerUser().setCapacity(2);
+        checkout.getPerUser().setRefillPerSecond(1);
+        checkout.getPerIp().setCapacity(3);
+        checkout.getPerIp().setRefillPerSecond(1);
+        properties.getEndpointClasses().put("checkout", checkout);
+    }
+
+    @AfterEach
+    void cleanup() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void rejectsUserOverRateWithRetryAfter() throws Exception {
+        AdmissionControlFilter filter = newFilter();
+        SecurityContextHolder.getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken("alice", "x", List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        assertThat(call(filter, "/api/orders/place-order").getStatus()).isEqualTo(200);
+        assertThat(call(filter, "/api/orders/place-order").getStatus()).isEqualTo(200);
+        MockHttpServletResponse rejected = call(filter, "/api/orders/place-order");
+
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(
+            meterRegistry
+                .get(AdmissionControlMetersService.REJECTED_METER_NAME)
+                .tag(AdmissionControlMetersService.REASON_DIMENSION, AdmissionControlMetersService.REASON_USER_RATE)
+                .counter()
+                .count()
+        ).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsAnonymousClientOverRatePerAddress() throws Exception {
+        AdmissionControlFilter filter = newFilter();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(call(filter, "/api/orders/place-order").getStatus()).isEqualTo(200);
+        }
+
+        assertThat(call(filter, "/api/orders/place-order").getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void ignoresOtherEndpoints() throws Exception {
+        AdmissionControlFilter filter = newFilter();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(call(filter, "/api/books").getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void rejectsOverConcurrencyLimit() throws Exception {
+        AdmissionControlFilter filter = newFilter();
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+        FilterChain chain = (request, response) -> nested[0] = call(filter, "/api/orders/place-order");
+
+        filter.doFilter(request("/api/orders/place-order"), new MockHttpServletResponse(), chain);
+
+        assertThat(nested[0].getStatus()).isEqualTo(429);
+        assertThat(
+            meterRegistry
+                .get(AdmissionControlMetersService.REJECTED_METER_NAME)
+                .tag(AdmissionControlMetersService.REASON_DIMENSION, AdmissionControlMetersService.REASON_CONCURRENCY)
+                .counter()
+                .count()
+        ).isEqualTo(1);
+        assertThat(call(filter, "/api/orders/place-order").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void ratesClientsBehindTheLoadBalancerByTheirForwardedAddress() throws Exception {
+        properties.setTrustedProxies(1);
+        AdmissionControlFilter filter = newFilter();
+
+        for (int i = 0; i < 3; i++) {
+            // whatever a client puts in front of the address the balancer appends does not give it a new bucket
+            assertThat(call(filter, forwarded("203.0.113." + i + ", 198.51.100.1")).getStatus()).isEqualTo(200);
+        }
+        assertThat(call(filter, forwarded("198.51.100.1")).getStatus()).isEqualTo(429);
+        assertThat(call(filter, forwarded("198.51.100.2")).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void clientAddressShouldSkipOnlyTheTrustedProxies() {
+        MockHttpServletRequest request = forwarded("203.0.113.9, 198.51.100.1");
+        request.addHeader("X-Forwarded-For", "10.0.0.7");
+
+        assertThat(AdmissionControlFilter.clientAddress(request, 0)).isEqualTo("10.0.0.5");
+        assertThat(AdmissionControlFilter.clientAddress(request, 1)).isEqualTo("10.0.0.7");
+        assertThat(AdmissionControlFilter.clientAddress(request, 2)).isEqualTo("198.51.100.1");
+        assertThat(AdmissionControlFilter.clientAddress(request, 4)).isEqualTo("10.0.0.5");
+        assertThat(AdmissionControlFilter.clientAddress(request("/api/orders/place-order"), 1)).isEqualTo("192.0.2.1");
+    }
+
+    private AdmissionControlFilter newFilter() {
+        return new AdmissionControlFilter(properties, new AdmissionControlMetersService(meterRegistry), clock::get);
+    }
+
+    private static MockHttpServletResponse call(AdmissionControlFilter filter, String uri) throws ServletException, IOException {
+        return call(filter, request(uri));
+    }
+
+    private static MockHttpServletResponse call(AdmissionControlFilter filter, MockHttpServletRequest request)
+        throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest forwarded(String forwardedFor) {
+        MockHttpServletRequest request = request("/api/orders/place-order");
+        request.setRemoteAddr("10.0.0.5");
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        return request;
+    }
+
+    private static MockHttpServletRequest request(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setRemoteAddr("192.0.2.1");
+        return request;
+    }
+}
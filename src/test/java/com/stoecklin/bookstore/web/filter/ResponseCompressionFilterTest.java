@@ -0,0 +1,149 @@
+package com.stoecklin.bookstore.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.management.ResponseCompressionMetersService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class ResponseCompressionFilterTest {
+
+    private static final String LARGE_JSON = "[" + "{\"id\":1,\"title\":\"The Name of the Rose\"},".repeat(100) + "{}]";
+
+    private MeterRegistry meterRegistry;
+    private ResponseCompressionFilter filter;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new ResponseCompressionFilter(new ApplicationProperties.Http.Compression(), new ResponseCompressionMetersService(meterRegistry));
+    }
+
+    @Test
+    void compressesLargeJsonAndRecordsTheRatio() throws Exception {
+        MockHttpServletResponse response = call(request("gzip, deflate, br"), MediaType.APPLICATION_JSON_VALUE, LARGE_JSON);
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_LENGTH)).isNull();
+        byte[] compressed = response.getContentAsByteArray();
+        assertThat(compressed.length).isLessThan(LARGE_JSON.length() / 5);
+        assertThat(gunzip(compressed)).isEqualTo(LARGE_JSON);
+
+        DistributionSummary ratio = meterRegistry.get(ResponseCompressionMetersService.RATIO_METER_NAME).summary();
+        assertThat(ratio.count()).isEqualTo(1);
+        assertThat(ratio.totalAmount()).isEqualTo((double) compressed.length / LARGE_JSON.length());
+        assertThat(
+            meterRegistry
+                .get(ResponseCompressionMetersService.BYTES_METER_NAME)
+                .tag(ResponseCompressionMetersService.STAGE_DIMENSION, ResponseCompressionMetersService.STAGE_ORIGINAL)
+                .counter()
+                .count()
+        ).isEqualTo(LARGE_JSON.length());
+    }
+
+    @Test
+    void sendsSmallBodiesAsIsWithTheirLength() throws Exception {
+        MockHttpServletResponse response = call(request("gzip"), MediaType.APPLICATION_JSON_VALUE, "{\"id\":1}");
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(response.getContentLength()).isEqualTo(8);
+        assertThat(response.getContentAsString()).isEqualTo("{\"id\":1}");
+        assertThat(meterRegistry.get(ResponseCompressionMetersService.RATIO_METER_NAME).summary().count()).isZero();
+    }
+
+    @Test
+    void leavesOtherTypesAndClientsAlone() throws Exception {
+        MockHttpServletResponse image = call(request("gzip"), MediaType.IMAGE_PNG_VALUE, LARGE_JSON);
+        MockHttpServletResponse identity = call(request(null), MediaType.APPLICATION_JSON_VALUE, LARGE_JSON);
+
+        assertThat(image.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(image.getContentAsString()).isEqualTo(LARGE_JSON);
+        assertThat(identity.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(identity.getContentAsString()).isEqualTo(LARGE_JSON);
+    }
+
+    @Test
+    void keepsAnExistingEncoding() throws Exception {
+        MockHttpServletResponse response = call(request("gzip"), "text/csv", (req, res) -> {
+            ((HttpServletResponse) res).setHeader(HttpHeaders.CONTENT_ENCODING, "zstd");
+            res.getOutputStream().write(LARGE_JSON.getBytes(StandardCharsets.UTF_8));
+        });
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("zstd");
+        assertThat(response.getContentAsString()).isEqualTo(LARGE_JSON);
+    }
+
+    @Test
+    void passesAsyncResponsesThrough() throws Exception {
+        MockHttpServletRequest request = request("gzip");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = call(request, "text/csv", (req, res) -> {
+            res.getOutputStream().write("order_id".getBytes(StandardCharsets.UTF_8));
+            req.startAsync();
+        });
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getContentAsString()).isEqualTo("order_id");
+    }
+
+    @Test
+    void negotiatesGzip() {
+        assertThat(ResponseCompressionFilter.acceptsGzip("gzip, deflate, br")).isTrue();
+        assertThat(ResponseCompressionFilter.acceptsGzip("br;q=1.0, *;q=0.5")).isTrue();
+        assertThat(ResponseCompressionFilter.acceptsGzip("*, gzip;q=0")).isFalse();
+        assertThat(ResponseCompressionFilter.acceptsGzip("identity")).isFalse();
+        assertThat(ResponseCompressionFilter.acceptsGzip("")).isFalse();
+    }
+
+    private static MockHttpServletRequest request(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books");
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse call(MockHttpServletRequest request, String contentType, String body) throws Exception {
+        return call(request, contentType, (req, res) -> {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            res.setContentLength(bytes.length);
+            res.getOutputStream().write(bytes);
+            res.getOutputStream().flush();
+        });
+    }
+
+    private MockHttpServletResponse call(MockHttpServletRequest request, String contentType, FilterChain body) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(
+            request,
+            response,
+            (req, res) -> {
+                res.setContentType(contentType);
+                body.doFilter(req, res);
+            }
+        );
+        return response;
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.stoecklin.bookstore.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketStoreTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void allowsBurstUpToCapacityThenReportsWait() {
+        TokenBucketStore store = new TokenBucketStore(4, 3, 0.5, TimeUnit.MINUTES.toNanos(10), clock::get);
+
+        assertThat(store.tryAcquire("alice")).isZero();
+        assertThat(store.tryAcquire("alice")).isZero();
+        assertThat(store.tryAcquire("alice")).isZero();
+        assertThat(store.tryAcquire("alice")).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+        assertThat(store.tryAcquire("bob")).isZero();
+    }
+
+    @Test
+    void refillsOverTime() {
+        TokenBucketStore store = new TokenBucketStore(4, 1, 2, TimeUnit.MINUTES.toNanos(10), clock::get);
+
+        assertThat(store.tryAcquire("alice")).isZero();
+        assertThat(store.tryAcquire("alice")).isPositive();
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(store.tryAcquire("alice")).isZero();
+
+        clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+        assertThat(store.tryAcquire("alice")).isZero();
+        assertThat(store.tryAcquire("alice")).isPositive();
+    }
+
+    @Test
+    void evictsIdleBuckets() {
+        TokenBucketStore store = new TokenBucketStore(1, 1, 1, TimeUnit.SECONDS.toNanos(10), clock::get);
+        for (int i = 0; i < 100; i++) {
+            store.tryAcquire("10.0.0." + i);
+        }
+        assertThat(store.size()).isEqualTo(100);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        for (int i = 0; i < 1024; i++) {
+            store.tryAcquire("active");
+        }
+
+        assertThat(store.size()).isEqualTo(1);
+    }
+}
@@ -1,9 +1,14 @@
 package com.stoecklin.bookstore.web.rest;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -11,15 +16,32 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.stoecklin.bookstore.IntegrationTest;
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.CartItem;
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.domain.ShoppingCart;
 import com.stoecklin.bookstore.domain.User;
 import com.stoecklin.bookstore.repository.UserRepository;
+import com.stoecklin.bookstore.service.dto.PasswordChangeDTO;
 import com.stoecklin.bookstore.web.rest.vm.LoginVM;
+import com.stoecklin.bookstore.web.rest.vm.RefreshTokenVM;
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.http.Cookie;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -38,6 +60,18 @@ class AuthenticateControllerIT {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private GuestCartCookies guestCartCookies;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -88,6 +122,127 @@ class AuthenticateControllerIT {
             .andExpect(header().string("Authorization", not(is(emptyString()))));
     }
 
+    @Test
+    @Transactional
+    void testAuthorizeMergesTheGuestCart() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-guest-cart");
+        user.setEmail("user-jwt-controller-guest-cart@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+        userRepository.saveAndFlush(user);
+
+        Category category = new Category().name("Guest cart");
+        em.persist(category);
+        Book inCart = BookResourceIT.createEntity(em).category(category);
+        Book guestOnly = BookResourceIT.createEntity(em).category(category);
+        em.persist(inCart);
+        em.persist(guestOnly);
+        ShoppingCart cart = new ShoppingCart();
+        cart.setCreatedAt(Instant.now());
+        cart.setCompleted(false);
+        cart.setUser(user);
+        em.persist(cart);
+        CartItem item = new CartItem();
+        item.setBook(inCart);
+        item.setQuantity(1);
+        cart.addItems(item);
+        em.persist(item);
+        em.flush();
+
+        Map<Long, Integer> guestCart = new LinkedHashMap<>();
+        guestCart.put(inCart.getId(), 2);
+        guestCart.put(guestOnly.getId(), 3);
+        String cookieName = applicationProperties.getGuestCart().getCookieName();
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-guest-cart");
+        login.setPassword("test");
+        mockMvc
+            .perform(
+                post("/api/authenticate")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(om.writeValueAsBytes(login))
+                    .cookie(new Cookie(cookieName, guestCartCookies.encode(guestCart)))
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.SET_COOKIE, startsWith(cookieName + "=;")))
+            .andExpect(header().string(HttpHeaders.SET_COOKIE, containsString("Max-Age=0")));
+
+        Map<Long, Integer> quantities = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT book_id, quantity FROM cart_item WHERE cart_id = ?",
+            (RowCallbackHandler) rs -> quantities.put(rs.getLong("book_id"), rs.getInt("quantity")),
+            cart.getId()
+        );
+        assertThat(quantities).containsOnly(entry(inCart.getId(), 3), entry(guestOnly.getId(), 3));
+    }
+
+    @Test
+    @Transactional
+    void testAuthorizeWithRefreshToken() throws Exception {
+        createUser("user-jwt-controller-refresh");
+
+        String refreshToken = loginWithRefreshToken("user-jwt-controller-refresh");
+        String next = om
+            .readTree(
+                refresh(refreshToken)
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.id_token").isNotEmpty())
+                    .andExpect(header().string("Authorization", not(is(emptyString()))))
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString()
+            )
+            .get("refresh_token")
+            .asText();
+        assertThat(next).isNotEqualTo(refreshToken).startsWith(familyOf(refreshToken) + ".");
+
+        mockMvc
+            .perform(post("/api/authenticate/revoke").contentType(MediaType.APPLICATION_JSON).content(refreshTokenBody(next)))
+            .andExpect(status().isNoContent());
+        refresh(next).andExpect(status().isUnauthorized()).andExpect(jsonPath("$.id_token").doesNotExist());
+    }
+
+    @Test
+    @Transactional
+    void testRefreshTokenReuseRevokesItsFamily() throws Exception {
+        createUser("user-jwt-controller-refresh-reuse");
+
+        String refreshToken = loginWithRefreshToken("user-jwt-controller-refresh-reuse");
+        String next = om.readTree(refresh(refreshToken).andExpect(status().isOk()).andReturn().getResponse().getContentAsString())
+            .get("refresh_token")
+            .asText();
+
+        refresh(refreshToken).andExpect(status().isUnauthorized());
+        refresh(next).andExpect(status().isUnauthorized());
+        assertThat(
+            jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM refresh_token WHERE family = ? AND revoked = false",
+                Integer.class,
+                familyOf(refreshToken)
+            )
+        ).isZero();
+    }
+
+    @Test
+    @Transactional
+    void testChangingThePasswordRevokesRefreshTokens() throws Exception {
+        createUser("user-jwt-controller-refresh-password");
+        String refreshToken = loginWithRefreshToken("user-jwt-controller-refresh-password");
+
+        mockMvc
+            .perform(
+                post("/api/account/change-password")
+                    .with(user("user-jwt-controller-refresh-password"))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(om.writeValueAsBytes(new PasswordChangeDTO("test", "new password")))
+            )
+            .andExpect(status().isOk());
+
+        refresh(refreshToken).andExpect(status().isUnauthorized());
+    }
+
     @Test
     void testAuthorizeFails() throws Exception {
         LoginVM login = new LoginVM();
@@ -99,4 +254,45 @@ class AuthenticateControllerIT {
             .andExpect(jsonPath("$.id_token").doesNotExist())
             .andExpect(header().doesNotExist("Authorization"));
     }
+
+    private void createUser(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setEmail(login + "@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+        userRepository.saveAndFlush(user);
+    }
+
+    private String loginWithRefreshToken(String username) throws Exception {
+        LoginVM login = new LoginVM();
+        login.setUsername(username);
+        login.setPassword("test");
+        login.setWithRefreshToken(true);
+        String body = mockMvc
+            .perform(post("/api/authenticate").contentType(MediaType.APPLICATION_JSON).content(om.writeValueAsBytes(login)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id_token").isNotEmpty())
+            .andExpect(jsonPath("$.refresh_token").isNotEmpty())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        return om.readTree(body).get("refresh_token").asText();
+    }
+
+    private ResultActions refresh(String refreshToken) throws Exception {
+        return mockMvc.perform(
+            post("/api/authenticate/refresh").contentType(MediaType.APPLICATION_JSON).content(refreshTokenBody(refreshToken))
+        );
+    }
+
+    private byte[] refreshTokenBody(String refreshToken) throws Exception {
+        RefreshTokenVM vm = new RefreshTokenVM();
+        vm.setRefreshToken(refreshToken);
+        return om.writeValueAsBytes(vm);
+    }
+
+    private static String familyOf(String refreshToken) {
+        return refreshToken.substring(0, refreshToken.indexOf('.'));
+    }
 }
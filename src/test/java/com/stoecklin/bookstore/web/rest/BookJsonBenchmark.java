@@ -0,0 +1,100 @@
+package com.stoecklin.bookstore.web.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stoecklin.bookstore.config.JacksonConfiguration;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to serialize a page of books as JSON: with the modules the application had before ({@code reflection}), with
+ * Blackbird property access added ({@code blackbird}), and streamed element by element through {@link JsonArrayWriter}
+ * with the serializer resolved once ({@code streamed}). Output goes to a discarding stream.
+ * <p>
+ * Not a test: run {@link #main(String[])} once the test classes are compiled ({@code ./mvnw test-compile}); run a single
+ * variant with e.g. {@code -Dbenchmark.include=streamed}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BookJsonBenchmark {
+
+    @Param({ "1000" })
+    int books;
+
+    private List<Book> page;
+    private ObjectMapper reflectionMapper;
+    private ObjectMapper blackbirdMapper;
+    private JsonArrayWriter jsonArrayWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Category> categories = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            categories.add(new Category().id(id).name("Category " + id));
+        }
+        page = new ArrayList<>(books);
+        for (long id = 1; id <= books; id++) {
+            Book book = new Book()
+                .id(id)
+                .title("Title of book " + id)
+                .author("Author " + (id % 300))
+                .description("A description of book " + id + " that is about as long as the ones in the catalogue.")
+                .price(BigDecimal.valueOf(1000 + id % 4000, 2))
+                .stock((int) (id % 50))
+                .category(categories.get((int) (id % categories.size())));
+            book.setAverageRating(1 + (id % 40) / 10.0);
+            page.add(book);
+        }
+
+        JacksonConfiguration configuration = new JacksonConfiguration();
+        reflectionMapper = new ObjectMapper()
+            .registerModules(configuration.javaTimeModule(), configuration.jdk8TimeModule(), configuration.hibernate6Module());
+        blackbirdMapper = reflectionMapper.copy().registerModule(configuration.blackbirdModule());
+        jsonArrayWriter = new JsonArrayWriter(blackbirdMapper);
+    }
+
+    @Benchmark
+    public void reflection() throws IOException {
+        reflectionMapper.writeValue(OutputStream.nullOutputStream(), page);
+    }
+
+    @Benchmark
+    public void blackbird() throws IOException {
+        blackbirdMapper.writeValue(OutputStream.nullOutputStream(), page);
+    }
+
+    @Benchmark
+    public void streamed() throws IOException {
+        jsonArrayWriter.write(OutputStream.nullOutputStream(), Book.class, page);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(BookJsonBenchmark.class.getSimpleName() + "." + System.getProperty("benchmark.include", ""));
+        new Runner(options.build()).run();
+    }
+}
@@ -6,7 +6,7 @@ import static com.stoecklin.bookstore.domain.BookAsserts.assertBookUpdatableFiel
 import static com.stoecklin.bookstore.web.rest.TestUtil.createUpdateProxyForBean;
 import static com.stoecklin.bookstore.web.rest.TestUtil.sameNumber;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.awaitility.Awaitility.await;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.times;
@@ -26,13 +26,14 @@ import com.stoecklin.bookstore.IntegrationTest;
 import com.stoecklin.bookstore.domain.Book;
 import com.stoecklin.bookstore.domain.Category;
 import com.stoecklin.bookstore.repository.BookRepository;
+import com.stoecklin.bookstore.service.BookInventoryService;
 import com.stoecklin.bookstore.repository.search.BookSearchRepository;
+import com.stoecklin.bookstore.service.event.BookChanged;
 import jakarta.persistence.EntityManager;
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import org.assertj.core.util.IterableUtil;
 import org.junit.jupiter.api.AfterEach;
@@ -45,9 +46,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.util.Streamable;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -58,6 +60,7 @@ import org.springframework.transaction.annotation.Transactional;
 @ExtendWith(MockitoExtension.class)
 @AutoConfigureMockMvc
 @WithMockUser
+@RecordApplicationEvents
 class BookResourceIT {
 
     private static final String DEFAULT_TITLE = "AAAAAAAAAA";
@@ -94,6 +97,12 @@ class BookResourceIT {
     @Autowired
     private BookSearchRepository bookSearchRepository;
 
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
+    @Autowired
+    private BookInventoryService bookInventoryService;
+
     @Autowired
     private EntityManager em;
 
@@ -190,12 +199,11 @@ class BookResourceIT {
         assertIncrementedRepositoryCount(databaseSizeBeforeCreate);
         assertBookUpdatableFieldsEquals(returnedBook, getPersistedBook(returnedBook));
 
-        await()
-            .atMost(5, TimeUnit.SECONDS)
-            .untilAsserted(() -> {
-                int searchDatabaseSizeAfter = IterableUtil.sizeOf(bookSearchRepository.findAll());
-                assertThat(searchDatabaseSizeAfter).isEqualTo(searchDatabaseSizeBefore + 1);
-            });
+        // the book is indexed once the transaction commits, which a transactional test never does
+        assertThat(applicationEvents.stream(BookChanged.class))
+            .extracting(BookChanged::bookId, BookChanged::deleted)
+            .containsExactly(tuple(returnedBook.getId(), false));
+        assertThat(IterableUtil.sizeOf(bookSearchRepository.findAll())).isEqualTo(searchDatabaseSizeBefore);
 
         insertedBook = returnedBook;
     }
@@ -304,7 +312,7 @@ class BookResourceIT {
     @Transactional
     void getAllBooks() throws Exception {
         // Initialize the database
-        insertedBook = bookRepository.saveAndFlush(book);
+        insertedBook = insertBook(book);
 
         // Get all the bookList
         restBookMockMvc
@@ -316,7 +324,7 @@ class BookResourceIT {
             .andExpect(jsonPath("$.[*].author").value(hasItem(DEFAULT_AUTHOR)))
             .andExpect(jsonPath("$.[*].description").value(hasItem(DEFAULT_DESCRIPTION)))
             .andExpect(jsonPath("$.[*].price").value(hasItem(sameNumber(DEFAULT_PRICE))))
-            .andExpect(jsonPath("$.[*].available").value(hasItem(DEFAULT_STOCK)));
+            .andExpect(jsonPath("$.[*].stock").value(hasItem(DEFAULT_STOCK)));
     }
 
     @SuppressWarnings({ "unchecked" })
@@ -340,7 +348,7 @@ class BookResourceIT {
     @Transactional
     void getBook() throws Exception {
         // Initialize the database
-        insertedBook = bookRepository.saveAndFlush(book);
+        insertedBook = insertBook(book);
 
         // Get the book
         restBookMockMvc
@@ -352,7 +360,42 @@ class BookResourceIT {
             .andExpect(jsonPath("$.author").value(DEFAULT_AUTHOR))
             .andExpect(jsonPath("$.description").value(DEFAULT_DESCRIPTION))
             .andExpect(jsonPath("$.price").value(sameNumber(DEFAULT_PRICE)))
-            .andExpect(jsonPath("$.available").value(DEFAULT_STOCK));
+            .andExpect(jsonPath("$.stock").value(DEFAULT_STOCK));
+    }
+
+    @Test
+    @Transactional
+    void stockAndAverageRatingShouldRoundTrip() throws Exception {
+        // both live in book_inventory and are transient on Book, yet must be read and written like any other property
+        insertedBook = insertBook(book);
+        bookInventoryService.updateAverageRating(book.getId(), 4.5);
+        em.clear(); // the bulk update bypasses the inventory already in the persistence context
+
+        Book returnedBook = om.readValue(
+            restBookMockMvc
+                .perform(get(ENTITY_API_URL_ID, book.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stock").value(DEFAULT_STOCK))
+                .andExpect(jsonPath("$.averageRating").value(4.5))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(),
+            Book.class
+        );
+        assertThat(returnedBook.getStock()).isEqualTo(DEFAULT_STOCK);
+        assertThat(returnedBook.getAverageRating()).isEqualTo(4.5);
+
+        returnedBook.setStock(UPDATED_STOCK);
+        restBookMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, book.getId()).contentType(MediaType.APPLICATION_JSON).content(om.writeValueAsBytes(returnedBook))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.stock").value(UPDATED_STOCK));
+
+        Book persistedBook = getPersistedBook(book);
+        assertThat(persistedBook.getStock()).isEqualTo(UPDATED_STOCK);
+        assertThat(persistedBook.getAverageRating()).isEqualTo(4.5);
     }
 
     @Test
@@ -366,7 +409,7 @@ class BookResourceIT {
     @Transactional
     void putExistingBook() throws Exception {
         // Initialize the database
-        insertedBook = bookRepository.saveAndFlush(book);
+        insertedBook = insertBook(book);
 
         long databaseSizeBeforeUpdate = getRepositoryCount();
         bookSearchRepository.save(book);
@@ -390,16 +433,10 @@ class BookResourceIT {
         assertSameRepositoryCount(databaseSizeBeforeUpdate);
         assertPersistedBookToMatchAllProperties(updatedBook);
 
-        await()
-            .atMost(5, TimeUnit.SECONDS)
-            .untilAsserted(() -> {
-                int searchDatabaseSizeAfter = IterableUtil.sizeOf(bookSearchRepository.findAll());
-                assertThat(searchDatabaseSizeAfter).isEqualTo(searchDatabaseSizeBefore);
-                List<Book> bookSearchList = Streamable.of(bookSearchRepository.findAll()).toList();
-                Book testBookSearch = bookSearchList.get(searchDatabaseSizeAfter - 1);
-
-                assertBookAllPropertiesEquals(testBookSearch, updatedBook);
-            });
+        assertThat(IterableUtil.sizeOf(bookSearchRepository.findAll())).isEqualTo(searchDatabaseSizeBefore);
+        assertThat(applicationEvents.stream(BookChanged.class))
+            .extracting(BookChanged::bookId, BookChanged::deleted)
+            .containsExactly(tuple(updatedBook.getId(), false));
     }
 
     @Test
@@ -464,7 +501,7 @@ class BookResourceIT {
     @Transactional
     void partialUpdateBookWithPatch() throws Exception {
         // Initialize the database
-        insertedBook = bookRepository.saveAndFlush(book);
+        insertedBook = insertBook(book);
 
         long databaseSizeBeforeUpdate = getRepositoryCount();
 
@@ -492,7 +529,7 @@ class BookResourceIT {
     @Transactional
     void fullUpdateBookWithPatch() throws Exception {
         // Initialize the database
-        insertedBook = bookRepository.saveAndFlush(book);
+        insertedBook = insertBook(book);
 
         long databaseSizeBeforeUpdate = getRepositoryCount();
 
@@ -583,7 +620,7 @@ class BookResourceIT {
     @Transactional
     void deleteBook() throws Exception {
         // Initialize the database
-        insertedBook = bookRepository.saveAndFlush(book);
+        insertedBook = insertBook(book);
         bookRepository.save(book);
         bookSearchRepository.save(book);
 
@@ -598,15 +635,15 @@ class BookResourceIT {
 
         // Validate the database contains one less item
         assertDecrementedRepositoryCount(databaseSizeBeforeDelete);
-        int searchDatabaseSizeAfter = IterableUtil.sizeOf(bookSearchRepository.findAll());
-        assertThat(searchDatabaseSizeAfter).isEqualTo(searchDatabaseSizeBefore - 1);
+        assertThat(applicationEvents.stream(BookChanged.class))
+            .containsExactly(new BookChanged(book.getId(), true, Set.of(book.getCategory().getId())));
     }
 
     @Test
     @Transactional
     void searchBook() throws Exception {
         // Initialize the database
-        insertedBook = bookRepository.saveAndFlush(book);
+        insertedBook = insertBook(book);
         bookSearchRepository.save(book);
 
         // Search the book
@@ -619,7 +656,7 @@ class BookResourceIT {
             .andExpect(jsonPath("$.[*].author").value(hasItem(DEFAULT_AUTHOR)))
             .andExpect(jsonPath("$.[*].description").value(hasItem(DEFAULT_DESCRIPTION)))
             .andExpect(jsonPath("$.[*].price").value(hasItem(sameNumber(DEFAULT_PRICE))))
-            .andExpect(jsonPath("$.[*].available").value(hasItem(DEFAULT_STOCK)));
+            .andExpect(jsonPath("$.[*].stock").value(hasItem(DEFAULT_STOCK)));
     }
 
     protected long getRepositoryCount() {
@@ -638,8 +675,14 @@ class BookResourceIT {
         assertThat(countBefore).isEqualTo(getRepositoryCount());
     }
 
+    protected Book insertBook(Book book) {
+        Book inserted = bookRepository.saveAndFlush(book);
+        bookInventoryService.setStock(inserted.getId(), book.getStock());
+        return inserted;
+    }
+
     protected Book getPersistedBook(Book book) {
-        return bookRepository.findById(book.getId()).orElseThrow();
+        return bookInventoryService.attach(bookRepository.findById(book.getId()).orElseThrow());
     }
 
     protected void assertPersistedBookToMatchAllProperties(Book expectedBook) {
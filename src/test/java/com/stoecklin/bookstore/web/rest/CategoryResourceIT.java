@@ -4,6 +4,7 @@ import static com.stoecklin.bookstore.domain.CategoryAsserts.*;
 import static com.stoecklin.bookstore.web.rest.TestUtil.createUpdateProxyForBean;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -11,10 +12,16 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.stoecklin.bookstore.IntegrationTest;
+import com.stoecklin.bookstore.domain.Book;
 import com.stoecklin.bookstore.domain.Category;
 import com.stoecklin.bookstore.repository.CategoryRepository;
 import com.stoecklin.bookstore.repository.search.CategorySearchRepository;
+import com.stoecklin.bookstore.service.CategoryBookCountService;
 import jakarta.persistence.EntityManager;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
@@ -26,9 +33,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.data.util.Streamable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -58,6 +68,9 @@ class CategoryResourceIT {
     @Autowired
     private CategorySearchRepository categorySearchRepository;
 
+    @Autowired
+    private CategoryBookCountService categoryBookCountService;
+
     @Autowired
     private EntityManager em;
 
@@ -464,6 +477,53 @@ class CategoryResourceIT {
             .andExpect(jsonPath("$.[*].name").value(hasItem(DEFAULT_NAME)));
     }
 
+    @Test
+    @Transactional
+    void pagingThroughCategoryBooksShouldNeitherRepeatNorSkipBooks() throws Exception {
+        insertedCategory = categoryRepository.saveAndFlush(category);
+        List<Book> books = new ArrayList<>();
+        // repeated titles are ordered by id, and a colon in a title must survive the cursor
+        for (String title : List.of("Dune", "Anathem", "Dune: Messiah", "Anathem", "Hyperion", "Dune", "Anathem")) {
+            Book book = BookResourceIT.createEntity(em).title(title).category(insertedCategory);
+            em.persist(book);
+            books.add(book);
+        }
+        em.flush();
+        Comparator<Book> byTitleThenId = Comparator.comparing(Book::getTitle).thenComparing(Book::getId);
+        List<Long> ascending = books.stream().sorted(byTitleThenId).map(Book::getId).toList();
+        List<Long> descending = books.stream().sorted(byTitleThenId.reversed()).map(Book::getId).toList();
+
+        assertThat(pageThroughBooks(insertedCategory.getId(), "title,asc", 3)).containsExactlyElementsOf(ascending);
+        assertThat(pageThroughBooks(insertedCategory.getId(), "title,desc", 3)).containsExactlyElementsOf(descending);
+        assertThat(pageThroughBooks(insertedCategory.getId(), "title,asc", 7)).containsExactlyElementsOf(ascending);
+
+        categoryBookCountService.recount(List.of(insertedCategory.getId()));
+        restCategoryMockMvc
+            .perform(get(ENTITY_API_URL).param("withCounts", "true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[?(@.id == " + insertedCategory.getId() + ")].bookCount").value(contains(books.size())));
+    }
+
+    /**
+     * Follow the {@code next} links from the first page of the books of a category.
+     *
+     * @return the ids of the books, in the order they were received.
+     */
+    private List<Long> pageThroughBooks(Long categoryId, String sort, int size) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        MockHttpServletRequestBuilder request = get(ENTITY_API_URL_ID + "/books", categoryId).param("sort", sort).param("size", Integer.toString(size));
+        for (int pages = 0; request != null; pages++) {
+            assertThat(pages).as("pages").isLessThan(10);
+            MvcResult result = restCategoryMockMvc.perform(request).andExpect(status().isOk()).andReturn();
+            Book[] page = om.readValue(result.getResponse().getContentAsString(), Book[].class);
+            assertThat(page.length).isLessThanOrEqualTo(size);
+            Arrays.stream(page).map(Book::getId).forEach(ids::add);
+            String link = result.getResponse().getHeader(HttpHeaders.LINK);
+            request = link == null ? null : get(URI.create(link.substring(link.indexOf('<') + 1, link.indexOf('>'))));
+        }
+        return ids;
+    }
+
     protected long getRepositoryCount() {
         return categoryRepository.count();
     }
@@ -0,0 +1,93 @@
+package com.stoecklin.bookstore.web.rest;
+
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.stoecklin.bookstore.IntegrationTest;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.security.AuthoritiesConstants;
+import jakarta.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for the {@link EntityAuditResource} REST controller, with changes committed and written to the
+ * audit trail by the background writer. Nothing is transactional here: only committed changes are audited.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser(username = EntityAuditResourceIT.LOGIN, authorities = AuthoritiesConstants.ADMIN)
+class EntityAuditResourceIT {
+
+    static final String LOGIN = "entity-audit-admin";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MockMvc restEntityAuditMockMvc;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Book book;
+
+    @BeforeEach
+    void initTest() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            Category category = new Category().name("Audited");
+            em.persist(category);
+            book = BookResourceIT.createEntity(em).category(category);
+            em.persist(book);
+        });
+    }
+
+    @AfterEach
+    void cleanup() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM entity_audit WHERE entity_type = 'Book' AND entity_id = ?", book.getId());
+            jdbcTemplate.update("DELETE FROM book_inventory WHERE book_id = ?", book.getId());
+            jdbcTemplate.update("DELETE FROM book WHERE id = ?", book.getId());
+            jdbcTemplate.update("DELETE FROM category WHERE id = ?", book.getCategory().getId());
+        });
+    }
+
+    @Test
+    void committedPriceChangesShouldBeWrittenToTheAuditTrail() {
+        transactionTemplate.executeWithoutResult(status -> em.find(Book.class, book.getId()).setPrice(new BigDecimal("12.50")));
+
+        await()
+            .atMost(5, TimeUnit.SECONDS)
+            .untilAsserted(() ->
+                restEntityAuditMockMvc
+                    .perform(get("/api/admin/audit/{entityType}/{entityId}", "Book", book.getId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(2))
+                    .andExpect(jsonPath("$[0].field").value("price"))
+                    .andExpect(jsonPath("$[0].oldValue").value("1"))
+                    .andExpect(jsonPath("$[0].newValue").value("12.5"))
+                    .andExpect(jsonPath("$[0].changedBy").value(LOGIN))
+                    .andExpect(jsonPath("$[1].oldValue").doesNotExist())
+                    .andExpect(jsonPath("$[1].newValue").value("1"))
+            );
+    }
+}
@@ -0,0 +1,80 @@
+package com.stoecklin.bookstore.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import jakarta.servlet.http.Cookie;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class GuestCartCookiesTest {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString("a-secret-of-at-least-sixty-four-bytes-for-hmac-sha512-jwt-tokens!".getBytes());
+
+    private final GuestCartCookies cookies = new GuestCartCookies(SECRET, properties(3));
+
+    @Test
+    void readsBackTheCartItWrote() {
+        Map<Long, Integer> items = new LinkedHashMap<>();
+        items.put(1500L, 2);
+        items.put(3L, 1);
+        items.put(Long.MAX_VALUE, 127);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        cookies.write(request, response, items);
+
+        String header = response.getHeader(HttpHeaders.SET_COOKIE);
+        assertThat(header).startsWith("guest-cart=").contains("Path=/api", "HttpOnly", "SameSite=Lax").doesNotContain("Secure");
+        request.setCookies(new Cookie("guest-cart", header.substring("guest-cart=".length(), header.indexOf(';'))));
+        assertThat(cookies.read(request)).containsExactly(Map.entry(1500L, 2), Map.entry(3L, 1), Map.entry(Long.MAX_VALUE, 127));
+    }
+
+    @Test
+    void keepsSmallCartsShort() {
+        // version, count, books (1500 takes two bytes) and the MAC: 1 + 1 + 3 + 2 + 16 = 23 bytes, in base64
+        assertThat(cookies.encode(Map.of(1500L, 2, 42L, 1))).hasSize(31);
+    }
+
+    @Test
+    void ignoresTamperedForeignAndMalformedCookies() {
+        String value = cookies.encode(Map.of(7L, 1));
+        char[] tampered = value.toCharArray();
+        tampered[3] = tampered[3] == 'A' ? 'B' : 'A';
+
+        assertThat(cookies.decode(new String(tampered))).isEmpty();
+        assertThat(new GuestCartCookies(Base64.getEncoder().encodeToString(new byte[64]), properties(3)).decode(value)).isEmpty();
+        assertThat(cookies.decode("")).isEmpty();
+        assertThat(cookies.decode("not base64!")).isEmpty();
+        assertThat(cookies.decode(value.substring(0, value.length() - 2))).isEmpty();
+        assertThat(cookies.read(new MockHttpServletRequest())).isEmpty();
+    }
+
+    @Test
+    void ignoresCartsWithTooManyBooksOrNoCopies() {
+        assertThat(cookies.decode(cookies.encode(Map.of(1L, 1, 2L, 1, 3L, 1, 4L, 1)))).isEmpty();
+        assertThat(cookies.decode(cookies.encode(Map.of(1L, 0)))).isEmpty();
+    }
+
+    @Test
+    void clearsTheCookieOfAnEmptyCart() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSecure(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        cookies.write(request, response, Map.of());
+
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE)).startsWith("guest-cart=;").contains("Max-Age=0", "Secure");
+    }
+
+    private static ApplicationProperties properties(int maxItems) {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getGuestCart().setMaxItems(maxItems);
+        return properties;
+    }
+}
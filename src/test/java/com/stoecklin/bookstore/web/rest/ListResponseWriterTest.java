@@ -0,0 +1,81 @@
+package com.stoecklin.bookstore.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.stoecklin.bookstore.config.JacksonProtobufHttpMessageConverter;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+class ListResponseWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Book> books = List.of(new Book().id(1L).title("One").category(new Category().id(2L)), new Book().id(3L).title("Two"));
+
+    private ListResponseWriter writer;
+
+    @BeforeEach
+    void setup() {
+        RequestMappingHandlerAdapter handlerAdapter = new RequestMappingHandlerAdapter();
+        handlerAdapter.setMessageConverters(
+            List.of(
+                new MappingJackson2HttpMessageConverter(objectMapper),
+                new MappingJackson2CborHttpMessageConverter(new CBORMapper()),
+                new JacksonProtobufHttpMessageConverter(Jackson2ObjectMapperBuilder.json())
+            )
+        );
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("requestMappingHandlerAdapter", handlerAdapter);
+        writer = new ListResponseWriter(new JsonArrayWriter(objectMapper), beanFactory.getBeanProvider(RequestMappingHandlerAdapter.class));
+    }
+
+    @Test
+    void writesJsonByDefault() throws Exception {
+        MockHttpServletResponse response = write("*/*");
+
+        assertThat(response.getContentType()).isEqualTo("application/json");
+        assertThat(response.getContentAsString()).isEqualTo(objectMapper.writeValueAsString(books));
+    }
+
+    @Test
+    void writesTheFormatTheClientPrefers() throws Exception {
+        MockHttpServletResponse response = write("application/json;q=0.5, application/cbor");
+
+        assertThat(response.getContentType()).isEqualTo("application/cbor");
+        assertThat(new CBORMapper().readTree(response.getContentAsByteArray())).hasSize(2);
+    }
+
+    @Test
+    void writesProtobufWhenAsked() throws Exception {
+        MockHttpServletResponse response = write("application/x-protobuf");
+
+        assertThat(response.getContentType()).isEqualTo("application/x-protobuf");
+        assertThat(response.getContentAsByteArray()).isNotEmpty();
+    }
+
+    @Test
+    void rejectsFormatsThatCannotRepresentTheList() {
+        assertThatThrownBy(() -> write("text/csv")).isInstanceOf(HttpMediaTypeNotAcceptableException.class);
+    }
+
+    private MockHttpServletResponse write(String accept) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books");
+        request.addHeader("Accept", accept);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        writer.write(request, response, Book.class, books);
+        return response;
+    }
+}
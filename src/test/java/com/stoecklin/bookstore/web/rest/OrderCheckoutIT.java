@@ -0,0 +1,234 @@
+package com.stoecklin.bookstore.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stoecklin.bookstore.IntegrationTest;
+import com.stoecklin.bookstore.config.ApplicationProperties;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.domain.User;
+import com.stoecklin.bookstore.domain.enumeration.CheckoutStatus;
+import com.stoecklin.bookstore.repository.UserRepository;
+import com.stoecklin.bookstore.service.BookInventoryService;
+import com.stoecklin.bookstore.service.CheckoutQueueService;
+import com.stoecklin.bookstore.service.dto.CheckoutStatusDTO;
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for checking out through the {@link OrderResource}, synchronously and through the
+ * {@link CheckoutQueueService} with its workers running. Nothing is transactional here: the workers place orders in
+ * their own transactions, which only see committed carts.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+class OrderCheckoutIT {
+
+    private static final long WAIT_SECONDS = 10;
+
+    @Autowired
+    private ObjectMapper om;
+
+    @Autowired
+    private CheckoutQueueService checkoutQueueService;
+
+    @Autowired
+    private BookInventoryService bookInventoryService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MockMvc restOrderMockMvc;
+
+    private TransactionTemplate transactionTemplate;
+
+    private User syncUser;
+
+    private User queuedUser;
+
+    private Book book;
+
+    @BeforeEach
+    void initTest() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            syncUser = userRepository.save(UserResourceIT.createEntity());
+            queuedUser = userRepository.save(UserResourceIT.createEntity());
+            Category category = new Category().name("Checkout");
+            em.persist(category);
+            book = BookResourceIT.createEntity(em).category(category);
+            em.persist(book);
+            em.flush();
+            bookInventoryService.setStock(book.getId(), 10);
+        });
+    }
+
+    @AfterEach
+    void cleanup() throws InterruptedException {
+        checkoutQueueService.stop();
+        applicationProperties.getCheckout().setMode(ApplicationProperties.Checkout.Mode.SYNC);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (User user : List.of(syncUser, queuedUser)) {
+                jdbcTemplate.update("DELETE FROM checkout_request WHERE user_login = ?", user.getLogin());
+                jdbcTemplate.update("DELETE FROM order_item WHERE order_id IN (SELECT id FROM jhi_order WHERE user_id = ?)", user.getId());
+                jdbcTemplate.update("DELETE FROM jhi_order WHERE user_id = ?", user.getId());
+                jdbcTemplate.update("DELETE FROM cart_item WHERE cart_id IN (SELECT id FROM shopping_cart WHERE user_id = ?)", user.getId());
+                jdbcTemplate.update("DELETE FROM shopping_cart WHERE user_id = ?", user.getId());
+                jdbcTemplate.update("DELETE FROM jhi_user_authority WHERE user_id = ?", user.getId());
+                jdbcTemplate.update("DELETE FROM jhi_user WHERE id = ?", user.getId());
+            }
+            jdbcTemplate.update("DELETE FROM book_inventory WHERE book_id = ?", book.getId());
+            jdbcTemplate.update("DELETE FROM book WHERE id = ?", book.getId());
+            jdbcTemplate.update("DELETE FROM category WHERE id = ?", book.getCategory().getId());
+        });
+    }
+
+    @Test
+    void queuedCheckoutShouldPlaceTheOrderASynchronousOneWould() throws Exception {
+        addToCart(syncUser, 2);
+        Long syncOrderId = om
+            .readTree(
+                restOrderMockMvc
+                    .perform(post("/api/orders/place-order").with(user(syncUser.getLogin())))
+                    .andExpect(status().isCreated())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString()
+            )
+            .get("id")
+            .asLong();
+
+        startQueue();
+        addToCart(queuedUser, 2);
+        CheckoutStatusDTO queued = enqueue();
+
+        CheckoutStatusDTO completed = poll(queued.handle());
+        assertThat(completed.status()).isEqualTo(CheckoutStatus.COMPLETED);
+        assertThat(completed.orderId()).isNotNull();
+        assertThat(placedOrder(completed.orderId())).isEqualTo(placedOrder(syncOrderId));
+        assertThat(stock()).isEqualTo(6);
+    }
+
+    @Test
+    void failedCheckoutShouldBeRecordedAndLetTheUserCheckOutAgain() throws Exception {
+        startQueue();
+        addToCart(queuedUser, 20);
+        CheckoutStatusDTO queued = enqueue();
+
+        CheckoutStatusDTO failed = poll(queued.handle());
+        assertThat(failed.status()).isEqualTo(CheckoutStatus.FAILED);
+        assertThat(failed.errorKey()).isEqualTo("insufficientstock");
+        // read back without waiting: the failure must have been committed
+        assertThat(poll(queued.handle(), 0)).isEqualTo(failed);
+        assertThat(stock()).isEqualTo(10);
+
+        transactionTemplate.executeWithoutResult(status -> bookInventoryService.setStock(book.getId(), 20));
+        CheckoutStatusDTO retried = enqueue();
+        assertThat(retried.handle()).isNotEqualTo(queued.handle());
+
+        assertThat(poll(retried.handle()).status()).isEqualTo(CheckoutStatus.COMPLETED);
+        assertThat(stock()).isZero();
+    }
+
+    private void startQueue() {
+        applicationProperties.getCheckout().setMode(ApplicationProperties.Checkout.Mode.QUEUED);
+        checkoutQueueService.start();
+    }
+
+    private void addToCart(User user, int quantity) throws Exception {
+        restOrderMockMvc
+            .perform(
+                post("/api/shopping-carts/add-book")
+                    .param("bookId", book.getId().toString())
+                    .param("quantity", Integer.toString(quantity))
+                    .with(user(user.getLogin()))
+            )
+            .andExpect(status().isOk());
+    }
+
+    private CheckoutStatusDTO enqueue() throws Exception {
+        String body = restOrderMockMvc
+            .perform(post("/api/orders/place-order").with(user(queuedUser.getLogin())))
+            .andExpect(status().isAccepted())
+            .andExpect(header().string("Location", startsWith("/api/orders/checkouts/")))
+            .andExpect(jsonPath("$.status").value(CheckoutStatus.QUEUED.name()))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        CheckoutStatusDTO queued = om.readValue(body, CheckoutStatusDTO.class);
+        assertThat(queued.handle()).isNotBlank();
+        return queued;
+    }
+
+    private CheckoutStatusDTO poll(String handle) throws Exception {
+        return poll(handle, WAIT_SECONDS);
+    }
+
+    private CheckoutStatusDTO poll(String handle, long waitSeconds) throws Exception {
+        MvcResult pending = restOrderMockMvc
+            .perform(
+                get("/api/orders/checkouts/{handle}", handle)
+                    .param("waitSeconds", Long.toString(waitSeconds))
+                    .with(user(queuedUser.getLogin()))
+            )
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        pending.getAsyncResult((waitSeconds + 5) * 1000);
+        String body = restOrderMockMvc
+            .perform(asyncDispatch(pending))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        return om.readValue(body, CheckoutStatusDTO.class);
+    }
+
+    /**
+     * What an order is made of, ids and timestamps aside.
+     */
+    private List<Map<String, Object>> placedOrder(Long orderId) {
+        return jdbcTemplate.queryForList(
+            "SELECT o.status, o.total_price, oi.book_id, oi.category_id, oi.quantity, oi.price " +
+            "FROM jhi_order o JOIN order_item oi ON oi.order_id = o.id WHERE o.id = ? ORDER BY oi.book_id",
+            orderId
+        );
+    }
+
+    private int stock() {
+        return jdbcTemplate.queryForObject("SELECT stock FROM book_inventory WHERE book_id = ?", Integer.class, book.getId());
+    }
+}
@@ -15,6 +15,7 @@ import com.stoecklin.bookstore.domain.Review;
 import com.stoecklin.bookstore.repository.ReviewRepository;
 import com.stoecklin.bookstore.repository.UserRepository;
 import com.stoecklin.bookstore.repository.search.ReviewSearchRepository;
+import com.stoecklin.bookstore.service.event.ReviewCreated;
 import jakarta.persistence.EntityManager;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -37,6 +38,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.util.Streamable;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -47,6 +50,7 @@ import org.springframework.transaction.annotation.Transactional;
 @ExtendWith(MockitoExtension.class)
 @AutoConfigureMockMvc
 @WithMockUser
+@RecordApplicationEvents
 class ReviewResourceIT {
 
     private static final Integer DEFAULT_RATING = 1;
@@ -80,6 +84,9 @@ class ReviewResourceIT {
     @Autowired
     private ReviewSearchRepository reviewSearchRepository;
 
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
     @Autowired
     private EntityManager em;
 
@@ -144,12 +151,9 @@ class ReviewResourceIT {
         assertIncrementedRepositoryCount(databaseSizeBeforeCreate);
         assertReviewUpdatableFieldsEquals(returnedReview, getPersistedReview(returnedReview));
 
-        await()
-            .atMost(5, TimeUnit.SECONDS)
-            .untilAsserted(() -> {
-                int searchDatabaseSizeAfter = IterableUtil.sizeOf(reviewSearchRepository.findAll());
-                assertThat(searchDatabaseSizeAfter).isEqualTo(searchDatabaseSizeBefore + 1);
-            });
+        // the review is indexed once the transaction commits, which a transactional test never does
+        assertThat(applicationEvents.stream(ReviewCreated.class)).containsExactly(new ReviewCreated(returnedReview.getId(), null));
+        assertThat(IterableUtil.sizeOf(reviewSearchRepository.findAll())).isEqualTo(searchDatabaseSizeBefore);
 
         insertedReview = returnedReview;
     }
@@ -0,0 +1,157 @@
+package com.stoecklin.bookstore.web.rest;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stoecklin.bookstore.IntegrationTest;
+import com.stoecklin.bookstore.domain.Book;
+import com.stoecklin.bookstore.domain.Category;
+import com.stoecklin.bookstore.domain.Order;
+import com.stoecklin.bookstore.domain.User;
+import com.stoecklin.bookstore.domain.enumeration.OrderStatus;
+import com.stoecklin.bookstore.repository.UserRepository;
+import com.stoecklin.bookstore.security.AuthoritiesConstants;
+import com.stoecklin.bookstore.service.BookInventoryService;
+import com.stoecklin.bookstore.service.OrderService;
+import com.stoecklin.bookstore.service.ShoppingCartService;
+import jakarta.persistence.EntityManager;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for the {@link SalesAnalyticsResource} REST controller, with the aggregates maintained by orders
+ * placed and cancelled through the {@link OrderResource}.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser(username = SalesAnalyticsResourceIT.LOGIN, authorities = AuthoritiesConstants.ADMIN)
+class SalesAnalyticsResourceIT {
+
+    static final String LOGIN = "sales-analytics-user";
+
+    @Autowired
+    private ObjectMapper om;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private BookInventoryService bookInventoryService;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private MockMvc restSalesMockMvc;
+
+    private Category orderedCategory;
+
+    private Category laterCategory;
+
+    private Book book;
+
+    @BeforeEach
+    void initTest() {
+        User user = UserResourceIT.createEntity();
+        user.setLogin(LOGIN);
+        userRepository.saveAndFlush(user);
+        orderedCategory = new Category().name("Ordered in");
+        laterCategory = new Category().name("Moved to");
+        em.persist(orderedCategory);
+        em.persist(laterCategory);
+        book = BookResourceIT.createEntity(em).category(orderedCategory);
+        em.persist(book);
+        em.flush();
+        bookInventoryService.setStock(book.getId(), 10);
+    }
+
+    @Test
+    @Transactional
+    void cancellingAndRebuildingShouldKeepTheCategoryOfTheOrder() throws Exception {
+        shoppingCartService.addItem(book.getId(), 2);
+        Order order = orderService.placeOrderFromCart(LOGIN);
+        em.flush();
+        LocalDate day = order.getPlacedAt().atZone(ZoneOffset.UTC).toLocalDate();
+
+        expectUnits(day, orderedCategory, 2);
+
+        // the book changes category after the order was placed: rebuilding must not move its sales
+        book.setCategory(laterCategory);
+        em.flush();
+        restSalesMockMvc.perform(post("/api/admin/sales/rebuild")).andExpect(status().isOk());
+
+        expectUnits(day, orderedCategory, 2);
+        expectNoSales(day, laterCategory);
+
+        // a status update without items must still subtract the persisted lines of the order
+        restSalesMockMvc
+            .perform(
+                put("/api/orders/{id}", order.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(
+                        om.writeValueAsBytes(
+                            Map.of(
+                                "id",
+                                order.getId(),
+                                "totalPrice",
+                                order.getTotalPrice(),
+                                "placedAt",
+                                order.getPlacedAt(),
+                                "status",
+                                OrderStatus.CANCELLED
+                            )
+                        )
+                    )
+            )
+            .andExpect(status().isOk());
+        em.flush();
+
+        expectUnits(day, orderedCategory, 0);
+        expectNoSales(day, laterCategory);
+        restSalesMockMvc
+            .perform(get("/api/admin/sales/top-sellers").param("from", day.toString()).param("to", day.toString()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[?(@.bookId == " + book.getId() + ")]").value(empty()));
+
+        restSalesMockMvc.perform(post("/api/admin/sales/rebuild")).andExpect(status().isOk());
+
+        expectNoSales(day, orderedCategory);
+        expectNoSales(day, laterCategory);
+    }
+
+    private ResultActions categories(LocalDate day) throws Exception {
+        return restSalesMockMvc
+            .perform(get("/api/admin/sales/categories").param("from", day.toString()).param("to", day.toString()))
+            .andExpect(status().isOk());
+    }
+
+    private void expectUnits(LocalDate day, Category category, int units) throws Exception {
+        categories(day).andExpect(jsonPath("$[?(@.categoryId == " + category.getId() + ")].units").value(contains(units)));
+    }
+
+    private void expectNoSales(LocalDate day, Category category) throws Exception {
+        categories(day).andExpect(jsonPath("$[?(@.categoryId == " + category.getId() + ")]").value(empty()));
+    }
+}
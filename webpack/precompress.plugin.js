@@ -0,0 +1,48 @@
+const zlib = require('zlib');
+
+/**
+ * Writes gzip and brotli variants next to the compressible assets of a production build, so that the server sends them
+ * as they are instead of compressing the bundle on every request. A variant is only kept when it is smaller.
+ */
+class PrecompressPlugin {
+  constructor({ test = /\.(js|css|html|svg|json|txt|map)$/, minSize = 1024 } = {}) {
+    this.test = test;
+    this.minSize = minSize;
+  }
+
+  apply(compiler) {
+    const { Compilation, sources } = compiler.webpack;
+    compiler.hooks.thisCompilation.tap('PrecompressPlugin', compilation => {
+      compilation.hooks.processAssets.tap(
+        { name: 'PrecompressPlugin', stage: Compilation.PROCESS_ASSETS_STAGE_OPTIMIZE_TRANSFER },
+        assets => {
+          for (const name of Object.keys(assets)) {
+            if (!this.test.test(name)) {
+              continue;
+            }
+            const content = assets[name].buffer();
+            if (content.length < this.minSize) {
+              continue;
+            }
+            const variants = {
+              gz: zlib.gzipSync(content, { level: zlib.constants.Z_BEST_COMPRESSION }),
+              br: zlib.brotliCompressSync(content, {
+                params: {
+                  [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+                  [zlib.constants.BROTLI_PARAM_SIZE_HINT]: content.length,
+                },
+              }),
+            };
+            for (const [extension, compressed] of Object.entries(variants)) {
+              if (compressed.length < content.length) {
+                compilation.emitAsset(`${name}.${extension}`, new sources.RawSource(compressed), { compressed: true });
+              }
+            }
+          }
+        },
+      );
+    });
+  }
+}
+
+module.exports = PrecompressPlugin;
@@ -7,6 +7,7 @@ const WebpackNotifierPlugin = require('webpack-notifier');
 const CopyWebpackPlugin = require('copy-webpack-plugin');
 
 const environment = require('./environment');
+const PrecompressPlugin = require('./precompress.plugin');
 const proxyConfig = require('./proxy.conf');
 
 module.exports = async (config, options, targetOptions) => {
@@ -76,6 +77,8 @@ module.exports = async (config, options, targetOptions) => {
         // Webpack statistics in temporary folder
         reportFilename: '../../stats.html',
       }),
+      // .gz and .br variants of the bundle, served by StaticResourcesWebConfiguration
+      new PrecompressPlugin(),
     );
   }
 